@@ -0,0 +1,156 @@
+/*
+ * Copyright 2015 Async-IO.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.wasync.benchmarks;
+
+import com.ning.http.client.HttpResponseBodyPart;
+import org.atmosphere.wasync.Function;
+import org.atmosphere.wasync.FunctionWrapper;
+import org.atmosphere.wasync.Options;
+import org.atmosphere.wasync.Request;
+import org.atmosphere.wasync.impl.DefaultClient;
+import org.atmosphere.wasync.transport.SSETransport;
+import org.atmosphere.wasync.transport.StreamTransport;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parse the body parts received by the {@link StreamTransport} and the {@link SSETransport}, from the bytes read by
+ * the http client to the {@link Function}. An SSE body part holds several {@code data:} lines, the score is per
+ * message.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BodyPartBenchmark {
+
+    private final static int MESSAGES_PER_PART = 8;
+    private final static Charset UTF8 = Charset.forName("UTF-8");
+
+    public enum Transport {STREAMING, SSE}
+
+    @Param
+    public Transport transport;
+
+    @Param({"64", "1024"})
+    public int messageSize;
+
+    private StreamTransport streamTransport;
+    private HttpResponseBodyPart[] parts;
+
+    @Setup
+    public void setUp(final Blackhole blackhole) {
+        List<FunctionWrapper> functions = new ArrayList<FunctionWrapper>();
+        functions.add(new FunctionWrapper("", new Function<String>() {
+            @Override
+            public void on(String s) {
+                blackhole.consume(s);
+            }
+        }));
+        DefaultClient client = new DefaultClient();
+        Request request = client.newRequestBuilder()
+                .uri("http://127.0.0.1:8080/benchmark")
+                .build();
+        Options options = client.newOptionsBuilder().reconnect(false).build();
+        com.ning.http.client.RequestBuilder r = new com.ning.http.client.RequestBuilder();
+
+        StringBuilder m = new StringBuilder(messageSize);
+        for (int i = 0; i < messageSize; i++) {
+            m.append('x');
+        }
+
+        if (transport == Transport.SSE) {
+            streamTransport = new SSETransport(r, options, request, functions);
+            StringBuilder b = new StringBuilder();
+            for (int i = 0; i < MESSAGES_PER_PART; i++) {
+                b.append("data:").append(m).append("\n\n");
+            }
+            parts = new HttpResponseBodyPart[]{new BodyPart(b.toString().getBytes(UTF8))};
+        } else {
+            streamTransport = new StreamTransport(r, options, request, functions);
+            parts = new HttpResponseBodyPart[MESSAGES_PER_PART];
+            for (int i = 0; i < MESSAGES_PER_PART; i++) {
+                parts[i] = new BodyPart(m.toString().getBytes(UTF8));
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        streamTransport.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MESSAGES_PER_PART)
+    public void onBodyPartReceived() throws Exception {
+        for (HttpResponseBodyPart part : parts) {
+            streamTransport.onBodyPartReceived(part);
+        }
+    }
+
+    private final static class BodyPart extends HttpResponseBodyPart {
+
+        private final byte[] bytes;
+
+        private BodyPart(byte[] bytes) {
+            super(false);
+            this.bytes = bytes;
+        }
+
+        @Override
+        public int length() {
+            return bytes.length;
+        }
+
+        @Override
+        public byte[] getBodyPartBytes() {
+            return bytes;
+        }
+
+        @Override
+        public int writeTo(OutputStream outputStream) throws IOException {
+            outputStream.write(bytes);
+            return bytes.length;
+        }
+
+        @Override
+        public ByteBuffer getBodyByteBuffer() {
+            return ByteBuffer.wrap(bytes);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2015 Async-IO.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.wasync.benchmarks;
+
+import org.atmosphere.wasync.Encoder;
+import org.atmosphere.wasync.FunctionWrapper;
+import org.atmosphere.wasync.impl.DefaultClient;
+import org.atmosphere.wasync.impl.SocketRuntime;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encode a fired object with {@link SocketRuntime#invokeEncoder}: a first encoder turns the object into a String, the
+ * following ones transform the String.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EncoderBenchmark {
+
+    @Param({"1", "4"})
+    public int encoders;
+
+    private final List<Encoder<? extends Object, ?>> encoderList = new ArrayList<Encoder<? extends Object, ?>>();
+    private final Message message = new Message("wAsync", "Hello");
+    private EncoderRuntime runtime;
+
+    @Setup
+    public void setUp() {
+        encoderList.add(new Encoder<Message, String>() {
+            @Override
+            public String encode(Message m) {
+                return "{\"author\":\"" + m.author + "\",\"message\":\"" + m.message + "\"}";
+            }
+        });
+        for (int i = 1; i < encoders; i++) {
+            encoderList.add(new Encoder<String, String>() {
+                @Override
+                public String encode(String s) {
+                    return s;
+                }
+            });
+        }
+        runtime = new EncoderRuntime();
+    }
+
+    @Benchmark
+    public Object invokeEncoder() {
+        return runtime.encode(encoderList, message);
+    }
+
+    public final static class Message {
+        private final String author;
+        private final String message;
+
+        public Message(String author, String message) {
+            this.author = author;
+            this.message = message;
+        }
+    }
+
+    private final static class EncoderRuntime extends SocketRuntime {
+
+        private EncoderRuntime() {
+            super(null, new DefaultClient().newOptionsBuilder().build(), null, new ArrayList<FunctionWrapper>());
+        }
+
+        private Object encode(List<Encoder<? extends Object, ?>> encoders, Object instanceType) {
+            return invokeEncoder(encoders, instanceType);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2015 Async-IO.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.wasync.benchmarks;
+
+import com.ning.http.client.Body;
+import com.ning.http.client.generators.InputStreamBodyGenerator;
+import org.atmosphere.wasync.util.FileRegion;
+import org.atmosphere.wasync.util.FileRegionBodyGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Read a file fired as a request body: the {@link InputStreamBodyGenerator} used for an {@link java.io.InputStream}
+ * against the {@link FileRegionBodyGenerator} used for a {@link File}, a {@link java.nio.file.Path} or a
+ * {@link FileChannel}, either copied into a buffer or transferred to a channel without copy. The sink is a file, the
+ * network isn't measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FileUploadBenchmark {
+
+    @Param({"65536", "16777216"})
+    public int fileSize;
+
+    private File file;
+    private File sink;
+    private FileChannel channel;
+    private FileChannel sinkChannel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(8192);
+
+    @Setup
+    public void setUp() throws IOException {
+        file = File.createTempFile("wasync", "upload");
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.setLength(fileSize);
+        raf.close();
+        channel = new RandomAccessFile(file, "r").getChannel();
+
+        sink = File.createTempFile("wasync", "sink");
+        sinkChannel = new RandomAccessFile(sink, "rw").getChannel();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        channel.close();
+        sinkChannel.close();
+        file.delete();
+        sink.delete();
+    }
+
+    @Benchmark
+    public long inputStream() throws IOException {
+        Body body = new InputStreamBodyGenerator(new FileInputStream(file)).createBody();
+        try {
+            return drain(body);
+        } finally {
+            body.close();
+        }
+    }
+
+    @Benchmark
+    public long fileRegion() throws IOException {
+        Body body = new FileRegionBodyGenerator(new FileRegion(channel)).createBody();
+        try {
+            return drain(body);
+        } finally {
+            body.close();
+        }
+    }
+
+    @Benchmark
+    public long fileRegionTransfer() throws IOException {
+        FileRegionBodyGenerator generator = new FileRegionBodyGenerator(new FileRegion(channel));
+        com.ning.http.client.RandomAccessBody body = generator.createBody();
+        try {
+            sinkChannel.position(0);
+            long transferred = 0;
+            while (transferred < fileSize) {
+                transferred += body.transferTo(transferred, sinkChannel);
+            }
+            return transferred;
+        } finally {
+            body.close();
+        }
+    }
+
+    private long drain(Body body) throws IOException {
+        long total = 0;
+        long read;
+        while (true) {
+            buffer.clear();
+            read = body.read(buffer);
+            if (read < 0) {
+                return total;
+            }
+            total += read;
+        }
+    }
+}
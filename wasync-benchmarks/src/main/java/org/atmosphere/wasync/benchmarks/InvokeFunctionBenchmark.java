@@ -0,0 +1,89 @@
+/*
+ * Copyright 2015 Async-IO.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.wasync.benchmarks;
+
+import org.atmosphere.wasync.Decoder;
+import org.atmosphere.wasync.Event;
+import org.atmosphere.wasync.Function;
+import org.atmosphere.wasync.FunctionResolver;
+import org.atmosphere.wasync.FunctionWrapper;
+import org.atmosphere.wasync.transport.TransportsUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decode and dispatch a message with {@link TransportsUtil#invokeFunction}, for a varying number of functions and
+ * decoders. Every decoder produces a message, so every function is called once per decoder.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InvokeFunctionBenchmark {
+
+    @Param({"1", "4", "16"})
+    public int functions;
+
+    @Param({"0", "1", "4"})
+    public int decoders;
+
+    private final List<FunctionWrapper> functionWrappers = new ArrayList<FunctionWrapper>();
+    private final List<Decoder<? extends Object, ?>> decoderList = new ArrayList<Decoder<? extends Object, ?>>();
+    private Blackhole blackhole;
+
+    @Setup
+    public void setUp(Blackhole blackhole) {
+        this.blackhole = blackhole;
+        for (int i = 0; i < functions; i++) {
+            functionWrappers.add(new FunctionWrapper("", new Function<String>() {
+                @Override
+                public void on(String s) {
+                    InvokeFunctionBenchmark.this.blackhole.consume(s);
+                }
+            }));
+        }
+        for (int i = 0; i < decoders; i++) {
+            decoderList.add(new Decoder<String, String>() {
+                @Override
+                public String decode(Event e, String s) {
+                    return s;
+                }
+            });
+        }
+    }
+
+    @Benchmark
+    public boolean invokeFunction() {
+        return TransportsUtil.invokeFunction(Event.MESSAGE, decoderList, functionWrappers, String.class,
+                "{\"author\":\"wAsync\",\"message\":\"Hello\"}", Event.MESSAGE.name(), FunctionResolver.DEFAULT);
+    }
+}
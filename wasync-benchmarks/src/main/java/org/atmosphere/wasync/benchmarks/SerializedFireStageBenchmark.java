@@ -0,0 +1,153 @@
+/*
+ * Copyright 2015 Async-IO.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.wasync.benchmarks;
+
+import com.google.common.util.concurrent.SettableFuture;
+import com.ning.http.client.Response;
+import org.atmosphere.wasync.serial.DefaultSerializedFireStage;
+import org.atmosphere.wasync.serial.JournaledSerializedFireStage;
+import org.atmosphere.wasync.serial.RingBufferSerializedFireStage;
+import org.atmosphere.wasync.serial.SerializedFireStage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The throughput of the {@link SerializedFireStage}s, from {@link SerializedFireStage#enqueue} to the completion of the
+ * futures, with a write that completes immediately, so the score is the cost of the stage itself:
+ * <ul>
+ * <li>DEFAULT: {@link DefaultSerializedFireStage}, one write per payload.</li>
+ * <li>BATCHED: {@link DefaultSerializedFireStage} framing up to 64 Strings per write.</li>
+ * <li>RING_BUFFER: {@link RingBufferSerializedFireStage}.</li>
+ * <li>JOURNALED: {@link JournaledSerializedFireStage}, every payload appended to a journal on disk first.</li>
+ * </ul>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializedFireStageBenchmark {
+
+    private final static int PAYLOADS = 1000;
+
+    public enum Stage {DEFAULT, BATCHED, RING_BUFFER, JOURNALED}
+
+    @Param
+    public Stage stage;
+
+    @Param({"64", "1024"})
+    public int payloadSize;
+
+    private SerializedFireStage fireStage;
+    private File journal;
+    private String payload;
+
+    @Setup
+    public void setUp() throws IOException {
+        StringBuilder b = new StringBuilder(payloadSize);
+        for (int i = 0; i < payloadSize; i++) {
+            b.append('x');
+        }
+        payload = b.toString();
+
+        switch (stage) {
+            case DEFAULT:
+                fireStage = new DefaultSerializedFireStage() {
+                    @Override
+                    protected void fireSynchronously(Object firePayload, SettableFuture<Response> originalFuture) {
+                        originalFuture.set(null);
+                    }
+                };
+                break;
+            case BATCHED:
+                fireStage = new DefaultSerializedFireStage(64, Integer.MAX_VALUE, 0, TimeUnit.MILLISECONDS, "|") {
+                    @Override
+                    protected void fireSynchronously(Object firePayload, SettableFuture<Response> originalFuture) {
+                        originalFuture.set(null);
+                    }
+
+                    @Override
+                    protected void fireSynchronously(Object firePayload, List<SettableFuture<Response>> originalFutures) {
+                        for (SettableFuture<Response> f : originalFutures) {
+                            f.set(null);
+                        }
+                    }
+                };
+                break;
+            case RING_BUFFER:
+                fireStage = new RingBufferSerializedFireStage() {
+                    @Override
+                    protected void fireSynchronously(Object firePayload, SettableFuture<Response> originalFuture) {
+                        originalFuture.set(null);
+                    }
+                };
+                break;
+            case JOURNALED:
+                journal = File.createTempFile("wasync", "journal");
+                journal.delete();
+                fireStage = new JournaledSerializedFireStage(journal) {
+                    @Override
+                    protected Response write(Object firePayload) {
+                        return null;
+                    }
+                };
+                break;
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        fireStage.shutdown();
+        if (journal != null) {
+            File[] files = journal.listFiles();
+            if (files != null) {
+                for (File f : files) {
+                    f.delete();
+                }
+            }
+            journal.delete();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(PAYLOADS)
+    public Response fire() throws Exception {
+        SettableFuture<Response> last = null;
+        for (int i = 0; i < PAYLOADS; i++) {
+            last = SettableFuture.create();
+            fireStage.enqueue(payload, last);
+        }
+        // The stage is serialized, once the last payload is written all the others are.
+        return last.get(10, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2015 Async-IO.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.wasync.benchmarks;
+
+import org.atmosphere.wasync.Event;
+import org.atmosphere.wasync.decoder.TrackMessageSizeDecoder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decode a stream of length delimited messages, as received from the network: the stream is cut in chunks of a fixed
+ * size, so messages are split across chunks and chunks hold several messages. The score is per message.
+ * <p/>
+ * A cut never splits a length prefix from the first character of its body, and every chunk holds a delimiter: the
+ * decoder loses data otherwise.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TrackMessageSizeDecoderBenchmark {
+
+    private final static int MESSAGES = 1000;
+
+    /**
+     * The size of a chunk: a small frame, an ethernet MTU and a large read buffer.
+     */
+    @Param({"512", "1460", "16384"})
+    public int chunkSize;
+
+    @Param({"64", "256"})
+    public int messageSize;
+
+    private final List<String> chunks = new ArrayList<String>();
+    private TrackMessageSizeDecoder decoder;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        StringBuilder stream = new StringBuilder();
+        // Where the length prefix and the body of each message start.
+        int[] prefixes = new int[MESSAGES];
+        int[] bodies = new int[MESSAGES];
+        for (int i = 0; i < MESSAGES; i++) {
+            // Between half and one and a half times the message size.
+            int length = messageSize / 2 + random.nextInt(messageSize);
+            prefixes[i] = stream.length();
+            stream.append(length).append('|');
+            bodies[i] = stream.length();
+            for (int j = 0; j < length; j++) {
+                stream.append((char) ('a' + random.nextInt(26)));
+            }
+        }
+
+        int start = 0;
+        int message = 0;
+        while (start < stream.length()) {
+            int end = Math.min(stream.length(), start + chunkSize);
+            while (message < MESSAGES && bodies[message] < end) {
+                message++;
+            }
+            // Move a cut inside a length prefix, or right after it, into the body.
+            if (message < MESSAGES && prefixes[message] < end) {
+                end = bodies[message] + 1;
+            }
+            chunks.add(stream.substring(start, end));
+            start = end;
+        }
+        decoder = new TrackMessageSizeDecoder();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MESSAGES)
+    public void decode(Blackhole blackhole) {
+        for (String chunk : chunks) {
+            blackhole.consume(decoder.decode(Event.MESSAGE, chunk));
+        }
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2015 Async-IO.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.wasync.benchmarks;
+
+import org.atmosphere.wasync.Decoder;
+import org.atmosphere.wasync.Event;
+import org.atmosphere.wasync.Function;
+import org.atmosphere.wasync.util.TypeResolver;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resolve the type arguments of a {@link Function} and of a {@link Decoder}, as done for every message dispatched,
+ * with and without the {@link TypeResolver} cache.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TypeResolverBenchmark {
+
+    @Param({"true", "false"})
+    public boolean cache;
+
+    private final Function<String> function = new Function<String>() {
+        @Override
+        public void on(String s) {
+        }
+    };
+
+    private final Decoder<String, Integer> decoder = new Decoder<String, Integer>() {
+        @Override
+        public Integer decode(Event e, String s) {
+            return s.length();
+        }
+    };
+
+    @Setup
+    public void setUp() {
+        if (cache) {
+            TypeResolver.enableCache();
+        } else {
+            TypeResolver.disableCache();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        TypeResolver.enableCache();
+    }
+
+    @Benchmark
+    public Class<?>[] resolveFunction() {
+        return TypeResolver.resolveArguments(function.getClass(), Function.class);
+    }
+
+    @Benchmark
+    public Class<?>[] resolveDecoder() {
+        return TypeResolver.resolveArguments(decoder.getClass(), Decoder.class);
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2015 Async-IO.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.wasync.benchmarks;
+
+import org.atmosphere.wasync.Function;
+import org.atmosphere.wasync.util.TypeResolver;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.ref.Reference;
+import java.lang.ref.WeakReference;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resolve the type arguments of {@link Function}s from every available thread, as done by a multi-threaded dispatch.
+ * <p/>
+ * {@code classValue} uses the {@link TypeResolver} cache, stored on each class and read without locking.
+ * {@code synchronizedWeakHashMap} is the baseline: the former cache, a synchronized {@link WeakHashMap} of weak
+ * references guarded by one global monitor. Run with {@code -t} to compare other thread counts.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(Threads.MAX)
+public class TypeResolverContentionBenchmark {
+
+    private final Function<?>[] functions = {
+            new Function<String>() {
+                @Override
+                public void on(String s) {
+                }
+            },
+            new Function<Integer>() {
+                @Override
+                public void on(Integer i) {
+                }
+            },
+            new Function<Throwable>() {
+                @Override
+                public void on(Throwable t) {
+                }
+            },
+            new Function<byte[]>() {
+                @Override
+                public void on(byte[] b) {
+                }
+            }
+    };
+
+    private final Map<Class<?>, Reference<Class<?>[]>> synchronizedCache =
+            Collections.synchronizedMap(new WeakHashMap<Class<?>, Reference<Class<?>[]>>());
+
+    /**
+     * The next {@link Function} of a thread.
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    @Benchmark
+    public Class<?>[] classValue(Cursor cursor) {
+        Function<?> f = functions[cursor.next++ & 3];
+        return TypeResolver.resolveArguments(f.getClass(), Function.class);
+    }
+
+    @Benchmark
+    public Class<?>[] synchronizedWeakHashMap(Cursor cursor) {
+        Function<?> f = functions[cursor.next++ & 3];
+        Reference<Class<?>[]> ref = synchronizedCache.get(f.getClass());
+        Class<?>[] arguments = ref != null ? ref.get() : null;
+        if (arguments == null) {
+            arguments = TypeResolver.resolveArguments(f.getClass(), Function.class);
+            synchronizedCache.put(f.getClass(), new WeakReference<Class<?>[]>(arguments));
+        }
+        return arguments;
+    }
+}
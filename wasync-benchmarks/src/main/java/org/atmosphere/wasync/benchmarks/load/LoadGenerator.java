@@ -0,0 +1,342 @@
+/*
+ * Copyright 2015 Async-IO.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.wasync.benchmarks.load;
+
+import com.ning.http.client.AsyncHttpClient;
+import org.atmosphere.wasync.ClientFactory;
+import org.atmosphere.wasync.Event;
+import org.atmosphere.wasync.Function;
+import org.atmosphere.wasync.Request;
+import org.atmosphere.wasync.Socket;
+import org.atmosphere.wasync.impl.AtmosphereClient;
+import org.atmosphere.wasync.impl.AtmosphereRequest;
+import org.atmosphere.wasync.impl.ClientUtil;
+import org.atmosphere.wasync.util.Histogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A load generator running entirely on localhost: it starts a {@link LoopbackServer}, opens sockets over any
+ * {@link Request.TRANSPORT} during a ramp-up period, then fires messages at a fixed rate and measures the time until
+ * they are received back.
+ * <p/>
+ * Messages are scheduled at a fixed rate and carry the time they were scheduled at, so the latency of a message the
+ * sender was late for includes the delay (coordinated omission correction). Throughput and latency percentiles are
+ * reported every second and for the whole run, see {@link LoadReport}.
+ * <pre>
+ * java -cp target/benchmarks.jar org.atmosphere.wasync.benchmarks.load.LoadGenerator \
+ *     --transport WEBSOCKET --sockets 100 --ramp-up 10 --message-size 256 --rate 1000 --duration 60
+ * </pre>
+ */
+public class LoadGenerator {
+
+    private final static Logger logger = LoggerFactory.getLogger(LoadGenerator.class);
+    private final static long MAX_LATENCY_MICROS = TimeUnit.HOURS.toMicros(1);
+    private final static char SEPARATOR = ':';
+
+    /**
+     * Echo every message to its sender only, or broadcast it to every socket.
+     */
+    public enum Mode {ECHO, BROADCAST}
+
+    private final Settings settings;
+    private final Histogram corrected = new Histogram(4, MAX_LATENCY_MICROS);
+    private final Histogram uncorrected = new Histogram(4, MAX_LATENCY_MICROS);
+    private final Histogram connect = new Histogram(4, TimeUnit.MINUTES.toMillis(10));
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private volatile long measureFrom = Long.MAX_VALUE;
+
+    public LoadGenerator(Settings settings) {
+        this.settings = settings;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Settings settings;
+        try {
+            settings = Settings.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(Settings.USAGE);
+            System.exit(1);
+            return;
+        }
+        new LoadGenerator(settings).run();
+        System.exit(0);
+    }
+
+    /**
+     * Run the load, then write the {@link LoadReport}.
+     *
+     * @throws Exception if the server can't be started or the report written
+     */
+    public void run() throws Exception {
+        LoopbackServer server = new LoopbackServer().start();
+        AtmosphereClient client = ClientFactory.getDefault().newClient(AtmosphereClient.class);
+        AsyncHttpClient runtime = ClientUtil.createDefaultAsyncHttpClient(client.newOptionsBuilder().build());
+        LoadReport report = new LoadReport(System.out, settings.report);
+        List<Socket> sockets = new ArrayList<Socket>(settings.sockets);
+        try {
+            System.out.println("Loading " + server.url() + " with " + settings);
+            connect(client, runtime, server.url(), sockets);
+            if (sockets.isEmpty()) {
+                throw new IOException("No socket connected");
+            }
+            measure(sockets, report);
+        } finally {
+            ClientUtil.closeAll(sockets, 5, TimeUnit.SECONDS);
+            runtime.close();
+            server.stop();
+            report.close();
+        }
+    }
+
+    private void connect(AtmosphereClient client, AsyncHttpClient runtime, String url, List<Socket> sockets) throws InterruptedException {
+        long rampUp = TimeUnit.SECONDS.toNanos(settings.rampUp);
+        long start = System.nanoTime();
+        for (int i = 0; i < settings.sockets; i++) {
+            parkUntil(start + rampUp * i / settings.sockets);
+
+            AtmosphereRequest.AtmosphereRequestBuilder request = client.newRequestBuilder()
+                    .method(Request.METHOD.GET)
+                    .uri(url)
+                    .queryString(LoopbackServer.CHANNEL, settings.mode == Mode.ECHO ? "socket-" + i : "all")
+                    .trackMessageLength(true)
+                    .enableProtocol(true)
+                    .transport(settings.transport);
+
+            Socket socket = client.create(client.newOptionsBuilder().runtime(runtime).build());
+            socket.on(Event.MESSAGE, new Function<String>() {
+                @Override
+                public void on(String message) {
+                    received(message);
+                }
+            }).on(new Function<Throwable>() {
+                @Override
+                public void on(Throwable t) {
+                    errors.incrementAndGet();
+                    logger.trace("", t);
+                }
+            });
+
+            long begin = System.nanoTime();
+            try {
+                socket.open(request.build(), 30, TimeUnit.SECONDS);
+                connect.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin));
+                sockets.add(socket);
+            } catch (IOException e) {
+                errors.incrementAndGet();
+                logger.warn("Unable to open socket {}", i, e);
+            }
+        }
+        System.out.printf("Connected %d sockets of %d, connect %s%n", sockets.size(), settings.sockets, connect.snapshot());
+    }
+
+    private void measure(final List<Socket> sockets, LoadReport report) throws Exception {
+        final long start = System.nanoTime();
+        final long end = start + TimeUnit.SECONDS.toNanos(settings.warmup + settings.duration);
+        measureFrom = start + TimeUnit.SECONDS.toNanos(settings.warmup);
+
+        Thread sender = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                send(sockets, start, end);
+            }
+        }, "wAsync-load-sender");
+        sender.setDaemon(true);
+        sender.start();
+
+        parkUntil(measureFrom);
+        // Drop what was recorded while warming up
+        corrected.intervalSnapshot();
+        uncorrected.intervalSnapshot();
+
+        long tick = TimeUnit.SECONDS.toNanos(1);
+        long last = measureFrom;
+        long sentBefore = 0, receivedBefore = 0, errorsBefore = errors.get();
+        while (last < end) {
+            long next = Math.min(last + tick, end);
+            parkUntil(next);
+            long s = sent.get(), r = received.get(), e = errors.get();
+            report.interval(seconds(next - measureFrom), s - sentBefore, r - receivedBefore, e - errorsBefore,
+                    seconds(next - last), corrected.intervalSnapshot(), uncorrected.intervalSnapshot());
+            sentBefore = s;
+            receivedBefore = r;
+            errorsBefore = e;
+            last = next;
+        }
+        sender.join();
+
+        long fanOut = settings.mode == Mode.ECHO ? 1 : sockets.size();
+        long expected = sent.get() * fanOut;
+        long drain = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (received.get() < expected && System.nanoTime() < drain) {
+            Thread.sleep(10);
+        }
+
+        report.summary(settings, seconds(end - measureFrom), sent.get(), expected, received.get(),
+                errors.get(), corrected.snapshot(), uncorrected.snapshot(), connect.snapshot());
+    }
+
+    private void send(List<Socket> sockets, long start, long end) {
+        long interval = TimeUnit.SECONDS.toNanos(1) / settings.rate;
+        StringBuilder b = new StringBuilder(settings.messageSize);
+        for (long k = 0; ; k++) {
+            long scheduled = start + k * interval;
+            if (scheduled >= end) {
+                return;
+            }
+            parkUntil(scheduled);
+
+            int index = (int) (k % sockets.size());
+            b.setLength(0);
+            b.append(index).append(SEPARATOR).append(k).append(SEPARATOR)
+                    .append(scheduled).append(SEPARATOR).append(System.nanoTime()).append(SEPARATOR);
+            while (b.length() < settings.messageSize) {
+                b.append('x');
+            }
+            try {
+                sockets.get(index).fire(b.toString());
+                if (scheduled >= measureFrom) {
+                    sent.incrementAndGet();
+                }
+            } catch (IOException e) {
+                errors.incrementAndGet();
+                logger.trace("", e);
+            }
+        }
+    }
+
+    private void received(String message) {
+        long now = System.nanoTime();
+        int first = message.indexOf(SEPARATOR);
+        int second = first < 0 ? -1 : message.indexOf(SEPARATOR, first + 1);
+        int third = second < 0 ? -1 : message.indexOf(SEPARATOR, second + 1);
+        int fourth = third < 0 ? -1 : message.indexOf(SEPARATOR, third + 1);
+        if (fourth < 0) {
+            // Not one of ours, like the handshake of the protocol
+            return;
+        }
+
+        long scheduled, sentAt;
+        try {
+            scheduled = Long.parseLong(message.substring(second + 1, third));
+            sentAt = Long.parseLong(message.substring(third + 1, fourth));
+        } catch (NumberFormatException e) {
+            return;
+        }
+        if (scheduled < measureFrom) {
+            return;
+        }
+        received.incrementAndGet();
+        corrected.record(TimeUnit.NANOSECONDS.toMicros(now - scheduled));
+        uncorrected.record(TimeUnit.NANOSECONDS.toMicros(now - sentAt));
+    }
+
+    private static void parkUntil(long deadline) {
+        long wait;
+        while ((wait = deadline - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(wait);
+        }
+    }
+
+    private static double seconds(long nanos) {
+        return nanos / 1e9;
+    }
+
+    /**
+     * The settings of a run, parsed from {@code --name value} arguments.
+     */
+    public static class Settings {
+
+        final static String USAGE = "Usage: LoadGenerator [--transport WEBSOCKET|SSE|STREAMING|LONG_POLLING] [--mode ECHO|BROADCAST]"
+                + " [--sockets n] [--ramp-up seconds] [--message-size bytes] [--rate messages/s]"
+                + " [--warmup seconds] [--duration seconds] [--report csv-prefix]";
+
+        Request.TRANSPORT transport = Request.TRANSPORT.WEBSOCKET;
+        Mode mode = Mode.ECHO;
+        int sockets = 10;
+        int rampUp = 5;
+        int messageSize = 128;
+        int rate = 1000;
+        int warmup = 10;
+        int duration = 30;
+        String report = "wasync-load";
+
+        public static Settings parse(String[] args) {
+            Settings s = new Settings();
+            for (int i = 0; i < args.length; i++) {
+                String name = args[i];
+                if (i + 1 == args.length) {
+                    throw new IllegalArgumentException("Missing value of " + name);
+                }
+                String value = args[++i];
+                if (name.equals("--transport")) {
+                    s.transport = Request.TRANSPORT.valueOf(value.toUpperCase());
+                } else if (name.equals("--mode")) {
+                    s.mode = Mode.valueOf(value.toUpperCase());
+                } else if (name.equals("--sockets")) {
+                    s.sockets = positive(name, value);
+                } else if (name.equals("--ramp-up")) {
+                    s.rampUp = Integer.parseInt(value);
+                } else if (name.equals("--message-size")) {
+                    s.messageSize = positive(name, value);
+                } else if (name.equals("--rate")) {
+                    s.rate = positive(name, value);
+                } else if (name.equals("--warmup")) {
+                    s.warmup = Integer.parseInt(value);
+                } else if (name.equals("--duration")) {
+                    s.duration = positive(name, value);
+                } else if (name.equals("--report")) {
+                    s.report = value;
+                } else {
+                    throw new IllegalArgumentException("Unknown option " + name);
+                }
+            }
+            return s;
+        }
+
+        private static int positive(String name, String value) {
+            int i = Integer.parseInt(value);
+            if (i <= 0) {
+                throw new IllegalArgumentException("Invalid " + name + " " + value);
+            }
+            return i;
+        }
+
+        @Override
+        public String toString() {
+            return "Settings{" +
+                    "transport=" + transport +
+                    ", mode=" + mode +
+                    ", sockets=" + sockets +
+                    ", rampUp=" + rampUp +
+                    ", messageSize=" + messageSize +
+                    ", rate=" + rate +
+                    ", warmup=" + warmup +
+                    ", duration=" + duration +
+                    '}';
+        }
+    }
+}
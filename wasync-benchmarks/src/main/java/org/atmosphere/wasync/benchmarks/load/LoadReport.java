@@ -0,0 +1,124 @@
+/*
+ * Copyright 2015 Async-IO.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.wasync.benchmarks.load;
+
+import org.atmosphere.wasync.util.Histogram;
+
+import java.io.Closeable;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.util.Locale;
+
+/**
+ * Write the results of a {@link LoadGenerator} run to the console and to two CSV files: {@code <prefix>-intervals.csv}
+ * with a row per reporting interval, and {@code <prefix>-summary.csv} with the percentiles of the whole run.
+ * <p/>
+ * Latencies are in microseconds. The corrected latency is measured from the time a message was scheduled to be sent,
+ * so a stalled sender is not hiding the messages it should have sent (coordinated omission). The uncorrected latency
+ * is measured from the time it was actually sent.
+ */
+public class LoadReport implements Closeable {
+
+    private final static double[] PERCENTILES = {50, 90, 99, 99.9, 99.99, 100};
+
+    private final PrintStream console;
+    private final PrintWriter intervals;
+    private final String summaryFile;
+
+    public LoadReport(PrintStream console, String prefix) throws IOException {
+        this.console = console;
+        this.summaryFile = prefix + "-summary.csv";
+        this.intervals = new PrintWriter(new FileWriter(prefix + "-intervals.csv"));
+        intervals.println("elapsed_s,sent,received,errors,throughput_msg_s,p50_us,p99_us,p999_us,max_us,uncorrected_p99_us");
+        console.printf("%8s %10s %10s %8s %12s %10s %10s %10s %10s%n",
+                "elapsed", "sent", "received", "errors", "msg/s", "p50(us)", "p99(us)", "p99.9(us)", "max(us)");
+    }
+
+    /**
+     * Report an interval.
+     *
+     * @param elapsedSeconds the seconds elapsed since the measurement started
+     * @param sent           the messages sent during the interval
+     * @param received       the messages received during the interval
+     * @param errors         the errors during the interval
+     * @param seconds        the length of the interval, in seconds
+     * @param corrected      the corrected latencies of the interval
+     * @param uncorrected    the uncorrected latencies of the interval
+     */
+    public void interval(double elapsedSeconds, long sent, long received, long errors, double seconds,
+                         Histogram.Snapshot corrected, Histogram.Snapshot uncorrected) {
+        double throughput = seconds > 0 ? received / seconds : 0;
+        console.printf(Locale.ROOT, "%8.1f %10d %10d %8d %12.1f %10d %10d %10d %10d%n",
+                elapsedSeconds, sent, received, errors, throughput,
+                corrected.getP50(), corrected.getP99(), corrected.getP999(), corrected.getMax());
+        intervals.printf(Locale.ROOT, "%.3f,%d,%d,%d,%.1f,%d,%d,%d,%d,%d%n",
+                elapsedSeconds, sent, received, errors, throughput,
+                corrected.getP50(), corrected.getP99(), corrected.getP999(), corrected.getMax(), uncorrected.getP99());
+        intervals.flush();
+    }
+
+    /**
+     * Report the whole run.
+     *
+     * @param settings    the settings of the run
+     * @param seconds     the length of the measurement, in seconds
+     * @param sent        the messages sent
+     * @param expected    the messages expected to be received
+     * @param received    the messages received
+     * @param errors      the errors
+     * @param corrected   the corrected latencies
+     * @param uncorrected the uncorrected latencies
+     * @param connect     the time to open the sockets, in milliseconds
+     * @throws IOException if the summary can't be written
+     */
+    public void summary(LoadGenerator.Settings settings, double seconds, long sent, long expected, long received,
+                        long errors, Histogram.Snapshot corrected, Histogram.Snapshot uncorrected,
+                        Histogram.Snapshot connect) throws IOException {
+        console.println();
+        console.println("=== " + settings);
+        console.printf(Locale.ROOT, "sent %d, received %d of %d expected, errors %d, %.1f msg/s%n",
+                sent, received, expected, errors, seconds > 0 ? received / seconds : 0);
+        console.printf(Locale.ROOT, "connect (ms): p50 %d, p99 %d, max %d%n",
+                connect.getP50(), connect.getP99(), connect.getMax());
+        console.printf("%10s %15s %15s%n", "percentile", "corrected(us)", "uncorrected(us)");
+        for (double p : PERCENTILES) {
+            console.printf(Locale.ROOT, "%10s %15d %15d%n", label(p), corrected.percentile(p), uncorrected.percentile(p));
+        }
+
+        PrintWriter summary = new PrintWriter(new FileWriter(summaryFile));
+        try {
+            summary.println("transport,mode,sockets,message_size,rate,seconds,sent,expected,received,errors,percentile,corrected_us,uncorrected_us");
+            for (double p : PERCENTILES) {
+                summary.printf(Locale.ROOT, "%s,%s,%d,%d,%d,%.3f,%d,%d,%d,%d,%s,%d,%d%n",
+                        settings.transport, settings.mode, settings.sockets, settings.messageSize, settings.rate,
+                        seconds, sent, expected, received, errors, label(p), corrected.percentile(p), uncorrected.percentile(p));
+            }
+        } finally {
+            summary.close();
+        }
+    }
+
+    private static String label(double p) {
+        return p == (long) p ? String.valueOf((long) p) : String.valueOf(p);
+    }
+
+    @Override
+    public void close() {
+        intervals.close();
+    }
+}
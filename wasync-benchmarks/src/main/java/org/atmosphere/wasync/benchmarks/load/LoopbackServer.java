@@ -0,0 +1,136 @@
+/*
+ * Copyright 2015 Async-IO.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.wasync.benchmarks.load;
+
+import org.atmosphere.cpr.AtmosphereHandler;
+import org.atmosphere.cpr.AtmosphereResource;
+import org.atmosphere.cpr.AtmosphereResourceEvent;
+import org.atmosphere.cpr.Broadcaster;
+import org.atmosphere.interceptor.TrackMessageSizeInterceptor;
+import org.atmosphere.nettosphere.Config;
+import org.atmosphere.nettosphere.Nettosphere;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+
+/**
+ * An embedded Nettosphere server listening on 127.0.0.1 and serving {@link #PATH}, for the {@link LoadGenerator}.
+ * <p/>
+ * Every request carries a {@link #CHANNEL} query parameter. A GET suspends the connection on the broadcaster of its
+ * channel, any other request broadcasts its body to that channel. A channel per socket echoes the messages to their
+ * sender, a single channel broadcasts them to every socket. Messages are written with their length, so they are
+ * decoded by the {@link org.atmosphere.wasync.decoder.TrackMessageSizeDecoder}.
+ */
+public class LoopbackServer {
+
+    public final static String PATH = "/load";
+    public final static String CHANNEL = "channel";
+
+    private final int port;
+    private Nettosphere server;
+
+    /**
+     * Create a server listening on a free port.
+     *
+     * @throws IOException if no port is available
+     */
+    public LoopbackServer() throws IOException {
+        this(freePort());
+    }
+
+    public LoopbackServer(int port) {
+        this.port = port;
+    }
+
+    /**
+     * Start the server.
+     *
+     * @return this
+     */
+    public LoopbackServer start() {
+        Config config = new Config.Builder()
+                .port(port)
+                .host("127.0.0.1")
+                .interceptor(new TrackMessageSizeInterceptor())
+                .resource(PATH, new AtmosphereHandler() {
+
+                    @Override
+                    public void onRequest(AtmosphereResource r) throws IOException {
+                        Broadcaster b = r.getAtmosphereConfig().getBroadcasterFactory()
+                                .lookup(r.getRequest().getParameter(CHANNEL), true);
+                        if (r.getRequest().getMethod().equalsIgnoreCase("GET")) {
+                            r.setBroadcaster(b).suspend();
+                        } else {
+                            String message = r.getRequest().getReader().readLine();
+                            if (message != null) {
+                                b.broadcast(message);
+                            }
+                        }
+                    }
+
+                    @Override
+                    public void onStateChange(AtmosphereResourceEvent event) throws IOException {
+                        if (event.isCancelled() || event.isClosedByClient() || event.getMessage() == null) {
+                            return;
+                        }
+                        AtmosphereResource r = event.getResource();
+                        r.getResponse().write(event.getMessage().toString());
+                        if (r.transport() == AtmosphereResource.TRANSPORT.LONG_POLLING) {
+                            r.resume();
+                        }
+                    }
+
+                    @Override
+                    public void destroy() {
+                    }
+                }).build();
+
+        server = new Nettosphere.Builder().config(config).build();
+        server.start();
+        return this;
+    }
+
+    /**
+     * Stop the server.
+     */
+    public void stop() {
+        if (server != null && server.isStarted()) {
+            server.stop();
+        }
+    }
+
+    /**
+     * The url of {@link #PATH}.
+     *
+     * @return the url of {@link #PATH}
+     */
+    public String url() {
+        return "http://127.0.0.1:" + port + PATH;
+    }
+
+    public int port() {
+        return port;
+    }
+
+    private static int freePort() throws IOException {
+        ServerSocket socket = new ServerSocket(0);
+        try {
+            return socket.getLocalPort();
+        } finally {
+            socket.close();
+        }
+    }
+}
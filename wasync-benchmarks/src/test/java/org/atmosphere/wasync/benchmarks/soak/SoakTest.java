@@ -0,0 +1,209 @@
+/*
+ * Copyright 2015 Async-IO.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.wasync.benchmarks.soak;
+
+import org.atmosphere.wasync.ClientFactory;
+import org.atmosphere.wasync.Event;
+import org.atmosphere.wasync.Function;
+import org.atmosphere.wasync.Request;
+import org.atmosphere.wasync.Socket;
+import org.atmosphere.wasync.benchmarks.load.LoopbackServer;
+import org.atmosphere.wasync.impl.AtmosphereClient;
+import org.atmosphere.wasync.impl.ClientUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.fail;
+
+/**
+ * Open sockets over every transport against a {@link LoopbackServer}, then repeatedly kill and restore the server so
+ * the sockets reconnect, and close them. A cycle fails when fewer sockets than expected answer an echo before or after
+ * the server restarts. After every cycle the thread count, the heap used after a GC and the open file descriptors are
+ * sampled, and the test fails as soon as one of them grows past its bound from the first cycle.
+ * <p/>
+ * It runs for hours, so it only runs with the soak profile:
+ * <pre>
+ * mvn -Psoak test -pl wasync-benchmarks -Dsoak.minutes=180
+ * </pre>
+ * The system properties {@code soak.minutes}, {@code soak.sockets} (per transport), {@code soak.minRecovered} (the
+ * fraction of the sockets that must answer, 1 by default), {@code soak.maxThreadGrowth}, {@code soak.maxHeapGrowthMb}
+ * and {@code soak.maxFdGrowth} configure the run.
+ */
+public class SoakTest {
+
+    private final static Logger logger = LoggerFactory.getLogger(SoakTest.class);
+    private final static Request.TRANSPORT[] TRANSPORTS = {
+            Request.TRANSPORT.WEBSOCKET, Request.TRANSPORT.SSE, Request.TRANSPORT.STREAMING, Request.TRANSPORT.LONG_POLLING};
+
+    private final long minutes = Long.getLong("soak.minutes", 180);
+    private final int socketsPerTransport = Integer.getInteger("soak.sockets", 5);
+    private final double minRecovered = Double.parseDouble(System.getProperty("soak.minRecovered", "1"));
+    private final int maxThreadGrowth = Integer.getInteger("soak.maxThreadGrowth", 20);
+    private final long maxHeapGrowth = Long.getLong("soak.maxHeapGrowthMb", 64) * 1024 * 1024;
+    private final long maxFdGrowth = Long.getLong("soak.maxFdGrowth", 64);
+
+    @Test
+    public void reconnectChurnTest() throws Exception {
+        LoopbackServer server = new LoopbackServer().start();
+        int port = server.port();
+        long end = System.nanoTime() + TimeUnit.MINUTES.toNanos(minutes);
+        Sample baseline = null;
+        int cycle = 0;
+        try {
+            while (System.nanoTime() < end) {
+                List<Socket> sockets = open(server.url());
+                int answered = echo(sockets);
+
+                server.stop();
+                // Let every transport notice the connection is gone, then restore it
+                Thread.sleep(2000);
+                server = new LoopbackServer(port).start();
+                int recovered = echo(sockets);
+
+                if (!ClientUtil.closeAll(sockets, 10, TimeUnit.SECONDS)) {
+                    logger.warn("Cycle {}: sockets not closed within 10 seconds", cycle);
+                }
+                // Let the runtimes of the closed sockets stop their threads
+                Thread.sleep(5000);
+
+                Sample sample = Sample.take();
+                logger.info("Cycle {}: {} of {} answered, {} recovered, {}", cycle, answered, sockets.size(), recovered, sample);
+                int expected = (int) Math.ceil(sockets.size() * minRecovered);
+                if (answered < expected) {
+                    fail("Cycle " + cycle + ": " + answered + " of " + sockets.size() + " sockets answered");
+                }
+                if (recovered < expected) {
+                    fail("Cycle " + cycle + ": " + recovered + " of " + sockets.size() + " sockets recovered after the server restarted");
+                }
+                if (baseline == null) {
+                    // The first cycle loads the classes and starts the shared pools
+                    baseline = sample;
+                } else {
+                    check(cycle, baseline, sample);
+                }
+                cycle++;
+            }
+        } finally {
+            server.stop();
+        }
+    }
+
+    private List<Socket> open(String url) throws IOException {
+        AtmosphereClient client = ClientFactory.getDefault().newClient(AtmosphereClient.class);
+        List<Socket> sockets = new ArrayList<Socket>();
+        for (Request.TRANSPORT transport : TRANSPORTS) {
+            for (int i = 0; i < socketsPerTransport; i++) {
+                Socket socket = client.create(client.newOptionsBuilder().pauseBeforeReconnectInMilliseconds(500).build());
+                socket.open(client.newRequestBuilder()
+                        .method(Request.METHOD.GET)
+                        .uri(url)
+                        .queryString(LoopbackServer.CHANNEL, transport + "-" + i)
+                        .trackMessageLength(true)
+                        .enableProtocol(true)
+                        .transport(transport)
+                        .build(), 30, TimeUnit.SECONDS);
+                sockets.add(socket);
+            }
+        }
+        return sockets;
+    }
+
+    /**
+     * Fire a message on every socket and count the sockets receiving it back.
+     */
+    private int echo(List<Socket> sockets) throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(sockets.size());
+        final String message = "soak-" + System.nanoTime();
+        for (Socket socket : sockets) {
+            final CountDownLatch answered = new CountDownLatch(1);
+            socket.on(Event.MESSAGE, new Function<String>() {
+                @Override
+                public void on(String m) {
+                    if (m.equals(message) && answered.getCount() > 0) {
+                        answered.countDown();
+                        latch.countDown();
+                    }
+                }
+            });
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (latch.getCount() > 0 && System.nanoTime() < deadline) {
+            for (Socket socket : sockets) {
+                try {
+                    socket.fire(message);
+                } catch (IOException e) {
+                    logger.trace("", e);
+                }
+            }
+            latch.await(1, TimeUnit.SECONDS);
+        }
+        return sockets.size() - (int) latch.getCount();
+    }
+
+    private void check(int cycle, Sample baseline, Sample sample) {
+        if (sample.threads - baseline.threads > maxThreadGrowth) {
+            fail("Cycle " + cycle + ": threads grew from " + baseline.threads + " to " + sample.threads);
+        }
+        if (sample.heap - baseline.heap > maxHeapGrowth) {
+            fail("Cycle " + cycle + ": heap after GC grew from " + baseline.heap + " to " + sample.heap);
+        }
+        if (baseline.fds >= 0 && sample.fds - baseline.fds > maxFdGrowth) {
+            fail("Cycle " + cycle + ": open file descriptors grew from " + baseline.fds + " to " + sample.fds);
+        }
+    }
+
+    private static class Sample {
+        final int threads;
+        final long heap;
+        final long fds;
+
+        private Sample(int threads, long heap, long fds) {
+            this.threads = threads;
+            this.heap = heap;
+            this.fds = fds;
+        }
+
+        static Sample take() throws InterruptedException {
+            // A single System.gc() may leave objects with finalizers, or soft references, behind
+            for (int i = 0; i < 3; i++) {
+                System.gc();
+                Thread.sleep(100);
+            }
+            OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+            long fds = -1;
+            if (os instanceof com.sun.management.UnixOperatingSystemMXBean) {
+                fds = ((com.sun.management.UnixOperatingSystemMXBean) os).getOpenFileDescriptorCount();
+            }
+            return new Sample(ManagementFactory.getThreadMXBean().getThreadCount(),
+                    ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed(), fds);
+        }
+
+        @Override
+        public String toString() {
+            return "threads=" + threads + ", heap=" + heap / 1024 + "KB, fds=" + fds;
+        }
+    }
+}
@@ -29,7 +29,9 @@ public interface Encoder<U, T> {
     /**
      * Encode the object of type U into an object of type T.
      * @param s a request's body that has already been encoded or not
-     * @return an encoded object. The list of supported encoded object are {@link String}, {@link java.io.InputStream} and {@link java.io.Reader}
+     * @return an encoded object. The list of supported encoded object are {@link String}, byte[], {@link java.io.InputStream}, {@link java.io.Reader},
+     * {@link java.io.File}, {@link java.nio.file.Path}, {@link java.nio.channels.FileChannel} and {@link org.atmosphere.wasync.util.FileRegion}.
+     * The file payloads are only supported by the http transports, not by the websocket.
      */
     T encode(U s);
 
@@ -23,6 +23,9 @@ package org.atmosphere.wasync;
  *         ....
  *     }
  * </pre></blockquote>
+ * When the type of the Function's argument has been declared, using {@link Socket#on(Event, Class, Function)}, it
+ * is used instead of resolving it by reflection.
+ * <p/>
  * This class is only used by {@link Transport} implementation.
  *
  * @author Jeanfrancois Arcand
@@ -31,10 +34,21 @@ public class FunctionWrapper {
 
     private final String functionName;
     private final Function<?> function;
+    private final Class<?>[] typeArguments;
 
     public FunctionWrapper(String functionName, Function<?> function) {
         this.functionName = functionName;
         this.function = function;
+        this.typeArguments = null;
+    }
+
+    public FunctionWrapper(String functionName, Class<?> type, Function<?> function) {
+        if (type == null) {
+            throw new NullPointerException("type");
+        }
+        this.functionName = functionName;
+        this.function = function;
+        this.typeArguments = new Class<?>[]{type};
     }
 
     public Function<?> function(){
@@ -44,4 +58,14 @@ public class FunctionWrapper {
     public String functionName() {
         return functionName;
     }
+
+    /**
+     * Return the declared type of the Function's argument, or null if it must be resolved from the Function's class.
+     * The array is shared and must not be modified.
+     *
+     * @return the declared type, or null
+     */
+    public Class<?>[] typeArguments() {
+        return typeArguments;
+    }
 }
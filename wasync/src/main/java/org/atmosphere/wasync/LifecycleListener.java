@@ -0,0 +1,106 @@
+/*
+ * Copyright 2015 Async-IO.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.wasync;
+
+/**
+ * Listen to the lifecycle of the connections of a {@link Socket}, registered using
+ * {@link OptionsBuilder#lifecycleListener(LifecycleListener)}.
+ * <p/>
+ * Unlike a {@link Function} registered for {@link Event#OPEN} or {@link Event#CLOSE}, a listener is called directly by
+ * the {@link Transport}, without decoding nor dispatching, and receives the {@link System#nanoTime()} of the event, so
+ * the phases of a connection can be measured. A listener is called from the I/O threads and must not block. An
+ * exception thrown by a listener is logged and ignored.
+ * <p/>
+ * A reconnect is followed by a new handshake: {@link #onReconnectStarted} is followed by {@link #onHandshakeStarted}
+ * and {@link #onHandshakeFinished}.
+ */
+public interface LifecycleListener {
+
+    /**
+     * The handshake of a connection started.
+     *
+     * @param socket    the {@link Socket}
+     * @param transport the transport
+     * @param nanoTime  the {@link System#nanoTime()} of the event
+     */
+    default void onHandshakeStarted(Socket socket, Request.TRANSPORT transport, long nanoTime) {
+    }
+
+    /**
+     * The handshake of a connection finished.
+     *
+     * @param socket    the {@link Socket}
+     * @param transport the transport
+     * @param nanoTime  the {@link System#nanoTime()} of the event
+     * @param connected true if the connection is established, false if it failed
+     */
+    default void onHandshakeFinished(Socket socket, Request.TRANSPORT transport, long nanoTime, boolean connected) {
+    }
+
+    /**
+     * The first bytes of the server have been received since the handshake started.
+     *
+     * @param socket    the {@link Socket}
+     * @param transport the transport
+     * @param nanoTime  the {@link System#nanoTime()} of the event
+     */
+    default void onFirstByte(Socket socket, Request.TRANSPORT transport, long nanoTime) {
+    }
+
+    /**
+     * A reconnect has been scheduled after the connection was lost.
+     *
+     * @param socket              the {@link Socket}
+     * @param transport           the transport
+     * @param nanoTime            the {@link System#nanoTime()} of the event
+     * @param delayInMilliseconds the delay before reconnecting
+     * @param attempt             the attempt number, 1 for the first reconnect
+     */
+    default void onReconnectScheduled(Socket socket, Request.TRANSPORT transport, long nanoTime, long delayInMilliseconds, int attempt) {
+    }
+
+    /**
+     * A reconnect started.
+     *
+     * @param socket    the {@link Socket}
+     * @param transport the transport
+     * @param nanoTime  the {@link System#nanoTime()} of the event
+     * @param attempt   the attempt number, 1 for the first reconnect
+     */
+    default void onReconnectStarted(Socket socket, Request.TRANSPORT transport, long nanoTime, int attempt) {
+    }
+
+    /**
+     * A transport not supported by the server is replaced by the next one.
+     *
+     * @param socket   the {@link Socket}
+     * @param from     the transport not supported
+     * @param to       the next transport
+     * @param nanoTime the {@link System#nanoTime()} of the event
+     */
+    default void onFallback(Socket socket, Request.TRANSPORT from, Request.TRANSPORT to, long nanoTime) {
+    }
+
+    /**
+     * The connection has been closed, by the application, by the server or before a reconnect.
+     *
+     * @param socket    the {@link Socket}
+     * @param transport the transport
+     * @param nanoTime  the {@link System#nanoTime()} of the event
+     */
+    default void onClose(Socket socket, Request.TRANSPORT transport, long nanoTime) {
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2015 Async-IO.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.wasync;
+
+import org.atmosphere.wasync.metrics.MetricsReporter;
+import org.atmosphere.wasync.metrics.SocketMetrics;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collect the {@link SocketMetrics} of every {@link Socket}: messages and bytes in and out, decode and dispatch time,
+ * reconnects, transport fallbacks, outbound queue depth, errors and the histograms of the response, fire, dispatch and
+ * connect latencies. The metrics of an open socket are published as
+ * a JMX MBean and/or periodically reported to a {@link MetricsReporter}.
+ * <p/>
+ * When no policy is set, nothing is collected.
+ */
+public class MetricsPolicy {
+
+    /**
+     * The domain of the MBeans.
+     */
+    public final static String JMX_DOMAIN = "org.atmosphere.wasync";
+
+    private final boolean jmx;
+    private final MetricsReporter reporter;
+    private final long reportIntervalInMilliseconds;
+
+    /**
+     * Publish the metrics as JMX MBeans.
+     */
+    public MetricsPolicy() {
+        this(true, null, -1, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Create a policy.
+     *
+     * @param jmx            true to publish the metrics as JMX MBeans
+     * @param reporter       the {@link MetricsReporter}, or null
+     * @param reportInterval the interval between two reports
+     * @param unit           the {@link TimeUnit} of {@code reportInterval}
+     */
+    public MetricsPolicy(boolean jmx, MetricsReporter reporter, long reportInterval, TimeUnit unit) {
+        if (reporter != null && reportInterval <= 0) {
+            throw new IllegalArgumentException("Invalid report interval " + reportInterval);
+        }
+        this.jmx = jmx;
+        this.reporter = reporter;
+        this.reportIntervalInMilliseconds = reporter == null ? -1 : unit.toMillis(reportInterval);
+    }
+
+    /**
+     * True if the metrics are published as JMX MBeans.
+     *
+     * @return true if the metrics are published as JMX MBeans
+     */
+    public boolean jmx() {
+        return jmx;
+    }
+
+    /**
+     * The {@link MetricsReporter}.
+     *
+     * @return the {@link MetricsReporter}, or null
+     */
+    public MetricsReporter reporter() {
+        return reporter;
+    }
+
+    /**
+     * The interval, in milliseconds, between two reports.
+     *
+     * @return the interval between two reports, -1 if there is no {@link MetricsReporter}
+     */
+    public long reportIntervalInMilliseconds() {
+        return reportIntervalInMilliseconds;
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2015 Async-IO.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.wasync;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Configure how {@link Socket#fire(Object)} behaves while the {@link Socket} is reconnecting. Messages are buffered
+ * in memory and fired, in order, once {@link Event#REOPENED} is received.
+ * <p/>
+ * The buffer is bounded by a number of messages and a number of bytes. Only {@link String} messages, counting one byte per
+ * character, and {@code byte[]} messages count towards the byte cap, other messages being encoded when fired. Messages
+ * older than the time to live are discarded instead of being fired.
+ * <p/>
+ * The {@link org.atmosphere.wasync.Future} returned by {@link Socket#fire(Object)} for a buffered message completes once
+ * the message is fired, and fails with an {@link java.io.IOException} if the message is discarded, or if the socket is
+ * closed first.
+ */
+public class OfflinePolicy {
+
+    /**
+     * What to do when a message is fired and the buffer is full.
+     */
+    public enum Overflow {
+        /**
+         * Discard the fired message. The {@link org.atmosphere.wasync.Future} returned by {@link Socket#fire(Object)}
+         * fails with an {@link java.io.IOException}.
+         */
+        DROP_NEWEST,
+        /**
+         * Discard the oldest buffered messages, failing their {@link org.atmosphere.wasync.Future}, until the fired
+         * message fits. A message larger than the byte cap is discarded like with {@link #DROP_NEWEST}.
+         */
+        DROP_OLDEST,
+        /**
+         * Throw an {@link java.io.IOException} from {@link Socket#fire(Object)}.
+         */
+        FAIL
+    }
+
+    private final int maxMessages;
+    private final long maxBytes;
+    private final long timeToLiveInMilliseconds;
+    private final Overflow overflow;
+
+    /**
+     * Buffer up to {@code maxMessages} messages, for ever, discarding the oldest ones when the buffer is full.
+     *
+     * @param maxMessages the maximum number of buffered messages
+     */
+    public OfflinePolicy(int maxMessages) {
+        this(maxMessages, Long.MAX_VALUE, -1, TimeUnit.MILLISECONDS, Overflow.DROP_OLDEST);
+    }
+
+    /**
+     * Create a policy.
+     *
+     * @param maxMessages the maximum number of buffered messages
+     * @param maxBytes    the maximum number of buffered bytes
+     * @param timeToLive  the time a message can stay in the buffer, -1 for ever
+     * @param unit        the {@link TimeUnit} of {@code timeToLive}
+     * @param overflow    the {@link Overflow} policy
+     */
+    public OfflinePolicy(int maxMessages, long maxBytes, long timeToLive, TimeUnit unit, Overflow overflow) {
+        if (maxMessages < 1 || maxBytes < 1) {
+            throw new IllegalArgumentException("Invalid caps " + maxMessages + "/" + maxBytes);
+        }
+        this.maxMessages = maxMessages;
+        this.maxBytes = maxBytes;
+        this.timeToLiveInMilliseconds = timeToLive < 0 ? -1 : unit.toMillis(timeToLive);
+        this.overflow = overflow;
+    }
+
+    /**
+     * The maximum number of buffered messages.
+     *
+     * @return the maximum number of buffered messages
+     */
+    public int maxMessages() {
+        return maxMessages;
+    }
+
+    /**
+     * The maximum number of buffered bytes.
+     *
+     * @return the maximum number of buffered bytes
+     */
+    public long maxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * The time a message can stay in the buffer, in milliseconds.
+     *
+     * @return the time a message can stay in the buffer, -1 for ever
+     */
+    public long timeToLiveInMilliseconds() {
+        return timeToLiveInMilliseconds;
+    }
+
+    /**
+     * The {@link Overflow} policy.
+     *
+     * @return the {@link Overflow} policy
+     */
+    public Overflow overflow() {
+        return overflow;
+    }
+}
@@ -17,6 +17,8 @@ package org.atmosphere.wasync;
 
 import com.ning.http.client.AsyncHttpClient;
 
+import java.util.List;
+
 /**
  * Configure the underlying WebSocket/HTTP client.
  *
@@ -59,6 +61,14 @@ public interface Options {
      */
     public long waitBeforeUnlocking();
 
+    /**
+     * The maximum time, in milliseconds, to wait for the close handshake sent to the server before closing the
+     * {@link AsyncHttpClient}. The thread calling {@link Socket#close()} never waits.
+     *
+     * @return the maximum time to wait for the close handshake, 0 not to wait
+     */
+    public long closeTimeoutInMilliseconds();
+
     /**
      * The {@link AsyncHttpClient} used to communicate with server.
      *
@@ -95,4 +105,39 @@ public interface Options {
      */
     boolean binary();
 
+    /**
+     * Return the {@link OfflinePolicy} used to buffer the messages fired while the {@link Socket} is reconnecting.
+     *
+     * @return the {@link OfflinePolicy}, or null if such messages are discarded
+     */
+    OfflinePolicy offlinePolicy();
+
+    /**
+     * Return the {@link RatePolicy} used to shape the messages written by {@link Socket#fire(Object)}.
+     *
+     * @return the {@link RatePolicy}, or null if messages aren't shaped
+     */
+    RatePolicy ratePolicy();
+
+    /**
+     * Return the marker of the heartbeats written by the server, dropped before being decoded.
+     *
+     * @return the heartbeat marker, or null
+     */
+    String heartbeatMarker();
+
+    /**
+     * Return the {@link MetricsPolicy} configuring the metrics collected for every {@link Socket}.
+     *
+     * @return the {@link MetricsPolicy}, or null if metrics are disabled
+     */
+    MetricsPolicy metricsPolicy();
+
+    /**
+     * Return the {@link LifecycleListener}s notified of the lifecycle of the connections of every {@link Socket}.
+     *
+     * @return the {@link LifecycleListener}s, empty by default
+     */
+    List<LifecycleListener> lifecycleListeners();
+
 }
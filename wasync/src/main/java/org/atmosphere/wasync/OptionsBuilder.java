@@ -15,6 +15,8 @@
  */
 package org.atmosphere.wasync;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 import com.ning.http.client.AsyncHttpClient;
@@ -32,11 +34,17 @@ public abstract class OptionsBuilder<U extends Options, T extends OptionsBuilder
     private int reconnectTimeoutInMilliseconds = 0;
     private int reconnectAttempts = 0;
     private long waitBeforeUnlocking = 2000;
+    private long closeTimeoutInMilliseconds = 2000;
     private AsyncHttpClient client;
     private boolean runtimeShared = false;
     private int requestTimeout = -1;
     protected final Class<T> derived;
     private boolean binary;
+    private OfflinePolicy offlinePolicy;
+    private RatePolicy ratePolicy;
+    private String heartbeatMarker;
+    private MetricsPolicy metricsPolicy;
+    private final List<LifecycleListener> lifecycleListeners = new ArrayList<LifecycleListener>();
 
     protected OptionsBuilder(Class<T> derived) {
         this.derived = derived;
@@ -107,8 +115,9 @@ public abstract class OptionsBuilder<U extends Options, T extends OptionsBuilder
 
     /**
      * For streaming and long-polling, the server may not send the headers so the client never knows
-     * if the connection succeeded or not. By default the library will wait for 2500 milliseconds before
-     * considering the connection established.
+     * if the connection succeeded or not. The connection is considered established as soon as the response's status,
+     * the Server Side Events headers or the Atmosphere protocol's handshake is received, this value being the maximum
+     * time to wait for them. Default is 2000 milliseconds.
      *
      * @param waitBeforeUnlocking the time in millisecond
      * @return this
@@ -118,6 +127,19 @@ public abstract class OptionsBuilder<U extends Options, T extends OptionsBuilder
         return derived.cast(this);
     }
 
+    /**
+     * The maximum time, in milliseconds, to wait for the close handshake sent to the server, for example by the
+     * {@link org.atmosphere.wasync.impl.AtmosphereClient}, before closing the {@link AsyncHttpClient}. The thread
+     * calling {@link Socket#close()} never waits. Default is 2000 milliseconds, 0 not to wait.
+     *
+     * @param closeTimeoutInMilliseconds the time in millisecond
+     * @return this
+     */
+    public T closeTimeoutInMilliseconds(long closeTimeoutInMilliseconds) {
+        this.closeTimeoutInMilliseconds = closeTimeoutInMilliseconds;
+        return derived.cast(this);
+    }
+
     /**
      * Set to true if your AsyncHttpClient is shared between clients.
      * by the library.
@@ -202,6 +224,15 @@ public abstract class OptionsBuilder<U extends Options, T extends OptionsBuilder
     public long waitBeforeUnlocking() {
         return waitBeforeUnlocking;
     }
+
+    /**
+     * The maximum time, in milliseconds, to wait for the close handshake before closing the {@link AsyncHttpClient}.
+     * @return the maximum time to wait for the close handshake
+     */
+    public long closeTimeoutInMilliseconds() {
+        return closeTimeoutInMilliseconds;
+    }
+
     /**
      * The {@link AsyncHttpClient} used to communicate with server.
      * @return {@link AsyncHttpClient} used to communicate with server.
@@ -243,4 +274,100 @@ public abstract class OptionsBuilder<U extends Options, T extends OptionsBuilder
         return binary;
     }
 
+    /**
+     * Buffer the messages fired while the {@link Socket} is reconnecting, and fire them once reopened. By default,
+     * such messages are discarded.
+     * @param offlinePolicy the {@link OfflinePolicy}, or null to disable buffering
+     * @return this;
+     */
+    public T offlinePolicy(OfflinePolicy offlinePolicy) {
+        this.offlinePolicy = offlinePolicy;
+        return derived.cast(this);
+    }
+
+    /**
+     * Return the {@link OfflinePolicy}. Default is null
+     * @return the {@link OfflinePolicy}, or null if buffering is disabled
+     */
+    public OfflinePolicy offlinePolicy() {
+        return offlinePolicy;
+    }
+
+    /**
+     * Shape the messages written by {@link Socket#fire(Object)}, so the server doesn't throttle the client. By default,
+     * messages are written as soon as they are fired.
+     * @param ratePolicy the {@link RatePolicy}, or null to disable shaping
+     * @return this;
+     */
+    public T ratePolicy(RatePolicy ratePolicy) {
+        this.ratePolicy = ratePolicy;
+        return derived.cast(this);
+    }
+
+    /**
+     * Return the {@link RatePolicy}. Default is null
+     * @return the {@link RatePolicy}, or null if shaping is disabled
+     */
+    public RatePolicy ratePolicy() {
+        return ratePolicy;
+    }
+
+    /**
+     * The marker of the heartbeats written by the server to keep the connection alive. Heartbeats, including frames
+     * made of whitespace only, are dropped by the {@link Transport} before being decoded and feed the liveness of the
+     * connection. With the Atmosphere protocol, Atmosphere's default heartbeat padding is always recognized.
+     * @param heartbeatMarker the heartbeat marker, or null
+     * @return this;
+     */
+    public T heartbeatMarker(String heartbeatMarker) {
+        this.heartbeatMarker = heartbeatMarker;
+        return derived.cast(this);
+    }
+
+    /**
+     * Return the heartbeat marker. Default is null
+     * @return the heartbeat marker, or null
+     */
+    public String heartbeatMarker() {
+        return heartbeatMarker;
+    }
+
+    /**
+     * Collect the metrics of every {@link Socket}, published as configured by the {@link MetricsPolicy}. By default,
+     * no metric is collected.
+     * @param metricsPolicy the {@link MetricsPolicy}, or null to disable metrics
+     * @return this;
+     */
+    public T metricsPolicy(MetricsPolicy metricsPolicy) {
+        this.metricsPolicy = metricsPolicy;
+        return derived.cast(this);
+    }
+
+    /**
+     * Return the {@link MetricsPolicy}. Default is null
+     * @return the {@link MetricsPolicy}, or null if metrics are disabled
+     */
+    public MetricsPolicy metricsPolicy() {
+        return metricsPolicy;
+    }
+
+    /**
+     * Add a {@link LifecycleListener}, notified of the handshakes, reconnects, fallbacks and closes of the connections
+     * of every {@link Socket}.
+     * @param lifecycleListener the {@link LifecycleListener}
+     * @return this;
+     */
+    public T lifecycleListener(LifecycleListener lifecycleListener) {
+        lifecycleListeners.add(lifecycleListener);
+        return derived.cast(this);
+    }
+
+    /**
+     * Return the {@link LifecycleListener}s. Default is empty
+     * @return the {@link LifecycleListener}s
+     */
+    public List<LifecycleListener> lifecycleListeners() {
+        return lifecycleListeners;
+    }
+
 }
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2015 Async-IO.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.wasync;
+
+/**
+ * Shape the messages written by {@link Socket#fire(Object)} so a bursty producer doesn't get throttled, or disconnected,
+ * by the server. The rate is limited in messages per second and, optionally, in bytes per second, each limit allowing
+ * a burst.
+ * <p/>
+ * Messages are counted once encoded. Only {@link String} messages, counting one byte per character, and {@code byte[]}
+ * messages count towards the byte limit.
+ */
+public class RatePolicy {
+
+    /**
+     * What to do when a message is fired faster than allowed.
+     */
+    public enum Mode {
+        /**
+         * Block the thread calling {@link Socket#fire(Object)} until the message can be written.
+         */
+        BLOCK,
+        /**
+         * Queue the message and return immediately. The message is written, in order, once allowed.
+         */
+        QUEUE,
+        /**
+         * Throw an {@link java.io.IOException} from {@link Socket#fire(Object)}.
+         */
+        FAIL
+    }
+
+    private final double messagesPerSecond;
+    private final int messageBurst;
+    private final long bytesPerSecond;
+    private final long byteBurst;
+    private final Mode mode;
+
+    /**
+     * Write up to {@code messagesPerSecond} messages per second, without bursts, blocking when the limit is reached.
+     *
+     * @param messagesPerSecond the number of messages per second
+     */
+    public RatePolicy(double messagesPerSecond) {
+        this(messagesPerSecond, 1, -1, -1, Mode.BLOCK);
+    }
+
+    /**
+     * Create a policy.
+     *
+     * @param messagesPerSecond the number of messages per second
+     * @param messageBurst      the number of messages that can be written at once
+     * @param bytesPerSecond    the number of bytes per second, -1 for no limit
+     * @param byteBurst         the number of bytes that can be written at once, ignored if there is no byte limit
+     * @param mode              the {@link Mode}
+     */
+    public RatePolicy(double messagesPerSecond, int messageBurst, long bytesPerSecond, long byteBurst, Mode mode) {
+        if (messagesPerSecond <= 0 || messageBurst < 1 || (bytesPerSecond > 0 && byteBurst < 1)) {
+            throw new IllegalArgumentException("Invalid rate " + messagesPerSecond + "/" + messageBurst
+                    + ", " + bytesPerSecond + "/" + byteBurst);
+        }
+        this.messagesPerSecond = messagesPerSecond;
+        this.messageBurst = messageBurst;
+        this.bytesPerSecond = bytesPerSecond > 0 ? bytesPerSecond : -1;
+        this.byteBurst = bytesPerSecond > 0 ? byteBurst : -1;
+        this.mode = mode;
+    }
+
+    /**
+     * The number of messages per second.
+     *
+     * @return the number of messages per second
+     */
+    public double messagesPerSecond() {
+        return messagesPerSecond;
+    }
+
+    /**
+     * The number of messages that can be written at once.
+     *
+     * @return the number of messages that can be written at once
+     */
+    public int messageBurst() {
+        return messageBurst;
+    }
+
+    /**
+     * The number of bytes per second.
+     *
+     * @return the number of bytes per second, -1 if there is no limit
+     */
+    public long bytesPerSecond() {
+        return bytesPerSecond;
+    }
+
+    /**
+     * The number of bytes that can be written at once.
+     *
+     * @return the number of bytes that can be written at once, -1 if there is no limit
+     */
+    public long byteBurst() {
+        return byteBurst;
+    }
+
+    /**
+     * The {@link Mode}.
+     *
+     * @return the {@link Mode}
+     */
+    public Mode mode() {
+        return mode;
+    }
+}
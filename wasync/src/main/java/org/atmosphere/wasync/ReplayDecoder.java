@@ -26,8 +26,8 @@ public interface ReplayDecoder extends Decoder<String, List<?>> {
 
     /**
      * Decode a String into a List of Objects. Each element of the List will be dispatched to the decoders that where
-     * added after an implementation of that interface.
-     *
+     * added after an implementation of that interface. A List made of {@link Decoded#ABORT} prevents the message from
+     * being dispatched.
      *
      * @param e Event
      * @param s a object of type U
@@ -17,6 +17,7 @@ package org.atmosphere.wasync;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -87,6 +88,18 @@ public abstract class RequestBuilder<T extends RequestBuilder<T>> {
         return derived.cast(this);
     }
 
+    /**
+     * Add an {@link Encoder} of the declared input and output types, used instead of resolving them by reflection so
+     * a lambda can be used. See {@link #encoder(Encoder)}.
+     * @param input the type encoded
+     * @param output the type produced
+     * @param e an {@link Encoder}
+     * @return this
+     */
+    public <U, V> T encoder(Class<U> input, Class<V> output, Encoder<U, V> e) {
+        return encoder(new TypedEncoder<U, V>(input, output, e));
+    }
+
     /**
      * Add a {@link Decoder}. Several Decoder can be added and will be invoked the order they were added. This method doesn't allow
      * duplicate.
@@ -100,6 +113,18 @@ public abstract class RequestBuilder<T extends RequestBuilder<T>> {
         return derived.cast(this);
     }
 
+    /**
+     * Add a {@link Decoder} of the declared input and output types, used instead of resolving them by reflection so
+     * a lambda can be used. See {@link #decoder(Decoder)}.
+     * @param input the type decoded
+     * @param output the type produced
+     * @param d a {@link Decoder}
+     * @return this
+     */
+    public <U, V> T decoder(Class<U> input, Class<V> output, Decoder<U, V> d) {
+        return decoder(new TypedDecoder<U, V>(input, output, d));
+    }
+
     /**
      * Add a header.
      * @param name header name
@@ -149,6 +174,45 @@ public abstract class RequestBuilder<T extends RequestBuilder<T>> {
      */
     public abstract Request build();
 
+    /**
+     * Build an immutable {@link RequestTemplate}, which can be shared by many {@link Socket}s. Every {@link Socket}
+     * opened with the template gets its own {@link Request}, built from a copy of this builder. Modifying this builder
+     * afterward doesn't change the template.
+     * @return a {@link RequestTemplate}
+     */
+    public RequestTemplate template() {
+        return new RequestTemplate(copy(true));
+    }
+
+    /**
+     * Copy this builder. The {@link Encoder}s and {@link Decoder}s are shared with the copy, other collections are
+     * copied. Subclasses holding configuration must override this method to copy it.
+     *
+     * @param deep true to copy the headers' and query string's values too, false to share them
+     * @return a copy of this builder
+     */
+    protected T copy(boolean deep) {
+        T copy;
+        try {
+            copy = derived.newInstance();
+        } catch (Exception e) {
+            throw new IllegalStateException("Unable to copy " + derived.getName() + ", a public no-arg constructor is required", e);
+        }
+        copy.transports.addAll(transports);
+        copy.method = method;
+        copy.uri = uri;
+        copy.encoders.addAll(encoders);
+        copy.decoders.addAll(decoders);
+        copy.resolver = resolver;
+        for (Map.Entry<String, Collection<String>> e : headers.entrySet()) {
+            copy.headers.put(e.getKey(), deep ? Collections.unmodifiableList(new ArrayList<String>(e.getValue())) : e.getValue());
+        }
+        for (Map.Entry<String, List<String>> e : queryString.entrySet()) {
+            copy.queryString.put(e.getKey(), deep ? Collections.unmodifiableList(new ArrayList<String>(e.getValue())) : e.getValue());
+        }
+        return copy;
+    }
+
     /**
      * Return the current list of {@link Request.TRANSPORT}
      * @return the current list of {@link Request.TRANSPORT}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2015 Async-IO.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.wasync;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable {@link Request}, built using {@link RequestBuilder#template()}, which can be shared by many
+ * {@link Socket}s, for example when opening thousands of sockets to the same endpoint.
+ * <p/>
+ * {@link Socket#open(Request)} doesn't use the template itself but a {@link Request} returned by {@link #newRequest()},
+ * holding the state a socket modifies: the transports, the query string, like the Atmosphere protocol's tracking id,
+ * and the protocol's {@link Decoder}s. The headers' and query string's values are computed once and shared. So are the
+ * {@link Encoder}s and {@link Decoder}s added to the builder, which must therefore be stateless.
+ */
+public final class RequestTemplate implements Request {
+
+    private final RequestBuilder<?> prototype;
+    private final List<TRANSPORT> transports;
+    private final Map<String, Collection<String>> headers;
+    private final Map<String, List<String>> queryString;
+    private final List<Encoder<?, ?>> encoders;
+    private final List<Decoder<?, ?>> decoders;
+
+    RequestTemplate(RequestBuilder<?> prototype) {
+        this.prototype = prototype;
+        this.transports = Collections.unmodifiableList(prototype.transports());
+        this.headers = Collections.unmodifiableMap(prototype.headers());
+        this.queryString = Collections.unmodifiableMap(prototype.queryString());
+        this.encoders = Collections.unmodifiableList(prototype.encoders());
+        this.decoders = Collections.unmodifiableList(prototype.decoders());
+    }
+
+    /**
+     * Build the {@link Request} of a {@link Socket}. This method can be invoked concurrently.
+     *
+     * @return a new {@link Request}
+     */
+    public Request newRequest() {
+        return prototype.copy(false).build();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<TRANSPORT> transport() {
+        return transports;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public METHOD method() {
+        return prototype.method();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Map<String, Collection<String>> headers() {
+        return headers;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Map<String, List<String>> queryString() {
+        return queryString;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<Encoder<?, ?>> encoders() {
+        return encoders;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<Decoder<?, ?>> decoders() {
+        return decoders;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String uri() {
+        return prototype.uri();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public FunctionResolver functionResolver() {
+        return prototype.resolver();
+    }
+}
@@ -17,6 +17,8 @@ package org.atmosphere.wasync;
 
 import java.io.IOException;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -106,6 +108,22 @@ public interface Socket {
      */
     Future fire(Object data) throws IOException;
 
+    /**
+     * Send data to the remote Server with a priority, 0 being the highest. Messages waiting to be sent are sent by
+     * decreasing priority. Only the {@link org.atmosphere.wasync.serial.SerializedClient}'s sockets configured with a
+     * {@link org.atmosphere.wasync.serial.PrioritizedSerializedFireStage} queue messages; other sockets send them
+     * immediately and ignore the priority.
+     * <p/>
+     * The default implementation ignores the priority and calls {@link #fire(Object)}.
+     * @param data object to send
+     * @param priority the priority, 0 being the highest
+     * @return a {@link Future}
+     * @throws IOException
+     */
+    default Future fire(Object data, int priority) throws IOException {
+        return fire(data);
+    }
+
     /**
      * Associate a {@link Function} with the Socket. When a response is received, the library will try to associated
      * the decoded message (decoded by {@link Decoder}) to the defined type of the {@link Function}
@@ -132,6 +150,49 @@ public interface Socket {
      */
     Socket on(Event event, Function<?> function);
 
+    /**
+     * Associate a {@link Function} with the Socket, declaring the type of its argument. The declared type is used to
+     * match the decoded message instead of resolving it by reflection, so a lambda can be used.
+     * <p/>
+     * The default implementation ignores the declared type and calls {@link #on(Function)}.
+     * @param type the type of the Function's argument
+     * @param function a {@link Function}
+     * @return this
+     */
+    default <T> Socket on(Class<T> type, Function<T> function) {
+        return on(function);
+    }
+
+    /**
+     * Associate a {@link Function} with a message, declaring the type of its argument. The declared type is used to
+     * match the decoded message instead of resolving it by reflection, so a lambda can be used.
+     * <p/>
+     * The default implementation ignores the declared type and calls {@link #on(String, Function)}.
+     * @param functionMessage the message, resolved by the {@link FunctionResolver}
+     * @param type the type of the Function's argument
+     * @param function a {@link Function}
+     * @return this
+     */
+    default <T> Socket on(String functionMessage, Class<T> type, Function<T> function) {
+        return on(functionMessage, function);
+    }
+
+    /**
+     * Associate a {@link Function} with an {@link Event}, declaring the type of its argument. The declared type is used
+     * to match the decoded event instead of resolving it by reflection, so a lambda can be used:
+     * <blockquote><pre>
+     *     socket.on(Event.MESSAGE, Integer.class, i -&gt; total.addAndGet(i));
+     * </pre></blockquote>
+     * The default implementation ignores the declared type and calls {@link #on(Event, Function)}.
+     * @param event an {@link Event}
+     * @param type the type of the Function's argument
+     * @param function a {@link Function}
+     * @return this
+     */
+    default <T> Socket on(Event event, Class<T> type, Function<T> function) {
+        return on(event, function);
+    }
+
     /**
      * Connect to the remote Server using the {@link Request}'s information.
      * @param request a {@link Request}
@@ -151,6 +212,45 @@ public interface Socket {
      */
     Socket open(Request request, long timeout, TimeUnit unit) throws IOException;
 
+    /**
+     * Connect to the remote Server using the {@link Request}'s information, without blocking the calling thread. The
+     * returned {@link CompletionStage} is completed by the transport, once the websocket is upgraded or the connection
+     * is handled by the server.
+     * <p/>
+     * The default implementation blocks, calling {@link #open(Request)}, and returns a completed stage.
+     * @param request a {@link Request}
+     * @return a {@link CompletionStage} completed with this, or with the exception preventing the connection
+     */
+    default CompletionStage<Socket> openAsync(Request request) {
+        CompletableFuture<Socket> opened = new CompletableFuture<Socket>();
+        try {
+            opened.complete(open(request));
+        } catch (Exception e) {
+            opened.completeExceptionally(e);
+        }
+        return opened;
+    }
+
+    /**
+     * Connect to the remote Server using the {@link Request}'s information, without blocking the calling thread. The
+     * returned {@link CompletionStage} is completed exceptionally if the connection failed to open within a certain time.
+     * <p/>
+     * The default implementation blocks, calling {@link #open(Request, long, TimeUnit)}, and returns a completed stage.
+     * @param request a {@link Request}
+     * @param timeout the maximum time to wait
+     * @param unit the time unit of the timeout argument
+     * @return a {@link CompletionStage} completed with this, or with the exception preventing the connection
+     */
+    default CompletionStage<Socket> openAsync(Request request, long timeout, TimeUnit unit) {
+        CompletableFuture<Socket> opened = new CompletableFuture<Socket>();
+        try {
+            opened.complete(open(request, timeout, unit));
+        } catch (Exception e) {
+            opened.completeExceptionally(e);
+        }
+        return opened;
+    }
+
     /**
      * Close this Socket, asynchronously.
      */
@@ -15,6 +15,10 @@
  */
 package org.atmosphere.wasync;
 
+import org.atmosphere.wasync.metrics.SocketMetrics;
+import org.atmosphere.wasync.transport.Heartbeat;
+import org.atmosphere.wasync.transport.SocketLifecycle;
+
 /**
  * Define a supported {@link Transport}. Default are websocket, streaming, server-side events and long-polling.
  * Use this interface only if you want to define another transport. New transport can be registered using the {@link Options}
@@ -80,4 +84,26 @@ public interface Transport {
      * @param f {@link Future}
      */
     void connectedFuture(Future f);
+
+    /**
+     * Return the {@link Heartbeat} tracking the liveness of the connection.
+     * @return the {@link Heartbeat}, or null if the transport doesn't track the liveness of the connection
+     */
+    default Heartbeat heartbeat() {
+        return null;
+    }
+
+    /**
+     * Set the {@link SocketMetrics} recording the messages received, reconnects and errors.
+     * @param metrics the {@link SocketMetrics}
+     */
+    default void metrics(SocketMetrics metrics) {
+    }
+
+    /**
+     * Set the {@link SocketLifecycle} notifying the {@link LifecycleListener}s.
+     * @param lifecycle the {@link SocketLifecycle}
+     */
+    default void lifecycle(SocketLifecycle lifecycle) {
+    }
 }
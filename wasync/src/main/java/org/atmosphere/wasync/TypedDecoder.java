@@ -0,0 +1,81 @@
+/*
+ * Copyright 2015 Async-IO.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.wasync;
+
+import java.util.Arrays;
+
+/**
+ * A {@link Decoder} with its declared input and output types, added using
+ * {@link RequestBuilder#decoder(Class, Class, Decoder)}. The {@link Transport}s use the declared types instead of
+ * resolving them by reflection, so a lambda can be used as a Decoder.
+ */
+public class TypedDecoder<U, T> implements Decoder<U, T> {
+
+    private final Decoder<U, T> decoder;
+    private final Class<?>[] typeArguments;
+
+    public TypedDecoder(Class<U> input, Class<T> output, Decoder<U, T> decoder) {
+        if (input == null || output == null || decoder == null) {
+            throw new NullPointerException("input, output and decoder are required");
+        }
+        this.decoder = decoder;
+        this.typeArguments = new Class<?>[]{input, output};
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public T decode(Event e, U s) {
+        return decoder.decode(e, s);
+    }
+
+    /**
+     * Return the wrapped {@link Decoder}.
+     *
+     * @return the wrapped {@link Decoder}
+     */
+    public Decoder<U, T> decoder() {
+        return decoder;
+    }
+
+    /**
+     * Return the input and output types. The array is shared and must not be modified.
+     *
+     * @return the input and output types
+     */
+    public Class<?>[] typeArguments() {
+        return typeArguments;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof TypedDecoder)) return false;
+        TypedDecoder<?, ?> that = (TypedDecoder<?, ?>) o;
+        return decoder.equals(that.decoder) && Arrays.equals(typeArguments, that.typeArguments);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * decoder.hashCode() + Arrays.hashCode(typeArguments);
+    }
+
+    @Override
+    public String toString() {
+        return "TypedDecoder{" + typeArguments[0].getName() + " -> " + typeArguments[1].getName() + ", " + decoder + "}";
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2015 Async-IO.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.wasync;
+
+import java.util.Arrays;
+
+/**
+ * An {@link Encoder} with its declared input and output types, added using
+ * {@link RequestBuilder#encoder(Class, Class, Encoder)}. The {@link Socket} uses the declared types instead of
+ * resolving them by reflection, so a lambda can be used as an Encoder.
+ */
+public class TypedEncoder<U, T> implements Encoder<U, T> {
+
+    private final Encoder<U, T> encoder;
+    private final Class<?>[] typeArguments;
+
+    public TypedEncoder(Class<U> input, Class<T> output, Encoder<U, T> encoder) {
+        if (input == null || output == null || encoder == null) {
+            throw new NullPointerException("input, output and encoder are required");
+        }
+        this.encoder = encoder;
+        this.typeArguments = new Class<?>[]{input, output};
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public T encode(U s) {
+        return encoder.encode(s);
+    }
+
+    /**
+     * Return the wrapped {@link Encoder}.
+     *
+     * @return the wrapped {@link Encoder}
+     */
+    public Encoder<U, T> encoder() {
+        return encoder;
+    }
+
+    /**
+     * Return the input and output types. The array is shared and must not be modified.
+     *
+     * @return the input and output types
+     */
+    public Class<?>[] typeArguments() {
+        return typeArguments;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof TypedEncoder)) return false;
+        TypedEncoder<?, ?> that = (TypedEncoder<?, ?>) o;
+        return encoder.equals(that.encoder) && Arrays.equals(typeArguments, that.typeArguments);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * encoder.hashCode() + Arrays.hashCode(typeArguments);
+    }
+
+    @Override
+    public String toString() {
+        return "TypedEncoder{" + typeArguments[0].getName() + " -> " + typeArguments[1].getName() + ", " + encoder + "}";
+    }
+}
@@ -18,12 +18,15 @@ package org.atmosphere.wasync.impl;
 import org.atmosphere.wasync.Decoder;
 import org.atmosphere.wasync.Event;
 import org.atmosphere.wasync.RequestBuilder;
+import org.atmosphere.wasync.ReplayDecoder;
 import org.atmosphere.wasync.decoder.TrackMessageSizeDecoder;
+import org.atmosphere.wasync.util.DuplicateWindow;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -33,7 +36,7 @@ import java.util.concurrent.atomic.AtomicBoolean;
  * is properly configured before changing the default.
  *
  * AtmosphereRequest MUST NOT be shared between {@link org.atmosphere.wasync.Socket} instance because they hold information about the
- * Atmosphere Protocol like the UUID.
+ * Atmosphere Protocol like the UUID. Use {@link AtmosphereRequestBuilder#template()} to build a request that can be shared.
  *
  * @author Jeanfrancois Arcand
  */
@@ -42,6 +45,10 @@ public class AtmosphereRequest extends DefaultRequest<AtmosphereRequest.Atmosphe
     public enum CACHE {HEADER_BROADCAST_CACHE, UUID_BROADCASTER_CACHE, SESSION_BROADCAST_CACHE, NO_BROADCAST_CACHE}
 
     private final static Logger logger = LoggerFactory.getLogger(AtmosphereRequest.class);
+    private final static int HANDSHAKE_FIRST = 0;
+    private final static int HANDSHAKE_EXPECTED = 1;
+    private final static int HANDSHAKE_RECEIVED = 2;
+    private final static int UUID_LENGTH = 36;
 
     protected AtmosphereRequest(AtmosphereRequestBuilder builder) {
         super(builder);
@@ -84,6 +91,24 @@ public class AtmosphereRequest extends DefaultRequest<AtmosphereRequest.Atmosphe
         return builder.trackMessageLengthDelimiter;
     }
 
+    /**
+     * True if the connection is resumed, with the same tracking id, after a reconnect or a transport fallback.
+     *
+     * @return true if the resume mode is enabled
+     */
+    public boolean isResume() {
+        return builder.resume;
+    }
+
+    /**
+     * The delimiter following the id, or sequence number, the server prefixes the messages with.
+     *
+     * @return the delimiter, or null if the messages have no id
+     */
+    public String getMessageIdDelimiter() {
+        return builder.messageIdDelimiter;
+    }
+
     /**
      * A builder for {@link AtmosphereRequest}. This builder configure the Atmosphere Protocol on the request object.
      */
@@ -93,8 +118,14 @@ public class AtmosphereRequest extends DefaultRequest<AtmosphereRequest.Atmosphe
         private boolean trackMessageLength = false;
         private String trackMessageLengthDelimiter = "|";
         private boolean enableProtocol = true;
+        private boolean resume = false;
+        private String messageIdDelimiter;
+        private int duplicateWindow = 1024;
         private final BDecoder bDecoder = new BDecoder();
         private final SDecoder sDecoder = new SDecoder();
+        private final IdDecoder idDecoder = new IdDecoder();
+        private DuplicateWindow window;
+        private volatile int handshake = HANDSHAKE_FIRST;
 
         public AtmosphereRequestBuilder() {
             super(AtmosphereRequestBuilder.class);
@@ -173,6 +204,68 @@ public class AtmosphereRequest extends DefaultRequest<AtmosphereRequest.Atmosphe
             return this;
         }
 
+        /**
+         * Set to true to resume the connection after a reconnect or a transport fallback: the tracking id assigned by
+         * the server is kept, so a server using a {@link CACHE#UUID_BROADCASTER_CACHE} delivers the messages broadcast
+         * while the client was disconnected, and the protocol's handshake sent again by the server is never dispatched.
+         * Default is false.
+         * <p/>
+         * Set a {@link #messageIdDelimiter(String)} so the messages delivered twice are dropped.
+         *
+         * @param resume true to enable.
+         * @return this
+         */
+        public AtmosphereRequestBuilder resume(boolean resume) {
+            this.resume = resume;
+            return this;
+        }
+
+        /**
+         * Set the delimiter following the id, or the sequence number, the server prefixes each message with, for
+         * example "42|" with the "|" delimiter. The id is removed before the message is decoded and a message received
+         * twice is dropped. Only {@link String} messages are supported. Default is null, messages have no id.
+         *
+         * @param messageIdDelimiter the delimiter
+         * @return this
+         */
+        public AtmosphereRequestBuilder messageIdDelimiter(String messageIdDelimiter) {
+            this.messageIdDelimiter = messageIdDelimiter;
+            return this;
+        }
+
+        /**
+         * The number of message ids remembered to drop the messages received twice. Default is 1024.
+         *
+         * @param duplicateWindow the number of message ids remembered
+         * @return this
+         */
+        public AtmosphereRequestBuilder duplicateWindow(int duplicateWindow) {
+            this.duplicateWindow = duplicateWindow;
+            return this;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        protected AtmosphereRequestBuilder copy(boolean deep) {
+            AtmosphereRequestBuilder copy = super.copy(deep);
+            // The protocol decoders added by build() hold state, the copy adds its own.
+            for (Decoder<?, ?> d : decoders) {
+                if (d == sDecoder || d == bDecoder || d == idDecoder || d instanceof TrackMessageSizeDecoder) {
+                    copy.decoders.remove(d);
+                }
+            }
+            copy.cacheType = cacheType;
+            copy.trackMessageLength = trackMessageLength;
+            copy.trackMessageLengthDelimiter = trackMessageLengthDelimiter;
+            copy.enableProtocol = enableProtocol;
+            copy.resume = resume;
+            copy.messageIdDelimiter = messageIdDelimiter;
+            copy.duplicateWindow = duplicateWindow;
+            return copy;
+        }
+
         /**
          * {@inheritDoc}
          * Important: You cannot call the build() method more than once if {@link #enableProtocol} or {@link #trackMessageLength}
@@ -180,6 +273,13 @@ public class AtmosphereRequest extends DefaultRequest<AtmosphereRequest.Atmosphe
          */
         @Override
         public AtmosphereRequest build() {
+            if (messageIdDelimiter != null && messageIdDelimiter.length() > 0) {
+                if (window == null) {
+                    window = new DuplicateWindow(duplicateWindow);
+                }
+                _addDecoder(0, idDecoder);
+            }
+
             if (enableProtocol) {
                 List<String> l = new ArrayList<String>();
                 l.add("2.2.4");
@@ -234,6 +334,87 @@ public class AtmosphereRequest extends DefaultRequest<AtmosphereRequest.Atmosphe
             queryString.put("X-Atmosphere-tracking-id", l);
         }
 
+        /**
+         * In resume mode, the protocol's decoders are kept to recognize the handshake sent by the server every time a
+         * transport connects.
+         *
+         * @return true if the message is the handshake
+         */
+        private boolean resumeProtocol(Event e, String s) {
+            if (!e.equals(Event.MESSAGE)) {
+                if ((e.equals(Event.OPEN) || e.equals(Event.REOPENED)) && handshake == HANDSHAKE_RECEIVED) {
+                    handshake = HANDSHAKE_EXPECTED;
+                }
+                return false;
+            }
+
+            int state = handshake;
+            if (state == HANDSHAKE_RECEIVED) {
+                return false;
+            }
+            handshake = HANDSHAKE_RECEIVED;
+
+            int start = trackingId(s);
+            if (start < 0) {
+                if (state == HANDSHAKE_FIRST) {
+                    handleProtocol(s);
+                    return true;
+                }
+                return false;
+            }
+
+            String id = s.substring(start, start + UUID_LENGTH);
+            List<String> current = queryString.get("X-Atmosphere-tracking-id");
+            if (current != null && !current.contains(id) && !current.contains("0")) {
+                logger.warn("Unable to resume {}, the server assigned the tracking id {}", current, id);
+                if (window != null) {
+                    window.clear();
+                }
+            }
+            List<String> l = new ArrayList<String>();
+            l.add(id);
+            queryString.put("X-Atmosphere-tracking-id", l);
+            return true;
+        }
+
+        /**
+         * Match the handshake, a UUID followed by a timestamp, optionally prefixed by the message's length.
+         *
+         * @return the index of the tracking id, -1 if the message isn't the handshake
+         */
+        private int trackingId(String s) {
+            int start = 0;
+            if (trackMessageLength) {
+                int i = s.indexOf(trackMessageLengthDelimiter);
+                if (i > 0 && digits(s, 0, i)) {
+                    start = i + trackMessageLengthDelimiter.length();
+                }
+            }
+
+            int end = start + UUID_LENGTH;
+            if (s.length() < end + 2 || s.charAt(end) != '|' || !Character.isDigit(s.charAt(end + 1))) {
+                return -1;
+            }
+            for (int i = start; i < end; i++) {
+                char c = s.charAt(i);
+                int p = i - start;
+                boolean dash = p == 8 || p == 13 || p == 18 || p == 23;
+                if (dash ? c != '-' : Character.digit(c, 16) < 0) {
+                    return -1;
+                }
+            }
+            return start;
+        }
+
+        private static boolean digits(String s, int start, int end) {
+            for (int i = start; i < end; i++) {
+                if (!Character.isDigit(s.charAt(i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
         private final class SDecoder implements Decoder<String, Decoder.Decoded<String>> {
 
             private AtomicBoolean protocolReceived = new AtomicBoolean();
@@ -243,6 +424,14 @@ public class AtmosphereRequest extends DefaultRequest<AtmosphereRequest.Atmosphe
              */
             @Override
             public Decoder.Decoded<String> decode(Event e, String s) {
+                if (resume) {
+                    if (resumeProtocol(e, s)) {
+                        return Decoder.Decoded.ABORT;
+                    }
+                    // Let the next decoders decode the message
+                    return e.equals(Event.MESSAGE) ? null : new Decoder.Decoded<String>(s);
+                }
+
                 if (e.equals(Event.MESSAGE) && !protocolReceived.getAndSet(true)) {
                     try {
                         handleProtocol(s);
@@ -268,6 +457,20 @@ public class AtmosphereRequest extends DefaultRequest<AtmosphereRequest.Atmosphe
              */
             @Override
             public Decoder.Decoded<byte[]> decode(Event e, byte[] b) {
+                if (resume) {
+                    // The handshake is ASCII, only decode what may be the handshake.
+                    if (e.equals(Event.MESSAGE) && handshake != HANDSHAKE_RECEIVED) {
+                        try {
+                            if (resumeProtocol(e, new String(b, "UTF-8"))) {
+                                return Decoder.Decoded.ABORT;
+                            }
+                        } catch (Exception ex) {
+                            logger.warn("Unable to decode the protocol {}", new String(b));
+                        }
+                    }
+                    return null;
+                }
+
                 if (e.equals(Event.MESSAGE) && !protocolReceived.getAndSet(true)) {
                     try {
                         handleProtocol(new String(b, "UTF-8"));
@@ -283,5 +486,29 @@ public class AtmosphereRequest extends DefaultRequest<AtmosphereRequest.Atmosphe
                 return new Decoder.Decoded<byte[]>(b);
             }
         }
+
+        private final class IdDecoder implements ReplayDecoder {
+
+            private final List<?> duplicate = Collections.singletonList(Decoder.Decoded.ABORT);
+            private final List<String> none = Collections.emptyList();
+
+            /**
+             * Remove the message's id and drop the messages received twice.
+             */
+            @Override
+            public List<?> decode(Event e, String s) {
+                if (e.equals(Event.MESSAGE)) {
+                    int i = s.indexOf(messageIdDelimiter);
+                    if (i > 0) {
+                        if (!window.firstSeen(s, 0, i)) {
+                            logger.trace("Dropping duplicate message {}", s);
+                            return duplicate;
+                        }
+                        return Collections.singletonList(s.substring(i + messageIdDelimiter.length()));
+                    }
+                }
+                return none;
+            }
+        }
     }
 }
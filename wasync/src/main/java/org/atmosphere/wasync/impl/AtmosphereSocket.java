@@ -16,7 +16,9 @@
 package org.atmosphere.wasync.impl;
 
 import com.ning.http.client.FluentStringsMap;
+import com.ning.http.client.ListenableFuture;
 import com.ning.http.client.RequestBuilder;
+import com.ning.http.client.Response;
 import org.atmosphere.wasync.Function;
 import org.atmosphere.wasync.FunctionWrapper;
 import org.atmosphere.wasync.Options;
@@ -35,6 +37,7 @@ public class AtmosphereSocket extends DefaultSocket {
 
     private final static Logger logger = LoggerFactory.getLogger(AtmosphereSocket.class);
     private AtomicBoolean closedByProtocol = new AtomicBoolean();
+    private volatile ListenableFuture<Response> closeHandshake;
 
     public AtmosphereSocket(Options options) {
         super(options);
@@ -42,18 +45,24 @@ public class AtmosphereSocket extends DefaultSocket {
 
     /**
      * {@inheritDoc}
+     * <p/>
+     * The {@link com.ning.http.client.AsyncHttpClient} is closed once the close handshake has been sent, waiting at most
+     * {@link Options#closeTimeoutInMilliseconds()}.
      */
     @Override
     protected void closeRuntime(boolean async) {
         doCloseRequest();
-        super.closeRuntime(async);
+        super.closeRuntime(async, closeHandshake);
     }
 
+    /**
+     * Send the close handshake, without waiting for the server's response.
+     */
     protected void doCloseRequest() {
 
         ((DefaultOptions) options).b.reconnect(false);
 
-        if (!closedByProtocol.getAndSet(true)) {
+        if (request != null && !closedByProtocol.getAndSet(true)) {
             RequestBuilder r = new RequestBuilder();
             FluentStringsMap f = new FluentStringsMap();
             f.add("X-Atmosphere-Transport", "close").add("X-Atmosphere-tracking-id", decodeQueryString(request).get("X-Atmosphere-tracking-id"));
@@ -63,7 +72,7 @@ public class AtmosphereSocket extends DefaultSocket {
                     .setHeaders(request.headers())
                     .setQueryParams(f);
             try {
-                options.runtime().prepareRequest(r.build()).execute().get();
+                closeHandshake = options.runtime().prepareRequest(r.build()).execute();
             } catch (Exception e) {
                 logger.trace("", e);
             }
@@ -86,7 +95,7 @@ public class AtmosphereSocket extends DefaultSocket {
                             String t = rt == Request.TRANSPORT.LONG_POLLING ? "long-polling" : rt.name();
                             request.queryString().put("X-Atmosphere-Transport", Arrays.asList(new String[]{t}));
                         }
-                        open(request, timeout, tu);
+                        reopen(timeout, tu);
                     } catch (IOException e) {
                         logger.error("", e);
                     }
@@ -109,14 +118,17 @@ public class AtmosphereSocket extends DefaultSocket {
      */
     @Override
     public void close() {
+        discardPendingMessages();
         doCloseRequest();
 
         // Not connected, but close the underlying AHC.
         if (transportInUse == null) {
-            super.closeRuntime(false);
+            super.closeRuntime(false, closeHandshake);
         } else if (socketRuntime != null && (closedByProtocol.get() || !transportInUse.status().equals(STATUS.CLOSE))) {
             transportInUse.close();
-            super.closeRuntime(true);
+            super.closeRuntime(true, closeHandshake);
+        } else {
+            closed.complete(null);
         }
     }
 }
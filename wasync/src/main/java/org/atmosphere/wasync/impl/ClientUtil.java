@@ -16,6 +16,8 @@
 package org.atmosphere.wasync.impl;
 
 import org.atmosphere.wasync.Options;
+import org.atmosphere.wasync.Request;
+import org.atmosphere.wasync.RequestTemplate;
 import org.atmosphere.wasync.Socket;
 
 import com.ning.http.client.AsyncHttpClient;
@@ -23,12 +25,27 @@ import com.ning.http.client.AsyncHttpClientConfig;
 import com.ning.http.client.AsyncHttpProviderConfig;
 import com.ning.http.client.providers.netty.NettyAsyncHttpProviderConfig;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
 /**
  * Util class for building {@link AsyncHttpClient}
  *
  * @author Jeanfrancois Arcand
  */
 public class ClientUtil {
+    private final static Logger logger = LoggerFactory.getLogger(ClientUtil.class);
     private static final String WASYNC_USER_AGENT = "wAsync/2.0";
 
     public final static AsyncHttpClient createDefaultAsyncHttpClient(Options o) {
@@ -81,4 +98,113 @@ public class ClientUtil {
 
         return getSocket(new DefaultOptionsBuilder().runtime(asyncHttpClient, false).build(), DefaultSocket.class);
     }
+
+    /**
+     * Open many {@link Socket}s using {@link Socket#openAsync(Request)}, with at most {@code maxConcurrency} of them
+     * connecting at any moment in time. No thread is blocked while the sockets are connecting.
+     * <p/>
+     * A {@link Request} holds the state of a socket, like the Atmosphere protocol's tracking id, so every socket is
+     * opened using its own {@link Request}, built using {@link RequestTemplate#newRequest()}.
+     *
+     * @param sockets        the {@link Socket}s to open
+     * @param template       the {@link RequestTemplate} shared by all the sockets
+     * @param maxConcurrency the maximum number of sockets connecting at the same time
+     * @return a {@link CompletionStage} per socket, in the same order, completed once the socket is opened
+     */
+    public static List<CompletionStage<Socket>> openAll(final List<? extends Socket> sockets, final RequestTemplate template, int maxConcurrency) {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("Invalid concurrency " + maxConcurrency);
+        }
+
+        final List<CompletableFuture<Socket>> opened = new ArrayList<CompletableFuture<Socket>>(sockets.size());
+        for (int i = 0; i < sockets.size(); i++) {
+            opened.add(new CompletableFuture<Socket>());
+        }
+
+        final AtomicInteger next = new AtomicInteger();
+        final AtomicInteger permits = new AtomicInteger();
+        Runnable release = new Runnable() {
+            @Override
+            public void run() {
+                // Sockets failing at once release their permit from openAsync, so loop instead of recursing.
+                if (permits.getAndIncrement() != 0) {
+                    return;
+                }
+                do {
+                    final int i = next.getAndIncrement();
+                    if (i >= sockets.size()) {
+                        continue;
+                    }
+                    final Runnable self = this;
+                    CompletionStage<Socket> stage;
+                    try {
+                        stage = sockets.get(i).openAsync(template.newRequest());
+                    } catch (Throwable t) {
+                        CompletableFuture<Socket> failed = new CompletableFuture<Socket>();
+                        failed.completeExceptionally(t);
+                        stage = failed;
+                    }
+                    stage.whenComplete(new BiConsumer<Socket, Throwable>() {
+                        @Override
+                        public void accept(Socket socket, Throwable t) {
+                            if (t != null) {
+                                opened.get(i).completeExceptionally(t);
+                            } else {
+                                opened.get(i).complete(socket);
+                            }
+                            self.run();
+                        }
+                    });
+                } while (permits.decrementAndGet() != 0);
+            }
+        };
+
+        for (int i = 0; i < Math.min(maxConcurrency, sockets.size()); i++) {
+            release.run();
+        }
+        return new ArrayList<CompletionStage<Socket>>(opened);
+    }
+
+    /**
+     * Close many {@link Socket}s. The close handshakes are sent without waiting for each other, and the
+     * {@link AsyncHttpClient}s are closed using a single executor shared by all the sockets.
+     *
+     * @param sockets the {@link Socket}s to close
+     * @param drain   the maximum time to wait for the close handshakes to complete, 0 not to wait
+     * @param unit    the time unit of the drain argument
+     * @return true if all the sockets have been closed within the drain time
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public static boolean closeAll(Collection<? extends Socket> sockets, long drain, TimeUnit unit) throws InterruptedException {
+        List<CompletableFuture<Void>> closing = new ArrayList<CompletableFuture<Void>>(sockets.size());
+        for (Socket socket : sockets) {
+            try {
+                socket.close();
+            } catch (RuntimeException e) {
+                logger.warn("Unable to close {}", socket, e);
+                continue;
+            }
+            if (socket instanceof DefaultSocket) {
+                closing.add(((DefaultSocket) socket).closed);
+            }
+        }
+
+        if (drain <= 0) {
+            for (CompletableFuture<Void> c : closing) {
+                if (!c.isDone()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        try {
+            CompletableFuture.allOf(closing.toArray(new CompletableFuture[closing.size()])).get(drain, unit);
+            return true;
+        } catch (TimeoutException e) {
+            return false;
+        } catch (ExecutionException e) {
+            logger.trace("", e);
+            return true;
+        }
+    }
 }
@@ -19,6 +19,8 @@ import org.atmosphere.wasync.Future;
 import org.atmosphere.wasync.Socket;
 
 import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
@@ -39,6 +41,7 @@ public class DefaultFuture implements Future {
     private TimeUnit tu;
     private TimeoutException te = null;
     private IOException ioException;
+    private final CompletableFuture<Socket> connected = new CompletableFuture<Socket>();
 
     public DefaultFuture(DefaultSocket socket) {
         this.socket = socket;
@@ -87,6 +90,16 @@ public class DefaultFuture implements Future {
     public void done(){
         done.set(true);
         latch.countDown();
+        connected.complete(socket);
+    }
+
+    /**
+     * Return a {@link CompletionStage} completed the first time this future is done, when used to connect a socket.
+     *
+     * @return a {@link CompletionStage} completed with the socket, or with the connection's {@link IOException}
+     */
+    protected CompletionStage<Socket> connected() {
+        return connected;
     }
 
     @Override
@@ -119,6 +132,7 @@ public class DefaultFuture implements Future {
     @Override
     public Future ioException(IOException t) {
         ioException = t;
+        connected.completeExceptionally(t);
         done();
         return this;
     }
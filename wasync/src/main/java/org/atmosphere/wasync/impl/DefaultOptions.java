@@ -16,10 +16,16 @@
 package org.atmosphere.wasync.impl;
 
 import com.ning.http.client.AsyncHttpClient;
+import org.atmosphere.wasync.LifecycleListener;
+import org.atmosphere.wasync.MetricsPolicy;
+import org.atmosphere.wasync.OfflinePolicy;
 import org.atmosphere.wasync.Options;
 import org.atmosphere.wasync.OptionsBuilder;
+import org.atmosphere.wasync.RatePolicy;
 import org.atmosphere.wasync.Transport;
 
+import java.util.List;
+
 /**
  * Default implementation of the {@link Options}
  *
@@ -72,6 +78,15 @@ public class DefaultOptions implements Options {
     public long waitBeforeUnlocking() {
         return b.waitBeforeUnlocking();
     }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long closeTimeoutInMilliseconds() {
+        return b.closeTimeoutInMilliseconds();
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -107,4 +122,44 @@ public class DefaultOptions implements Options {
     public boolean binary() {
         return b.binary();
     }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public OfflinePolicy offlinePolicy() {
+        return b.offlinePolicy();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public RatePolicy ratePolicy() {
+        return b.ratePolicy();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String heartbeatMarker() {
+        return b.heartbeatMarker();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public MetricsPolicy metricsPolicy() {
+        return b.metricsPolicy();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public List<LifecycleListener> lifecycleListeners() {
+        return b.lifecycleListeners();
+    }
 }
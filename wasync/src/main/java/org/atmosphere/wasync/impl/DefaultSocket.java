@@ -26,10 +26,15 @@ import org.atmosphere.wasync.FunctionWrapper;
 import org.atmosphere.wasync.Future;
 import org.atmosphere.wasync.Options;
 import org.atmosphere.wasync.Request;
+import org.atmosphere.wasync.RequestTemplate;
 import org.atmosphere.wasync.Socket;
 import org.atmosphere.wasync.Transport;
+import org.atmosphere.wasync.jfr.JfrEvents;
+import org.atmosphere.wasync.metrics.SocketMetrics;
+import org.atmosphere.wasync.transport.Heartbeat;
 import org.atmosphere.wasync.transport.LongPollingTransport;
 import org.atmosphere.wasync.transport.SSETransport;
+import org.atmosphere.wasync.transport.SocketLifecycle;
 import org.atmosphere.wasync.transport.StreamTransport;
 import org.atmosphere.wasync.transport.TransportNotSupported;
 import org.atmosphere.wasync.transport.WebSocketTransport;
@@ -41,11 +46,18 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
 
 /**
  * Default implementation of the {@link org.atmosphere.wasync.Socket}
@@ -55,15 +67,52 @@ import java.util.concurrent.TimeoutException;
 public class DefaultSocket implements Socket {
 
     private final static Logger logger = LoggerFactory.getLogger(DefaultSocket.class);
+    private static ScheduledThreadPoolExecutor sharedExecutor;
 
     protected Request request;
     protected SocketRuntime socketRuntime;
     protected final List<FunctionWrapper> functions = new ArrayList<FunctionWrapper>();
     protected Transport transportInUse;
     protected final Options options;
+    private final OfflineBuffer offlineBuffer;
+    // Guarded by offlineBuffer
+    private boolean flushing;
+    private volatile CompletableFuture<Socket> opening;
+    /**
+     * Completed once this socket has been closed and its pending requests, like a close handshake, drained.
+     */
+    protected final CompletableFuture<Void> closed = new CompletableFuture<Void>();
+    private volatile boolean closedByApplication;
+    protected final SocketMetrics metrics;
+    protected final SocketLifecycle lifecycle;
 
     public DefaultSocket(Options options) {
         this.options = options;
+        this.metrics = options.metricsPolicy() != null ? new SocketMetrics(options.metricsPolicy()) : SocketMetrics.DISABLED;
+        this.lifecycle = options.lifecycleListeners().isEmpty() ? SocketLifecycle.DISABLED : new SocketLifecycle(this, options.lifecycleListeners());
+        if (metrics.enabled()) {
+            closed.whenComplete(new BiConsumer<Void, Throwable>() {
+                @Override
+                public void accept(Void v, Throwable t) {
+                    metrics.stop();
+                }
+            });
+        }
+        this.offlineBuffer = options.offlinePolicy() != null ? new OfflineBuffer(options.offlinePolicy()) : null;
+        if (offlineBuffer != null) {
+            functions.add(new FunctionWrapper(Event.REOPENED.name(), new Function<Object>() {
+                @Override
+                public void on(Object o) {
+                    // Don't write from the I/O thread reporting the reconnection, an HTTP write blocks until sent.
+                    sharedExecutor().execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            flushOfflineBuffer();
+                        }
+                    });
+                }
+            }));
+        }
     }
 
     /**
@@ -71,15 +120,155 @@ public class DefaultSocket implements Socket {
      */
     @Override
     public Future fire(Object data) throws IOException {
+        return doFire(data, null);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Future fire(Object data, int priority) throws IOException {
+        return doFire(data, priority);
+    }
+
+    private Future doFire(Object data, Integer priority) throws IOException {
         checkState();
-        if (transportInUse.name().equals(Request.TRANSPORT.WEBSOCKET)
+        if (offlineBuffer != null) {
+            boolean flush;
+            synchronized (offlineBuffer) {
+                // While the buffer is flushed, the message is fired after the buffered ones.
+                if (reconnecting() || flushing) {
+                    return new FutureProxy<CompletableFuture<Void>>(this, offlineBuffer.offer(data, priority));
+                }
+                // Messages buffered while reconnecting must be fired first.
+                flush = offlineBuffer.size() > 0;
+                flushing = flush;
+            }
+            if (flush) {
+                drainOfflineBuffer();
+            }
+        }
+
+        if (!keepsMessagesWhileClosed() && (transportInUse.name().equals(Request.TRANSPORT.WEBSOCKET)
             && transportInUse.status().equals(STATUS.CLOSE) ||
-                transportInUse.status().equals(STATUS.ERROR)) {
+                transportInUse.status().equals(STATUS.ERROR))) {
             transportInUse.error(new IOException("Invalid Socket Status " + transportInUse.status().name()));
             return socketRuntime.rootFuture;
         }
 
-        return socketRuntime.write(request, data);
+        return priority == null ? socketRuntime.write(request, data) : socketRuntime.write(request, data, priority);
+    }
+
+    /**
+     * Return true if the messages fired while the transport is closed are kept and written once it reconnects, in
+     * which case they are written as usual instead of failing.
+     *
+     * @return false, the messages fired while the transport is closed fail
+     */
+    protected boolean keepsMessagesWhileClosed() {
+        return false;
+    }
+
+    /**
+     * Return true if the transport is down but will be reconnected, in which case fired messages are buffered.
+     */
+    boolean reconnecting() {
+        STATUS status = transportInUse.status();
+        return options.reconnect() && !closedByApplication
+                && (status.equals(STATUS.ERROR) || transportInUse.name().equals(Request.TRANSPORT.WEBSOCKET)
+                && (status.equals(STATUS.CLOSE) || status.equals(STATUS.REOPENED)));
+    }
+
+    /**
+     * Fire, in order, the messages buffered while reconnecting. The messages are polled while holding the buffer's lock,
+     * and fired after releasing it, by a single thread at a time.
+     */
+    void flushOfflineBuffer() {
+        synchronized (offlineBuffer) {
+            if (flushing) {
+                return;
+            }
+            flushing = true;
+        }
+        drainOfflineBuffer();
+    }
+
+    private void drainOfflineBuffer() {
+        boolean flushed = false;
+        try {
+            OfflineBuffer.Entry entry;
+            while ((entry = pollOfflineBuffer()) != null) {
+                try {
+                    completeOnceWritten(entry.priority == null ? socketRuntime.write(request, entry.message)
+                            : socketRuntime.write(request, entry.message, entry.priority), entry.future);
+                } catch (Exception e) {
+                    logger.warn("Unable to fire buffered message {}", entry.message, e);
+                    entry.future.completeExceptionally(e);
+                }
+            }
+            flushed = true;
+        } finally {
+            if (!flushed) {
+                synchronized (offlineBuffer) {
+                    flushing = false;
+                }
+            }
+        }
+    }
+
+    /**
+     * Complete the future of a buffered message once written. A write queued by the
+     * {@link org.atmosphere.wasync.RatePolicy} returns a future completed later, the other writes are done when
+     * returning.
+     *
+     * @param written the future returned by the {@link SocketRuntime}
+     * @param future  the future of the buffered message
+     */
+    protected void completeOnceWritten(Future written, final CompletableFuture<Void> future) {
+        Object proxied = written instanceof FutureProxy ? ((FutureProxy<?>) written).proxiedFuture() : null;
+        if (!(proxied instanceof CompletableFuture)) {
+            future.complete(null);
+            return;
+        }
+
+        ((CompletableFuture<?>) proxied).whenComplete(new BiConsumer<Object, Throwable>() {
+            @Override
+            public void accept(Object o, Throwable t) {
+                if (t == null) {
+                    future.complete(null);
+                } else {
+                    future.completeExceptionally(t);
+                }
+            }
+        });
+    }
+
+    /**
+     * Return the next buffered message to fire, or null once the buffer is flushed.
+     */
+    private OfflineBuffer.Entry pollOfflineBuffer() {
+        synchronized (offlineBuffer) {
+            OfflineBuffer.Entry entry = reconnecting() ? null : offlineBuffer.poll();
+            if (entry == null) {
+                flushing = false;
+            }
+            return entry;
+        }
+    }
+
+    /**
+     * Discard the messages buffered while reconnecting, failing their futures, and the writes delayed by the
+     * {@link org.atmosphere.wasync.RatePolicy}.
+     * Once closed by the application, messages are never buffered.
+     */
+    protected void discardPendingMessages() {
+        closedByApplication = true;
+        if (offlineBuffer != null && offlineBuffer.size() > 0) {
+            logger.warn("Discarding {} messages fired while reconnecting", offlineBuffer.clear());
+        }
+        if (socketRuntime != null && socketRuntime.rateShaper() != null) {
+            socketRuntime.rateShaper().close();
+        }
     }
 
     /**
@@ -104,6 +293,31 @@ public class DefaultSocket implements Socket {
         return on(event.name(), function);
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T> Socket on(Class<T> type, Function<T> function) {
+        return on("", type, function);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T> Socket on(String functionName, Class<T> type, Function<T> function) {
+        functions.add(new FunctionWrapper(functionName, type, function));
+        return this;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public <T> Socket on(Event event, Class<T> type, Function<T> function) {
+        return on(event.name(), type, function);
+    }
+
 
     public Socket open(Request request) throws IOException {
         return open(request, -1, TimeUnit.MILLISECONDS);
@@ -114,16 +328,104 @@ public class DefaultSocket implements Socket {
      */
     @Override
     public Socket open(Request request, long timeout, TimeUnit tu) throws IOException {
+        request = socketRequest(request);
         this.request = request;
+        RequestBuilder r = requestBuilder(request);
+
+        List<Transport> transports = getTransport(r, request);
+
+        return connect(r, transports, timeout, tu);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletionStage<Socket> openAsync(Request request) {
+        return openAsync(request, -1, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public CompletionStage<Socket> openAsync(Request request, long timeout, TimeUnit tu) {
+        CompletableFuture<Socket> opened = new CompletableFuture<Socket>();
+        opening = opened;
+        try {
+            request = socketRequest(request);
+            this.request = request;
+            RequestBuilder r = requestBuilder(request);
+            connectAsync(r, getTransport(r, request), timeout, tu, opened);
+        } catch (Throwable t) {
+            logger.error("Unable to open url {}", request.uri(), t);
+            opened.completeExceptionally(t);
+        }
+        return opened;
+    }
+
+    /**
+     * A {@link RequestTemplate} is shared, so the socket uses its own {@link Request}.
+     */
+    private static Request socketRequest(Request request) {
+        return request instanceof RequestTemplate ? ((RequestTemplate) request).newRequest() : request;
+    }
+
+    private static RequestBuilder requestBuilder(Request request) {
         RequestBuilder r = new RequestBuilder();
         r.setUrl(request.uri())
                 .setMethod(request.method().name())
                 .setHeaders(request.headers())
                 .setQueryParams(decodeQueryString(request));
+        return r;
+    }
 
-        List<Transport> transports = getTransport(r, request);
+    /**
+     * Open the socket using the next {@link Transport}, once the server didn't support the current one.
+     *
+     * @param timeout the maximum time to wait
+     * @param tu      the time unit of the timeout argument
+     * @throws IOException
+     */
+    protected void reopen(long timeout, TimeUnit tu) throws IOException {
+        metrics.fellBack();
+        JfrEvents.transportFallback(request.uri(), transportInUse.name(), request.transport().get(0));
+        lifecycle.fallback(transportInUse.name(), request.transport().get(0));
+        CompletableFuture<Socket> opened = opening;
+        if (opened != null && !opened.isDone()) {
+            RequestBuilder r = requestBuilder(request);
+            connectAsync(r, getTransport(r, request), timeout, tu, opened);
+        } else {
+            open(request, timeout, tu);
+        }
+    }
 
-        return connect(r, transports, timeout, tu);
+    private void startMetrics(DefaultFuture f) {
+        if (metrics.enabled()) {
+            metrics.transport(transportInUse.name());
+            metrics.start(request.uri(), sharedExecutor());
+
+            final long start = System.nanoTime();
+            f.connected().thenRun(new Runnable() {
+                @Override
+                public void run() {
+                    metrics.connected(start);
+                }
+            });
+        }
+    }
+
+    private void traceConnect(DefaultFuture f) {
+        final Object event = JfrEvents.connectBegin();
+        if (event != null) {
+            final Request.TRANSPORT transport = transportInUse.name();
+            f.connected().whenComplete(new BiConsumer<Socket, Throwable>() {
+                @Override
+                public void accept(Socket socket, Throwable t) {
+                    JfrEvents.connectEnd(event, request.uri(), transport, t == null);
+                }
+            });
+        }
     }
 
     static FluentStringsMap decodeQueryString(Request request) {
@@ -143,6 +445,9 @@ public class DefaultSocket implements Socket {
         DefaultFuture f = new DefaultFuture(this);
         socketRuntime = createRuntime(f, options, functions);
         transportInUse.connectedFuture(f);
+        startMetrics(f);
+        traceConnect(f);
+        lifecycle.handshakeStarted(transportInUse.name());
         timeout = timeout == -1 ? Long.MAX_VALUE : timeout;
 
         addFunction(timeout, tu);
@@ -184,12 +489,10 @@ public class DefaultSocket implements Socket {
 
                 logger.debug("Http Connect Timeout {}", timeout);
                 try {
-                    if (options.waitBeforeUnlocking() > 0) {
-                        logger.info("Waiting {}, allowing the http connection to get handled by the server. To reduce the delay," +
-                                " make sure some bytes get written when the connection is suspended on the server", options.waitBeforeUnlocking());
-                    }
-
+                    // The transport unlocks the future once the connection is handled by the server, the wait is an upper bound.
                     f.get(options.waitBeforeUnlocking(), TimeUnit.MILLISECONDS);
+                } catch (TimeoutException t) {
+                    waitedBeforeUnlocking();
                 } catch (Throwable t) {
                     // Swallow the exception as this could be expected.
                     logger.trace("", t);
@@ -201,6 +504,138 @@ public class DefaultSocket implements Socket {
         return this;
     }
 
+    /**
+     * Connect without blocking. {@code opened} is completed by the {@link Transport} events, the websocket upgrade or the
+     * response's status or protocol handshake for http transports. The time to wait for http transports is bounded by
+     * {@link Options#waitBeforeUnlocking()}, like {@link #connect(RequestBuilder, List, long, TimeUnit)}.
+     */
+    protected void connectAsync(final RequestBuilder r, final List<Transport> transports, final long timeout, final TimeUnit tu,
+                                final CompletableFuture<Socket> opened) throws IOException {
+
+        if (transports.size() > 0) {
+            transportInUse = transports.get(0);
+        } else {
+            throw new IOException("No suitable transport supported");
+        }
+        final Transport transport = transportInUse;
+        DefaultFuture f = new DefaultFuture(this);
+        socketRuntime = createRuntime(f, options, functions);
+        transportInUse.connectedFuture(f);
+        startMetrics(f);
+        traceConnect(f);
+        lifecycle.handshakeStarted(transportInUse.name());
+
+        addFunction(timeout, tu);
+
+        f.connected().whenComplete(new BiConsumer<Socket, Throwable>() {
+            @Override
+            public void accept(Socket socket, Throwable t) {
+                if (t == null) {
+                    opened.complete(DefaultSocket.this);
+                } else if (transportNotSupported(t) && request.transport().size() > 1) {
+                    // The function added by addFunction reopens using the next transport.
+                    logger.debug("Transport {} not supported, trying the next one", transport.name());
+                } else {
+                    logger.error("Unable to open url {}", request.uri(), t);
+                    opened.completeExceptionally(t);
+                }
+            }
+        });
+
+        if (transportInUse.name().equals(Request.TRANSPORT.WEBSOCKET)) {
+            r.setUrl(webSocketUrl(request.uri()));
+            transportInUse.future(new FutureProxy<ListenableFuture>(this,
+                    options.runtime().prepareRequest(r.build()).execute((AsyncHandler<WebSocket>) transportInUse)));
+
+            if (timeout != -1) {
+                schedule(opened, new Runnable() {
+                    @Override
+                    public void run() {
+                        if (transport == transportInUse
+                                && opened.completeExceptionally(new TimeoutException("WebSocket Connect Timeout " + timeout + " " + tu))) {
+                            transport.close();
+                            closeRuntime(true);
+                            if (!transport.errorHandled()) {
+                                transport.error(new IOException("Invalid state: WebSocket Connect Timeout"));
+                            }
+                        }
+                    }
+                }, timeout, tu);
+            }
+        } else {
+            r.setUrl(httpUrl(request.uri()));
+            transportInUse.future(new FutureProxy<ListenableFuture>(this,
+                    options.runtime().prepareRequest(r.build()).execute((AsyncHandler<String>) transportInUse)));
+
+            if (options.waitBeforeUnlocking() > 0) {
+                schedule(opened, new Runnable() {
+                    @Override
+                    public void run() {
+                        if (transport == transportInUse && opened.complete(DefaultSocket.this)) {
+                            waitedBeforeUnlocking();
+                        }
+                    }
+                }, options.waitBeforeUnlocking(), TimeUnit.MILLISECONDS);
+            } else {
+                opened.complete(this);
+            }
+        }
+    }
+
+    private void waitedBeforeUnlocking() {
+        if (options.waitBeforeUnlocking() > 0) {
+            logger.info("Waited {}ms, the http connection may not be handled by the server yet. To reduce the delay," +
+                    " make sure some bytes get written when the connection is suspended on the server", options.waitBeforeUnlocking());
+        }
+    }
+
+    private static boolean transportNotSupported(Throwable t) {
+        for (; t != null; t = t.getCause()) {
+            if (TransportNotSupported.class.isAssignableFrom(t.getClass())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Run a task once the delay elapsed, unless the {@link CompletableFuture} completes first.
+     */
+    private static void schedule(CompletableFuture<Socket> opened, Runnable task, long delay, TimeUnit unit) {
+        final ScheduledFuture<?> scheduled = sharedExecutor().schedule(task, delay, unit);
+        opened.whenComplete(new BiConsumer<Socket, Throwable>() {
+            @Override
+            public void accept(Socket socket, Throwable t) {
+                scheduled.cancel(false);
+            }
+        });
+    }
+
+    /**
+     * The executor shared by all the sockets to time out connects and to close the {@link com.ning.http.client.AsyncHttpClient},
+     * so opening or closing many sockets doesn't cost a thread each.
+     *
+     * @return the shared executor
+     */
+    protected static synchronized ScheduledExecutorService sharedExecutor() {
+        if (sharedExecutor == null) {
+            sharedExecutor = new ScheduledThreadPoolExecutor(Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+                private final AtomicInteger count = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "wAsync-Socket-" + count.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+            sharedExecutor.setKeepAliveTime(60, TimeUnit.SECONDS);
+            sharedExecutor.allowCoreThreadTimeOut(true);
+            sharedExecutor.setRemoveOnCancelPolicy(true);
+        }
+        return sharedExecutor;
+    }
+
     private String webSocketUrl(String url) {
         return url.startsWith("http://") || url.startsWith("https://") ? "ws" + url.substring(4) : url;
     }
@@ -216,7 +651,7 @@ public class DefaultSocket implements Socket {
                 request.transport().remove(0);
                 if (request.transport().size() > 0) {
                     try {
-                        open(request, timeout, tu);
+                        reopen(timeout, tu);
                     } catch (IOException e) {
                         logger.error("", e);
                     }
@@ -232,36 +667,63 @@ public class DefaultSocket implements Socket {
      */
     @Override
     public void close() {
+        discardPendingMessages();
+
         // Not connected, but close the underlying AHC.
         if (transportInUse == null) {
             closeRuntime(false);
         } else if (socketRuntime != null && !transportInUse.status().equals(STATUS.CLOSE)) {
             transportInUse.close();
             closeRuntime(true);
+        } else {
+            closed.complete(null);
         }
     }
 
     protected void closeRuntime(boolean async) {
-    	if (!options.runtime().isClosed()) {
-	        if (!options.runtimeShared()) {
-	            if (async) {
-	                // AHC is broken when calling closeAsynchronously.
-	                // https://github.com/AsyncHttpClient/async-http-client/issues/290
-	                final ExecutorService e = Executors.newSingleThreadExecutor();
-	                e.submit(new Runnable() {
-	                    @Override
-	                    public void run() {
-	                        options.runtime().close();
-	                        e.shutdown();
-	                    }
-	                });
-	            } else {
-	                options.runtime().close();
-	            }
-	        } else {
-	            logger.warn("Cannot close underlying AsyncHttpClient because it is shared. Make sure you close it manually.");
-	        }
-    	}
+        closeRuntime(async, null);
+    }
+
+    /**
+     * Close the {@link com.ning.http.client.AsyncHttpClient} once a pending request, like a close handshake, completed
+     * or once {@link Options#closeTimeoutInMilliseconds()} elapsed. The calling thread never waits for the pending request.
+     *
+     * @param async   true to close the {@link com.ning.http.client.AsyncHttpClient} using the {@link #sharedExecutor()}
+     * @param pending the pending request, or null
+     */
+    protected void closeRuntime(boolean async, ListenableFuture<?> pending) {
+        final AtomicBoolean once = new AtomicBoolean();
+        final boolean closeRuntime = !options.runtime().isClosed() && !options.runtimeShared();
+        if (!options.runtime().isClosed() && options.runtimeShared()) {
+            logger.warn("Cannot close underlying AsyncHttpClient because it is shared. Make sure you close it manually.");
+        }
+
+        Runnable close = new Runnable() {
+            @Override
+            public void run() {
+                if (once.getAndSet(true)) {
+                    return;
+                }
+                try {
+                    if (closeRuntime) {
+                        options.runtime().close();
+                    }
+                } finally {
+                    closed.complete(null);
+                }
+            }
+        };
+
+        if (pending != null && !pending.isDone() && options.closeTimeoutInMilliseconds() > 0) {
+            pending.addListener(close, sharedExecutor());
+            sharedExecutor().schedule(close, options.closeTimeoutInMilliseconds(), TimeUnit.MILLISECONDS);
+        } else if (async && closeRuntime) {
+            // AHC is broken when calling closeAsynchronously.
+            // https://github.com/AsyncHttpClient/async-http-client/issues/290
+            sharedExecutor().execute(close);
+        } else {
+            close.run();
+        }
     }
 
     @Override
@@ -273,6 +735,27 @@ public class DefaultSocket implements Socket {
         }
     }
 
+    /**
+     * Return the {@link Heartbeat} tracking the liveness of the connection, fed by the heartbeats and messages written
+     * by the server.
+     *
+     * @return the {@link Heartbeat}, or null if the socket has never been opened
+     */
+    public Heartbeat heartbeat() {
+        Transport t = transportInUse;
+        return t == null ? null : t.heartbeat();
+    }
+
+    /**
+     * Return the {@link SocketMetrics} of this socket.
+     *
+     * @return the {@link SocketMetrics}, {@link SocketMetrics#DISABLED} if no {@link org.atmosphere.wasync.MetricsPolicy}
+     * is set
+     */
+    public SocketMetrics metrics() {
+        return metrics;
+    }
+
     protected SocketRuntime internalSocket() {
         return socketRuntime;
     }
@@ -296,6 +779,10 @@ public class DefaultSocket implements Socket {
                 transports.add(new StreamTransport(r, options, request, functions));
             }
         }
+        for (Transport t : transports) {
+            t.metrics(metrics);
+            t.lifecycle(lifecycle);
+        }
         return transports;
     }
 
@@ -311,6 +798,11 @@ public class DefaultSocket implements Socket {
             throw new IllegalStateException("An error occurred during connection. Please add a Function(Throwable) to debug.");
         }
 
+        @Override
+        public Future fire(Object data, int priority) throws IOException {
+            throw new IllegalStateException("An error occurred during connection. Please add a Function(Throwable) to debug.");
+        }
+
         @Override
         public Socket on(Function<? extends Object> function) {
             throw new IllegalStateException("An error occurred during connection. Please add a Function(Throwable) to debug.");
@@ -326,6 +818,21 @@ public class DefaultSocket implements Socket {
             throw new IllegalStateException("An error occurred during connection. Please add a Function(Throwable) to debug.");
         }
 
+        @Override
+        public <T> Socket on(Class<T> type, Function<T> function) {
+            throw new IllegalStateException("An error occurred during connection. Please add a Function(Throwable) to debug.");
+        }
+
+        @Override
+        public <T> Socket on(String functionMessage, Class<T> type, Function<T> function) {
+            throw new IllegalStateException("An error occurred during connection. Please add a Function(Throwable) to debug.");
+        }
+
+        @Override
+        public <T> Socket on(Event event, Class<T> type, Function<T> function) {
+            throw new IllegalStateException("An error occurred during connection. Please add a Function(Throwable) to debug.");
+        }
+
         @Override
         public Socket open(Request request) throws IOException {
             throw new IllegalStateException("An error occurred during connection. Please add a Function(Throwable) to debug.");
@@ -345,6 +852,16 @@ public class DefaultSocket implements Socket {
         public Socket open(Request request, long timeout, TimeUnit tu) throws IOException {
             throw new IllegalStateException("An error occured during connection. Please add a Function(Throwable) to debug.");
         }
+
+        @Override
+        public CompletionStage<Socket> openAsync(Request request) {
+            throw new IllegalStateException("An error occurred during connection. Please add a Function(Throwable) to debug.");
+        }
+
+        @Override
+        public CompletionStage<Socket> openAsync(Request request, long timeout, TimeUnit tu) {
+            throw new IllegalStateException("An error occurred during connection. Please add a Function(Throwable) to debug.");
+        }
     }
 
     void checkState() {
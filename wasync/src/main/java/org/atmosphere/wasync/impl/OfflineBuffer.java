@@ -0,0 +1,171 @@
+/*
+ * Copyright 2015 Async-IO.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.wasync.impl;
+
+import org.atmosphere.wasync.OfflinePolicy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The bounded buffer holding the messages fired while a {@link DefaultSocket} is reconnecting, as configured by an
+ * {@link OfflinePolicy}.
+ * <p/>
+ * Every message has a future, completed by the socket once the message is written, and failed with an
+ * {@link IOException} if the message is discarded: evicted by the {@link OfflinePolicy.Overflow} policy, expired, or
+ * cleared.
+ */
+public class OfflineBuffer {
+
+    private final static Logger logger = LoggerFactory.getLogger(OfflineBuffer.class);
+
+    private final OfflinePolicy policy;
+    private final Deque<Entry> entries = new ArrayDeque<Entry>();
+    private long bytes;
+
+    public OfflineBuffer(OfflinePolicy policy) {
+        this.policy = policy;
+    }
+
+    /**
+     * Buffer a message, applying the {@link OfflinePolicy.Overflow} policy if the buffer is full.
+     *
+     * @param message  the message
+     * @param priority the priority the message was fired with, or null
+     * @return the future of the message, already failed if the message has been discarded
+     * @throws IOException if the buffer is full and the policy is {@link OfflinePolicy.Overflow#FAIL}
+     */
+    public synchronized CompletableFuture<Void> offer(Object message, Integer priority) throws IOException {
+        expire();
+
+        long size = size(message);
+        while (entries.size() >= policy.maxMessages() || bytes + size > policy.maxBytes()) {
+            if (policy.overflow() == OfflinePolicy.Overflow.FAIL) {
+                throw new IOException("Offline buffer full: " + entries.size() + " messages, " + bytes + " bytes");
+            } else if (policy.overflow() == OfflinePolicy.Overflow.DROP_NEWEST || size > policy.maxBytes()) {
+                // A message larger than the byte cap never fits.
+                logger.warn("Offline buffer full, discarding {}", message);
+                CompletableFuture<Void> discarded = new CompletableFuture<Void>();
+                discarded.completeExceptionally(new IOException("Offline buffer full, discarded " + message));
+                return discarded;
+            }
+            Entry dropped = entries.pollFirst();
+            bytes -= dropped.size;
+            logger.warn("Offline buffer full, discarding {}", dropped.message);
+            dropped.future.completeExceptionally(new IOException("Offline buffer full, discarded " + dropped.message));
+        }
+
+        Entry entry = new Entry(message, priority, size);
+        entries.addLast(entry);
+        bytes += size;
+        return entry.future;
+    }
+
+    /**
+     * Remove the oldest message that hasn't expired. The caller completes its future once written.
+     *
+     * @return the oldest message, or null if the buffer is empty
+     */
+    synchronized Entry poll() {
+        expire();
+
+        Entry entry = entries.pollFirst();
+        if (entry == null) {
+            return null;
+        }
+        bytes -= entry.size;
+        return entry;
+    }
+
+    /**
+     * Discard all the buffered messages, failing their futures.
+     *
+     * @return the number of discarded messages
+     */
+    public synchronized int clear() {
+        int size = entries.size();
+        Entry entry;
+        while ((entry = entries.pollFirst()) != null) {
+            entry.future.completeExceptionally(new IOException("Socket closed, discarded " + entry.message));
+        }
+        bytes = 0;
+        return size;
+    }
+
+    /**
+     * The number of buffered messages.
+     *
+     * @return the number of buffered messages
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * The number of buffered bytes.
+     *
+     * @return the number of buffered bytes
+     */
+    public synchronized long bytes() {
+        return bytes;
+    }
+
+    private void expire() {
+        if (policy.timeToLiveInMilliseconds() < 0) {
+            return;
+        }
+
+        long now = System.nanoTime();
+        long ttl = TimeUnit.MILLISECONDS.toNanos(policy.timeToLiveInMilliseconds());
+        while (!entries.isEmpty() && now - entries.peekFirst().created > ttl) {
+            Entry expired = entries.pollFirst();
+            bytes -= expired.size;
+            logger.warn("Offline message expired, discarding {}", expired.message);
+            expired.future.completeExceptionally(new IOException("Offline message expired, discarded " + expired.message));
+        }
+    }
+
+    private static long size(Object message) {
+        if (message instanceof String) {
+            return ((String) message).length();
+        } else if (message instanceof byte[]) {
+            return ((byte[]) message).length;
+        }
+        return 0;
+    }
+
+    /**
+     * A buffered message.
+     */
+    final static class Entry {
+        final Object message;
+        final Integer priority;
+        final CompletableFuture<Void> future = new CompletableFuture<Void>();
+        private final long size;
+        private final long created = System.nanoTime();
+
+        private Entry(Object message, Integer priority, long size) {
+            this.message = message;
+            this.priority = priority;
+            this.size = size;
+        }
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright 2015 Async-IO.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.wasync.impl;
+
+import org.atmosphere.wasync.RatePolicy;
+import org.atmosphere.wasync.metrics.SocketMetrics;
+import org.atmosphere.wasync.util.TokenBucket;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Shape the writes of a {@link SocketRuntime} as configured by a {@link RatePolicy}. Writes within the rate only cost a
+ * compare and set per {@link TokenBucket}; a thread is created the first time a write must be queued. Payload sizes are
+ * counted like {@link SocketMetrics#size(Object)}.
+ */
+public class RateShaper {
+
+    /**
+     * A write, run later if the payload is queued.
+     */
+    public interface Write extends Runnable {
+        /**
+         * Called instead of {@link #run()} if the {@link RateShaper} is closed before the queued write is due.
+         *
+         * @param e the reason
+         */
+        void discard(IOException e);
+    }
+
+    private final static Logger logger = LoggerFactory.getLogger(RateShaper.class);
+
+    private final RatePolicy policy;
+    private final TokenBucket messages;
+    private final TokenBucket bytes;
+    private final AtomicInteger queued = new AtomicInteger();
+    // A queued write is either removed by its task, which runs it, or by close(), which discards it
+    private final Set<Write> pending = Collections.newSetFromMap(new ConcurrentHashMap<Write, Boolean>());
+    private ScheduledExecutorService scheduler;
+    private boolean closed;
+
+    public RateShaper(RatePolicy policy) {
+        this.policy = policy;
+        this.messages = new TokenBucket(policy.messagesPerSecond(), policy.messageBurst());
+        this.bytes = policy.bytesPerSecond() > 0 ? new TokenBucket(policy.bytesPerSecond(), policy.byteBurst()) : null;
+    }
+
+    /**
+     * Acquire the right to write an encoded payload, applying the {@link RatePolicy.Mode} if the rate is exceeded.
+     *
+     * @param encodedPayload the encoded payload
+     * @param write          the write, run later if the payload is queued
+     * @return true if the payload must be written now, false if it has been queued
+     * @throws IOException if the rate is exceeded and the mode is {@link RatePolicy.Mode#FAIL}, or if the thread
+     *                     is interrupted while blocked
+     */
+    public boolean acquire(Object encodedPayload, final Write write) throws IOException {
+        long size = SocketMetrics.size(encodedPayload);
+        switch (policy.mode()) {
+            case FAIL:
+                if (!messages.tryAcquire(1)) {
+                    throw new IOException("Rate exceeded: " + policy.messagesPerSecond() + " messages/s");
+                }
+                if (bytes != null && !bytes.tryAcquire(size)) {
+                    messages.release(1);
+                    throw new IOException("Rate exceeded: " + policy.bytesPerSecond() + " bytes/s");
+                }
+                return true;
+            case BLOCK:
+                long deadline = System.nanoTime() + reserve(size);
+                long wait;
+                while ((wait = deadline - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(this, wait);
+                    if (Thread.interrupted()) {
+                        messages.release(1);
+                        if (bytes != null) {
+                            bytes.release(size);
+                        }
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException("Interrupted while waiting to write");
+                    }
+                }
+                return true;
+            default:
+                long delay = reserve(size);
+                // Once a write is queued, the following ones are queued too so the order is kept.
+                if (delay == 0 && queued.get() == 0) {
+                    return true;
+                }
+                queued.incrementAndGet();
+                pending.add(write);
+                try {
+                    scheduler().schedule(new Runnable() {
+                        @Override
+                        public void run() {
+                            if (!pending.remove(write)) {
+                                return;
+                            }
+                            try {
+                                write.run();
+                            } finally {
+                                queued.decrementAndGet();
+                            }
+                        }
+                    }, delay, TimeUnit.NANOSECONDS);
+                } catch (RejectedExecutionException e) {
+                    pending.remove(write);
+                    queued.decrementAndGet();
+                    throw new IOException("Socket closed");
+                }
+                return false;
+        }
+    }
+
+    /**
+     * The number of queued writes.
+     *
+     * @return the number of queued writes
+     */
+    public int queued() {
+        return queued.get();
+    }
+
+    /**
+     * Discard the queued writes, see {@link Write#discard(IOException)}.
+     */
+    public synchronized void close() {
+        closed = true;
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+
+        int discarded = 0;
+        for (Write write : pending) {
+            if (pending.remove(write)) {
+                discarded++;
+                queued.decrementAndGet();
+                write.discard(new IOException("Socket closed, discarded a write delayed by the rate policy"));
+            }
+        }
+        if (discarded > 0) {
+            logger.warn("Discarding {} writes delayed by the rate policy", discarded);
+        }
+    }
+
+    private long reserve(long size) {
+        long delay = messages.reserve(1);
+        if (bytes != null) {
+            delay = Math.max(delay, bytes.reserve(size));
+        }
+        return delay;
+    }
+
+    private synchronized ScheduledExecutorService scheduler() {
+        if (closed) {
+            throw new RejectedExecutionException();
+        }
+        if (scheduler == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "wAsync-RateShaper");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+        return scheduler;
+    }
+}
@@ -19,6 +19,7 @@ import com.ning.http.client.AsyncHttpClient;
 import com.ning.http.client.FluentStringsMap;
 import com.ning.http.client.ListenableFuture;
 import com.ning.http.client.Response;
+import com.ning.http.client.generators.FileBodyGenerator;
 import org.atmosphere.wasync.Encoder;
 import org.atmosphere.wasync.FunctionWrapper;
 import org.atmosphere.wasync.Future;
@@ -26,19 +27,29 @@ import org.atmosphere.wasync.Options;
 import org.atmosphere.wasync.Request;
 import org.atmosphere.wasync.Socket;
 import org.atmosphere.wasync.Transport;
+import org.atmosphere.wasync.TypedEncoder;
+import org.atmosphere.wasync.metrics.SocketMetrics;
 import org.atmosphere.wasync.transport.TransportsUtil;
 import org.atmosphere.wasync.transport.WebSocketTransport;
+import org.atmosphere.wasync.util.FileRegion;
+import org.atmosphere.wasync.util.FileRegionBodyGenerator;
+import org.atmosphere.wasync.util.FutureProxy;
 import org.atmosphere.wasync.util.ReaderInputStream;
 import org.atmosphere.wasync.util.TypeResolver;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
 import java.io.StringWriter;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeoutException;
 
 import static org.atmosphere.wasync.Event.MESSAGE;
@@ -51,38 +62,111 @@ import static org.atmosphere.wasync.Event.MESSAGE;
 public class SocketRuntime {
 
     private final static Logger logger = LoggerFactory.getLogger(SocketRuntime.class);
+    private final static Executor SAME_THREAD = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
 
     protected Transport transport;
     protected final Options options;
     protected final DefaultFuture rootFuture;
     protected final List<FunctionWrapper> functions;
+    protected final RateShaper rateShaper;
+    protected final SocketMetrics metrics;
 
     public SocketRuntime(Transport transport, Options options, DefaultFuture rootFuture, List<FunctionWrapper> functions) {
         this.transport = transport;
         this.options = options;
         this.rootFuture = rootFuture;
         this.functions = functions;
+        this.rateShaper = options.ratePolicy() != null ? new RateShaper(options.ratePolicy()) : null;
+        Socket socket = rootFuture != null ? rootFuture.socket() : null;
+        this.metrics = socket instanceof DefaultSocket ? DefaultSocket.class.cast(socket).metrics() : SocketMetrics.DISABLED;
     }
 
     public DefaultFuture future() {
         return rootFuture;
     }
 
+    /**
+     * Return the {@link RateShaper} applying the {@link org.atmosphere.wasync.RatePolicy}.
+     *
+     * @return the {@link RateShaper}, or null if writes aren't shaped
+     */
+    public RateShaper rateShaper() {
+        return rateShaper;
+    }
+
+    /**
+     * Apply the {@link org.atmosphere.wasync.RatePolicy}, if any, to an encoded payload.
+     *
+     * @param encodedPayload the encoded payload
+     * @param write          the write, run later if the payload is queued
+     * @return true if the payload must be written now, false if it has been queued
+     * @throws IOException if the rate is exceeded
+     */
+    protected boolean shape(Object encodedPayload, RateShaper.Write write) throws IOException {
+        return rateShaper == null || rateShaper.acquire(encodedPayload, write);
+    }
+
     protected Object invokeEncoder(List<Encoder<? extends Object, ?>> encoders, Object instanceType) {
         for (Encoder e : encoders) {
-            Class<?>[] typeArguments = TypeResolver.resolveArguments(e.getClass(), Encoder.class);
+            Class<?>[] typeArguments = e instanceof TypedEncoder ? ((TypedEncoder) e).typeArguments()
+                    : TypeResolver.resolveArguments(e.getClass(), Encoder.class);
 
-            if (typeArguments.length > 0 && typeArguments[0].isAssignableFrom(instanceType.getClass())) {
+            if (typeArguments == null) {
+                logger.warn("Unable to resolve the types of {}, add it using RequestBuilder.encoder(Class, Class, Encoder)", e);
+            } else if (typeArguments.length > 0 && typeArguments[0].isAssignableFrom(instanceType.getClass())) {
                 instanceType = e.encode(instanceType);
             }
         }
         return instanceType;
     }
 
-    public Future write(Request request, Object data) throws IOException {
+    /**
+     * Write the data with a priority. This runtime has no outbound queue, so the priority is ignored.
+     *
+     * @param request  the {@link Request}
+     * @param data     the data to write
+     * @param priority the priority, 0 being the highest
+     * @return a {@link Future}
+     * @throws IOException
+     */
+    public Future write(Request request, Object data, int priority) throws IOException {
+        return write(request, data);
+    }
+
+    public Future write(final Request request, final Object data) throws IOException {
         // Execute encoder
-        Object object = invokeEncoder(request.encoders(), data);
+        final Object object = invokeEncoder(request.encoders(), data);
+
+        // Completed by the write if the payload is queued by the rate policy
+        final CompletableFuture<Void> queued = new CompletableFuture<Void>();
+        if (!shape(object, new RateShaper.Write() {
+            @Override
+            public void run() {
+                try {
+                    encodedWrite(request, object, data);
+                    queued.complete(null);
+                } catch (Exception e) {
+                    logger.error("", e);
+                    queued.completeExceptionally(e);
+                }
+            }
 
+            @Override
+            public void discard(IOException e) {
+                queued.completeExceptionally(e);
+            }
+        })) {
+            return new FutureProxy<CompletableFuture<Void>>(rootFuture.socket(), queued);
+        }
+        return encodedWrite(request, object, data);
+    }
+
+    private Future encodedWrite(Request request, Object object, Object data) throws IOException {
         boolean webSocket = transport.name().equals(Request.TRANSPORT.WEBSOCKET);
         if (webSocket
                 && (transport.status().equals(Socket.STATUS.CLOSE)
@@ -111,7 +195,16 @@ public class SocketRuntime {
     }
 
     public void webSocketWrite(Request request, Object object, Object data) throws IOException {
+        if (File.class.isAssignableFrom(object.getClass())
+                || Path.class.isAssignableFrom(object.getClass())
+                || FileChannel.class.isAssignableFrom(object.getClass())
+                || FileRegion.class.isAssignableFrom(object.getClass())) {
+            // AHC's WebSocket can't stream fragments with flow control, the file would end up on the heap.
+            throw new IOException("File payloads are only supported by the http transports, unable to write " + data);
+        }
+
         WebSocketTransport webSocketTransport = WebSocketTransport.class.cast(transport);
+        metrics.messageSent(object);
         if (InputStream.class.isAssignableFrom(object.getClass())) {
             InputStream is = (InputStream) object;
             ByteArrayOutputStream bs = new ByteArrayOutputStream();
@@ -142,9 +235,27 @@ public class SocketRuntime {
     }
 
     public ListenableFuture<Response> httpWrite(Request request, Object object, Object data) throws IOException {
+        return httpWrite(configureAHC(request), object, data);
+    }
+
+    protected ListenableFuture<Response> httpWrite(AsyncHttpClient.BoundRequestBuilder b, Object object, Object data) throws IOException {
+        metrics.messageSent(object);
+        if (!metrics.enabled()) {
+            return execute(b, object, data);
+        }
 
-        AsyncHttpClient.BoundRequestBuilder b = configureAHC(request);
+        final long start = System.nanoTime();
+        ListenableFuture<Response> response = execute(b, object, data);
+        response.addListener(new Runnable() {
+            @Override
+            public void run() {
+                metrics.responseReceived(start);
+            }
+        }, SAME_THREAD);
+        return response;
+    }
 
+    private ListenableFuture<Response> execute(AsyncHttpClient.BoundRequestBuilder b, Object object, Object data) throws IOException {
         if (InputStream.class.isAssignableFrom(object.getClass())) {
             //TODO: Allow reading the response.
             return b.setBody((InputStream) object).execute();
@@ -154,6 +265,15 @@ public class SocketRuntime {
             return b.setBody((String) object).execute();
         } else if (byte[].class.isAssignableFrom(object.getClass())) {
             return b.setBody((byte[]) object).execute();
+        } else if (File.class.isAssignableFrom(object.getClass())) {
+            // Netty uses a zero-copy FileRegion for a FileBodyGenerator.
+            return b.setBody(new FileBodyGenerator((File) object)).execute();
+        } else if (Path.class.isAssignableFrom(object.getClass())) {
+            return b.setBody(new FileBodyGenerator(((Path) object).toFile())).execute();
+        } else if (FileChannel.class.isAssignableFrom(object.getClass())) {
+            return b.setBody(new FileRegionBodyGenerator(new FileRegion((FileChannel) object))).execute();
+        } else if (FileRegion.class.isAssignableFrom(object.getClass())) {
+            return b.setBody(new FileRegionBodyGenerator((FileRegion) object)).execute();
         } else {
             throw new IllegalStateException("No Encoder for " + data);
         }
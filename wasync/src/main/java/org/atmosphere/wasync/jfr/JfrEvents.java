@@ -0,0 +1,134 @@
+/*
+ * Copyright 2015 Async-IO.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.wasync.jfr;
+
+import org.atmosphere.wasync.Decoder;
+import org.atmosphere.wasync.Event;
+import org.atmosphere.wasync.Request;
+
+/**
+ * Emit the Java Flight Recorder events of the sockets: connect attempts, transport fallbacks, scheduled reconnects,
+ * websocket frames received and sent, decoders and slow {@link org.atmosphere.wasync.Function}s.
+ * <p/>
+ * This class does nothing. The jar is a multi-release jar and, on Java 11 and later, this class is replaced by the
+ * version in {@code META-INF/versions/11} which commits the {@code jdk.jfr.Event}s. An event is only created when it is
+ * enabled in a running recording.
+ * <p/>
+ * A duration is measured by passing the value returned by a {@code begin} method to its {@code end} method, which
+ * accepts null.
+ */
+public class JfrEvents {
+
+    /**
+     * Begin a connect attempt.
+     *
+     * @return the event, or null
+     */
+    public static Object connectBegin() {
+        return null;
+    }
+
+    /**
+     * End a connect attempt.
+     *
+     * @param event     the value returned by {@link #connectBegin()}
+     * @param uri       the uri
+     * @param transport the transport
+     * @param connected true if the socket is connected
+     */
+    public static void connectEnd(Object event, String uri, Request.TRANSPORT transport, boolean connected) {
+    }
+
+    /**
+     * A transport not supported by the server, and the next one tried.
+     *
+     * @param uri  the uri
+     * @param from the transport not supported
+     * @param to   the next transport
+     */
+    public static void transportFallback(String uri, Request.TRANSPORT from, Request.TRANSPORT to) {
+    }
+
+    /**
+     * A reconnect scheduled after the connection was lost.
+     *
+     * @param uri                 the uri
+     * @param transport           the transport
+     * @param delayInMilliseconds the delay before reconnecting
+     * @param attempt             the attempt number, 1 for the first reconnect
+     */
+    public static void reconnectScheduled(String uri, Request.TRANSPORT transport, long delayInMilliseconds, int attempt) {
+    }
+
+    /**
+     * A websocket frame received.
+     *
+     * @param uri    the uri
+     * @param length the length of the frame, in characters for a text frame
+     * @param binary true for a binary frame
+     */
+    public static void frameReceived(String uri, int length, boolean binary) {
+    }
+
+    /**
+     * A websocket frame sent.
+     *
+     * @param uri    the uri
+     * @param length the length of the frame, in characters for a text frame
+     * @param binary true for a binary frame
+     */
+    public static void frameSent(String uri, int length, boolean binary) {
+    }
+
+    /**
+     * Begin decoding a message.
+     *
+     * @return the event, or null
+     */
+    public static Object decodeBegin() {
+        return null;
+    }
+
+    /**
+     * End decoding a message.
+     *
+     * @param event   the value returned by {@link #decodeBegin()}
+     * @param decoder the {@link Decoder}
+     * @param e       the {@link Event} being decoded
+     */
+    public static void decodeEnd(Object event, Decoder<?, ?> decoder, Event e) {
+    }
+
+    /**
+     * Begin a call to {@link org.atmosphere.wasync.Function#on(Object)}.
+     *
+     * @return the event, or null
+     */
+    public static Object functionBegin() {
+        return null;
+    }
+
+    /**
+     * End a call to {@link org.atmosphere.wasync.Function#on(Object)}. The event is committed only when the call
+     * lasted longer than the threshold of the recording, 20 milliseconds by default.
+     *
+     * @param event        the value returned by {@link #functionBegin()}
+     * @param functionName the name of the function
+     * @param message      the message passed to the function
+     */
+    public static void functionEnd(Object event, Object functionName, Object message) {
+    }
+}
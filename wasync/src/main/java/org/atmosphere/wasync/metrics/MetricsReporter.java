@@ -0,0 +1,35 @@
+/*
+ * Copyright 2015 Async-IO.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.wasync.metrics;
+
+/**
+ * Receive the {@link SocketMetrics} of the open sockets, at the interval configured by the
+ * {@link org.atmosphere.wasync.MetricsPolicy}, for example to push them to a monitoring system.
+ * <p/>
+ * Reports are made from a shared thread, so an implementation must not block. The latencies recorded since the previous
+ * report are read with {@link org.atmosphere.wasync.util.Histogram#intervalSnapshot()}, like
+ * {@code metrics.dispatchLatency().intervalSnapshot().getP99()}.
+ */
+public interface MetricsReporter {
+
+    /**
+     * Report the metrics of a socket.
+     *
+     * @param metrics the {@link SocketMetrics}
+     * @param closed  true if this is the last report, the socket being closed
+     */
+    void report(SocketMetrics metrics, boolean closed);
+}
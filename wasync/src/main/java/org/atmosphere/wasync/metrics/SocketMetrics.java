@@ -0,0 +1,461 @@
+/*
+ * Copyright 2015 Async-IO.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.wasync.metrics;
+
+import org.atmosphere.wasync.MetricsPolicy;
+import org.atmosphere.wasync.Request;
+import org.atmosphere.wasync.util.Histogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+/**
+ * The metrics of a {@link org.atmosphere.wasync.Socket}, collected when a {@link MetricsPolicy} is set. Counters are
+ * {@link LongAdder}s, so recording never contends between the threads reading and writing the socket.
+ * <p/>
+ * Latencies are recorded in microseconds by lock-free log-linear {@link Histogram}s, with a relative error under 6.25%
+ * and a few kilobytes per histogram whatever the traffic:
+ * <ul>
+ * <li>{@link #responseLatency()}: from an http write to its response.</li>
+ * <li>{@link #fireLatency()}: from a {@link org.atmosphere.wasync.Socket#fire(Object)} to the completion of its future,
+ * queuing included, when the socket uses a {@link org.atmosphere.wasync.serial.SerializedFireStage}.</li>
+ * <li>{@link #dispatchLatency()}: from the arrival of a frame to the end of the functions it was dispatched to.</li>
+ * <li>{@link #connectTime()}: the time to connect and to reconnect.</li>
+ * </ul>
+ * A {@link MetricsReporter} reads the values recorded since its previous report with
+ * {@link Histogram#intervalSnapshot()}.
+ * <p/>
+ * Message sizes are counted in bytes, Strings by the length of their UTF-8 encoding.
+ * <p/>
+ * Sockets without a {@link MetricsPolicy} share {@link #DISABLED}, which records nothing.
+ */
+public class SocketMetrics implements SocketMetricsMXBean {
+
+    private final static Logger logger = LoggerFactory.getLogger(SocketMetrics.class);
+    private final static AtomicInteger ids = new AtomicInteger();
+    private final static int PRECISION_BITS = 4;
+    private final static long HIGHEST_LATENCY = TimeUnit.HOURS.toMicros(1);
+
+    /**
+     * The metrics of the sockets without a {@link MetricsPolicy}.
+     */
+    public final static SocketMetrics DISABLED = new SocketMetrics(null);
+
+    private final MetricsPolicy policy;
+    private final boolean enabled;
+    private final LongAdder messagesIn = new LongAdder();
+    private final LongAdder bytesIn = new LongAdder();
+    private final LongAdder messagesOut = new LongAdder();
+    private final LongAdder bytesOut = new LongAdder();
+    private final LongAdder decodeNanos = new LongAdder();
+    private final LongAdder dispatchNanos = new LongAdder();
+    private final LongAdder reconnects = new LongAdder();
+    private final LongAdder fallbacks = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final Histogram responseLatency;
+    private final Histogram fireLatency;
+    private final Histogram dispatchLatency;
+    private final Histogram connectTime;
+    private volatile IntSupplier outboundQueueDepth;
+    private volatile String uri;
+    private volatile Request.TRANSPORT transport;
+    private ObjectName objectName;
+    private ScheduledFuture<?> reports;
+
+    /**
+     * Create the metrics of a socket.
+     *
+     * @param policy the {@link MetricsPolicy}, or null to record nothing
+     */
+    public SocketMetrics(MetricsPolicy policy) {
+        this.policy = policy;
+        this.enabled = policy != null;
+        // The disabled metrics record nothing, a single bucket is enough.
+        int precision = enabled ? PRECISION_BITS : 0;
+        long highest = enabled ? HIGHEST_LATENCY : 1;
+        this.responseLatency = new Histogram(precision, highest);
+        this.fireLatency = new Histogram(precision, highest);
+        this.dispatchLatency = new Histogram(precision, highest);
+        this.connectTime = new Histogram(precision, highest);
+    }
+
+    /**
+     * True if the metrics are recorded. Callers check this value before measuring a time.
+     *
+     * @return true if the metrics are recorded
+     */
+    public boolean enabled() {
+        return enabled;
+    }
+
+    /**
+     * Record a message received and the time spent decoding and dispatching it.
+     *
+     * @param message       the message, before being decoded
+     * @param decodeNanos   the time spent decoding the message, in nanoseconds
+     * @param dispatchNanos the time spent dispatching the message to the functions, in nanoseconds
+     * @param latencyNanos  the time from the arrival of the frame to the end of the functions, in nanoseconds
+     */
+    public void messageReceived(Object message, long decodeNanos, long dispatchNanos, long latencyNanos) {
+        if (!enabled) return;
+        messagesIn.increment();
+        bytesIn.add(size(message));
+        this.decodeNanos.add(decodeNanos);
+        this.dispatchNanos.add(dispatchNanos);
+        dispatchLatency.record(TimeUnit.NANOSECONDS.toMicros(latencyNanos));
+    }
+
+    /**
+     * Record the response of an http write.
+     *
+     * @param startNanos the {@link System#nanoTime()} at which the request was written
+     */
+    public void responseReceived(long startNanos) {
+        if (!enabled) return;
+        responseLatency.record(micros(startNanos));
+    }
+
+    /**
+     * Record the completion of a serialized fire.
+     *
+     * @param startNanos the {@link System#nanoTime()} at which the message was fired
+     */
+    public void fireCompleted(long startNanos) {
+        if (!enabled) return;
+        fireLatency.record(micros(startNanos));
+    }
+
+    /**
+     * Record a connection or a reconnection.
+     *
+     * @param startNanos the {@link System#nanoTime()} at which the socket started connecting
+     */
+    public void connected(long startNanos) {
+        if (!enabled) return;
+        connectTime.record(micros(startNanos));
+    }
+
+    /**
+     * Record a message written.
+     *
+     * @param encodedPayload the encoded payload
+     */
+    public void messageSent(Object encodedPayload) {
+        if (!enabled) return;
+        messagesOut.increment();
+        bytesOut.add(size(encodedPayload));
+    }
+
+    /**
+     * Record a reconnect.
+     */
+    public void reconnected() {
+        if (!enabled) return;
+        reconnects.increment();
+    }
+
+    /**
+     * Record a fallback to the next transport.
+     */
+    public void fellBack() {
+        if (!enabled) return;
+        fallbacks.increment();
+    }
+
+    /**
+     * Record an error.
+     */
+    public void error() {
+        if (!enabled) return;
+        errors.increment();
+    }
+
+    /**
+     * Set the source of the outbound queue depth, the number of fired messages waiting to be written.
+     *
+     * @param outboundQueueDepth supplies the number of messages waiting to be written
+     */
+    public void outboundQueue(IntSupplier outboundQueueDepth) {
+        if (!enabled) return;
+        this.outboundQueueDepth = outboundQueueDepth;
+    }
+
+    /**
+     * Set the transport in use.
+     *
+     * @param transport the transport in use
+     */
+    public void transport(Request.TRANSPORT transport) {
+        if (!enabled) return;
+        this.transport = transport;
+    }
+
+    /**
+     * Publish the metrics of an open socket, as configured by the {@link MetricsPolicy}. Calling this method again has
+     * no effect.
+     *
+     * @param uri      the uri of the socket
+     * @param executor the executor running the reports
+     */
+    public synchronized void start(String uri, ScheduledExecutorService executor) {
+        if (!enabled || objectName != null || reports != null) return;
+        this.uri = uri;
+
+        if (policy.jmx()) {
+            try {
+                ObjectName name = new ObjectName(MetricsPolicy.JMX_DOMAIN + ":type=Socket,id=" + ids.incrementAndGet()
+                        + ",uri=" + ObjectName.quote(uri));
+                ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+                objectName = name;
+            } catch (Exception e) {
+                logger.warn("Unable to register the metrics of {}", uri, e);
+            }
+        }
+
+        final MetricsReporter reporter = policy.reporter();
+        if (reporter != null) {
+            reports = executor.scheduleAtFixedRate(new Runnable() {
+                @Override
+                public void run() {
+                    report(reporter, false);
+                }
+            }, policy.reportIntervalInMilliseconds(), policy.reportIntervalInMilliseconds(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Stop publishing the metrics, once the socket is closed.
+     */
+    public synchronized void stop() {
+        if (!enabled) return;
+
+        if (objectName != null) {
+            try {
+                MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+                if (server.isRegistered(objectName)) {
+                    server.unregisterMBean(objectName);
+                }
+            } catch (Exception e) {
+                logger.debug("Unable to unregister {}", objectName, e);
+            }
+            objectName = null;
+        }
+
+        if (reports != null) {
+            reports.cancel(false);
+            reports = null;
+            report(policy.reporter(), true);
+        }
+    }
+
+    private void report(MetricsReporter reporter, boolean closed) {
+        try {
+            reporter.report(this, closed);
+        } catch (Throwable t) {
+            logger.warn("Metrics reporter {} failed", reporter, t);
+        }
+    }
+
+    /**
+     * The latency, in microseconds, from an http write to its response.
+     *
+     * @return the {@link Histogram} of the response latency
+     */
+    public Histogram responseLatency() {
+        return responseLatency;
+    }
+
+    /**
+     * The latency, in microseconds, from a serialized fire to the completion of its future.
+     *
+     * @return the {@link Histogram} of the fire latency
+     */
+    public Histogram fireLatency() {
+        return fireLatency;
+    }
+
+    /**
+     * The latency, in microseconds, from the arrival of a frame to the end of the functions it was dispatched to.
+     *
+     * @return the {@link Histogram} of the dispatch latency
+     */
+    public Histogram dispatchLatency() {
+        return dispatchLatency;
+    }
+
+    /**
+     * The time, in microseconds, to connect and to reconnect.
+     *
+     * @return the {@link Histogram} of the connect time
+     */
+    public Histogram connectTime() {
+        return connectTime;
+    }
+
+    @Override
+    public String getUri() {
+        return uri;
+    }
+
+    @Override
+    public String getTransport() {
+        Request.TRANSPORT t = transport;
+        return t == null ? null : t.name();
+    }
+
+    @Override
+    public long getMessagesIn() {
+        return messagesIn.sum();
+    }
+
+    @Override
+    public long getBytesIn() {
+        return bytesIn.sum();
+    }
+
+    @Override
+    public long getMessagesOut() {
+        return messagesOut.sum();
+    }
+
+    @Override
+    public long getBytesOut() {
+        return bytesOut.sum();
+    }
+
+    @Override
+    public long getDecodeTimeInMicroseconds() {
+        return TimeUnit.NANOSECONDS.toMicros(decodeNanos.sum());
+    }
+
+    @Override
+    public long getDispatchTimeInMicroseconds() {
+        return TimeUnit.NANOSECONDS.toMicros(dispatchNanos.sum());
+    }
+
+    @Override
+    public long getReconnects() {
+        return reconnects.sum();
+    }
+
+    @Override
+    public long getFallbacks() {
+        return fallbacks.sum();
+    }
+
+    @Override
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    @Override
+    public int getOutboundQueueDepth() {
+        IntSupplier depth = outboundQueueDepth;
+        return depth == null ? 0 : depth.getAsInt();
+    }
+
+    @Override
+    public Histogram.Snapshot getResponseLatency() {
+        return responseLatency.snapshot();
+    }
+
+    @Override
+    public Histogram.Snapshot getFireLatency() {
+        return fireLatency.snapshot();
+    }
+
+    @Override
+    public Histogram.Snapshot getDispatchLatency() {
+        return dispatchLatency.snapshot();
+    }
+
+    @Override
+    public Histogram.Snapshot getConnectTime() {
+        return connectTime.snapshot();
+    }
+
+    private static long micros(long startNanos) {
+        return TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * The size of a message: the length of the UTF-8 encoding of a String, the length of a byte array, 0 otherwise.
+     *
+     * @param message a message
+     * @return its size in bytes
+     */
+    public static long size(Object message) {
+        if (message instanceof String) {
+            return utf8Length((String) message);
+        } else if (message instanceof byte[]) {
+            return ((byte[]) message).length;
+        }
+        return 0;
+    }
+
+    /**
+     * The length of the UTF-8 encoding of a String, without encoding it.
+     */
+    private static long utf8Length(String s) {
+        long length = 0;
+        for (int i = 0, n = s.length(); i < n; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(s.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else if (Character.isSurrogate(c)) {
+                // Unpaired surrogates are encoded as '?'
+                length++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    @Override
+    public String toString() {
+        return "SocketMetrics{" +
+                "uri=" + uri +
+                ", transport=" + transport +
+                ", messagesIn=" + getMessagesIn() +
+                ", bytesIn=" + getBytesIn() +
+                ", messagesOut=" + getMessagesOut() +
+                ", bytesOut=" + getBytesOut() +
+                ", reconnects=" + getReconnects() +
+                ", fallbacks=" + getFallbacks() +
+                ", errors=" + getErrors() +
+                ", outboundQueueDepth=" + getOutboundQueueDepth() +
+                ", responseLatency=" + responseLatency +
+                ", fireLatency=" + fireLatency +
+                ", dispatchLatency=" + dispatchLatency +
+                ", connectTime=" + connectTime +
+                '}';
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2015 Async-IO.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.wasync.metrics;
+
+import org.atmosphere.wasync.util.Histogram;
+
+/**
+ * The JMX view of the {@link SocketMetrics}. The latencies, in microseconds, are published as {@code CompositeData}
+ * holding their count, mean, max and percentiles since the socket was opened.
+ */
+public interface SocketMetricsMXBean {
+
+    String getUri();
+
+    String getTransport();
+
+    long getMessagesIn();
+
+    long getBytesIn();
+
+    long getMessagesOut();
+
+    long getBytesOut();
+
+    long getDecodeTimeInMicroseconds();
+
+    long getDispatchTimeInMicroseconds();
+
+    long getReconnects();
+
+    long getFallbacks();
+
+    long getErrors();
+
+    int getOutboundQueueDepth();
+
+    Histogram.Snapshot getResponseLatency();
+
+    Histogram.Snapshot getFireLatency();
+
+    Histogram.Snapshot getDispatchLatency();
+
+    Histogram.Snapshot getConnectTime();
+}
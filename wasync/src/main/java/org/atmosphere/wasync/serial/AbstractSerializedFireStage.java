@@ -0,0 +1,228 @@
+/*
+ * Copyright 2015 Async-IO.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.wasync.serial;
+
+import com.google.common.util.concurrent.SettableFuture;
+import com.ning.http.client.ListenableFuture;
+import com.ning.http.client.Response;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.function.IntSupplier;
+
+/**
+ * Base class for {@link SerializedFireStage} implementations. Payloads are written using
+ * {@link SerializedSocket#directWrite(Object)}, one write at a time, and the original futures are completed
+ * with the server's {@link Response}. When the socket uses a websocket, payloads are written using
+ * {@link SerializedSocket#webSocketWrite(Object)} and the original futures are completed with null once written, or
+ * failed if the websocket is not open.
+ * <p/>
+ * The {@link #queueDepth()} of the stage is reported as the outbound queue depth of the socket's
+ * {@link org.atmosphere.wasync.metrics.SocketMetrics}.
+ */
+public abstract class AbstractSerializedFireStage implements SerializedFireStage {
+
+    protected volatile SerializedSocket socket;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setSocket(SerializedSocket socket) {
+        this.socket = socket;
+        socket.metrics().outboundQueue(new IntSupplier() {
+            @Override
+            public int getAsInt() {
+                return queueDepth();
+            }
+        });
+    }
+
+    /**
+     * The number of payloads waiting to be fired. Stages that don't queue payloads return 0.
+     *
+     * @return the number of payloads waiting to be fired
+     */
+    public int queueDepth() {
+        return 0;
+    }
+
+    /**
+     * Write the payload using the {@link SerializedSocket}.
+     *
+     * @param firePayload the encoded payload
+     * @return the {@link ListenableFuture} of the write operation
+     * @throws IOException
+     */
+    protected ListenableFuture<Response> directWrite(Object firePayload) throws IOException {
+        return socket.directWrite(firePayload);
+    }
+
+    /**
+     * Write a single payload and wait for the server's response.
+     *
+     * @param firePayload    the encoded payload
+     * @param originalFuture the future returned to the application
+     */
+    protected void fireSynchronously(Object firePayload, SettableFuture<Response> originalFuture) {
+        try {
+            if (socket.isWebSocket()) {
+                socket.webSocketWrite(firePayload);
+                originalFuture.set(null);
+                return;
+            }
+            originalFuture.set(directWrite(firePayload).get());
+        } catch (InterruptedException e) {
+            originalFuture.setException(e);
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            originalFuture.setException(e);
+        }
+    }
+
+    /**
+     * Aggregate binary payloads into a single write and wait for the server's response.
+     *
+     * @param payloads        the binary payloads, in fire order
+     * @param originalFutures the futures returned to the application, in fire order
+     */
+    protected void fireSynchronously(List<byte[]> payloads, List<SettableFuture<Response>> originalFutures) {
+        fireSynchronously((Object) aggregate(payloads), originalFutures);
+    }
+
+    /**
+     * Write a payload carrying several fired messages and wait for the server's response.
+     *
+     * @param firePayload     the encoded, aggregated payload
+     * @param originalFutures the futures returned to the application, in fire order
+     */
+    protected void fireSynchronously(Object firePayload, List<SettableFuture<Response>> originalFutures) {
+        try {
+            Response response = null;
+            if (socket.isWebSocket()) {
+                socket.webSocketWrite(firePayload);
+            } else {
+                response = directWrite(firePayload).get();
+            }
+            for (SettableFuture<Response> f : originalFutures) {
+                f.set(response);
+            }
+        } catch (InterruptedException e) {
+            for (SettableFuture<Response> f : originalFutures) {
+                f.setException(e);
+            }
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            for (SettableFuture<Response> f : originalFutures) {
+                f.setException(e);
+            }
+        }
+    }
+
+    /**
+     * Write a payload without waiting for the server's response. Once the write completes, the original futures are
+     * completed and {@code onCompletion} is executed using the {@code executor}.
+     *
+     * @param firePayload     the encoded payload
+     * @param originalFutures the futures returned to the application, in fire order
+     * @param onCompletion    executed once the original futures are completed
+     * @param executor        the {@link Executor} used to complete the futures
+     */
+    protected void fireAsynchronously(Object firePayload, final List<SettableFuture<Response>> originalFutures, final Runnable onCompletion, Executor executor) {
+        final ListenableFuture<Response> future;
+        try {
+            if (socket.isWebSocket()) {
+                // Websocket writes don't wait for a response.
+                socket.webSocketWrite(firePayload);
+                for (SettableFuture<Response> f : originalFutures) {
+                    f.set(null);
+                }
+                executor.execute(onCompletion);
+                return;
+            }
+            future = directWrite(firePayload);
+        } catch (Exception e) {
+            for (SettableFuture<Response> f : originalFutures) {
+                f.setException(e);
+            }
+            executor.execute(onCompletion);
+            return;
+        }
+
+        future.addListener(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Response response = future.get();
+                    for (SettableFuture<Response> f : originalFutures) {
+                        f.set(response);
+                    }
+                } catch (Exception e) {
+                    for (SettableFuture<Response> f : originalFutures) {
+                        f.setException(e);
+                    }
+                } finally {
+                    onCompletion.run();
+                }
+            }
+        }, executor);
+    }
+
+    /**
+     * Return true if consecutive payloads may be aggregated into a single write. Over a websocket, every payload is
+     * sent as its own message: the server reads a websocket message as a single request body.
+     *
+     * @return true if payloads may be aggregated
+     */
+    protected boolean canAggregate() {
+        SerializedSocket s = socket;
+        return s == null || !s.isWebSocket();
+    }
+
+    /**
+     * Frame every message as {@code length<delimiter>message}, the format read by the
+     * {@link org.atmosphere.wasync.decoder.TrackMessageSizeDecoder}.
+     *
+     * @param messages  the messages, in fire order
+     * @param delimiter the delimiter
+     * @return the framed messages
+     */
+    protected static String frame(List<String> messages, String delimiter) {
+        StringBuilder framed = new StringBuilder();
+        for (String message : messages) {
+            framed.append(message.length()).append(delimiter).append(message);
+        }
+        return framed.toString();
+    }
+
+    protected static byte[] aggregate(List<byte[]> payloads) {
+        int aggregatedSize = 0;
+        for (byte[] payload : payloads) {
+            aggregatedSize += payload.length;
+        }
+        byte[] aggregatedByteArray = new byte[aggregatedSize];
+        int destPos = 0;
+        for (byte[] payload : payloads) {
+            System.arraycopy(
+                    payload, 0,
+                    aggregatedByteArray, destPos,
+                    payload.length);
+            destPos += payload.length;
+        }
+        return aggregatedByteArray;
+    }
+}
@@ -16,14 +16,16 @@
 package org.atmosphere.wasync.serial;
 
 import com.google.common.util.concurrent.SettableFuture;
-import com.ning.http.client.ListenableFuture;
 import com.ning.http.client.Response;
+import org.atmosphere.wasync.util.Histogram;
 
 import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Default implementation of a {@link SerializedFireStage}.
@@ -35,35 +37,70 @@ import java.util.concurrent.LinkedBlockingQueue;
  * Every instance of this class spans its dedicated stage thread, which sequentially
  * consumes payload objects off the stage queue.
  * <p/>
- * Binary payloads are aggregated up to a {@code maxBinaryPayloadAggregationSize}.
+ * Consecutive binary payloads are aggregated in batches bounded by a number of payloads and a number of bytes. Once
+ * the first payload of a batch has been taken, the stage thread waits up to the linger time for more payloads before
+ * writing the batch. When a delimiter is configured, consecutive {@link String} payloads are batched too, every message
+ * being framed as {@code length<delimiter>message}, the format read by the
+ * {@link org.atmosphere.wasync.decoder.TrackMessageSizeDecoder}. The server must split such batches. Over a websocket,
+ * payloads are never batched, every payload being sent as its own message.
+ * <p/>
+ * The number of payloads per batch and the time spent lingering are reported by {@link #batchSizeHistogram()}
+ * and {@link #lingerHistogram()}.
  * <p/>
  *
  * @author Christian Bach
  */
-public class DefaultSerializedFireStage implements SerializedFireStage {
+public class DefaultSerializedFireStage extends AbstractSerializedFireStage {
 
-    private volatile SerializedSocket socket;
     private final int maxBinaryMessagesAggregationSize;
+    private final int maxBatchBytes;
+    private final long lingerNanos;
+    private final String delimiter;
 
     private final BlockingQueue<FirePayloadEntry> firePayloadsQueue;
     private final ExecutorService executorService;
     private final Runnable fireTask;
+    private final Histogram batchSizeHistogram = new Histogram();
+    private final Histogram lingerHistogram = new Histogram();
 
     public DefaultSerializedFireStage() {
         this(100);
     }
 
     public DefaultSerializedFireStage(int maxBinaryPayloadAggregationSize) {
-        this.maxBinaryMessagesAggregationSize = maxBinaryPayloadAggregationSize;
+        this(maxBinaryPayloadAggregationSize, Integer.MAX_VALUE, 0, TimeUnit.MILLISECONDS, null);
+    }
+
+    /**
+     * Create a stage.
+     *
+     * @param maxBatchCount the maximum number of payloads aggregated in a single write
+     * @param maxBatchBytes the maximum size of an aggregated write. A payload larger than this size is written alone.
+     *                      The size of a {@link String} is its number of characters.
+     * @param linger        the maximum time to wait for more payloads once a batch has been started, 0 to never wait
+     * @param unit          the {@link TimeUnit} of {@code linger}
+     * @param delimiter     the delimiter used to frame batched {@link String} payloads, or null to never batch them
+     */
+    public DefaultSerializedFireStage(int maxBatchCount, int maxBatchBytes, long linger, TimeUnit unit, String delimiter) {
+        if (maxBatchCount < 1 || maxBatchBytes < 1 || linger < 0) {
+            throw new IllegalArgumentException("Invalid batch policy " + maxBatchCount + "/" + maxBatchBytes + "/" + linger);
+        }
+        this.maxBinaryMessagesAggregationSize = maxBatchCount;
+        this.maxBatchBytes = maxBatchBytes;
+        this.lingerNanos = unit.toNanos(linger);
+        this.delimiter = delimiter;
         firePayloadsQueue = new LinkedBlockingQueue<FirePayloadEntry>();
         executorService = Executors.newSingleThreadExecutor();
         fireTask = createFireTask();
         executorService.execute(fireTask);
     }
 
+    /**
+     * {@inheritDoc}
+     */
     @Override
-    public void setSocket(SerializedSocket socket) {
-        this.socket = socket;
+    public int queueDepth() {
+        return firePayloadsQueue.size();
     }
 
     @Override
@@ -71,95 +108,121 @@ public class DefaultSerializedFireStage implements SerializedFireStage {
         firePayloadsQueue.add(new FirePayloadEntry(firePayload, originalFuture));
     }
 
+    /**
+     * The number of payloads written per batch.
+     *
+     * @return the number of payloads written per batch
+     */
+    public Histogram batchSizeHistogram() {
+        return batchSizeHistogram;
+    }
+
+    /**
+     * The time, in microseconds, spent waiting for a batch to fill.
+     *
+     * @return the time spent waiting for a batch to fill
+     */
+    public Histogram lingerHistogram() {
+        return lingerHistogram;
+    }
+
     private Runnable createFireTask() {
         return new Runnable() {
             public void run() {
-                ArrayList<FirePayloadEntry> aggregatedByteArrayPayloads = new ArrayList<FirePayloadEntry>(maxBinaryMessagesAggregationSize);
+                ArrayList<FirePayloadEntry> batch = new ArrayList<FirePayloadEntry>();
+                FirePayloadEntry pending = null;
                 try {
                     while (!Thread.currentThread().isInterrupted()) {
-                        FirePayloadEntry payloadEntry = firePayloadsQueue.take();
-                        int aggregationCount = 1;
-
-                        if (byte[].class.isAssignableFrom(payloadEntry.getFirePayload().getClass())) {
-                        	aggregatedByteArrayPayloads.add(payloadEntry);	
-		                    do {
-		                    	payloadEntry = firePayloadsQueue.poll();
-		                    	if (payloadEntry == null) { break; }
-		                        if (byte[].class.isAssignableFrom(payloadEntry.getFirePayload().getClass())) {
-		                            aggregatedByteArrayPayloads.add(payloadEntry);
-		                            aggregationCount++;
-		                        } else {
-		                            if (!aggregatedByteArrayPayloads.isEmpty()) {
-		                                fireSynchronously(aggregatedByteArrayPayloads);
-		                                aggregatedByteArrayPayloads.clear();
-		                            }
-		                            fireSynchronously(payloadEntry);
-		                            break;
-		                        }
-		                    } while (aggregationCount < maxBinaryMessagesAggregationSize);
-                        } else {
-                        	fireSynchronously(payloadEntry);
+                        FirePayloadEntry payloadEntry = pending != null ? pending : firePayloadsQueue.take();
+                        pending = null;
+
+                        Class<?> batchType = batchType(payloadEntry);
+                        if (batchType == null) {
+                            fireSynchronously(payloadEntry);
+                            continue;
                         }
 
-                        if (!aggregatedByteArrayPayloads.isEmpty()) {
-                            fireSynchronously(aggregatedByteArrayPayloads);
-                            aggregatedByteArrayPayloads.clear();
+                        batch.add(payloadEntry);
+                        int batchBytes = size(payloadEntry);
+                        long lingerStart = System.nanoTime();
+                        while (batch.size() < maxBinaryMessagesAggregationSize && batchBytes < maxBatchBytes) {
+                            long remaining = lingerNanos - (System.nanoTime() - lingerStart);
+                            payloadEntry = remaining > 0 ? firePayloadsQueue.poll(remaining, TimeUnit.NANOSECONDS) : firePayloadsQueue.poll();
+                            if (payloadEntry == null) {
+                                break;
+                            }
+                            if (batchType(payloadEntry) != batchType || batchBytes + size(payloadEntry) > maxBatchBytes) {
+                                pending = payloadEntry;
+                                break;
+                            }
+                            batch.add(payloadEntry);
+                            batchBytes += size(payloadEntry);
                         }
+                        lingerHistogram.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - lingerStart));
+                        batchSizeHistogram.record(batch.size());
 
+                        fireSynchronously(batch, batchType);
+                        batch.clear();
                     }
                 } catch (InterruptedException consumed) {
                     // allow thread to exit
+                    if (pending != null) {
+                        pending.getOriginalFuture().cancel(true);
+                    }
+                    for (FirePayloadEntry entry : batch) {
+                        entry.getOriginalFuture().cancel(true);
+                    }
                 }
             }
         };
     }
 
-    private void fireSynchronously(ArrayList<FirePayloadEntry> aggregatedByteArrayPayloads) {
-        ListenableFuture<Response> future;
-        int aggregatedSize = 0;
-        for (FirePayloadEntry entry : aggregatedByteArrayPayloads) {
-            aggregatedSize += ((byte[]) entry.getFirePayload()).length;
+    /**
+     * The type of the batch the payload belongs to, or null if the payload is never batched.
+     */
+    private Class<?> batchType(FirePayloadEntry entry) {
+        if (!canAggregate()) {
+            return null;
         }
-        byte[] aggregatedByteArray = new byte[aggregatedSize];
-        int destPos = 0;
-        for (FirePayloadEntry entry : aggregatedByteArrayPayloads) {
-            byte[] payload = (byte[]) entry.getFirePayload();
-            System.arraycopy(
-                    payload, 0,
-                    aggregatedByteArray, destPos,
-                    payload.length);
-            destPos += payload.length;
+        Object payload = entry.getFirePayload();
+        if (payload instanceof byte[]) {
+            return byte[].class;
+        } else if (payload instanceof String && delimiter != null) {
+            return String.class;
         }
+        return null;
+    }
 
+    private static int size(FirePayloadEntry entry) {
+        Object payload = entry.getFirePayload();
+        return payload instanceof byte[] ? ((byte[]) payload).length : ((String) payload).length();
+    }
+
+    private void fireSynchronously(ArrayList<FirePayloadEntry> batch, Class<?> batchType) {
+        List<SettableFuture<Response>> futures = new ArrayList<SettableFuture<Response>>(batch.size());
+        for (FirePayloadEntry entry : batch) {
+            futures.add(entry.getOriginalFuture());
+        }
 
-        Response response = null;
-        try {
-            future = socket.directWrite(aggregatedByteArray);
-            response = future.get();
-        } catch (Exception e) {
-            for (FirePayloadEntry entry : aggregatedByteArrayPayloads) {
-                entry.getOriginalFuture().setException(e);
-                entry.getOriginalFuture().cancel(true);
+        if (batchType == String.class) {
+            List<String> messages = new ArrayList<String>(batch.size());
+            for (FirePayloadEntry entry : batch) {
+                messages.add((String) entry.getFirePayload());
             }
-        } finally {
-            for (FirePayloadEntry entry : aggregatedByteArrayPayloads) {
-                entry.getOriginalFuture().set(response);
+            fireSynchronously(frame(messages, delimiter), futures);
+        } else if (batch.size() == 1) {
+            fireSynchronously(batch.get(0).getFirePayload(), futures);
+        } else {
+            List<byte[]> payloads = new ArrayList<byte[]>(batch.size());
+            for (FirePayloadEntry entry : batch) {
+                payloads.add((byte[]) entry.getFirePayload());
             }
+            fireSynchronously(payloads, futures);
         }
     }
 
     public void fireSynchronously(FirePayloadEntry firePayloadEntry) {
-        ListenableFuture<Response> future;
-        Response response = null;
-        try {
-            future = socket.directWrite(firePayloadEntry.firePayload);
-            response = future.get();
-        } catch (Exception e) {
-            firePayloadEntry.getOriginalFuture().setException(e);
-            firePayloadEntry.getOriginalFuture().cancel(true);
-        } finally {
-            firePayloadEntry.getOriginalFuture().set(response);
-        }
+        fireSynchronously(firePayloadEntry.getFirePayload(), firePayloadEntry.getOriginalFuture());
     }
 
     @Override
@@ -0,0 +1,446 @@
+/*
+ * Copyright 2015 Async-IO.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.wasync.serial;
+
+import com.google.common.util.concurrent.SettableFuture;
+import com.ning.http.client.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.CRC32;
+
+/**
+ * A durable {@link SerializedFireStage}, which delivers {@link String} and {@code byte[]} payloads at least once.
+ * <p/>
+ * Payloads are appended to a journal made of memory mapped segment files before being fired. The stage thread forces
+ * the journal to disk once per group of payloads taken off the queue, then fires them in order. A payload is
+ * acknowledged once the server has responded without a 5xx status code. Until then, the write is retried every
+ * {@code retryInterval}, which covers the time needed by the socket to reconnect, and the following payloads wait.
+ * Over a websocket, a payload is acknowledged once sent while the websocket is open; payloads fired while it is
+ * closed are journaled and sent once it reconnects.
+ * <p/>
+ * Unacknowledged payloads are not lost when the stage is shut down or the process stops: a new stage created on the same
+ * directory replays them first. Segments whose payloads have all been acknowledged are deleted.
+ * <p/>
+ * Other payload types can't be journaled; they are fired in order, at most once. Binary payloads aren't aggregated.
+ */
+public class JournaledSerializedFireStage extends AbstractSerializedFireStage {
+
+    private final static Logger logger = LoggerFactory.getLogger(JournaledSerializedFireStage.class);
+
+    private final static String SEGMENT_SUFFIX = ".journal";
+    private final static String ACK_FILE = "ack";
+    private final static Charset UTF_8 = Charset.forName("UTF-8");
+    // length, type, sequence, checksum
+    private final static int HEADER_SIZE = 4 + 1 + 8 + 4;
+    private final static byte BINARY = 0;
+    private final static byte STRING = 1;
+
+    private final File directory;
+    private final int segmentSize;
+    private final long retryIntervalMillis;
+    private final BlockingQueue<JournalEntry> firePayloadsQueue = new LinkedBlockingQueue<JournalEntry>();
+    private final Deque<Segment> segments = new ArrayDeque<Segment>();
+    private final FileChannel ackChannel;
+    private final MappedByteBuffer ackBuffer;
+    private final ExecutorService executorService;
+    private final AtomicBoolean started = new AtomicBoolean();
+    private long nextSequence;
+    private volatile long acknowledged;
+    private volatile boolean shutdown;
+
+    /**
+     * Create a stage using 16MB segments, retrying failed writes every second.
+     *
+     * @param directory the directory of the journal
+     * @throws IOException if the journal can't be opened
+     */
+    public JournaledSerializedFireStage(File directory) throws IOException {
+        this(directory, 16 * 1024 * 1024, 1, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Create a stage, replaying the unacknowledged payloads of the journal.
+     *
+     * @param directory     the directory of the journal
+     * @param segmentSize   the size of a segment file. Larger payloads get a segment of their own.
+     * @param retryInterval the time to wait before retrying a failed write
+     * @param unit          the {@link TimeUnit} of {@code retryInterval}
+     * @throws IOException if the journal can't be opened
+     */
+    public JournaledSerializedFireStage(File directory, int segmentSize, long retryInterval, TimeUnit unit) throws IOException {
+        if (segmentSize <= HEADER_SIZE) {
+            throw new IllegalArgumentException("Invalid segment size " + segmentSize);
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create " + directory);
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.retryIntervalMillis = unit.toMillis(retryInterval);
+
+        ackChannel = new RandomAccessFile(new File(directory, ACK_FILE), "rw").getChannel();
+        ackBuffer = ackChannel.map(FileChannel.MapMode.READ_WRITE, 0, 8);
+        acknowledged = ackBuffer.getLong(0);
+        // The segments may all have been deleted, never re-use an acknowledged sequence.
+        nextSequence = acknowledged + 1;
+        replay();
+
+        executorService = Executors.newSingleThreadExecutor();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * The replayed payloads are fired once the socket is set.
+     */
+    @Override
+    public void setSocket(SerializedSocket socket) {
+        super.setSocket(socket);
+        if (started.compareAndSet(false, true)) {
+            executorService.execute(createFireTask());
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void enqueue(Object firePayload, SettableFuture<Response> originalFuture) {
+        if (shutdown) {
+            originalFuture.cancel(true);
+            return;
+        }
+
+        byte type;
+        byte[] bytes;
+        if (firePayload instanceof String) {
+            type = STRING;
+            bytes = ((String) firePayload).getBytes(UTF_8);
+        } else if (firePayload instanceof byte[]) {
+            type = BINARY;
+            bytes = (byte[]) firePayload;
+        } else {
+            firePayloadsQueue.add(new JournalEntry(-1, firePayload, originalFuture));
+            return;
+        }
+
+        synchronized (segments) {
+            try {
+                long sequence = nextSequence++;
+                append(type, sequence, bytes);
+                firePayloadsQueue.add(new JournalEntry(sequence, firePayload, originalFuture));
+            } catch (IOException e) {
+                originalFuture.setException(e);
+            }
+        }
+    }
+
+    /**
+     * The number of journaled payloads that have not been acknowledged yet.
+     *
+     * @return the number of journaled payloads that have not been acknowledged yet
+     */
+    public long pending() {
+        synchronized (segments) {
+            return nextSequence - 1 - acknowledged;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * Payloads written but not acknowledged yet are counted by {@link #pending()}.
+     */
+    @Override
+    public int queueDepth() {
+        return firePayloadsQueue.size();
+    }
+
+    /**
+     * Write a payload and wait for the server's response.
+     *
+     * @param firePayload the payload
+     * @return the server's {@link Response}, null for a websocket
+     * @throws Exception if the write failed, or the websocket is not open: the payload is then retried
+     */
+    protected Response write(Object firePayload) throws Exception {
+        if (socket.isWebSocket()) {
+            socket.webSocketWrite(firePayload);
+            return null;
+        }
+        return directWrite(firePayload).get();
+    }
+
+    private void replay() throws IOException {
+        File[] files = directory.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File f) {
+                return f.getName().endsWith(SEGMENT_SUFFIX);
+            }
+        });
+        // Segments are named after their first sequence, zero padded.
+        Arrays.sort(files);
+
+        int replayed = 0;
+        for (File file : files) {
+            Segment segment = new Segment(file);
+            try {
+                MappedByteBuffer buffer = segment.channel.map(FileChannel.MapMode.READ_ONLY, 0, segment.channel.size());
+                while (buffer.remaining() >= HEADER_SIZE) {
+                    int length = buffer.getInt();
+                    if (length <= 0 || length > buffer.remaining() - HEADER_SIZE + 4) {
+                        break;
+                    }
+                    byte type = buffer.get();
+                    long sequence = buffer.getLong();
+                    int checksum = buffer.getInt();
+                    byte[] bytes = new byte[length];
+                    buffer.get(bytes);
+                    if (checksum != checksum(bytes)) {
+                        logger.warn("Corrupted entry {} in {}", sequence, file);
+                        break;
+                    }
+
+                    segment.lastSequence = sequence;
+                    nextSequence = Math.max(nextSequence, sequence + 1);
+                    if (sequence > acknowledged) {
+                        Object payload = type == STRING ? new String(bytes, UTF_8) : bytes;
+                        firePayloadsQueue.add(new JournalEntry(sequence, payload, SettableFuture.<Response>create()));
+                        replayed++;
+                    }
+                }
+            } finally {
+                segment.close();
+            }
+
+            if (segment.lastSequence <= acknowledged) {
+                segment.delete();
+            } else {
+                segments.addLast(segment);
+            }
+        }
+        if (replayed > 0) {
+            logger.info("Replaying {} unacknowledged payloads from {}", replayed, directory);
+        }
+    }
+
+    private void append(byte type, long sequence, byte[] bytes) throws IOException {
+        int size = HEADER_SIZE + bytes.length;
+        Segment current = segments.peekLast();
+        if (current == null || current.buffer == null || current.buffer.remaining() < size) {
+            if (current != null && current.buffer != null) {
+                current.buffer.force();
+                current.dirty = false;
+                current.close();
+            }
+            current = new Segment(new File(directory, String.format("%020d", sequence) + SEGMENT_SUFFIX));
+            current.buffer = current.channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(segmentSize, size));
+            segments.addLast(current);
+        }
+
+        current.buffer.putInt(bytes.length).put(type).putLong(sequence).putInt(checksum(bytes)).put(bytes);
+        current.lastSequence = sequence;
+        current.dirty = true;
+    }
+
+    /**
+     * Force the journal to disk. Called once per group of payloads.
+     */
+    private void commit() {
+        List<MappedByteBuffer> dirty = new ArrayList<MappedByteBuffer>();
+        synchronized (segments) {
+            for (Segment segment : segments) {
+                if (segment.dirty) {
+                    dirty.add(segment.buffer);
+                    segment.dirty = false;
+                }
+            }
+        }
+        for (MappedByteBuffer buffer : dirty) {
+            buffer.force();
+        }
+        ackBuffer.force();
+    }
+
+    private void acknowledge(long sequence) {
+        acknowledged = sequence;
+        ackBuffer.putLong(0, sequence);
+
+        synchronized (segments) {
+            // Never delete the segment being appended to.
+            while (segments.size() > 1 && segments.peekFirst().lastSequence <= sequence) {
+                segments.pollFirst().delete();
+            }
+        }
+    }
+
+    private Runnable createFireTask() {
+        return new Runnable() {
+            public void run() {
+                List<JournalEntry> batch = new ArrayList<JournalEntry>();
+                try {
+                    while (!Thread.currentThread().isInterrupted()) {
+                        batch.add(firePayloadsQueue.take());
+                        firePayloadsQueue.drainTo(batch);
+                        commit();
+
+                        for (JournalEntry entry : batch) {
+                            fire(entry);
+                        }
+                        batch.clear();
+                    }
+                } catch (InterruptedException consumed) {
+                    // allow thread to exit, unacknowledged payloads stay in the journal
+                    for (JournalEntry entry : batch) {
+                        entry.originalFuture.cancel(true);
+                    }
+                }
+            }
+        };
+    }
+
+    private void fire(JournalEntry entry) throws InterruptedException {
+        // Cancelled by the application
+        if (entry.originalFuture.isDone()) {
+            if (entry.sequence > 0) {
+                acknowledge(entry.sequence);
+            }
+            return;
+        }
+
+        for (; ; ) {
+            try {
+                Response response = write(entry.firePayload);
+                if (response != null && response.getStatusCode() >= 500) {
+                    throw new IOException("Status " + response.getStatusCode());
+                }
+                if (entry.sequence > 0) {
+                    acknowledge(entry.sequence);
+                }
+                entry.originalFuture.set(response);
+                return;
+            } catch (InterruptedException e) {
+                throw e;
+            } catch (Exception e) {
+                if (entry.sequence < 0) {
+                    entry.originalFuture.setException(e);
+                    return;
+                }
+                logger.warn("Unable to fire payload {}, retrying in {}ms: {}", entry.sequence, retryIntervalMillis, e.getMessage());
+                logger.trace("", e);
+                Thread.sleep(retryIntervalMillis);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void shutdown() {
+        shutdown = true;
+        executorService.shutdownNow();
+        try {
+            executorService.awaitTermination(retryIntervalMillis + 1000, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        JournalEntry entry;
+        while ((entry = firePayloadsQueue.poll()) != null) {
+            entry.originalFuture.cancel(true);
+        }
+
+        synchronized (segments) {
+            commit();
+            for (Segment segment : segments) {
+                segment.close();
+            }
+        }
+        try {
+            ackChannel.close();
+        } catch (IOException e) {
+            logger.trace("", e);
+        }
+    }
+
+    private static int checksum(byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length);
+        return (int) crc.getValue();
+    }
+
+    private final static class Segment {
+        private final File file;
+        private final FileChannel channel;
+        private MappedByteBuffer buffer;
+        private long lastSequence;
+        private boolean dirty;
+
+        private Segment(File file) throws IOException {
+            this.file = file;
+            this.channel = new RandomAccessFile(file, "rw").getChannel();
+        }
+
+        private void close() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                logger.trace("", e);
+            }
+            // The mapping stays valid until the buffer is garbage collected.
+            buffer = null;
+        }
+
+        private void delete() {
+            close();
+            if (!file.delete()) {
+                logger.warn("Unable to delete {}", file);
+            }
+        }
+    }
+
+    private final static class JournalEntry {
+        private final long sequence;
+        private final Object firePayload;
+        private final SettableFuture<Response> originalFuture;
+
+        private JournalEntry(long sequence, Object firePayload, SettableFuture<Response> originalFuture) {
+            this.sequence = sequence;
+            this.firePayload = firePayload;
+            this.originalFuture = originalFuture;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright 2015 Async-IO.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.wasync.serial;
+
+import com.google.common.util.concurrent.SettableFuture;
+import com.ning.http.client.Response;
+import org.atmosphere.wasync.Socket;
+
+/**
+ * A {@link SerializedFireStage} supporting {@link Socket#fire(Object, int)}. Payloads of the same priority are fired
+ * in order, payloads of a higher priority may overtake them.
+ */
+public interface PrioritizedSerializedFireStage extends SerializedFireStage {
+
+    /**
+     * Enqueue a payload with a priority, 0 being the highest.
+     *
+     * @param firePayload    the encoded payload
+     * @param originalFuture the future returned to the application
+     * @param priority       the priority
+     */
+    public void enqueue(Object firePayload, SettableFuture<Response> originalFuture, int priority);
+
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright 2015 Async-IO.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.wasync.serial;
+
+import com.google.common.util.concurrent.SettableFuture;
+import com.ning.http.client.Response;
+import org.atmosphere.wasync.util.Histogram;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link PrioritizedSerializedFireStage} made of one queue, or lane, per priority. The stage thread always fires the
+ * oldest payload of the highest priority lane, so control messages don't wait behind bulk data.
+ * <p/>
+ * To protect the low priority lanes from starvation, a lane that has been overtaken {@code starvationThreshold} times
+ * while holding payloads is served next, whatever its priority.
+ * <p/>
+ * The time between {@link #enqueue(Object, SettableFuture, int)} and the completion of the write is recorded per lane,
+ * see {@link #latencyHistogram(int)}. Binary payloads aren't aggregated.
+ */
+public class PriorityLaneSerializedFireStage extends AbstractSerializedFireStage implements PrioritizedSerializedFireStage {
+
+    private final ArrayDeque<LaneEntry>[] lanes;
+    private final int[] overtaken;
+    private final Histogram[] latencies;
+    private final int defaultPriority;
+    private final int starvationThreshold;
+    private final ExecutorService executorService;
+    private int size;
+    private boolean shutdown;
+
+    /**
+     * Create a stage with three lanes. {@link org.atmosphere.wasync.Socket#fire(Object)} uses the middle one.
+     */
+    public PriorityLaneSerializedFireStage() {
+        this(3, 1, 16);
+    }
+
+    /**
+     * Create a stage.
+     *
+     * @param lanes               the number of lanes. Priorities beyond the last lane use the last lane.
+     * @param defaultPriority     the priority of the payloads fired using {@link org.atmosphere.wasync.Socket#fire(Object)}
+     * @param starvationThreshold the number of times a lane holding payloads can be overtaken before being served
+     */
+    @SuppressWarnings("unchecked")
+    public PriorityLaneSerializedFireStage(int lanes, int defaultPriority, int starvationThreshold) {
+        if (lanes < 1 || starvationThreshold < 1) {
+            throw new IllegalArgumentException("Invalid lanes " + lanes + "/" + starvationThreshold);
+        }
+        this.lanes = new ArrayDeque[lanes];
+        this.overtaken = new int[lanes];
+        this.latencies = new Histogram[lanes];
+        for (int i = 0; i < lanes; i++) {
+            this.lanes[i] = new ArrayDeque<LaneEntry>();
+            this.latencies[i] = new Histogram();
+        }
+        this.defaultPriority = lane(defaultPriority);
+        this.starvationThreshold = starvationThreshold;
+
+        executorService = Executors.newSingleThreadExecutor();
+        executorService.execute(createFireTask());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void enqueue(Object firePayload, SettableFuture<Response> originalFuture) {
+        enqueue(firePayload, originalFuture, defaultPriority);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void enqueue(Object firePayload, SettableFuture<Response> originalFuture, int priority) {
+        int lane = lane(priority);
+        synchronized (lanes) {
+            if (shutdown) {
+                originalFuture.cancel(true);
+                return;
+            }
+            lanes[lane].addLast(new LaneEntry(firePayload, originalFuture, lane));
+            size++;
+            lanes.notify();
+        }
+    }
+
+    /**
+     * The time, in microseconds, between the enqueuing of a payload of the given priority and the completion of its write.
+     *
+     * @param priority the priority
+     * @return the latency of the lane
+     */
+    public Histogram latencyHistogram(int priority) {
+        return latencies[lane(priority)];
+    }
+
+    /**
+     * The number of payloads of the given priority waiting to be fired.
+     *
+     * @param priority the priority
+     * @return the number of payloads waiting to be fired
+     */
+    public int queueDepth(int priority) {
+        synchronized (lanes) {
+            return lanes[lane(priority)].size();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int queueDepth() {
+        synchronized (lanes) {
+            return size;
+        }
+    }
+
+    private int lane(int priority) {
+        return Math.min(Math.max(priority, 0), lanes.length - 1);
+    }
+
+    private LaneEntry take() throws InterruptedException {
+        synchronized (lanes) {
+            while (size == 0) {
+                lanes.wait();
+            }
+
+            int highest = 0;
+            while (lanes[highest].isEmpty()) {
+                highest++;
+            }
+            int chosen = highest;
+            for (int i = highest + 1; i < lanes.length; i++) {
+                if (!lanes[i].isEmpty() && overtaken[i] >= starvationThreshold
+                        && (chosen == highest || overtaken[i] > overtaken[chosen])) {
+                    chosen = i;
+                }
+            }
+
+            for (int i = chosen + 1; i < lanes.length; i++) {
+                if (!lanes[i].isEmpty()) {
+                    overtaken[i]++;
+                }
+            }
+            overtaken[chosen] = 0;
+            size--;
+            return lanes[chosen].pollFirst();
+        }
+    }
+
+    private Runnable createFireTask() {
+        return new Runnable() {
+            public void run() {
+                try {
+                    while (!Thread.currentThread().isInterrupted()) {
+                        LaneEntry entry = take();
+                        fireSynchronously(entry.firePayload, entry.originalFuture);
+                        latencies[entry.lane].record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - entry.enqueued));
+                    }
+                } catch (InterruptedException consumed) {
+                    // allow thread to exit
+                }
+            }
+        };
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void shutdown() {
+        executorService.shutdownNow();
+        synchronized (lanes) {
+            shutdown = true;
+            for (ArrayDeque<LaneEntry> lane : lanes) {
+                for (LaneEntry entry : lane) {
+                    entry.originalFuture.cancel(true);
+                }
+                lane.clear();
+            }
+            size = 0;
+        }
+    }
+
+    private final static class LaneEntry {
+        private final Object firePayload;
+        private final SettableFuture<Response> originalFuture;
+        private final int lane;
+        private final long enqueued = System.nanoTime();
+
+        private LaneEntry(Object firePayload, SettableFuture<Response> originalFuture, int lane) {
+            this.firePayload = firePayload;
+            this.originalFuture = originalFuture;
+            this.lane = lane;
+        }
+    }
+}
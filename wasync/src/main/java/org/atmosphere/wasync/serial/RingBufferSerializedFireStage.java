@@ -0,0 +1,360 @@
+/*
+ * Copyright 2015 Async-IO.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.wasync.serial;
+
+import com.google.common.util.concurrent.SettableFuture;
+import com.ning.http.client.Response;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A bounded {@link SerializedFireStage} based on a preallocated, lock-free ring buffer.
+ * <p/>
+ * Contrary to the {@link DefaultSerializedFireStage}, the number of pending payloads is bounded by the capacity of the
+ * ring, and enqueuing a payload doesn't allocate: the slots of the ring are re-used. When the ring is full, the
+ * {@link OverflowPolicy} decides if the caller of {@link org.atmosphere.wasync.Socket#fire(Object)} blocks, if the
+ * payload is rejected or if the oldest pending payload is dropped.
+ * <p/>
+ * Like the {@link DefaultSerializedFireStage}, every instance of this class spans its dedicated stage thread and
+ * consecutive binary payloads are aggregated, except over a websocket. How the stage thread waits for payloads is decided by the {@link WaitStrategy}.
+ */
+public class RingBufferSerializedFireStage extends AbstractSerializedFireStage {
+
+    /**
+     * What to do when a payload is enqueued and the ring is full.
+     */
+    public enum OverflowPolicy {
+        /**
+         * Block the caller until a slot gets available.
+         */
+        BLOCK,
+        /**
+         * Complete the payload's future with a {@link RejectedExecutionException}.
+         */
+        FAIL_FAST,
+        /**
+         * Cancel the future of the oldest pending payload and enqueue the new one.
+         */
+        DROP_OLDEST
+    }
+
+    /**
+     * How the stage thread waits when the ring is empty.
+     */
+    public enum WaitStrategy {
+        /**
+         * Park the stage thread until a payload is enqueued. Lowest CPU usage.
+         */
+        BLOCKING,
+        /**
+         * Spin, then yield, then park for short periods. Good compromise between latency and CPU usage.
+         */
+        SLEEPING,
+        /**
+         * Yield the CPU between attempts.
+         */
+        YIELDING,
+        /**
+         * Never release the CPU. Lowest latency, but the stage thread burns a core.
+         */
+        BUSY_SPIN
+    }
+
+    private final static int SPIN_TRIES = 100;
+    private final static long PARK_NANOS = 100000;
+
+    private final Slot[] slots;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tail = new AtomicLong();
+
+    private final OverflowPolicy overflowPolicy;
+    private final WaitStrategy waitStrategy;
+    private final int maxBinaryMessagesAggregationSize;
+
+    private final ExecutorService executorService;
+    private volatile Thread stageThread;
+    private volatile boolean stageThreadParked;
+    private volatile boolean shutdown;
+
+    public RingBufferSerializedFireStage() {
+        this(1024, OverflowPolicy.BLOCK, WaitStrategy.BLOCKING);
+    }
+
+    public RingBufferSerializedFireStage(int capacity, OverflowPolicy overflowPolicy, WaitStrategy waitStrategy) {
+        this(capacity, overflowPolicy, waitStrategy, 100);
+    }
+
+    /**
+     * Create a stage.
+     *
+     * @param capacity                        the number of slots, rounded up to the next power of two
+     * @param overflowPolicy                  the {@link OverflowPolicy}
+     * @param waitStrategy                    the {@link WaitStrategy}
+     * @param maxBinaryPayloadAggregationSize the maximum number of binary payloads aggregated in a single write
+     */
+    public RingBufferSerializedFireStage(int capacity, OverflowPolicy overflowPolicy, WaitStrategy waitStrategy, int maxBinaryPayloadAggregationSize) {
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("Invalid capacity " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+
+        this.mask = size - 1;
+        this.slots = new Slot[size];
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            slots[i] = new Slot();
+            sequences.set(i, i);
+        }
+        this.overflowPolicy = overflowPolicy;
+        this.waitStrategy = waitStrategy;
+        this.maxBinaryMessagesAggregationSize = maxBinaryPayloadAggregationSize;
+
+        executorService = Executors.newSingleThreadExecutor();
+        executorService.execute(createFireTask());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void enqueue(Object firePayload, SettableFuture<Response> originalFuture) {
+        while (!offer(firePayload, originalFuture)) {
+            if (shutdown) {
+                originalFuture.cancel(true);
+                return;
+            }
+
+            switch (overflowPolicy) {
+                case FAIL_FAST:
+                    originalFuture.setException(new RejectedExecutionException("SerializedFireStage is full: " + capacity() + " pending payloads"));
+                    return;
+                case DROP_OLDEST:
+                    dropOldest();
+                    break;
+                default:
+                    LockSupport.parkNanos(PARK_NANOS);
+                    break;
+            }
+        }
+
+        // Enqueued after shutdown() drained the ring: no thread will fire it.
+        if (shutdown) {
+            cancelPending();
+            return;
+        }
+
+        if (stageThreadParked) {
+            LockSupport.unpark(stageThread);
+        }
+    }
+
+    /**
+     * The number of payloads waiting to be fired.
+     *
+     * @return the number of payloads waiting to be fired.
+     */
+    @Override
+    public int queueDepth() {
+        long depth = tail.get() - head.get();
+        return (int) Math.max(0, Math.min(depth, slots.length));
+    }
+
+    /**
+     * The number of slots of the ring.
+     *
+     * @return the number of slots of the ring.
+     */
+    public int capacity() {
+        return slots.length;
+    }
+
+    private boolean offer(Object firePayload, SettableFuture<Response> originalFuture) {
+        for (; ; ) {
+            long position = tail.get();
+            int index = (int) position & mask;
+            long delta = sequences.get(index) - position;
+            if (delta == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    Slot slot = slots[index];
+                    slot.payload = firePayload;
+                    slot.future = originalFuture;
+                    sequences.lazySet(index, position + 1);
+                    return true;
+                }
+            } else if (delta < 0) {
+                // Full
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Move the oldest pending payload into {@code target} and release its slot.
+     */
+    private boolean poll(Slot target) {
+        for (; ; ) {
+            long position = head.get();
+            int index = (int) position & mask;
+            long delta = sequences.get(index) - (position + 1);
+            if (delta == 0) {
+                if (head.compareAndSet(position, position + 1)) {
+                    Slot slot = slots[index];
+                    target.payload = slot.payload;
+                    target.future = slot.future;
+                    slot.payload = null;
+                    slot.future = null;
+                    sequences.lazySet(index, position + mask + 1);
+                    return true;
+                }
+            } else if (delta < 0) {
+                // Empty
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Release the slot of the oldest pending payload, then cancel its future. The slot is reset in place, dropping
+     * doesn't allocate.
+     */
+    private boolean dropOldest() {
+        for (; ; ) {
+            long position = head.get();
+            int index = (int) position & mask;
+            long delta = sequences.get(index) - (position + 1);
+            if (delta == 0) {
+                if (head.compareAndSet(position, position + 1)) {
+                    Slot slot = slots[index];
+                    SettableFuture<Response> dropped = slot.future;
+                    slot.clear();
+                    sequences.lazySet(index, position + mask + 1);
+                    dropped.cancel(false);
+                    return true;
+                }
+            } else if (delta < 0) {
+                // Empty
+                return false;
+            }
+        }
+    }
+
+    private boolean isEmpty() {
+        return tail.get() == head.get();
+    }
+
+    private int waitForPayload(int idle) {
+        switch (waitStrategy) {
+            case BUSY_SPIN:
+                break;
+            case YIELDING:
+                Thread.yield();
+                break;
+            case SLEEPING:
+                if (idle < SPIN_TRIES) {
+                    Thread.yield();
+                } else {
+                    LockSupport.parkNanos(PARK_NANOS);
+                }
+                break;
+            default:
+                stageThreadParked = true;
+                // Re-check after publishing the flag, a producer may have missed it.
+                if (isEmpty()) {
+                    LockSupport.park(this);
+                }
+                stageThreadParked = false;
+                break;
+        }
+        return idle + 1;
+    }
+
+    private Runnable createFireTask() {
+        return new Runnable() {
+            public void run() {
+                stageThread = Thread.currentThread();
+                Slot entry = new Slot();
+                List<byte[]> aggregatedPayloads = new ArrayList<byte[]>(maxBinaryMessagesAggregationSize);
+                List<SettableFuture<Response>> aggregatedFutures = new ArrayList<SettableFuture<Response>>(maxBinaryMessagesAggregationSize);
+                int idle = 0;
+
+                while (!Thread.currentThread().isInterrupted()) {
+                    if (!poll(entry)) {
+                        idle = waitForPayload(idle);
+                        continue;
+                    }
+                    idle = 0;
+
+                    if (byte[].class.isAssignableFrom(entry.payload.getClass()) && canAggregate()) {
+                        do {
+                            aggregatedPayloads.add((byte[]) entry.payload);
+                            aggregatedFutures.add(entry.future);
+                            entry.clear();
+                        } while (aggregatedPayloads.size() < maxBinaryMessagesAggregationSize
+                                && poll(entry)
+                                && byte[].class.isAssignableFrom(entry.payload.getClass()));
+
+                        fireSynchronously(aggregatedPayloads, aggregatedFutures);
+                        aggregatedPayloads.clear();
+                        aggregatedFutures.clear();
+                    }
+
+                    // A non binary payload may have ended the aggregation.
+                    if (entry.payload != null) {
+                        fireSynchronously(entry.payload, entry.future);
+                        entry.clear();
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void shutdown() {
+        shutdown = true;
+        executorService.shutdownNow();
+        cancelPending();
+    }
+
+    private void cancelPending() {
+        while (dropOldest()) {
+        }
+    }
+
+    private final static class Slot {
+        private Object payload;
+        private SettableFuture<Response> future;
+
+        private void clear() {
+            payload = null;
+            future = null;
+        }
+    }
+}
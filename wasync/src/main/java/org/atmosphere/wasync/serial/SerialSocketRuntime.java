@@ -15,7 +15,9 @@
  */
 package org.atmosphere.wasync.serial;
 
+import com.google.common.util.concurrent.MoreExecutors;
 import com.google.common.util.concurrent.SettableFuture;
+import com.ning.http.client.ListenableFuture;
 import com.ning.http.client.Response;
 import org.atmosphere.wasync.FunctionWrapper;
 import org.atmosphere.wasync.Future;
@@ -23,16 +25,22 @@ import org.atmosphere.wasync.Options;
 import org.atmosphere.wasync.Request;
 import org.atmosphere.wasync.Transport;
 import org.atmosphere.wasync.impl.DefaultFuture;
+import org.atmosphere.wasync.impl.RateShaper;
 import org.atmosphere.wasync.impl.SocketRuntime;
 import org.atmosphere.wasync.transport.WebSocketTransport;
+import org.atmosphere.wasync.util.FileRegion;
 import org.atmosphere.wasync.util.FutureProxy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
 
 /**
  * Serial extension for the {@link SocketRuntime}
@@ -51,33 +59,152 @@ public class SerialSocketRuntime extends SocketRuntime {
 
     @Override
     public Future write(Request request, Object data) throws IOException {
+        return serialWrite(request, data, null);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * The priority is honored if the {@link SerializedFireStage} is a {@link PrioritizedSerializedFireStage}.
+     */
+    @Override
+    public Future write(Request request, Object data, int priority) throws IOException {
+        return serialWrite(request, data, priority);
+    }
+
+    private Future serialWrite(final Request request, final Object data, final Integer priority) throws IOException {
 
-        if (WebSocketTransport.class.isAssignableFrom(transport.getClass())) {
-            Object object = invokeEncoder(request.encoders(), data);
+        boolean webSocket = WebSocketTransport.class.isAssignableFrom(transport.getClass());
+        if (webSocket && serializedSocket.getSerializedFireStage() == null) {
+            final Object object = invokeEncoder(request.encoders(), data);
             rootFuture.done();
+            // Completed by the write if the payload is queued by the rate policy
+            final SettableFuture<Response> queued = SettableFuture.create();
+            if (!shape(object, new RateShaper.Write() {
+                @Override
+                public void run() {
+                    try {
+                        webSocketWrite(request, object, data);
+                        queued.set(null);
+                    } catch (Exception e) {
+                        logger.error("", e);
+                        queued.setException(e);
+                    }
+                }
+
+                @Override
+                public void discard(IOException e) {
+                    queued.setException(e);
+                }
+            })) {
+                return new FutureProxy<SettableFuture<Response>>(serializedSocket, queued);
+            }
             webSocketWrite(request, object, data);
         } else {
+            // Websocket writes go through the stage too, so concurrent fire calls can't interleave.
             // Execute encoder
-            Object encodedPayload = invokeEncoder(request.encoders(), data);
+            final Object encodedPayload = invokeEncoder(request.encoders(), data);
             if (!(InputStream.class.isAssignableFrom(encodedPayload.getClass())
                     || Reader.class.isAssignableFrom(encodedPayload.getClass())
                     || String.class.isAssignableFrom(encodedPayload.getClass())
                     || byte[].class.isAssignableFrom(encodedPayload.getClass())
+                    || File.class.isAssignableFrom(encodedPayload.getClass())
+                    || Path.class.isAssignableFrom(encodedPayload.getClass())
+                    || FileChannel.class.isAssignableFrom(encodedPayload.getClass())
+                    || FileRegion.class.isAssignableFrom(encodedPayload.getClass())
             )) {
                 throw new IllegalStateException("No Encoder for " + data);
             }
 
-            FutureProxy<?> f;
-            if (serializedSocket.getSerializedFireStage() != null) {
-                final SettableFuture<Response> future = SettableFuture.create();
-                serializedSocket.getSerializedFireStage().enqueue(encodedPayload, future);
-                f = new FutureProxy(serializedSocket, future);
+            final SerializedFireStage stage = serializedSocket.getSerializedFireStage();
+            final SettableFuture<Response> future = SettableFuture.create();
+            if (metrics.enabled()) {
+                final long fired = System.nanoTime();
+                future.addListener(new Runnable() {
+                    @Override
+                    public void run() {
+                        metrics.fireCompleted(fired);
+                    }
+                }, MoreExecutors.sameThreadExecutor());
+            }
+            if (stage != null) {
+                RateShaper.Write enqueue = new RateShaper.Write() {
+                    @Override
+                    public void run() {
+                        if (priority != null && stage instanceof PrioritizedSerializedFireStage) {
+                            PrioritizedSerializedFireStage.class.cast(stage).enqueue(encodedPayload, future, priority);
+                        } else {
+                            stage.enqueue(encodedPayload, future);
+                        }
+                    }
+
+                    @Override
+                    public void discard(IOException e) {
+                        future.setException(e);
+                    }
+                };
+                if (shape(encodedPayload, enqueue)) {
+                    enqueue.run();
+                }
             } else {
-                f = new FutureProxy(serializedSocket, serializedSocket.directWrite(encodedPayload));
+                RateShaper.Write write = new RateShaper.Write() {
+                    @Override
+                    public void run() {
+                        try {
+                            complete(future, serializedSocket.directWrite(encodedPayload));
+                        } catch (IOException e) {
+                            future.setException(e);
+                        }
+                    }
+
+                    @Override
+                    public void discard(IOException e) {
+                        future.setException(e);
+                    }
+                };
+                if (shape(encodedPayload, write)) {
+                    complete(future, serializedSocket.directWrite(encodedPayload));
+                }
+            }
+
+            FutureProxy<?> f = new FutureProxy(serializedSocket, future);
+            // The websocket's future tracks the connection, not the writes.
+            if (!webSocket) {
+                transport.future(f);
             }
-            transport.future(f);
             return f;
         }
         return rootFuture.finishOrThrowException();
     }
+
+    /**
+     * Complete the future returned to the application with the server's response.
+     */
+    private static void complete(final SettableFuture<Response> future, final ListenableFuture<Response> response) {
+        response.addListener(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    future.set(response.get());
+                } catch (ExecutionException e) {
+                    future.setException(e.getCause());
+                } catch (Exception e) {
+                    future.setException(e);
+                }
+            }
+        }, MoreExecutors.sameThreadExecutor());
+    }
+
+    /**
+     * Write the payload, adding the {@link SerializedSocket#SEQUENCE_HEADER} to the request.
+     *
+     * @param request        the {@link Request}
+     * @param encodedPayload the encoded payload
+     * @param sequence       the sequence number of the payload
+     * @return the {@link ListenableFuture} of the write operation
+     * @throws IOException
+     */
+    public ListenableFuture<Response> httpWrite(Request request, Object encodedPayload, long sequence) throws IOException {
+        return httpWrite(configureAHC(request).addHeader(SerializedSocket.SEQUENCE_HEADER, String.valueOf(sequence)), encodedPayload, encodedPayload);
+    }
 }
\ No newline at end of file
@@ -34,7 +34,12 @@ import org.atmosphere.wasync.impl.AtmosphereRequest.AtmosphereRequestBuilder;
  * <p/>
  * {@code SerializedClient} instances can be configured by means of a {@link SerializedFireStage} in deciding on the exact
  * staging semantics and the (non-functional) quality properties of a supporting stage. The default implementation provided is
- * {@link DefaultSerializedFireStage}.
+ * {@link DefaultSerializedFireStage}. A bounded stage, which applies back pressure to the callers of {@link Socket#fire(Object)},
+ * is provided by {@link RingBufferSerializedFireStage}. When many sockets are opened, {@link SharedPoolSerializedFireStage}
+ * shares a small pool of threads between all of them. On high latency links, {@link WindowedSerializedFireStage}
+ * pipelines several requests and relies on the server to restore their order. {@link JournaledSerializedFireStage}
+ * journals payloads on disk so they survive restarts. {@link PriorityLaneSerializedFireStage} supports
+ * {@link Socket#fire(Object, int)}, firing high priority payloads first.
  * <p/>
  *
  * @author Christian Bach
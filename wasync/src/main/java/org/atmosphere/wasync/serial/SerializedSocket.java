@@ -17,17 +17,24 @@ package org.atmosphere.wasync.serial;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 
 import org.atmosphere.wasync.FunctionWrapper;
+import org.atmosphere.wasync.Future;
 import org.atmosphere.wasync.Options;
 import org.atmosphere.wasync.Socket;
 import org.atmosphere.wasync.impl.ClientUtil;
 import org.atmosphere.wasync.impl.DefaultFuture;
 import org.atmosphere.wasync.impl.DefaultSocket;
 import org.atmosphere.wasync.impl.SocketRuntime;
+import org.atmosphere.wasync.transport.WebSocketTransport;
+import org.atmosphere.wasync.util.FutureProxy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
 import com.ning.http.client.AsyncHttpClient;
 import com.ning.http.client.ListenableFuture;
 import com.ning.http.client.Response;
@@ -46,6 +53,11 @@ public class SerializedSocket extends DefaultSocket {
 
     private final static Logger logger = LoggerFactory.getLogger(SerializedSocket.class);
 
+    /**
+     * The header carrying the sequence number of a payload written using {@link #directWrite(Object, long)}.
+     */
+    public final static String SEQUENCE_HEADER = "X-wAsync-Sequence";
+
     private SerializedFireStage serializedFireStage;
     private AsyncHttpClient asyncHttpClient;
     
@@ -74,7 +86,84 @@ public class SerializedSocket extends DefaultSocket {
     public ListenableFuture<Response> directWrite(Object encodedPayload) throws IOException {
         return socketRuntime.httpWrite(request, encodedPayload, encodedPayload);
     }
+
+    /**
+     * Write the payload with a {@link #SEQUENCE_HEADER}, allowing the server to restore the order of payloads written
+     * concurrently.
+     *
+     * @param encodedPayload the encoded payload
+     * @param sequence       the sequence number of the payload
+     * @return the {@link ListenableFuture} of the write operation
+     * @throws IOException
+     */
+    public ListenableFuture<Response> directWrite(Object encodedPayload, long sequence) throws IOException {
+        return SerialSocketRuntime.class.cast(socketRuntime).httpWrite(request, encodedPayload, sequence);
+    }
     
+    /**
+     * Return true if the socket is connected using the {@link org.atmosphere.wasync.Request.TRANSPORT#WEBSOCKET}
+     * transport, in which case payloads must be written using {@link #webSocketWrite(Object)}.
+     *
+     * @return true if the socket uses a websocket
+     */
+    public boolean isWebSocket() {
+        return transportInUse != null && WebSocketTransport.class.isAssignableFrom(transportInUse.getClass());
+    }
+
+    /**
+     * Write the payload as a websocket message. The websocket transport silently drops the messages written while it
+     * is closed, so the write fails unless the websocket is open.
+     *
+     * @param encodedPayload the encoded payload
+     * @throws IOException if the websocket is not open, or the payload can't be written
+     */
+    public void webSocketWrite(Object encodedPayload) throws IOException {
+        if (!WebSocketTransport.class.cast(transportInUse).isOpen()) {
+            throw new IOException("WebSocket is not open, unable to write " + encodedPayload);
+        }
+        socketRuntime.webSocketWrite(request, encodedPayload, encodedPayload);
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * A {@link JournaledSerializedFireStage} retries its payloads until the socket reconnects.
+     */
+    @Override
+    protected boolean keepsMessagesWhileClosed() {
+        return serializedFireStage instanceof JournaledSerializedFireStage;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * The writes of a {@link SerialSocketRuntime} are done once their {@link SerializedFireStage} has written them.
+     */
+    @Override
+    protected void completeOnceWritten(Future written, final CompletableFuture<Void> future) {
+        Object proxied = written instanceof FutureProxy ? ((FutureProxy<?>) written).proxiedFuture() : null;
+        if (!(proxied instanceof SettableFuture)) {
+            super.completeOnceWritten(written, future);
+            return;
+        }
+
+        final SettableFuture<?> pending = (SettableFuture<?>) proxied;
+        pending.addListener(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    pending.get();
+                    future.complete(null);
+                } catch (ExecutionException e) {
+                    future.completeExceptionally(e.getCause());
+                } catch (Exception e) {
+                    // Cancelled
+                    future.completeExceptionally(e);
+                }
+            }
+        }, MoreExecutors.sameThreadExecutor());
+    }
+
     /**
      * {@inheritDoc}
      */
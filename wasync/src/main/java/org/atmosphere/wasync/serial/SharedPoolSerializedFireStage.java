@@ -0,0 +1,209 @@
+/*
+ * Copyright 2015 Async-IO.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.wasync.serial;
+
+import com.google.common.util.concurrent.SettableFuture;
+import com.ning.http.client.Response;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A {@link SerializedFireStage} that doesn't own a thread. Payloads are written by a small pool of threads shared
+ * between all the {@link SerializedSocket}s, so the number of threads doesn't depend on the number of sockets.
+ * <p/>
+ * Every instance of this class has its own queue, which is scheduled on the pool only when it isn't empty. A single
+ * write per socket is in flight at any moment in time, and the next payload is written once the server's response has
+ * been received, which guarantees the {@link org.atmosphere.wasync.Socket#fire(Object)} ordering. Pool threads never
+ * block waiting for a response.
+ * <p/>
+ * Like the {@link DefaultSerializedFireStage}, consecutive binary payloads are aggregated, except over a websocket.
+ */
+public class SharedPoolSerializedFireStage extends AbstractSerializedFireStage {
+
+    private static Executor defaultExecutor;
+
+    private final Executor executor;
+    private final int maxBinaryMessagesAggregationSize;
+    private final Queue<FirePayloadEntry> firePayloadsQueue = new ConcurrentLinkedQueue<FirePayloadEntry>();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final Runnable fireTask;
+    private final Runnable scheduleTask;
+    private volatile boolean shutdown;
+
+    /**
+     * Create a stage using the default pool, which contains one daemon thread per available processor.
+     */
+    public SharedPoolSerializedFireStage() {
+        this(defaultExecutor(), 100);
+    }
+
+    /**
+     * Create a stage using the {@code executor}. The {@code executor} is never shut down by this class.
+     *
+     * @param executor                        an {@link Executor} shared between stages
+     * @param maxBinaryPayloadAggregationSize the maximum number of binary payloads aggregated in a single write
+     */
+    public SharedPoolSerializedFireStage(Executor executor, int maxBinaryPayloadAggregationSize) {
+        this.executor = executor;
+        this.maxBinaryMessagesAggregationSize = maxBinaryPayloadAggregationSize;
+        this.fireTask = createFireTask();
+        this.scheduleTask = new Runnable() {
+            @Override
+            public void run() {
+                scheduled.set(false);
+                schedule();
+            }
+        };
+    }
+
+    /**
+     * Return the pool used by default, creating it if needed. The pool is never handed out, so it can't be shut down.
+     *
+     * @return the pool used by default
+     */
+    private synchronized static Executor defaultExecutor() {
+        if (defaultExecutor == null) {
+            defaultExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+                private final AtomicInteger count = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "wAsync-SerializedFireStage-" + count.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+        return defaultExecutor;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void enqueue(Object firePayload, SettableFuture<Response> originalFuture) {
+        if (shutdown) {
+            originalFuture.cancel(true);
+            return;
+        }
+        firePayloadsQueue.add(new FirePayloadEntry(firePayload, originalFuture));
+        if (shutdown) {
+            // shutdown() may have drained the queue before the payload was added.
+            if (scheduled.compareAndSet(false, true)) {
+                cancelPending();
+            }
+            return;
+        }
+        schedule();
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * The queue is traversed to be counted, this method is meant for monitoring.
+     */
+    @Override
+    public int queueDepth() {
+        return firePayloadsQueue.size();
+    }
+
+    private void schedule() {
+        if (!firePayloadsQueue.isEmpty() && scheduled.compareAndSet(false, true)) {
+            executor.execute(fireTask);
+        }
+    }
+
+    private Runnable createFireTask() {
+        return new Runnable() {
+            public void run() {
+                if (shutdown) {
+                    cancelPending();
+                    return;
+                }
+
+                FirePayloadEntry entry = firePayloadsQueue.poll();
+                if (entry == null) {
+                    scheduleTask.run();
+                    return;
+                }
+
+                if (byte[].class.isAssignableFrom(entry.firePayload.getClass()) && canAggregate()) {
+                    List<byte[]> payloads = new ArrayList<byte[]>();
+                    List<SettableFuture<Response>> futures = new ArrayList<SettableFuture<Response>>();
+                    payloads.add((byte[]) entry.firePayload);
+                    futures.add(entry.originalFuture);
+
+                    // This task is the only consumer of the queue, so peek then poll is safe.
+                    FirePayloadEntry next;
+                    while (payloads.size() < maxBinaryMessagesAggregationSize
+                            && (next = firePayloadsQueue.peek()) != null
+                            && byte[].class.isAssignableFrom(next.firePayload.getClass())) {
+                        firePayloadsQueue.poll();
+                        payloads.add((byte[]) next.firePayload);
+                        futures.add(next.originalFuture);
+                    }
+                    fireAsynchronously(payloads.size() == 1 ? payloads.get(0) : aggregate(payloads), futures, scheduleTask, executor);
+                } else {
+                    fireAsynchronously(entry.firePayload, Collections.singletonList(entry.originalFuture), scheduleTask, executor);
+                }
+            }
+        };
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void shutdown() {
+        shutdown = true;
+        // Otherwise, the scheduled task will cancel the pending payloads.
+        if (scheduled.compareAndSet(false, true)) {
+            cancelPending();
+        }
+    }
+
+    /**
+     * Cancel the pending payloads. The caller owns {@code scheduled}, which is released once done: payloads enqueued
+     * meanwhile are cancelled by the task it schedules.
+     */
+    private void cancelPending() {
+        FirePayloadEntry entry;
+        while ((entry = firePayloadsQueue.poll()) != null) {
+            entry.originalFuture.cancel(true);
+        }
+        scheduleTask.run();
+    }
+
+    private final static class FirePayloadEntry {
+
+        private final Object firePayload;
+        private final SettableFuture<Response> originalFuture;
+
+        private FirePayloadEntry(Object firePayload, SettableFuture<Response> originalFuture) {
+            this.firePayload = firePayload;
+            this.originalFuture = originalFuture;
+        }
+    }
+}
@@ -0,0 +1,270 @@
+/*
+ * Copyright 2015 Async-IO.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.wasync.serial;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import com.ning.http.client.ListenableFuture;
+import com.ning.http.client.Response;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+
+/**
+ * A {@link SerializedFireStage} that pipelines writes: up to {@code window} requests are in flight at any moment in
+ * time, using as many connections of the {@link com.ning.http.client.AsyncHttpClient} pool. With a single request in
+ * flight, the throughput of a socket is bounded by the round trip time.
+ * <p/>
+ * Requests may be received out of order, so every payload is written with a {@link SerializedSocket#SEQUENCE_HEADER}
+ * containing a monotonically increasing sequence number, starting at 0 for every instance of this class. The server
+ * must use it to restore the order of the payloads.
+ * <p/>
+ * The futures returned by {@link org.atmosphere.wasync.Socket#fire(Object)} are always completed in fire order. A slot
+ * of the window is released when the future of its payload is completed, so a slow response holds back the following
+ * ones instead of letting the number of pending responses grow. The futures are completed outside of any lock, by one
+ * thread at a time.
+ * <p/>
+ * Binary payloads aren't aggregated.
+ */
+public class WindowedSerializedFireStage extends AbstractSerializedFireStage {
+
+    private final Semaphore window;
+    private final BlockingQueue<FirePayloadEntry> firePayloadsQueue = new LinkedBlockingQueue<FirePayloadEntry>();
+    // Guarded by inFlights
+    private final Deque<InFlight> inFlights = new ArrayDeque<InFlight>();
+    private final Deque<InFlight> completable = new ArrayDeque<InFlight>();
+    private boolean completing;
+    private final ExecutorService executorService;
+    private volatile boolean shutdown;
+    private long sequence;
+
+    public WindowedSerializedFireStage() {
+        this(8);
+    }
+
+    /**
+     * Create a stage.
+     *
+     * @param window the maximum number of requests in flight
+     */
+    public WindowedSerializedFireStage(int window) {
+        if (window < 1) {
+            throw new IllegalArgumentException("Invalid window " + window);
+        }
+        this.window = new Semaphore(window);
+        executorService = Executors.newSingleThreadExecutor();
+        executorService.execute(createFireTask());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void enqueue(Object firePayload, SettableFuture<Response> originalFuture) {
+        if (shutdown) {
+            originalFuture.cancel(true);
+            return;
+        }
+        firePayloadsQueue.add(new FirePayloadEntry(firePayload, originalFuture));
+    }
+
+    /**
+     * The number of requests in flight, or whose future is waiting for a previous one to be completed.
+     *
+     * @return the number of requests in flight
+     */
+    public int inFlight() {
+        synchronized (inFlights) {
+            return inFlights.size();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int queueDepth() {
+        return firePayloadsQueue.size();
+    }
+
+    /**
+     * Write the payload with its sequence number.
+     *
+     * @param firePayload the encoded payload
+     * @param sequence    the sequence number of the payload
+     * @return the {@link ListenableFuture} of the write operation
+     * @throws IOException
+     */
+    protected ListenableFuture<Response> directWrite(Object firePayload, long sequence) throws IOException {
+        return socket.directWrite(firePayload, sequence);
+    }
+
+    private Runnable createFireTask() {
+        return new Runnable() {
+            public void run() {
+                FirePayloadEntry entry = null;
+                try {
+                    while (!Thread.currentThread().isInterrupted()) {
+                        entry = firePayloadsQueue.take();
+                        window.acquire();
+
+                        InFlight inFlight = new InFlight(entry.originalFuture);
+                        synchronized (inFlights) {
+                            if (shutdown) {
+                                entry.originalFuture.cancel(true);
+                                return;
+                            }
+                            inFlights.addLast(inFlight);
+                        }
+                        write(entry.firePayload, sequence++, inFlight);
+                        entry = null;
+                    }
+                } catch (InterruptedException consumed) {
+                    // allow thread to exit
+                    if (entry != null) {
+                        entry.originalFuture.cancel(true);
+                    }
+                }
+            }
+        };
+    }
+
+    private void write(Object firePayload, long sequence, final InFlight inFlight) {
+        final ListenableFuture<Response> future;
+        try {
+            if (socket.isWebSocket()) {
+                // A websocket preserves the order, there is nothing to pipeline.
+                socket.webSocketWrite(firePayload);
+                completed(inFlight, null, null);
+                return;
+            }
+            future = directWrite(firePayload, sequence);
+            inFlight.future = future;
+            if (shutdown) {
+                future.cancel(true);
+            }
+        } catch (Exception e) {
+            completed(inFlight, null, e);
+            return;
+        }
+
+        future.addListener(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    completed(inFlight, future.get(), null);
+                } catch (Exception e) {
+                    completed(inFlight, null, e);
+                }
+            }
+        }, MoreExecutors.sameThreadExecutor());
+    }
+
+    /**
+     * Complete, in fire order, the futures of all the requests whose predecessors have been completed. The futures
+     * are completed after releasing the lock, by a single thread at a time so the order is kept.
+     */
+    private void completed(InFlight inFlight, Response response, Exception exception) {
+        synchronized (inFlights) {
+            inFlight.done = true;
+            inFlight.response = response;
+            inFlight.exception = exception;
+
+            while (!inFlights.isEmpty() && inFlights.peekFirst().done) {
+                completable.addLast(inFlights.pollFirst());
+            }
+            if (completing) {
+                // The completing thread will complete them
+                return;
+            }
+            completing = true;
+        }
+
+        while (true) {
+            InFlight head;
+            synchronized (inFlights) {
+                head = completable.pollFirst();
+                if (head == null) {
+                    completing = false;
+                    return;
+                }
+            }
+            if (head.exception != null) {
+                head.originalFuture.setException(head.exception);
+            } else {
+                head.originalFuture.set(head.response);
+            }
+            window.release();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void shutdown() {
+        List<InFlight> cancelled;
+        synchronized (inFlights) {
+            shutdown = true;
+            cancelled = new ArrayList<InFlight>(inFlights);
+            inFlights.clear();
+        }
+        executorService.shutdownNow();
+
+        for (InFlight inFlight : cancelled) {
+            inFlight.originalFuture.cancel(true);
+            ListenableFuture<Response> future = inFlight.future;
+            if (future != null) {
+                future.cancel(true);
+            }
+        }
+        FirePayloadEntry entry;
+        while ((entry = firePayloadsQueue.poll()) != null) {
+            entry.originalFuture.cancel(true);
+        }
+    }
+
+    private final static class InFlight {
+        private final SettableFuture<Response> originalFuture;
+        private volatile ListenableFuture<Response> future;
+        private boolean done;
+        private Response response;
+        private Exception exception;
+
+        private InFlight(SettableFuture<Response> originalFuture) {
+            this.originalFuture = originalFuture;
+        }
+    }
+
+    private final static class FirePayloadEntry {
+
+        private final Object firePayload;
+        private final SettableFuture<Response> originalFuture;
+
+        private FirePayloadEntry(Object firePayload, SettableFuture<Response> originalFuture) {
+            this.firePayload = firePayload;
+            this.originalFuture = originalFuture;
+        }
+    }
+}
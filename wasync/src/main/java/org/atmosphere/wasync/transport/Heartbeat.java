@@ -0,0 +1,201 @@
+/*
+ * Copyright 2015 Async-IO.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.wasync.transport;
+
+import java.nio.charset.Charset;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Recognize the heartbeats a server writes to keep a connection alive, and track the liveness of the connection.
+ * <p/>
+ * A heartbeat is a frame made of whitespace only, or of a marker surrounded by whitespace: the configured
+ * {@link org.atmosphere.wasync.OptionsBuilder#heartbeatMarker(String)} and, when the Atmosphere protocol is enabled,
+ * {@link #ATMOSPHERE_PADDING}. Checking a frame doesn't allocate, so heartbeats are dropped before being decoded.
+ * <p/>
+ * A {@link Heartbeat} is updated by the thread reading the connection and can be read by any thread.
+ */
+public class Heartbeat {
+
+    /**
+     * The padding written by Atmosphere's HeartbeatInterceptor.
+     */
+    public final static String ATMOSPHERE_PADDING = "X";
+
+    private final static Charset UTF8 = Charset.forName("UTF-8");
+
+    private final String marker;
+    private final String padding;
+    private final byte[] markerBytes;
+    private final byte[] paddingBytes;
+    private volatile long lastReceived = System.nanoTime();
+    private volatile long lastHeartbeat;
+    private volatile long heartbeats;
+
+    /**
+     * Create a {@link Heartbeat}.
+     *
+     * @param marker          the heartbeat marker, or null
+     * @param protocolEnabled true if the Atmosphere protocol is enabled
+     */
+    public Heartbeat(String marker, boolean protocolEnabled) {
+        this.marker = marker == null || marker.trim().isEmpty() ? null : marker.trim();
+        this.padding = protocolEnabled && !ATMOSPHERE_PADDING.equals(this.marker) ? ATMOSPHERE_PADDING : null;
+        this.markerBytes = this.marker == null ? null : this.marker.getBytes(UTF8);
+        this.paddingBytes = padding == null ? null : padding.getBytes(UTF8);
+    }
+
+    /**
+     * Record a frame received from the server.
+     *
+     * @param frame the frame
+     * @return true if the frame is empty or a heartbeat, and must not be decoded
+     */
+    public boolean received(byte[] frame) {
+        return frame.length == 0 || received(isHeartbeat(frame));
+    }
+
+    /**
+     * Record a frame received from the server.
+     *
+     * @param frame the frame
+     * @return true if the frame is empty or a heartbeat, and must not be decoded
+     */
+    public boolean received(String frame) {
+        return frame.isEmpty() || received(isHeartbeat(frame));
+    }
+
+    /**
+     * Return true if the frame is a heartbeat.
+     *
+     * @param frame the frame
+     * @return true if the frame is a heartbeat
+     */
+    public boolean isHeartbeat(byte[] frame) {
+        int start = 0;
+        int end = frame.length;
+        while (start < end && whiteSpace(frame[start])) {
+            start++;
+        }
+        if (start == end) {
+            return frame.length > 0;
+        }
+        while (whiteSpace(frame[end - 1])) {
+            end--;
+        }
+        return matches(frame, start, end, markerBytes) || matches(frame, start, end, paddingBytes);
+    }
+
+    /**
+     * Return true if the frame is a heartbeat.
+     *
+     * @param frame the frame
+     * @return true if the frame is a heartbeat
+     */
+    public boolean isHeartbeat(String frame) {
+        int start = 0;
+        int end = frame.length();
+        while (start < end && whiteSpace(frame.charAt(start))) {
+            start++;
+        }
+        if (start == end) {
+            return frame.length() > 0;
+        }
+        while (whiteSpace(frame.charAt(end - 1))) {
+            end--;
+        }
+        return matches(frame, start, end, marker) || matches(frame, start, end, padding);
+    }
+
+    /**
+     * The {@link System#nanoTime()} at which the last frame, heartbeat or message, was received.
+     *
+     * @return the arrival time of the last frame
+     */
+    public long lastReceived() {
+        return lastReceived;
+    }
+
+    /**
+     * The time elapsed since the last frame, heartbeat or message, was received.
+     *
+     * @param unit the {@link TimeUnit} of the returned value
+     * @return the time elapsed since the last frame was received
+     */
+    public long idle(TimeUnit unit) {
+        return unit.convert(System.nanoTime() - lastReceived, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Return true if a frame, heartbeat or message, has been received within the timeout.
+     *
+     * @param timeout the timeout
+     * @param unit    the {@link TimeUnit} of the timeout
+     * @return true if the connection is alive
+     */
+    public boolean isAlive(long timeout, TimeUnit unit) {
+        return System.nanoTime() - lastReceived <= unit.toNanos(timeout);
+    }
+
+    /**
+     * The time elapsed since the last heartbeat was received.
+     *
+     * @param unit the {@link TimeUnit} of the returned value
+     * @return the time elapsed since the last heartbeat, -1 if no heartbeat has been received
+     */
+    public long sinceLastHeartbeat(TimeUnit unit) {
+        return heartbeats == 0 ? -1 : unit.convert(System.nanoTime() - lastHeartbeat, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * The number of heartbeats received.
+     *
+     * @return the number of heartbeats received
+     */
+    public long heartbeats() {
+        return heartbeats;
+    }
+
+    private boolean received(boolean heartbeat) {
+        long now = System.nanoTime();
+        lastReceived = now;
+        if (heartbeat) {
+            lastHeartbeat = now;
+            // Single writer, the thread reading the connection.
+            heartbeats++;
+        }
+        return heartbeat;
+    }
+
+    private static boolean whiteSpace(int c) {
+        return c == ' ' || c == '\n' || c == '\r' || c == '\t';
+    }
+
+    private static boolean matches(byte[] frame, int start, int end, byte[] marker) {
+        if (marker == null || end - start != marker.length) {
+            return false;
+        }
+        for (int i = 0; i < marker.length; i++) {
+            if (frame[start + i] != marker[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean matches(String frame, int start, int end, String marker) {
+        return marker != null && end - start == marker.length() && frame.regionMatches(start, marker, 0, marker.length());
+    }
+}
@@ -24,8 +24,8 @@ import org.atmosphere.wasync.FunctionWrapper;
 import org.atmosphere.wasync.Options;
 import org.atmosphere.wasync.Request;
 import org.atmosphere.wasync.Socket;
-import org.atmosphere.wasync.util.Utils;
 
+import java.io.IOException;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -85,34 +85,50 @@ public class LongPollingTransport extends StreamTransport {
     @Override
     public STATE onBodyPartReceived(HttpResponseBodyPart bodyPart) throws Exception {
         handshakeOccured.set(true);
+        byte[] payload = bodyPart.getBodyPartBytes();
+        lifecycle.received(name());
+        if (heartbeat.received(payload)) {
+            if (!protocolEnabled || protocolReceived) {
+                unlockFuture();
+            }
+            return AsyncHandler.STATE.CONTINUE;
+        }
+
         if (isBinary) {
-            byte[] payload = bodyPart.getBodyPartBytes();
             if (protocolEnabled && !protocolReceived) {
-                if (!Utils.whiteSpace(payload)) {
-                    TransportsUtil.invokeFunction(decoders, functions, payload.getClass(), payload, MESSAGE.name(), resolver);
-                    protocolReceived = true;
-                }
+                TransportsUtil.invokeFunction(MESSAGE, decoders, functions, payload.getClass(), payload, MESSAGE.name(), resolver, metrics, heartbeat.lastReceived());
+                protocolReceived = true;
+                handshakeReceived();
                 return AsyncHandler.STATE.CONTINUE;
-            } else if (!Utils.whiteSpace(payload)) {
-                TransportsUtil.invokeFunction(decoders, functions, payload.getClass(), payload, MESSAGE.name(), resolver);
             }
+            TransportsUtil.invokeFunction(MESSAGE, decoders, functions, payload.getClass(), payload, MESSAGE.name(), resolver, metrics, heartbeat.lastReceived());
             unlockFuture();
         } else {
-            String m = new String(bodyPart.getBodyPartBytes(), charSet).trim();
+            String m = new String(payload, charSet).trim();
             if (protocolEnabled && !protocolReceived) {
                 if (m.length() > 0) {
-                    TransportsUtil.invokeFunction(decoders, functions, m.getClass(), m, MESSAGE.name(), resolver);
+                    TransportsUtil.invokeFunction(MESSAGE, decoders, functions, m.getClass(), m, MESSAGE.name(), resolver, metrics, heartbeat.lastReceived());
                     protocolReceived = true;
+                    handshakeReceived();
                 }
                 return AsyncHandler.STATE.CONTINUE;
             } else if (m.length() > 0) {
-                TransportsUtil.invokeFunction(decoders, functions, m.getClass(), m, MESSAGE.name(), resolver);
+                TransportsUtil.invokeFunction(MESSAGE, decoders, functions, m.getClass(), m, MESSAGE.name(), resolver, metrics, heartbeat.lastReceived());
             }
             unlockFuture();
         }
         return AsyncHandler.STATE.CONTINUE;
     }
 
+    /**
+     * The server handled the connection, unlock the connect operation instead of waiting for the first message.
+     */
+    private void handshakeReceived() throws IOException {
+        if (connectOperationFuture != null) {
+            connectOperationFuture.finishOrThrowException();
+        }
+    }
+
     /**
      * {@inheritDoc}
      */
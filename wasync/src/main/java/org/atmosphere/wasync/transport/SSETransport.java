@@ -58,20 +58,41 @@ public class SSETransport extends StreamTransport {
             throw new TransportNotSupported(500, "Invalid Content-Type" + ct);
         }
 
+        // The server accepted the event stream.
+        if (connectOperationFuture != null && !protocolEnabled) {
+            connectOperationFuture.finishOrThrowException();
+        }
         return super.onHeadersReceived(headers);
     }
 
+    /**
+     * {@inheritDoc}
+     * <p/>
+     * The connection is ready once the Content-Type is validated, so the next transport can be tried if the server
+     * doesn't support Server Side Events.
+     */
+    @Override
+    protected boolean readyOnStatus() {
+        return false;
+    }
+
     /**
      * {@inheritDoc}
      */
     @Override
     public STATE onBodyPartReceived(HttpResponseBodyPart bodyPart) throws Exception {
-        String m = new String(bodyPart.getBodyPartBytes(), charSet).trim();
+        byte[] payload = bodyPart.getBodyPartBytes();
+        lifecycle.received(name());
+        if (heartbeat.received(payload)) {
+            return STATE.CONTINUE;
+        }
+
+        String m = new String(payload, charSet).trim();
         if (m.length() > 0) {
             String[] data = m.split("data:");
             for (String d : data) {
-                if (d.length() > 0)
-                    TransportsUtil.invokeFunction(decoders, functions, d.getClass(), d, MESSAGE.name(), resolver);
+                if (d.length() > 0 && !heartbeat.isHeartbeat(d))
+                    TransportsUtil.invokeFunction(MESSAGE, decoders, functions, d.getClass(), d, MESSAGE.name(), resolver, metrics, heartbeat.lastReceived());
                 unlockFuture();
             }
         }
@@ -0,0 +1,172 @@
+/*
+ * Copyright 2015 Async-IO.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.wasync.transport;
+
+import org.atmosphere.wasync.LifecycleListener;
+import org.atmosphere.wasync.Request;
+import org.atmosphere.wasync.Socket;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+
+/**
+ * Notify the {@link LifecycleListener}s of a {@link Socket}. The methods are called by the {@link org.atmosphere.wasync.Transport}s
+ * and take the {@link System#nanoTime()} of the event. Nothing is allocated, and when no listener is registered a
+ * method only checks {@link #enabled()}.
+ */
+public class SocketLifecycle {
+
+    private final static Logger logger = LoggerFactory.getLogger(SocketLifecycle.class);
+
+    /**
+     * The lifecycle of a socket without listener.
+     */
+    public final static SocketLifecycle DISABLED = new SocketLifecycle(null, new LifecycleListener[0]);
+
+    private final Socket socket;
+    private final LifecycleListener[] listeners;
+    private volatile boolean handshaking;
+    private volatile boolean awaitingFirstByte;
+
+    public SocketLifecycle(Socket socket, List<LifecycleListener> listeners) {
+        this(socket, listeners.toArray(new LifecycleListener[listeners.size()]));
+    }
+
+    private SocketLifecycle(Socket socket, LifecycleListener[] listeners) {
+        this.socket = socket;
+        this.listeners = listeners;
+    }
+
+    /**
+     * Return true if a listener is registered.
+     *
+     * @return true if a listener is registered
+     */
+    public boolean enabled() {
+        return listeners.length > 0;
+    }
+
+    public void handshakeStarted(Request.TRANSPORT transport) {
+        if (!enabled()) {
+            return;
+        }
+        long now = System.nanoTime();
+        handshaking = true;
+        awaitingFirstByte = true;
+        for (LifecycleListener l : listeners) {
+            try {
+                l.onHandshakeStarted(socket, transport, now);
+            } catch (RuntimeException e) {
+                logger.warn("Lifecycle listener {} failed", l, e);
+            }
+        }
+    }
+
+    /**
+     * Notify the end of the handshake, once per {@link #handshakeStarted(Request.TRANSPORT)}.
+     */
+    public void handshakeFinished(Request.TRANSPORT transport, boolean connected) {
+        if (!enabled() || !handshaking) {
+            return;
+        }
+        long now = System.nanoTime();
+        handshaking = false;
+        for (LifecycleListener l : listeners) {
+            try {
+                l.onHandshakeFinished(socket, transport, now, connected);
+            } catch (RuntimeException e) {
+                logger.warn("Lifecycle listener {} failed", l, e);
+            }
+        }
+    }
+
+    /**
+     * Bytes have been received. Only the first ones since the handshake started are notified.
+     */
+    public void received(Request.TRANSPORT transport) {
+        if (!awaitingFirstByte) {
+            return;
+        }
+        long now = System.nanoTime();
+        awaitingFirstByte = false;
+        for (LifecycleListener l : listeners) {
+            try {
+                l.onFirstByte(socket, transport, now);
+            } catch (RuntimeException e) {
+                logger.warn("Lifecycle listener {} failed", l, e);
+            }
+        }
+    }
+
+    public void reconnectScheduled(Request.TRANSPORT transport, long delayInMilliseconds, int attempt) {
+        if (!enabled()) {
+            return;
+        }
+        long now = System.nanoTime();
+        for (LifecycleListener l : listeners) {
+            try {
+                l.onReconnectScheduled(socket, transport, now, delayInMilliseconds, attempt);
+            } catch (RuntimeException e) {
+                logger.warn("Lifecycle listener {} failed", l, e);
+            }
+        }
+    }
+
+    public void reconnectStarted(Request.TRANSPORT transport, int attempt) {
+        if (!enabled()) {
+            return;
+        }
+        long now = System.nanoTime();
+        for (LifecycleListener l : listeners) {
+            try {
+                l.onReconnectStarted(socket, transport, now, attempt);
+            } catch (RuntimeException e) {
+                logger.warn("Lifecycle listener {} failed", l, e);
+            }
+        }
+    }
+
+    public void fallback(Request.TRANSPORT from, Request.TRANSPORT to) {
+        if (!enabled()) {
+            return;
+        }
+        long now = System.nanoTime();
+        for (LifecycleListener l : listeners) {
+            try {
+                l.onFallback(socket, from, to, now);
+            } catch (RuntimeException e) {
+                logger.warn("Lifecycle listener {} failed", l, e);
+            }
+        }
+    }
+
+    public void closed(Request.TRANSPORT transport) {
+        if (!enabled()) {
+            return;
+        }
+        long now = System.nanoTime();
+        handshaking = false;
+        awaitingFirstByte = false;
+        for (LifecycleListener l : listeners) {
+            try {
+                l.onClose(socket, transport, now);
+            } catch (RuntimeException e) {
+                logger.warn("Lifecycle listener {} failed", l, e);
+            }
+        }
+    }
+}
@@ -31,7 +31,8 @@ import org.atmosphere.wasync.Options;
 import org.atmosphere.wasync.Request;
 import org.atmosphere.wasync.Socket;
 import org.atmosphere.wasync.Transport;
-import org.atmosphere.wasync.util.Utils;
+import org.atmosphere.wasync.jfr.JfrEvents;
+import org.atmosphere.wasync.metrics.SocketMetrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -43,6 +44,7 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.atmosphere.wasync.Event.CLOSE;
 import static org.atmosphere.wasync.Event.ERROR;
@@ -79,6 +81,11 @@ public class StreamTransport implements AsyncHandler<String>, Transport {
     protected Future connectOperationFuture;
     protected final boolean protocolEnabled;
     protected final ScheduledExecutorService timer;
+    protected final Heartbeat heartbeat;
+    protected SocketMetrics metrics = SocketMetrics.DISABLED;
+    protected SocketLifecycle lifecycle = SocketLifecycle.DISABLED;
+    private volatile long reconnectStart;
+    private final AtomicInteger reconnectAttempt = new AtomicInteger();
 
     public StreamTransport(RequestBuilder requestBuilder, Options options, Request request, List<FunctionWrapper> functions) {
         this.decoders = request.decoders();
@@ -104,6 +111,7 @@ public class StreamTransport implements AsyncHandler<String>, Transport {
                         request.headers().get("Content-Type").contains("application/octet-stream") : false);
 
         timer = Executors.newSingleThreadScheduledExecutor();
+        heartbeat = new Heartbeat(options.heartbeatMarker(), protocolEnabled);
     }
 
     /**
@@ -127,9 +135,10 @@ public class StreamTransport implements AsyncHandler<String>, Transport {
         }
         logger.warn("", t);
         status = Socket.STATUS.ERROR;
+        lifecycle.handshakeFinished(name(), false);
         connectFutureException(t);
 
-        errorHandled.set(TransportsUtil.invokeFunction(ERROR, decoders, functions, t.getClass(), t, ERROR.name(), resolver));
+        errorHandled.set(TransportsUtil.invokeFunction(ERROR, decoders, functions, t.getClass(), t, ERROR.name(), resolver, metrics));
     }
 
     /**
@@ -137,16 +146,19 @@ public class StreamTransport implements AsyncHandler<String>, Transport {
      */
     @Override
     public STATE onBodyPartReceived(HttpResponseBodyPart bodyPart) throws Exception {
+        byte[] payload = bodyPart.getBodyPartBytes();
+        lifecycle.received(name());
+        if (heartbeat.received(payload)) {
+            return AsyncHandler.STATE.CONTINUE;
+        }
+
         if (isBinary) {
-            byte[] payload = bodyPart.getBodyPartBytes();
-            if (!Utils.whiteSpace(payload)) {
-                TransportsUtil.invokeFunction(decoders, functions, payload.getClass(), payload, MESSAGE.name(), resolver);
-                unlockFuture();
-            }
+            TransportsUtil.invokeFunction(MESSAGE, decoders, functions, payload.getClass(), payload, MESSAGE.name(), resolver, metrics, heartbeat.lastReceived());
+            unlockFuture();
         } else {
-            String m = new String(bodyPart.getBodyPartBytes(), charSet).trim();
+            String m = new String(payload, charSet).trim();
             if (m.length() > 0) {
-                TransportsUtil.invokeFunction(decoders, functions, m.getClass(), m, MESSAGE.name(), resolver);
+                TransportsUtil.invokeFunction(MESSAGE, decoders, functions, m.getClass(), m, MESSAGE.name(), resolver, metrics, heartbeat.lastReceived());
                 unlockFuture();
             }
         }
@@ -186,7 +198,7 @@ public class StreamTransport implements AsyncHandler<String>, Transport {
      */
     @Override
     public AsyncHandler.STATE onStatusReceived(HttpResponseStatus responseStatus) throws Exception {
-        if (connectOperationFuture != null && !protocolEnabled) {
+        if (connectOperationFuture != null && readyOnStatus()) {
             connectOperationFuture.finishOrThrowException();
         }
 
@@ -204,9 +216,27 @@ public class StreamTransport implements AsyncHandler<String>, Transport {
         return AsyncHandler.STATE.CONTINUE;
     }
 
+    /**
+     * Return true if the connection is handled by the server once the response's status is received, unlocking the
+     * connect operation without waiting for {@link Options#waitBeforeUnlocking()}. When the Atmosphere protocol is
+     * enabled, the connection is ready once the handshake is received.
+     *
+     * @return true if the connection is ready once the response's status is received
+     */
+    protected boolean readyOnStatus() {
+        return !protocolEnabled;
+    }
+
     void triggerOpen() {
         Event newStatus = status.equals(Socket.STATUS.INIT) ? OPEN : REOPENED;
         status = Socket.STATUS.OPEN;
+        lifecycle.handshakeFinished(name(), true);
+        reconnectAttempt.set(0);
+        long start = reconnectStart;
+        if (newStatus == REOPENED && start != 0) {
+            reconnectStart = 0;
+            metrics.connected(start);
+        }
         TransportsUtil.invokeFunction(newStatus,
                 decoders, functions, String.class, newStatus.name(), newStatus.name(), resolver);
     }
@@ -226,6 +256,11 @@ public class StreamTransport implements AsyncHandler<String>, Transport {
 
         if (options.reconnect()) {
             close(false);
+            if (!name().equals(Request.TRANSPORT.LONG_POLLING)) {
+                int attempt = reconnectAttempt.incrementAndGet();
+                JfrEvents.reconnectScheduled(request.uri(), name(), Math.max(0, options.reconnectTimeoutInMilliseconds()), attempt);
+                lifecycle.reconnectScheduled(name(), Math.max(0, options.reconnectTimeoutInMilliseconds()), attempt);
+            }
             if (options.reconnectTimeoutInMilliseconds() > 0) {
                 timer.schedule(new Runnable() {
                     public void run() {
@@ -244,6 +279,15 @@ public class StreamTransport implements AsyncHandler<String>, Transport {
     }
 
     void reconnect() {
+        // A long-polling connection reconnects after every response.
+        if (!name().equals(Request.TRANSPORT.LONG_POLLING)) {
+            metrics.reconnected();
+            if (metrics.enabled()) {
+                reconnectStart = System.nanoTime();
+            }
+            lifecycle.reconnectStarted(name(), reconnectAttempt.get());
+            lifecycle.handshakeStarted(name());
+        }
         Map<String, List<String>> c = request.queryString();
         FluentStringsMap f = new FluentStringsMap();
         f.putAll(c);
@@ -275,6 +319,10 @@ public class StreamTransport implements AsyncHandler<String>, Transport {
         if (force) {
             timer.shutdown();
         }
+        // A long-polling connection is closed after every response.
+        if (force || !name().equals(Request.TRANSPORT.LONG_POLLING)) {
+            lifecycle.closed(name());
+        }
 
         TransportsUtil.invokeFunction(CLOSE, decoders, functions, String.class, CLOSE.name(), CLOSE.name(), resolver);
 
@@ -309,7 +357,7 @@ public class StreamTransport implements AsyncHandler<String>, Transport {
     public void error(Throwable t) {
         logger.warn("", t);
         connectFutureException(t);
-        TransportsUtil.invokeFunction(ERROR, decoders, functions, t.getClass(), t, ERROR.name(), resolver);
+        TransportsUtil.invokeFunction(ERROR, decoders, functions, t.getClass(), t, ERROR.name(), resolver, metrics);
     }
 
     /**
@@ -324,5 +372,29 @@ public class StreamTransport implements AsyncHandler<String>, Transport {
     public void connectedFuture(Future f) {
         this.connectOperationFuture = f;
     }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Heartbeat heartbeat() {
+        return heartbeat;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void metrics(SocketMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void lifecycle(SocketLifecycle lifecycle) {
+        this.lifecycle = lifecycle;
+    }
 }
 
@@ -21,6 +21,9 @@ import org.atmosphere.wasync.Function;
 import org.atmosphere.wasync.FunctionResolver;
 import org.atmosphere.wasync.FunctionWrapper;
 import org.atmosphere.wasync.ReplayDecoder;
+import org.atmosphere.wasync.TypedDecoder;
+import org.atmosphere.wasync.jfr.JfrEvents;
+import org.atmosphere.wasync.metrics.SocketMetrics;
 import org.atmosphere.wasync.util.TypeResolver;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -49,20 +52,60 @@ public class TransportsUtil {
                                          Object instanceType,
                                          String functionName,
                                          FunctionResolver resolver) {
+        return invokeFunction(e, decoders, functions, implementedType, instanceType, functionName, resolver, SocketMetrics.DISABLED);
+    }
+
+    /**
+     * Decode and dispatch a message, recording the received messages, the time spent decoding and dispatching them,
+     * and the errors in the {@link SocketMetrics}.
+     */
+    public static boolean invokeFunction(Event e,
+                                         List<Decoder<? extends Object, ?>> decoders,
+                                         List<FunctionWrapper> functions,
+                                         Class<?> implementedType,
+                                         Object instanceType,
+                                         String functionName,
+                                         FunctionResolver resolver,
+                                         SocketMetrics metrics) {
+        return invokeFunction(e, decoders, functions, implementedType, instanceType, functionName, resolver, metrics, 0);
+    }
+
+    /**
+     * Decode and dispatch a message received at {@code arrival}, a {@link System#nanoTime()}, recording the latency
+     * from the frame arrival to the end of the functions in the {@link SocketMetrics}.
+     */
+    public static boolean invokeFunction(Event e,
+                                         List<Decoder<? extends Object, ?>> decoders,
+                                         List<FunctionWrapper> functions,
+                                         Class<?> implementedType,
+                                         Object instanceType,
+                                         String functionName,
+                                         FunctionResolver resolver,
+                                         SocketMetrics metrics,
+                                         long arrival) {
         boolean hasMatch = false;
         String originalMessage = instanceType == null ? "" : instanceType.toString();
+        boolean measured = metrics.enabled();
+        long start = measured ? System.nanoTime() : 0;
+        if (arrival == 0) {
+            arrival = start;
+        }
 
         List<Object> decodedObjects = new CopyOnWriteArrayList<Object>();
         if (instanceType != null) {
             decodedObjects = matchDecoder(e, instanceType, decoders, decodedObjects);
         }
+        long decoded = measured ? System.nanoTime() : 0;
 
         for (FunctionWrapper wrapper : functions) {
             Function f = wrapper.function();
-            Class<?>[] typeArguments = TypeResolver.resolveArguments(f.getClass(), Function.class);
+            Class<?>[] typeArguments = wrapper.typeArguments();
+            if (typeArguments == null) {
+                typeArguments = TypeResolver.resolveArguments(f.getClass(), Function.class);
+            }
 
             if (typeArguments == null) {
-                logger.trace("Lambda function should not be used. Inferring type as String.class");
+                logger.trace("Lambda function registered without a type. Inferring type as String.class");
                 typeArguments = new Class[]{String.class};
             }
 
@@ -92,11 +135,24 @@ public class TransportsUtil {
                 if (wrapper.functionName().equalsIgnoreCase(functionName)) {
                     hasMatch = true;
                     logger.trace("{} .on {}", functionName, instanceType);
-                    f.on(originalMessage);
+                    Object event = JfrEvents.functionBegin();
+                    try {
+                        f.on(originalMessage);
+                    } finally {
+                        JfrEvents.functionEnd(event, functionName, originalMessage);
+                    }
                 }
             }
         }
 
+        if (measured) {
+            if (e.equals(Event.MESSAGE)) {
+                long end = System.nanoTime();
+                metrics.messageReceived(instanceType, decoded - start, end - decoded, end - arrival);
+            } else if (e.equals(Event.ERROR)) {
+                metrics.error();
+            }
+        }
         return hasMatch;
     }
 
@@ -113,10 +169,13 @@ public class TransportsUtil {
             if (resolver.resolve(originalMessage, functionName, wrapper)) {
                 hasMatch = true;
                 logger.trace("{} .on {}", functionName, instanceType);
+                Object event = JfrEvents.functionBegin();
                 try {
                     f.on(instanceType);
                 } catch (Exception e) {
                     logger.warn("Function {} thrown an exception", functionName, e);
+                } finally {
+                    JfrEvents.functionEnd(event, functionName, instanceType);
                 }
             }
         }
@@ -125,17 +184,31 @@ public class TransportsUtil {
 
     public static List<Object> matchDecoder(Event e, Object instanceType, List<Decoder<? extends Object, ?>> decoders, List<Object> decodedObjects) {
         for (Decoder d : decoders) {
-            Class<?>[] typeArguments = TypeResolver.resolveArguments(d.getClass(), Decoder.class);
+            Class<?>[] typeArguments;
+            boolean replay;
+            if (d instanceof TypedDecoder) {
+                typeArguments = ((TypedDecoder) d).typeArguments();
+                replay = ((TypedDecoder) d).decoder() instanceof ReplayDecoder;
+            } else {
+                typeArguments = TypeResolver.resolveArguments(d.getClass(), Decoder.class);
+                replay = d instanceof ReplayDecoder;
+            }
+            if (typeArguments == null) {
+                logger.warn("Unable to resolve the types of {}, add it using RequestBuilder.decoder(Class, Class, Decoder)", d);
+                continue;
+            }
             if (instanceType != null && typeArguments.length > 0 && typeArguments[0].isAssignableFrom(instanceType.getClass())) {
-                boolean replay = ReplayDecoder.class.isAssignableFrom(d.getClass());
 
                 logger.trace("{} is trying to decode {}", d, instanceType);
                 Object decoded = null;
 
+                Object event = JfrEvents.decodeBegin();
                 try {
                     decoded = d.decode(e, instanceType);
                 } catch (Exception ex) {
                     logger.warn("Decoder exception", ex);
+                } finally {
+                    JfrEvents.decodeEnd(event, d, e);
                 }
 
                 if (decoded != null && Decoder.Decoded.class.isAssignableFrom(decoded.getClass())) {
@@ -173,6 +246,11 @@ public class TransportsUtil {
                     }
 
                     for (Object m : l) {
+                        // The message must not be dispatched.
+                        if (m == Decoder.Decoded.ABORT) {
+                            decodedObjects.add(m);
+                            return decodedObjects;
+                        }
                         return matchDecoder(e, m, nd, decodedObjects);
                     }
                 } else if (decoded != null) {
@@ -15,6 +15,7 @@
  */
 package org.atmosphere.wasync.transport;
 
+import com.ning.http.client.FluentStringsMap;
 import com.ning.http.client.HttpResponseBodyPart;
 import com.ning.http.client.HttpResponseHeaders;
 import com.ning.http.client.HttpResponseStatus;
@@ -34,7 +35,8 @@ import org.atmosphere.wasync.Options;
 import org.atmosphere.wasync.Request;
 import org.atmosphere.wasync.Socket;
 import org.atmosphere.wasync.Transport;
-import org.atmosphere.wasync.util.Utils;
+import org.atmosphere.wasync.jfr.JfrEvents;
+import org.atmosphere.wasync.metrics.SocketMetrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -77,6 +79,7 @@ public class WebSocketTransport extends WebSocketUpgradeHandler implements Trans
     private final FunctionResolver resolver;
     private final Options options;
     private final RequestBuilder requestBuilder;
+    private final Request request;
     private final AtomicBoolean closed = new AtomicBoolean(false);
     private STATUS status = Socket.STATUS.INIT;
     private final AtomicBoolean errorHandled = new AtomicBoolean();
@@ -85,6 +88,9 @@ public class WebSocketTransport extends WebSocketUpgradeHandler implements Trans
     protected final boolean protocolEnabled;
     protected boolean supportBinary = false;
     protected final ScheduledExecutorService timer;
+    protected final Heartbeat heartbeat;
+    protected SocketMetrics metrics = SocketMetrics.DISABLED;
+    protected SocketLifecycle lifecycle = SocketLifecycle.DISABLED;
 
     public WebSocketTransport(RequestBuilder requestBuilder, Options options, Request request, List<FunctionWrapper> functions) {
         super();
@@ -102,6 +108,7 @@ public class WebSocketTransport extends WebSocketUpgradeHandler implements Trans
         this.resolver = request.functionResolver();
         this.options = options;
         this.requestBuilder = requestBuilder;
+        this.request = request;
         this.supportBinary = options.binary() ||
                 // Backward compatibility.
                 (request.headers().get("Content-Type") != null ?
@@ -109,6 +116,7 @@ public class WebSocketTransport extends WebSocketUpgradeHandler implements Trans
 
         protocolEnabled = request.queryString().get("X-atmo-protocol") != null;
         timer = Executors.newSingleThreadScheduledExecutor();
+        heartbeat = new Heartbeat(options.heartbeatMarker(), protocolEnabled);
     }
 
     /**
@@ -118,6 +126,7 @@ public class WebSocketTransport extends WebSocketUpgradeHandler implements Trans
     public void onThrowable(Throwable t) {
         logger.debug("", t);
         status = Socket.STATUS.ERROR;
+        lifecycle.handshakeFinished(name(), false);
         onFailure(t);
     }
 
@@ -129,6 +138,8 @@ public class WebSocketTransport extends WebSocketUpgradeHandler implements Trans
         status = Socket.STATUS.CLOSE;
         if (closed.getAndSet(true)) return;
 
+        lifecycle.closed(name());
+
         if (options.reconnectTimeoutInMilliseconds() <= 0 && !options.reconnect()) {
             timer.shutdown();
         }
@@ -168,7 +179,7 @@ public class WebSocketTransport extends WebSocketUpgradeHandler implements Trans
     public void error(Throwable t) {
         logger.warn("", t);
         connectFutureException(t);
-        TransportsUtil.invokeFunction(Event.ERROR, decoders, functions, t.getClass(), t, ERROR.name(), resolver);
+        TransportsUtil.invokeFunction(Event.ERROR, decoders, functions, t.getClass(), t, ERROR.name(), resolver, metrics);
     }
 
     /**
@@ -184,6 +195,30 @@ public class WebSocketTransport extends WebSocketUpgradeHandler implements Trans
         this.connectOperationFuture = f;
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Heartbeat heartbeat() {
+        return heartbeat;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void metrics(SocketMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void lifecycle(SocketLifecycle lifecycle) {
+        this.lifecycle = lifecycle;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -273,7 +308,9 @@ public class WebSocketTransport extends WebSocketUpgradeHandler implements Trans
 
     void tryReconnect() {
 
-        reconnectAttempt.incrementAndGet();
+        int attempt = reconnectAttempt.incrementAndGet();
+        JfrEvents.reconnectScheduled(request.uri(), name(), Math.max(0, options.reconnectTimeoutInMilliseconds()), attempt);
+        lifecycle.reconnectScheduled(name(), Math.max(0, options.reconnectTimeoutInMilliseconds()), attempt);
 
         if (options.reconnectTimeoutInMilliseconds() > 0) {
             timer.schedule(new Runnable() {
@@ -291,12 +328,22 @@ public class WebSocketTransport extends WebSocketUpgradeHandler implements Trans
         try {
             reconnecting.set(true);
             status = Socket.STATUS.REOPENED;
+            metrics.reconnected();
+            long start = metrics.enabled() ? System.nanoTime() : 0;
+            lifecycle.reconnectStarted(name(), reconnectAttempt.get());
+            lifecycle.handshakeStarted(name());
 
-            ListenableFuture<WebSocket> webSocketListenableFuture = options.runtime().executeRequest(requestBuilder.build(), WebSocketTransport.this);
+            // The query string may have changed since the connection was opened, like the Atmosphere's tracking id.
+            FluentStringsMap f = new FluentStringsMap();
+            f.putAll(request.queryString());
+            ListenableFuture<WebSocket> webSocketListenableFuture = options.runtime().executeRequest(requestBuilder.setQueryParams(f).build(), WebSocketTransport.this);
 
             logger.info("try reconnect : attempt [{}/{}]", reconnectAttempt.get(), options.reconnectAttempts());
 
             webSocketListenableFuture.get();
+            if (start != 0) {
+                metrics.connected(start);
+            }
 
             logger.info("reconnect successful ! in attempt [{}/{}]", reconnectAttempt.get(), options.reconnectAttempts());
 
@@ -306,6 +353,7 @@ public class WebSocketTransport extends WebSocketUpgradeHandler implements Trans
             reconnecting.set(false);
             logger.error("", e);
         } catch (ExecutionException e) {
+            lifecycle.handshakeFinished(name(), false);
 
             if (reconnectAttempt.get() < options.reconnectAttempts()) {
                 tryReconnect();
@@ -343,15 +391,28 @@ public class WebSocketTransport extends WebSocketUpgradeHandler implements Trans
         if (!reconnecting.get()) {
             logger.trace("onFailure {}", t);
             connectFutureException(t);
-            errorHandled.set(TransportsUtil.invokeFunction(ERROR, decoders, functions, t.getClass(), t, ERROR.name(), resolver));
+            errorHandled.set(TransportsUtil.invokeFunction(ERROR, decoders, functions, t.getClass(), t, ERROR.name(), resolver, metrics));
         }
     }
 
+    /**
+     * Return true if the websocket is connected. {@link #sendMessage(String)} silently drops the messages sent while
+     * the websocket is closed or reconnecting.
+     *
+     * @return true if the websocket is connected
+     */
+    public boolean isOpen() {
+        WebSocket w = webSocket;
+        return w != null && w.isOpen() && !reconnecting.get()
+                && (status.equals(Socket.STATUS.OPEN) || status.equals(Socket.STATUS.REOPENED));
+    }
+
     public WebSocketTransport sendMessage(String message) {
         if (webSocket != null
                 && !status.equals(Socket.STATUS.ERROR)
                 && !status.equals(Socket.STATUS.CLOSE)) {
             webSocket.sendMessage(message);
+            JfrEvents.frameSent(request.uri(), message.length(), false);
         }
         return this;
     }
@@ -361,6 +422,7 @@ public class WebSocketTransport extends WebSocketUpgradeHandler implements Trans
                 && !status.equals(Socket.STATUS.ERROR)
                 && !status.equals(Socket.STATUS.CLOSE)) {
             webSocket.sendMessage(message);
+            JfrEvents.frameSent(request.uri(), message.length, true);
         }
         return this;
     }
@@ -369,6 +431,12 @@ public class WebSocketTransport extends WebSocketUpgradeHandler implements Trans
         @Override
         public void onMessage(String message) {
             logger.trace("onMessage {} for {}", message, webSocket);
+            JfrEvents.frameReceived(request.uri(), message.length(), false);
+            lifecycle.received(name());
+            if (heartbeat.received(message)) {
+                return;
+            }
+
             message = message.trim();
             logger.trace("{} received {}", name(), message);
             if (message.length() > 0) {
@@ -378,7 +446,9 @@ public class WebSocketTransport extends WebSocketUpgradeHandler implements Trans
                         message.getClass(),
                         message,
                         MESSAGE.name(),
-                        resolver);
+                        resolver,
+                        metrics,
+                        heartbeat.lastReceived());
 
                 // Since the protocol is enabled, handshake occurred, now ready so go asynchronous
                 if (connectOperationFuture != null && protocolEnabled) {
@@ -397,6 +467,7 @@ public class WebSocketTransport extends WebSocketUpgradeHandler implements Trans
             closed.set(false);
             Event newStatus = status.equals(Socket.STATUS.INIT) ? OPEN : REOPENED;
             status = Socket.STATUS.OPEN;
+            lifecycle.handshakeFinished(name(), true);
             TransportsUtil.invokeFunction(newStatus,
                     decoders, functions, String.class, newStatus.name(), newStatus.name(), resolver);
         }
@@ -432,14 +503,18 @@ public class WebSocketTransport extends WebSocketUpgradeHandler implements Trans
         @Override
         public void onMessage(byte[] message) {
             logger.trace("{} received {}", name(), message);
-            if (message.length > 0 && !Utils.whiteSpace(message)) {
+            JfrEvents.frameReceived(request.uri(), message.length, true);
+            lifecycle.received(name());
+            if (!heartbeat.received(message)) {
                 TransportsUtil.invokeFunction(MESSAGE,
                         decoders,
                         functions,
                         message.getClass(),
                         message,
                         MESSAGE.name(),
-                        resolver);
+                        resolver,
+                        metrics,
+                        heartbeat.lastReceived());
 
                 // Since the protocol is enabled, handshake occurred, now ready so go asynchronous
                 if (connectOperationFuture != null && protocolEnabled) {
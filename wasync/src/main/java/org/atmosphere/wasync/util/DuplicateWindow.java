@@ -0,0 +1,197 @@
+/*
+ * Copyright 2015 Async-IO.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.wasync.util;
+
+import java.util.Arrays;
+
+/**
+ * Remember the ids of the last messages received, to suppress the messages delivered twice, for example when a server
+ * replays its cache after a reconnect.
+ * <p/>
+ * Numeric ids are handled as a sequence: a bitmap slides over the {@code size} highest sequence numbers received, and
+ * older sequence numbers are considered delivered. Other ids are kept in a ring of the last {@code size} ids, indexed
+ * by an open-addressed hash table of ring slots, so checking an id takes constant time whatever the size of the
+ * window. Checking an id doesn't allocate, only a new non-numeric id is copied.
+ */
+public class DuplicateWindow {
+
+    private final int size;
+    private final long[] received;
+    private long highest = -1;
+    private final String[] ids;
+    private final int[] hashes;
+    // The ring slots + 1, by hash, using linear probing. 0 is an empty bucket.
+    private final int[] index;
+    private final int mask;
+    private int next;
+
+    /**
+     * Create a window.
+     *
+     * @param size the number of ids remembered
+     */
+    public DuplicateWindow(int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("Invalid size " + size);
+        }
+        this.received = new long[(size + 63) >>> 6];
+        this.size = received.length << 6;
+        this.ids = new String[size];
+        this.hashes = new int[size];
+        // At most half full, so probes stay short
+        this.index = new int[Integer.highestOneBit(size) << 2];
+        this.mask = index.length - 1;
+    }
+
+    /**
+     * Record the id found in a message.
+     *
+     * @param message the message
+     * @param start   the index of the id's first character
+     * @param end     the index following the id's last character
+     * @return true if the id is received for the first time, false if the message is a duplicate
+     */
+    public synchronized boolean firstSeen(String message, int start, int end) {
+        long sequence = sequence(message, start, end);
+        return sequence < 0 ? firstSeenId(message, start, end) : firstSeen(sequence);
+    }
+
+    /**
+     * Record a sequence number.
+     *
+     * @param sequence the sequence number
+     * @return true if the sequence number is received for the first time, false if the message is a duplicate
+     */
+    public synchronized boolean firstSeen(long sequence) {
+        if (sequence < 0) {
+            throw new IllegalArgumentException("Invalid sequence " + sequence);
+        }
+        if (sequence > highest) {
+            if (highest < 0 || sequence - highest >= size) {
+                Arrays.fill(received, 0);
+            } else {
+                for (long s = highest + 1; s < sequence; s++) {
+                    clear(s);
+                }
+            }
+            highest = sequence;
+            set(sequence);
+            return true;
+        }
+        if (highest - sequence >= size || isSet(sequence)) {
+            return false;
+        }
+        set(sequence);
+        return true;
+    }
+
+    /**
+     * Forget all the ids, for example when the server has lost the state of the connection and numbers the messages
+     * from scratch.
+     */
+    public synchronized void clear() {
+        Arrays.fill(received, 0);
+        highest = -1;
+        Arrays.fill(ids, null);
+        Arrays.fill(hashes, 0);
+        Arrays.fill(index, 0);
+        next = 0;
+    }
+
+    private boolean firstSeenId(String message, int start, int end) {
+        int length = end - start;
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + message.charAt(i);
+        }
+        int bucket = bucket(hash);
+        for (int slot; (slot = index[bucket] - 1) >= 0; bucket = (bucket + 1) & mask) {
+            String id = ids[slot];
+            if (hashes[slot] == hash && id.length() == length && message.regionMatches(start, id, 0, length)) {
+                return false;
+            }
+        }
+
+        if (ids[next] != null) {
+            evict(next);
+            // The eviction may have shifted an entry into the empty bucket found above
+            bucket = bucket(hash);
+            while (index[bucket] != 0) {
+                bucket = (bucket + 1) & mask;
+            }
+        }
+        ids[next] = message.substring(start, end);
+        hashes[next] = hash;
+        index[bucket] = next + 1;
+        next = (next + 1) % ids.length;
+        return true;
+    }
+
+    /**
+     * Remove a ring slot from the index, shifting back the entries of its probe sequence so that no lookup stops at
+     * the emptied bucket.
+     */
+    private void evict(int slot) {
+        int empty = bucket(hashes[slot]);
+        while (index[empty] != slot + 1) {
+            empty = (empty + 1) & mask;
+        }
+        for (int bucket = (empty + 1) & mask; index[bucket] != 0; bucket = (bucket + 1) & mask) {
+            int home = bucket(hashes[index[bucket] - 1]);
+            // Move the entry unless its home bucket lies cyclically in (empty, bucket]
+            if (((bucket - home) & mask) >= ((bucket - empty) & mask)) {
+                index[empty] = index[bucket];
+                empty = bucket;
+            }
+        }
+        index[empty] = 0;
+        ids[slot] = null;
+    }
+
+    private int bucket(int hash) {
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    private void set(long sequence) {
+        int bit = (int) (sequence % size);
+        received[bit >>> 6] |= 1L << bit;
+    }
+
+    private void clear(long sequence) {
+        int bit = (int) (sequence % size);
+        received[bit >>> 6] &= ~(1L << bit);
+    }
+
+    private boolean isSet(long sequence) {
+        int bit = (int) (sequence % size);
+        return (received[bit >>> 6] & (1L << bit)) != 0;
+    }
+
+    private static long sequence(String message, int start, int end) {
+        if (start == end || end - start > 18) {
+            return -1;
+        }
+        long sequence = 0;
+        for (int i = start; i < end; i++) {
+            char c = message.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            sequence = sequence * 10 + (c - '0');
+        }
+        return sequence;
+    }
+}
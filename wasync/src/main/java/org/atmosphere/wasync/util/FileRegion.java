@@ -0,0 +1,86 @@
+/*
+ * Copyright 2015 Async-IO.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.wasync.util;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+
+/**
+ * A region of a {@link FileChannel} that can be passed to {@link org.atmosphere.wasync.Socket#fire(Object)}. For http
+ * transports the region is transferred using {@link FileChannel#transferTo}, e.g without copying the bytes in user space. A
+ * region can't be fired using the {@link org.atmosphere.wasync.Request.TRANSPORT#WEBSOCKET} transport.
+ * <p/>
+ * The library never closes the {@link FileChannel}, the application owns it.
+ */
+public class FileRegion {
+
+    private final FileChannel channel;
+    private final long position;
+    private final long count;
+
+    /**
+     * Create a region covering the bytes between the current position of the channel and its size.
+     *
+     * @param channel a {@link FileChannel}
+     * @throws IOException
+     */
+    public FileRegion(FileChannel channel) throws IOException {
+        this(channel, channel.position(), channel.size() - channel.position());
+    }
+
+    /**
+     * Create a region of {@code count} bytes starting at {@code position}.
+     *
+     * @param channel  a {@link FileChannel}
+     * @param position the position of the first byte of the region
+     * @param count    the number of bytes
+     */
+    public FileRegion(FileChannel channel, long position, long count) {
+        if (position < 0 || count < 0) {
+            throw new IllegalArgumentException("Invalid region " + position + "/" + count);
+        }
+        this.channel = channel;
+        this.position = position;
+        this.count = count;
+    }
+
+    /**
+     * The {@link FileChannel}
+     *
+     * @return the {@link FileChannel}
+     */
+    public FileChannel channel() {
+        return channel;
+    }
+
+    /**
+     * The position of the first byte of the region.
+     *
+     * @return the position of the first byte of the region.
+     */
+    public long position() {
+        return position;
+    }
+
+    /**
+     * The number of bytes of the region.
+     *
+     * @return the number of bytes of the region.
+     */
+    public long count() {
+        return count;
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2015 Async-IO.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.wasync.util;
+
+import com.ning.http.client.BodyGenerator;
+import com.ning.http.client.RandomAccessBody;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * A {@link BodyGenerator} for a {@link FileRegion}. The generated body is a {@link RandomAccessBody}, which allows
+ * the Netty provider to write it using {@link java.nio.channels.FileChannel#transferTo}. When zero-copy isn't possible
+ * (e.g with SSL), the body is read directly from the channel into the provider's buffer.
+ */
+public class FileRegionBodyGenerator implements BodyGenerator {
+
+    private final FileRegion region;
+
+    public FileRegionBodyGenerator(FileRegion region) {
+        this.region = region;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public RandomAccessBody createBody() throws IOException {
+        return new FileRegionBody(region);
+    }
+
+    private final static class FileRegionBody implements RandomAccessBody {
+
+        private final FileRegion region;
+        private long transferred;
+
+        private FileRegionBody(FileRegion region) {
+            this.region = region;
+        }
+
+        @Override
+        public long getContentLength() {
+            return region.count();
+        }
+
+        @Override
+        public long read(ByteBuffer buffer) throws IOException {
+            long left = region.count() - transferred;
+            if (left <= 0) {
+                return -1;
+            }
+
+            int limit = buffer.limit();
+            if (buffer.remaining() > left) {
+                buffer.limit(buffer.position() + (int) left);
+            }
+            try {
+                int n = region.channel().read(buffer, region.position() + transferred);
+                if (n > 0) {
+                    transferred += n;
+                }
+                return n;
+            } finally {
+                buffer.limit(limit);
+            }
+        }
+
+        @Override
+        public long transferTo(long position, WritableByteChannel target) throws IOException {
+            long count = region.count() - position;
+            if (count <= 0) {
+                return 0;
+            }
+            return region.channel().transferTo(region.position() + position, count, target);
+        }
+
+        @Override
+        public void close() throws IOException {
+            // The channel is owned by the application.
+        }
+    }
+}
@@ -35,6 +35,15 @@ public class FutureProxy<T extends java.util.concurrent.Future> implements Futur
         this.proxyiedFuture = proxyiedFuture;
     }
 
+    /**
+     * Return the proxied future.
+     *
+     * @return the proxied future
+     */
+    public T proxiedFuture() {
+        return proxyiedFuture;
+    }
+
     @Override
     public Future fire(Object data) throws IOException {
         return socket.fire(data);
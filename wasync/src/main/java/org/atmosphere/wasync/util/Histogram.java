@@ -0,0 +1,312 @@
+/*
+ * Copyright 2015 Async-IO.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.wasync.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free histogram of non negative values, using log-linear buckets: every power of two range is split in
+ * 2<sup>precisionBits</sup> linear sub buckets, so a percentile is approximated by the upper bound of its bucket with a
+ * relative error under 2<sup>-precisionBits</sup>. Values up to 2<sup>precisionBits</sup> are recorded exactly.
+ * <p/>
+ * The memory is bounded by the highest trackable value: larger values are counted in the last bucket, only
+ * {@link #max()} keeps them exactly.
+ * <p/>
+ * {@link #snapshot()} returns all the values recorded so far, {@link #intervalSnapshot()} the values recorded since its
+ * previous call.
+ */
+public class Histogram {
+
+    private final static double[] PERCENTILES = {50, 90, 99, 99.9, 99.99};
+
+    private final int precisionBits;
+    private final long highestTrackableValue;
+    private final AtomicLongArray buckets;
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+    private Snapshot previous;
+
+    /**
+     * Create a histogram of any non negative long, with 3 bits of precision (12.5% relative error).
+     */
+    public Histogram() {
+        this(3, Long.MAX_VALUE);
+    }
+
+    /**
+     * Create a histogram.
+     *
+     * @param precisionBits         the number of linear sub buckets, as a power of two, between 0 and 16
+     * @param highestTrackableValue the largest value counted in its own bucket
+     */
+    public Histogram(int precisionBits, long highestTrackableValue) {
+        if (precisionBits < 0 || precisionBits > 16) {
+            throw new IllegalArgumentException("Invalid precision " + precisionBits);
+        }
+        if (highestTrackableValue < 1) {
+            throw new IllegalArgumentException("Invalid highest trackable value " + highestTrackableValue);
+        }
+        this.precisionBits = precisionBits;
+        this.highestTrackableValue = highestTrackableValue;
+        this.buckets = new AtomicLongArray(bucket(highestTrackableValue) + 1);
+    }
+
+    /**
+     * Record a value. Negative values are recorded as 0.
+     *
+     * @param value the value
+     */
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        buckets.incrementAndGet(bucket(Math.min(value, highestTrackableValue)));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+
+        long current;
+        while (value > (current = max.get())) {
+            if (max.compareAndSet(current, value)) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * The number of recorded values.
+     *
+     * @return the number of recorded values
+     */
+    public long count() {
+        return count.get();
+    }
+
+    /**
+     * The largest recorded value.
+     *
+     * @return the largest recorded value, 0 if nothing has been recorded
+     */
+    public long max() {
+        return max.get();
+    }
+
+    /**
+     * The mean of the recorded values.
+     *
+     * @return the mean of the recorded values, 0 if nothing has been recorded
+     */
+    public double mean() {
+        long c = count.get();
+        return c == 0 ? 0 : (double) sum.get() / c;
+    }
+
+    /**
+     * An approximation of the value at the given percentile.
+     *
+     * @param percentile a percentile between 0 and 100
+     * @return the upper bound of the bucket containing the percentile, capped to {@link #max()}
+     */
+    public long percentile(double percentile) {
+        long c = count.get();
+        if (c == 0) {
+            return 0;
+        }
+        long rank = rank(percentile, c);
+        long seen = 0;
+        for (int i = 0; i < buckets.length(); i++) {
+            seen += buckets.get(i);
+            if (seen >= rank && seen > 0) {
+                return Math.min(upperBound(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * A copy of all the recorded values. Taking a snapshot allocates, recording never does.
+     *
+     * @return a {@link Snapshot}
+     */
+    public Snapshot snapshot() {
+        long[] counts = new long[buckets.length()];
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] = buckets.get(i);
+        }
+        return new Snapshot(this, counts, sum.get(), max.get());
+    }
+
+    /**
+     * A copy of the values recorded since the previous call of this method, or since the histogram was created or
+     * {@link #reset()}. Intervals are meant to be taken by a single reader, like a periodic reporter.
+     *
+     * @return a {@link Snapshot} of the interval
+     */
+    public synchronized Snapshot intervalSnapshot() {
+        Snapshot current = snapshot();
+        Snapshot interval = previous == null ? current : current.minus(previous);
+        previous = current;
+        return interval;
+    }
+
+    /**
+     * Clear all recorded values.
+     */
+    public synchronized void reset() {
+        for (int i = 0; i < buckets.length(); i++) {
+            buckets.set(i, 0);
+        }
+        count.set(0);
+        sum.set(0);
+        max.set(0);
+        previous = null;
+    }
+
+    private int bucket(long value) {
+        int shift = 63 - Long.numberOfLeadingZeros(value) - precisionBits;
+        if (shift <= 0) {
+            return (int) value;
+        }
+        return (shift << precisionBits) + (int) (value >>> shift);
+    }
+
+    private long upperBound(int bucket) {
+        int shift = (bucket >>> precisionBits) - 1;
+        if (shift <= 0) {
+            return bucket;
+        }
+        long mantissa = bucket - ((long) shift << precisionBits);
+        long upper = ((mantissa + 1) << shift) - 1;
+        return upper < 0 ? Long.MAX_VALUE : upper;
+    }
+
+    private static long rank(double percentile, long count) {
+        return (long) Math.ceil(Math.min(100, Math.max(0, percentile)) / 100 * count);
+    }
+
+    @Override
+    public String toString() {
+        return "Histogram{" +
+                "count=" + count() +
+                ", mean=" + mean() +
+                ", p50=" + percentile(50) +
+                ", p99=" + percentile(99) +
+                ", max=" + max() +
+                '}';
+    }
+
+    /**
+     * An immutable copy of the values recorded by a {@link Histogram}. The getters follow the JavaBeans convention so
+     * a snapshot is published by JMX as a {@code CompositeData}.
+     */
+    public static class Snapshot {
+
+        private final Histogram histogram;
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+        private final long max;
+
+        private Snapshot(Histogram histogram, long[] counts, long sum, long max) {
+            this.histogram = histogram;
+            this.counts = counts;
+            this.sum = sum;
+
+            long c = 0;
+            int highest = -1;
+            for (int i = 0; i < counts.length; i++) {
+                c += counts[i];
+                if (counts[i] > 0) {
+                    highest = i;
+                }
+            }
+            this.count = c;
+            // Without its own maximum, an interval is bounded by its highest bucket
+            this.max = highest < 0 ? 0 : Math.min(histogram.upperBound(highest), max);
+        }
+
+        private Snapshot minus(Snapshot previous) {
+            long[] delta = new long[counts.length];
+            for (int i = 0; i < delta.length; i++) {
+                delta[i] = counts[i] - previous.counts[i];
+            }
+            return new Snapshot(histogram, delta, sum - previous.sum, max);
+        }
+
+        /**
+         * An approximation of the value at the given percentile.
+         *
+         * @param percentile a percentile between 0 and 100
+         * @return the upper bound of the bucket containing the percentile, capped to {@link #getMax()}
+         */
+        public long percentile(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = rank(percentile, count);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank && seen > 0) {
+                    return Math.min(histogram.upperBound(i), max);
+                }
+            }
+            return max;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        public double getMean() {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+
+        public long getP50() {
+            return percentile(50);
+        }
+
+        public long getP90() {
+            return percentile(90);
+        }
+
+        public long getP99() {
+            return percentile(99);
+        }
+
+        public long getP999() {
+            return percentile(99.9);
+        }
+
+        public long getP9999() {
+            return percentile(99.99);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder b = new StringBuilder("Snapshot{count=").append(count).append(", mean=").append(getMean());
+            for (double p : PERCENTILES) {
+                b.append(", p").append(p == (long) p ? String.valueOf((long) p) : String.valueOf(p)).append('=').append(percentile(p));
+            }
+            return b.append(", max=").append(max).append('}').toString();
+        }
+    }
+}
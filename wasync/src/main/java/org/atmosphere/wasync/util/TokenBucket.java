@@ -0,0 +1,99 @@
+/*
+ * Copyright 2015 Async-IO.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.wasync.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A lock-free token bucket. Instead of counting tokens, the bucket stores the time at which it will be full again, so
+ * taking tokens is a single compare and set and no refill thread is needed.
+ * <p/>
+ * A request for more tokens than the burst size is granted when the bucket is full, the following requests waiting
+ * for the debt to be paid back.
+ */
+public class TokenBucket {
+
+    private final double nanosPerToken;
+    private final long tolerance;
+    private final AtomicLong fullAt;
+
+    /**
+     * Create a full bucket.
+     *
+     * @param tokensPerSecond the refill rate
+     * @param burst           the capacity of the bucket
+     */
+    public TokenBucket(double tokensPerSecond, long burst) {
+        if (tokensPerSecond <= 0 || burst < 1) {
+            throw new IllegalArgumentException("Invalid rate " + tokensPerSecond + "/" + burst);
+        }
+        this.nanosPerToken = 1000000000d / tokensPerSecond;
+        this.tolerance = (long) (burst * nanosPerToken);
+        this.fullAt = new AtomicLong(System.nanoTime());
+    }
+
+    /**
+     * Take the tokens if they are available.
+     *
+     * @param tokens the number of tokens
+     * @return true if the tokens have been taken
+     */
+    public boolean tryAcquire(long tokens) {
+        long cost = cost(tokens);
+        for (;;) {
+            long now = System.nanoTime();
+            long current = fullAt.get();
+            long from = current - now > 0 ? current : now;
+            if (from - now + cost > tolerance && from != now) {
+                return false;
+            }
+            if (fullAt.compareAndSet(current, from + cost)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Take the tokens, whether they are available or not.
+     *
+     * @param tokens the number of tokens
+     * @return the time, in nanoseconds, to wait before using the tokens, 0 if they can be used now
+     */
+    public long reserve(long tokens) {
+        long cost = cost(tokens);
+        for (;;) {
+            long now = System.nanoTime();
+            long current = fullAt.get();
+            long from = current - now > 0 ? current : now;
+            if (fullAt.compareAndSet(current, from + cost)) {
+                return Math.max(0, from + cost - tolerance - now);
+            }
+        }
+    }
+
+    /**
+     * Give back tokens taken by {@link #tryAcquire(long)} or {@link #reserve(long)} and not used.
+     *
+     * @param tokens the number of tokens
+     */
+    public void release(long tokens) {
+        fullAt.addAndGet(-cost(tokens));
+    }
+
+    private long cost(long tokens) {
+        return (long) (tokens * nanosPerToken);
+    }
+}
@@ -33,8 +33,6 @@
  */
 package org.atmosphere.wasync.util;
 
-import java.lang.ref.Reference;
-import java.lang.ref.WeakReference;
 import java.lang.reflect.Array;
 import java.lang.reflect.GenericArrayType;
 import java.lang.reflect.ParameterizedType;
@@ -43,7 +41,8 @@ import java.lang.reflect.TypeVariable;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Enhanced type resolution utilities. Based on org.springframework.core.GenericTypeResolver.
@@ -60,9 +59,26 @@ public final class TypeResolver {
         }
     }
 
-    /** Cache of type variable/argument pairs */
-    private static final Map<Class<?>, Reference<Map<TypeVariable<?>, Type>>> typeVariableCache = Collections.synchronizedMap(new WeakHashMap<Class<?>, Reference<Map<TypeVariable<?>, Type>>>());
-    private static boolean cacheEnabled = true;
+    /**
+     * Cache of type variable/argument pairs, and of the type arguments resolved for a target type, stored on the class
+     * itself. Reads don't lock, and the values live as long as the class. The values only hold JDK classes and types
+     * of the class hierarchy, so a class never keeps the class loader of this library alive.
+     */
+    private static final ClassValue<Map<TypeVariable<?>, Type>> typeVariableCache = new ClassValue<Map<TypeVariable<?>, Type>>() {
+        @Override
+        protected Map<TypeVariable<?>, Type> computeValue(Class<?> type) {
+            return Collections.unmodifiableMap(createTypeVariableMap(type));
+        }
+    };
+    private static final ClassValue<ConcurrentMap<Class<?>, Class<?>[]>> argumentsCache = new ClassValue<ConcurrentMap<Class<?>, Class<?>[]>>() {
+        @Override
+        protected ConcurrentMap<Class<?>, Class<?>[]> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<Class<?>, Class<?>[]>(4);
+        }
+    };
+    /** Cached when no argument can be resolved */
+    private static final Class<?>[] NO_ARGUMENTS = new Class<?>[0];
+    private static volatile boolean cacheEnabled = true;
 
     /**
      * Enables the internal caching of TypeVariables.
@@ -72,10 +88,10 @@ public final class TypeResolver {
     }
 
     /**
-     * Disables the internal caching of TypeVariables.
+     * Disables the internal caching of TypeVariables. The values already cached are kept, since they never change for
+     * a given class, but are no longer read.
      */
     public static void disableCache() {
-        typeVariableCache.clear();
         cacheEnabled = false;
     }
 
@@ -132,7 +148,21 @@ public final class TypeResolver {
      */
     public static <T, I extends T> Class<?>[] resolveArguments(Class<I> initialType,
                                                                Class<T> targetType) {
-        return resolveArguments(resolveGenericType(initialType, targetType), initialType);
+        // The target of a cached value must be visible from the class holding it
+        if (!cacheEnabled || !targetType.isAssignableFrom(initialType)) {
+            return resolveArguments(resolveGenericType(initialType, targetType), initialType);
+        }
+
+        ConcurrentMap<Class<?>, Class<?>[]> arguments = argumentsCache.get(initialType);
+        Class<?>[] result = arguments.get(targetType);
+        if (result == null) {
+            result = resolveArguments(resolveGenericType(initialType, targetType), initialType);
+            if (result == null) {
+                result = NO_ARGUMENTS;
+            }
+            arguments.putIfAbsent(targetType, result);
+        }
+        return result == NO_ARGUMENTS ? null : result.clone();
     }
 
     /**
@@ -211,39 +241,35 @@ public final class TypeResolver {
     }
 
     private static Map<TypeVariable<?>, Type> getTypeVariableMap(final Class<?> targetType) {
-        Reference<Map<TypeVariable<?>, Type>> ref = typeVariableCache.get(targetType);
-        Map<TypeVariable<?>, Type> map = ref != null ? ref.get() : null;
-
-        if (map == null) {
-            map = new HashMap<TypeVariable<?>, Type>();
+        return cacheEnabled ? typeVariableCache.get(targetType) : createTypeVariableMap(targetType);
+    }
 
-            // Populate interfaces
-            buildTypeVariableMap(targetType.getGenericInterfaces(), map);
+    private static Map<TypeVariable<?>, Type> createTypeVariableMap(final Class<?> targetType) {
+        Map<TypeVariable<?>, Type> map = new HashMap<TypeVariable<?>, Type>();
 
-            // Populate super classes and interfaces
-            Type genericType = targetType.getGenericSuperclass();
-            Class<?> type = targetType.getSuperclass();
-            while (type != null && !Object.class.equals(type)) {
-                if (genericType instanceof ParameterizedType)
-                    buildTypeVariableMap((ParameterizedType) genericType, map);
-                buildTypeVariableMap(type.getGenericInterfaces(), map);
+        // Populate interfaces
+        buildTypeVariableMap(targetType.getGenericInterfaces(), map);
 
-                genericType = type.getGenericSuperclass();
-                type = type.getSuperclass();
-            }
+        // Populate super classes and interfaces
+        Type genericType = targetType.getGenericSuperclass();
+        Class<?> type = targetType.getSuperclass();
+        while (type != null && !Object.class.equals(type)) {
+            if (genericType instanceof ParameterizedType)
+                buildTypeVariableMap((ParameterizedType) genericType, map);
+            buildTypeVariableMap(type.getGenericInterfaces(), map);
 
-            // Populate enclosing classes
-            type = targetType;
-            while (type.isMemberClass()) {
-                genericType = type.getGenericSuperclass();
-                if (genericType instanceof ParameterizedType)
-                    buildTypeVariableMap((ParameterizedType) genericType, map);
+            genericType = type.getGenericSuperclass();
+            type = type.getSuperclass();
+        }
 
-                type = type.getEnclosingClass();
-            }
+        // Populate enclosing classes
+        type = targetType;
+        while (type.isMemberClass()) {
+            genericType = type.getGenericSuperclass();
+            if (genericType instanceof ParameterizedType)
+                buildTypeVariableMap((ParameterizedType) genericType, map);
 
-            if (cacheEnabled)
-                typeVariableCache.put(targetType, new WeakReference<Map<TypeVariable<?>, Type>>(map));
+            type = type.getEnclosingClass();
         }
 
         return map;
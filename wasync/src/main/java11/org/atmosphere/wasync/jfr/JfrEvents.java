@@ -0,0 +1,242 @@
+/*
+ * Copyright 2015 Async-IO.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.wasync.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+import jdk.jfr.Timespan;
+import org.atmosphere.wasync.Decoder;
+import org.atmosphere.wasync.Event;
+import org.atmosphere.wasync.Request;
+
+/**
+ * Emit the Java Flight Recorder events of the sockets: connect attempts, transport fallbacks, scheduled reconnects,
+ * websocket frames received and sent, decoders and slow {@link org.atmosphere.wasync.Function}s.
+ * <p/>
+ * The Java 11 version of the class. An event is only created when it is enabled in a running recording, so the cost
+ * is a check once the JIT has removed the allocation.
+ */
+public class JfrEvents {
+
+    private final static String CATEGORY = "wAsync";
+
+    public static Object connectBegin() {
+        ConnectEvent event = new ConnectEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+
+    public static void connectEnd(Object event, String uri, Request.TRANSPORT transport, boolean connected) {
+        if (event == null) {
+            return;
+        }
+        ConnectEvent e = (ConnectEvent) event;
+        e.end();
+        if (e.shouldCommit()) {
+            e.uri = uri;
+            e.transport = name(transport);
+            e.connected = connected;
+            e.commit();
+        }
+    }
+
+    public static void transportFallback(String uri, Request.TRANSPORT from, Request.TRANSPORT to) {
+        TransportFallbackEvent e = new TransportFallbackEvent();
+        if (e.isEnabled()) {
+            e.uri = uri;
+            e.from = name(from);
+            e.to = name(to);
+            e.commit();
+        }
+    }
+
+    public static void reconnectScheduled(String uri, Request.TRANSPORT transport, long delayInMilliseconds, int attempt) {
+        ReconnectScheduledEvent e = new ReconnectScheduledEvent();
+        if (e.isEnabled()) {
+            e.uri = uri;
+            e.transport = name(transport);
+            e.delay = delayInMilliseconds;
+            e.attempt = attempt;
+            e.commit();
+        }
+    }
+
+    public static void frameReceived(String uri, int length, boolean binary) {
+        FrameReceivedEvent e = new FrameReceivedEvent();
+        if (e.isEnabled()) {
+            e.uri = uri;
+            e.length = length;
+            e.binary = binary;
+            e.commit();
+        }
+    }
+
+    public static void frameSent(String uri, int length, boolean binary) {
+        FrameSentEvent e = new FrameSentEvent();
+        if (e.isEnabled()) {
+            e.uri = uri;
+            e.length = length;
+            e.binary = binary;
+            e.commit();
+        }
+    }
+
+    public static Object decodeBegin() {
+        DecodeEvent event = new DecodeEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+
+    public static void decodeEnd(Object event, Decoder<?, ?> decoder, Event e) {
+        if (event == null) {
+            return;
+        }
+        DecodeEvent d = (DecodeEvent) event;
+        d.end();
+        if (d.shouldCommit()) {
+            d.decoder = decoder.getClass();
+            d.event = e.name();
+            d.commit();
+        }
+    }
+
+    public static Object functionBegin() {
+        SlowFunctionEvent event = new SlowFunctionEvent();
+        if (!event.isEnabled()) {
+            return null;
+        }
+        event.begin();
+        return event;
+    }
+
+    public static void functionEnd(Object event, Object functionName, Object message) {
+        if (event == null) {
+            return;
+        }
+        SlowFunctionEvent e = (SlowFunctionEvent) event;
+        e.end();
+        if (e.shouldCommit()) {
+            e.functionName = String.valueOf(functionName);
+            e.messageType = message == null ? null : message.getClass();
+            e.commit();
+        }
+    }
+
+    private static String name(Request.TRANSPORT transport) {
+        return transport == null ? null : transport.name();
+    }
+
+    @Name("org.atmosphere.wasync.Connect")
+    @Label("Connect")
+    @Category(CATEGORY)
+    @Description("A socket connecting or failing to connect")
+    static class ConnectEvent extends jdk.jfr.Event {
+        @Label("URI")
+        String uri;
+        @Label("Transport")
+        String transport;
+        @Label("Connected")
+        boolean connected;
+    }
+
+    @Name("org.atmosphere.wasync.TransportFallback")
+    @Label("Transport Fallback")
+    @Category(CATEGORY)
+    @Description("A transport not supported by the server, replaced by the next one")
+    static class TransportFallbackEvent extends jdk.jfr.Event {
+        @Label("URI")
+        String uri;
+        @Label("From")
+        String from;
+        @Label("To")
+        String to;
+    }
+
+    @Name("org.atmosphere.wasync.ReconnectScheduled")
+    @Label("Reconnect Scheduled")
+    @Category(CATEGORY)
+    @Description("A reconnect scheduled after the connection was lost")
+    static class ReconnectScheduledEvent extends jdk.jfr.Event {
+        @Label("URI")
+        String uri;
+        @Label("Transport")
+        String transport;
+        @Label("Delay")
+        @Timespan(Timespan.MILLISECONDS)
+        long delay;
+        @Label("Attempt")
+        int attempt;
+    }
+
+    @Name("org.atmosphere.wasync.FrameReceived")
+    @Label("WebSocket Frame Received")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    static class FrameReceivedEvent extends jdk.jfr.Event {
+        @Label("URI")
+        String uri;
+        @Label("Length")
+        int length;
+        @Label("Binary")
+        boolean binary;
+    }
+
+    @Name("org.atmosphere.wasync.FrameSent")
+    @Label("WebSocket Frame Sent")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    static class FrameSentEvent extends jdk.jfr.Event {
+        @Label("URI")
+        String uri;
+        @Label("Length")
+        int length;
+        @Label("Binary")
+        boolean binary;
+    }
+
+    @Name("org.atmosphere.wasync.Decode")
+    @Label("Decode")
+    @Category(CATEGORY)
+    @StackTrace(false)
+    static class DecodeEvent extends jdk.jfr.Event {
+        @Label("Decoder")
+        Class<?> decoder;
+        @Label("Event")
+        String event;
+    }
+
+    @Name("org.atmosphere.wasync.SlowFunction")
+    @Label("Slow Function")
+    @Category(CATEGORY)
+    @Description("A Function.on call lasting longer than the threshold")
+    @Threshold("20 ms")
+    static class SlowFunctionEvent extends jdk.jfr.Event {
+        @Label("Function Name")
+        String functionName;
+        @Label("Message Type")
+        Class<?> messageType;
+    }
+}
@@ -32,25 +32,50 @@ import org.atmosphere.wasync.Function;
 import org.atmosphere.wasync.Options;
 import org.atmosphere.wasync.Request;
 import org.atmosphere.wasync.RequestBuilder;
+import org.atmosphere.wasync.RequestTemplate;
 import org.atmosphere.wasync.Socket;
 import org.atmosphere.wasync.impl.AtmosphereClient;
+import org.atmosphere.wasync.impl.ClientUtil;
 import org.atmosphere.wasync.serial.DefaultSerializedFireStage;
+import org.atmosphere.wasync.serial.JournaledSerializedFireStage;
+import org.atmosphere.wasync.serial.PriorityLaneSerializedFireStage;
+import org.atmosphere.wasync.serial.RingBufferSerializedFireStage;
 import org.atmosphere.wasync.serial.SerializedClient;
+import org.atmosphere.wasync.serial.SerializedFireStage;
 import org.atmosphere.wasync.serial.SerializedOptionsBuilder;
+import org.atmosphere.wasync.serial.SerializedSocket;
+import org.atmosphere.wasync.serial.WindowedSerializedFireStage;
+import org.atmosphere.wasync.util.FileRegion;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.Test;
 
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.Reader;
 import java.io.StringReader;
 import java.net.ConnectException;
 import java.net.ServerSocket;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -58,8 +83,10 @@ import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertNotNull;
 import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
 
 public abstract class BaseTest {
     public final static String RESUME = "Resume";
@@ -291,6 +318,144 @@ public abstract class BaseTest {
         assertEquals(response.get(), RESUME);
     }
 
+    @Test
+    public void openAsyncTest() throws Exception {
+        Config config = new Config.Builder()
+                .port(port)
+                .host("127.0.0.1")
+                .resource("/suspend", new AtmosphereHandler() {
+
+                    private final AtomicBoolean b = new AtomicBoolean(false);
+
+                    @Override
+                    public void onRequest(AtmosphereResource r) throws IOException {
+                        if (!b.getAndSet(true)) {
+                            r.suspend(-1);
+                        } else {
+                            r.getBroadcaster().broadcast(RESUME);
+                        }
+                    }
+
+                    @Override
+                    public void onStateChange(AtmosphereResourceEvent r) throws IOException {
+                        if (!r.isResuming() || !r.isCancelled()) {
+                            r.getResource().getResponse().getWriter().print(r.getMessage());
+                            r.getResource().resume();
+                        }
+                    }
+
+                    @Override
+                    public void destroy() {
+
+                    }
+                }).build();
+
+        server = new Nettosphere.Builder().config(config).build();
+        assertNotNull(server);
+        server.start();
+
+        final CountDownLatch latch = new CountDownLatch(1);
+        final AtomicReference<String> response = new AtomicReference<String>();
+        Client client = ClientFactory.getDefault().newClient();
+
+        RequestBuilder request = client.newRequestBuilder()
+                .method(Request.METHOD.GET)
+                .uri(targetUrl + "/suspend")
+                .transport(transport());
+
+        Socket socket = client.create(client.newOptionsBuilder().waitBeforeUnlocking(5000).build());
+        socket.on(Event.MESSAGE, new Function<String>() {
+            @Override
+            public void on(String t) {
+                response.set(t);
+                latch.countDown();
+            }
+        });
+
+        long start = System.currentTimeMillis();
+        Socket opened = socket.openAsync(request.build(), 5, TimeUnit.SECONDS).toCompletableFuture().get(10, TimeUnit.SECONDS);
+        logger.info("Opened in {}ms", System.currentTimeMillis() - start);
+        opened.fire("PING");
+
+        latch.await(5, TimeUnit.SECONDS);
+        server.stop();
+        socket.close();
+
+        assertEquals(opened, socket);
+        assertEquals(response.get(), RESUME);
+    }
+
+    @Test
+    public void openAllTest() throws Exception {
+        final int count = 10;
+        final Set<String> trackingIds = Collections.synchronizedSet(new HashSet<String>());
+        final CountDownLatch fired = new CountDownLatch(count);
+        Config config = new Config.Builder()
+                .port(port)
+                .host("127.0.0.1")
+                .resource("/suspend", new AtmosphereHandler() {
+
+                    @Override
+                    public void onRequest(AtmosphereResource r) throws IOException {
+                        if (r.getRequest().getMethod().equalsIgnoreCase("GET")) {
+                            r.suspend(-1);
+                        } else {
+                            trackingIds.add(r.getRequest().getParameter("X-Atmosphere-tracking-id"));
+                            fired.countDown();
+                        }
+                    }
+
+                    @Override
+                    public void onStateChange(AtmosphereResourceEvent r) throws IOException {
+                    }
+
+                    @Override
+                    public void destroy() {
+
+                    }
+                }).build();
+
+        server = new Nettosphere.Builder().config(config).build();
+        assertNotNull(server);
+        server.start();
+
+        AtmosphereClient client = ClientFactory.getDefault().newClient(AtmosphereClient.class);
+        RequestTemplate template = client.newRequestBuilder()
+                .method(Request.METHOD.GET)
+                .uri(targetUrl + "/suspend")
+                .enableProtocol(true)
+                .transport(transport())
+                .template();
+
+        List<Socket> sockets = new ArrayList<Socket>();
+        for (int i = 0; i < count; i++) {
+            sockets.add(client.create(client.newOptionsBuilder().reconnect(false).build()));
+        }
+
+        List<CompletionStage<Socket>> opened = ClientUtil.openAll(sockets, template, 3);
+        try {
+            for (int i = 0; i < sockets.size(); i++) {
+                assertEquals(opened.get(i).toCompletableFuture().get(10, TimeUnit.SECONDS), sockets.get(i));
+            }
+
+            // Every socket has its own request, so its own tracking id.
+            for (Socket socket : sockets) {
+                socket.fire("PING");
+            }
+            assertTrue(fired.await(10, TimeUnit.SECONDS));
+            assertEquals(trackingIds.size(), count);
+            assertFalse(trackingIds.contains(null));
+            assertFalse(trackingIds.contains("0"));
+
+            assertTrue(ClientUtil.closeAll(sockets, 10, TimeUnit.SECONDS));
+            for (Socket socket : sockets) {
+                assertEquals(socket.status(), Socket.STATUS.CLOSE);
+            }
+        } finally {
+            server.stop();
+        }
+    }
+
     @Test
     public void allStringFunctionTest() throws Exception {
         final CountDownLatch latch = new CountDownLatch(2);
@@ -1162,6 +1327,81 @@ public abstract class BaseTest {
         }
     }
 
+    @Test
+    public void fileFireTest() throws Exception {
+        // A websocket rejects file payloads, see webSocketFileTest
+        if (transport().equals(Request.TRANSPORT.WEBSOCKET)) {
+            return;
+        }
+
+        final List<String> received = new CopyOnWriteArrayList<String>();
+        Config config = new Config.Builder()
+                .port(port)
+                .host("127.0.0.1")
+                .resource("/suspend", new AtmosphereHandler() {
+
+                    private final AtomicBoolean b = new AtomicBoolean(false);
+
+                    @Override
+                    public void onRequest(AtmosphereResource r) throws IOException {
+                        if (!b.getAndSet(true)) {
+                            r.suspend(-1);
+                        } else {
+                            Reader reader = r.getRequest().getReader();
+                            StringBuilder body = new StringBuilder();
+                            char[] buffer = new char[1024];
+                            int read;
+                            while ((read = reader.read(buffer)) != -1) {
+                                body.append(buffer, 0, read);
+                            }
+                            received.add(body.toString());
+                        }
+                    }
+
+                    @Override
+                    public void onStateChange(AtmosphereResourceEvent r) throws IOException {
+                    }
+
+                    @Override
+                    public void destroy() {
+
+                    }
+                }).build();
+
+        server = new Nettosphere.Builder().config(config).build();
+        assertNotNull(server);
+        server.start();
+
+        File file = File.createTempFile("wasync", "upload");
+        FileOutputStream out = new FileOutputStream(file);
+        out.write("line 1\nline 2".getBytes("UTF-8"));
+        out.close();
+
+        Client client = ClientFactory.getDefault().newClient();
+        RequestBuilder request = client.newRequestBuilder()
+                .method(Request.METHOD.GET)
+                .uri(targetUrl + "/suspend")
+                .transport(transport());
+
+        Socket socket = client.create();
+        socket.open(request.build());
+        FileChannel channel = FileChannel.open(file.toPath());
+        try {
+            // Each write completes once the server has handled the request
+            socket.fire(file).get(5, TimeUnit.SECONDS);
+            socket.fire(file.toPath()).get(5, TimeUnit.SECONDS);
+            socket.fire(channel).get(5, TimeUnit.SECONDS);
+            socket.fire(new FileRegion(channel, 7, 4)).get(5, TimeUnit.SECONDS);
+
+            awaitReceived(received, 4);
+            assertEquals(received, Arrays.asList("line 1\nline 2", "line 1\nline 2", "line 1\nline 2", "line"));
+        } finally {
+            channel.close();
+            socket.close();
+            file.delete();
+        }
+    }
+
     @Test(enabled = false)
     public void basicLoadTest() throws IOException, InterruptedException {
         Config config = new Config.Builder()
@@ -2304,6 +2544,464 @@ public abstract class BaseTest {
         assertEquals(response.get().toString(), "PINGPONG");
     }
 
+    @Test
+    public void windowedSerializeTest() throws Exception {
+        Config config = new Config.Builder()
+                .port(port)
+                .host("127.0.0.1")
+                .resource("/suspend", new AtmosphereHandler() {
+
+                    private final AtomicInteger count = new AtomicInteger(5);
+                    private final StringBuffer response = new StringBuffer();
+                    private final Map<Long, String> outOfOrder = new HashMap<Long, String>();
+                    private long next;
+
+                    @Override
+                    public void onRequest(AtmosphereResource r) throws IOException {
+                        if (r.getRequest().getMethod().equalsIgnoreCase("GET")) {
+                            r.suspend(-1);
+                        } else {
+                            String sequence = r.getRequest().getHeader(SerializedSocket.SEQUENCE_HEADER);
+                            String message = r.getRequest().getReader().readLine();
+                            if (sequence == null) {
+                                broadcast(r, message);
+                                return;
+                            }
+
+                            // Restore the order of the pipelined requests.
+                            synchronized (outOfOrder) {
+                                outOfOrder.put(Long.valueOf(sequence), message);
+                                while (outOfOrder.containsKey(next)) {
+                                    broadcast(r, outOfOrder.remove(next++));
+                                }
+                            }
+                        }
+                    }
+
+                    private void broadcast(AtmosphereResource r, String message) {
+                        try {
+                            r.getBroadcaster().broadcast(message).get();
+                        } catch (InterruptedException e) {
+                            e.printStackTrace();
+                        } catch (ExecutionException e) {
+                            e.printStackTrace();
+                        }
+                    }
+
+                    @Override
+                    public void onStateChange(AtmosphereResourceEvent r) throws IOException {
+                        if (r.getMessage() != null) {
+                            response.append(r.getMessage());
+                            if (count.decrementAndGet() == 0) {
+                                r.getResource().getResponse().write(response.toString());
+                                r.getResource().resume();
+                            }
+                        }
+                    }
+
+                    @Override
+                    public void destroy() {
+
+                    }
+                }).build();
+
+        server = new Nettosphere.Builder().config(config).build();
+        assertNotNull(server);
+        server.start();
+
+        final CountDownLatch latch = new CountDownLatch(1);
+        final AtomicReference<String> response = new AtomicReference<String>();
+        SerializedClient client = ClientFactory.getDefault().newClient(SerializedClient.class);
+
+        SerializedOptionsBuilder b = client.newOptionsBuilder();
+        b.serializedFireStage(new WindowedSerializedFireStage(4));
+
+        RequestBuilder request = client.newRequestBuilder()
+                .method(Request.METHOD.GET)
+                .uri(targetUrl + "/suspend")
+                .transport(transport());
+
+        Socket socket = client.create(b.build());
+
+        socket.on("message", new Function<String>() {
+            @Override
+            public void on(String t) {
+                logger.info("Windowed Function invoked {}", t);
+                response.set(t);
+                latch.countDown();
+            }
+        }).open(request.build())
+                .fire("1")
+                .fire("2")
+                .fire("3")
+                .fire("4")
+                .fire("5").get();
+
+        latch.await(10, TimeUnit.SECONDS);
+        socket.close();
+
+        assertEquals(response.get(), "12345");
+    }
+
+    @Test
+    public void ringBufferSerializeTest() throws Exception {
+        assertSerialized(new RingBufferSerializedFireStage(4, RingBufferSerializedFireStage.OverflowPolicy.BLOCK,
+                RingBufferSerializedFireStage.WaitStrategy.BLOCKING), null);
+    }
+
+    @Test
+    public void batchingSerializeTest() throws Exception {
+        assertSerialized(new DefaultSerializedFireStage(10, 1024, 20, TimeUnit.MILLISECONDS, null), null);
+    }
+
+    @Test
+    public void journaledSerializeTest() throws Exception {
+        File directory = File.createTempFile("wasync", "journal");
+        directory.delete();
+        try {
+            assertSerialized(new JournaledSerializedFireStage(directory), null);
+        } finally {
+            File[] files = directory.listFiles();
+            if (files != null) {
+                for (File f : files) {
+                    f.delete();
+                }
+            }
+            directory.delete();
+        }
+    }
+
+    @Test
+    public void journaledWebSocketReconnectTest() throws Exception {
+        final List<String> received = new CopyOnWriteArrayList<String>();
+        Config config = new Config.Builder()
+                .port(port)
+                .host("127.0.0.1")
+                .resource("/suspend", new AtmosphereHandler() {
+
+                    @Override
+                    public void onRequest(AtmosphereResource r) throws IOException {
+                        if (r.getRequest().getMethod().equalsIgnoreCase("GET")) {
+                            r.suspend(-1);
+                        } else {
+                            received.add(read(r.getRequest().getReader()));
+                        }
+                    }
+
+                    @Override
+                    public void onStateChange(AtmosphereResourceEvent r) throws IOException {
+                    }
+
+                    @Override
+                    public void destroy() {
+
+                    }
+                }).build();
+
+        server = new Nettosphere.Builder().config(config).build();
+        assertNotNull(server);
+        server.start();
+
+        File directory = File.createTempFile("wasync", "journal");
+        directory.delete();
+        SerializedClient client = ClientFactory.getDefault().newClient(SerializedClient.class);
+
+        SerializedOptionsBuilder b = client.newOptionsBuilder()
+                .pauseBeforeReconnectInMilliseconds(250)
+                .reconnectAttempts(100);
+        b.serializedFireStage(new JournaledSerializedFireStage(directory, 1024 * 1024, 100, TimeUnit.MILLISECONDS));
+
+        RequestBuilder request = client.newRequestBuilder()
+                .method(Request.METHOD.GET)
+                .uri(targetUrl + "/suspend")
+                .transport(Request.TRANSPORT.WEBSOCKET);
+
+        Socket socket = client.create(b.build()).open(request.build());
+        try {
+            socket.fire("a").get(10, TimeUnit.SECONDS);
+            awaitReceived(received, 1);
+
+            server.stop();
+            long deadline = System.currentTimeMillis() + 10000;
+            while (socket.status() == Socket.STATUS.OPEN && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+
+            // Fired while the server is down: journaled, and written once the websocket is reconnected
+            Future<Socket> fired = socket.fire("b");
+            Future<Socket> last = socket.fire("c");
+            Thread.sleep(500);
+            assertEquals(received, Arrays.asList("a"));
+
+            server = new Nettosphere.Builder().config(config).build();
+            server.start();
+            fired.get(30, TimeUnit.SECONDS);
+            last.get(30, TimeUnit.SECONDS);
+
+            awaitReceived(received, 3);
+            assertEquals(received, Arrays.asList("a", "b", "c"));
+        } finally {
+            socket.close();
+            File[] files = directory.listFiles();
+            if (files != null) {
+                for (File f : files) {
+                    f.delete();
+                }
+            }
+            directory.delete();
+        }
+    }
+
+    private static void awaitReceived(List<String> received, int count) throws InterruptedException {
+        // A websocket write completes once sent, before the server reads it.
+        long deadline = System.currentTimeMillis() + 10000;
+        while (received.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    public void priorityLaneSerializeTest() throws Exception {
+        assertSerialized(new PriorityLaneSerializedFireStage(), 1);
+    }
+
+    @Test
+    public void serializeWebSocketBoundariesTest() throws Exception {
+        final int count = 20;
+        final List<String> received = new CopyOnWriteArrayList<String>();
+        final CountDownLatch latch = new CountDownLatch(2 * count);
+        Config config = new Config.Builder()
+                .port(port)
+                .host("127.0.0.1")
+                .resource("/suspend", new AtmosphereHandler() {
+
+                    @Override
+                    public void onRequest(AtmosphereResource r) throws IOException {
+                        if (r.getRequest().getMethod().equalsIgnoreCase("GET")) {
+                            r.suspend(-1);
+                        } else {
+                            // Every websocket message is dispatched as a request.
+                            received.add(read(r.getRequest().getReader()));
+                            latch.countDown();
+                        }
+                    }
+
+                    @Override
+                    public void onStateChange(AtmosphereResourceEvent r) throws IOException {
+                    }
+
+                    @Override
+                    public void destroy() {
+
+                    }
+                }).build();
+
+        server = new Nettosphere.Builder().config(config).build();
+        assertNotNull(server);
+        server.start();
+
+        SerializedClient client = ClientFactory.getDefault().newClient(SerializedClient.class);
+
+        SerializedOptionsBuilder b = client.newOptionsBuilder();
+        b.serializedFireStage(new DefaultSerializedFireStage());
+
+        RequestBuilder request = client.newRequestBuilder()
+                .method(Request.METHOD.GET)
+                .uri(targetUrl + "/suspend")
+                .transport(Request.TRANSPORT.WEBSOCKET);
+
+        final Socket socket = client.create(b.build()).open(request.build());
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Callable<Void>> fires = new ArrayList<Callable<Void>>();
+            for (int i = 0; i < count; i++) {
+                final int n = i;
+                fires.add(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        socket.fire("s" + n).get(10, TimeUnit.SECONDS);
+                        return null;
+                    }
+                });
+                fires.add(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        socket.fire(("b" + n).getBytes("UTF-8")).get(10, TimeUnit.SECONDS);
+                        return null;
+                    }
+                });
+            }
+            for (Future<Void> f : executor.invokeAll(fires)) {
+                f.get();
+            }
+
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+            Set<String> expected = new HashSet<String>();
+            for (int i = 0; i < count; i++) {
+                expected.add("s" + i);
+                expected.add("b" + i);
+            }
+            assertEquals(received.size(), 2 * count);
+            assertEquals(new HashSet<String>(received), expected);
+        } finally {
+            executor.shutdownNow();
+            socket.close();
+        }
+    }
+
+    /**
+     * Fire binary payloads over a {@link SerializedSocket} using the {@code stage}, with the {@code priority} if not
+     * null, and assert the server receives them in order. Aggregated payloads are received as a single request.
+     */
+    private void assertSerialized(SerializedFireStage stage, Integer priority) throws Exception {
+        final StringBuffer received = new StringBuffer();
+        Config config = new Config.Builder()
+                .port(port)
+                .host("127.0.0.1")
+                .resource("/suspend", new AtmosphereHandler() {
+
+                    @Override
+                    public void onRequest(AtmosphereResource r) throws IOException {
+                        if (r.getRequest().getMethod().equalsIgnoreCase("GET")) {
+                            r.suspend(-1);
+                        } else {
+                            received.append(read(r.getRequest().getReader()));
+                        }
+                    }
+
+                    @Override
+                    public void onStateChange(AtmosphereResourceEvent r) throws IOException {
+                    }
+
+                    @Override
+                    public void destroy() {
+
+                    }
+                }).build();
+
+        server = new Nettosphere.Builder().config(config).build();
+        assertNotNull(server);
+        server.start();
+
+        SerializedClient client = ClientFactory.getDefault().newClient(SerializedClient.class);
+
+        SerializedOptionsBuilder b = client.newOptionsBuilder();
+        b.serializedFireStage(stage);
+
+        RequestBuilder request = client.newRequestBuilder()
+                .method(Request.METHOD.GET)
+                .uri(targetUrl + "/suspend")
+                .transport(transport());
+
+        Socket socket = client.create(b.build()).open(request.build());
+        try {
+            StringBuilder expected = new StringBuilder();
+            Future<Socket> last = null;
+            for (int i = 0; i < 50; i++) {
+                byte[] payload = ("[" + i + "]").getBytes("UTF-8");
+                last = priority == null ? socket.fire(payload) : socket.fire(payload, priority);
+                expected.append("[").append(i).append("]");
+            }
+            last.get(10, TimeUnit.SECONDS);
+
+            // A websocket write completes once sent, before the server reads it.
+            long deadline = System.currentTimeMillis() + 10000;
+            while (received.length() < expected.length() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(received.toString(), expected.toString());
+        } finally {
+            socket.close();
+        }
+    }
+
+    private static String read(Reader reader) throws IOException {
+        StringBuilder body = new StringBuilder();
+        char[] chars = new char[1024];
+        int n;
+        while ((n = reader.read(chars)) != -1) {
+            body.append(chars, 0, n);
+        }
+        return body.toString();
+    }
+
+    @Test
+    public void webSocketFileTest() throws Exception {
+        final List<String> received = new CopyOnWriteArrayList<String>();
+        Config config = new Config.Builder()
+                .port(port)
+                .host("127.0.0.1")
+                .resource("/suspend", new AtmosphereHandler() {
+
+                    @Override
+                    public void onRequest(AtmosphereResource r) throws IOException {
+                        if (r.getRequest().getMethod().equalsIgnoreCase("GET")) {
+                            r.suspend(-1);
+                        } else {
+                            String message = read(r.getRequest().getReader());
+                            received.add(message);
+                            r.getBroadcaster().broadcast(message);
+                        }
+                    }
+
+                    @Override
+                    public void onStateChange(AtmosphereResourceEvent r) throws IOException {
+                        if (r.getMessage() != null) {
+                            r.getResource().getResponse().write(r.getMessage().toString());
+                        }
+                    }
+
+                    @Override
+                    public void destroy() {
+
+                    }
+                }).build();
+
+        server = new Nettosphere.Builder().config(config).build();
+        assertNotNull(server);
+        server.start();
+
+        final CountDownLatch latch = new CountDownLatch(1);
+        final AtomicReference<String> response = new AtomicReference<String>();
+        Client client = ClientFactory.getDefault().newClient();
+
+        RequestBuilder request = client.newRequestBuilder()
+                .method(Request.METHOD.GET)
+                .uri(targetUrl + "/suspend")
+                .transport(Request.TRANSPORT.WEBSOCKET);
+
+        Socket socket = client.create();
+        socket.on(Event.MESSAGE, new Function<String>() {
+            @Override
+            public void on(String t) {
+                response.set(t);
+                latch.countDown();
+            }
+        }).open(request.build());
+
+        File file = File.createTempFile("wasync", "websocket");
+        try {
+            FileOutputStream out = new FileOutputStream(file);
+            out.write("FILE".getBytes("UTF-8"));
+            out.close();
+
+            // A file can't be written using a websocket, it is rejected and the socket stays usable.
+            try {
+                socket.fire(file);
+                fail("A file payload must be rejected");
+            } catch (IOException expected) {
+            }
+
+            socket.fire("PING");
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+            assertEquals(response.get(), "PING");
+            assertEquals(received, Arrays.asList("PING"));
+        } finally {
+            socket.close();
+            file.delete();
+        }
+    }
+
     @Test
     public void ahcCloseTest() throws IOException, InterruptedException {
         Config config = new Config.Builder()
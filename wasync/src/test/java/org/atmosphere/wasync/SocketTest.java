@@ -0,0 +1,118 @@
+/*
+ * Copyright 2015 Async-IO.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.wasync;
+
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public class SocketTest {
+
+    /**
+     * A socket implementing only the methods that aren't defaulted.
+     */
+    private final static class MinimalSocket implements Socket {
+
+        private final List<String> calls = new ArrayList<String>();
+        private IOException openFailure;
+
+        @Override
+        public Future fire(Object data) throws IOException {
+            calls.add("fire " + data);
+            return null;
+        }
+
+        @Override
+        public Socket on(Function<?> function) {
+            calls.add("on");
+            return this;
+        }
+
+        @Override
+        public Socket on(String functionMessage, Function<?> function) {
+            calls.add("on " + functionMessage);
+            return this;
+        }
+
+        @Override
+        public Socket on(Event event, Function<?> function) {
+            calls.add("on " + event);
+            return this;
+        }
+
+        @Override
+        public Socket open(Request request) throws IOException {
+            return open(request, -1, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public Socket open(Request request, long timeout, TimeUnit unit) throws IOException {
+            calls.add("open " + timeout);
+            if (openFailure != null) {
+                throw openFailure;
+            }
+            return this;
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public STATUS status() {
+            return STATUS.INIT;
+        }
+    }
+
+    private final static Function<String> NOOP = new Function<String>() {
+        @Override
+        public void on(String s) {
+        }
+    };
+
+    @Test
+    public void defaultsTest() throws Exception {
+        MinimalSocket socket = new MinimalSocket();
+        socket.fire("a", 1);
+        socket.on(String.class, NOOP).on("m", String.class, NOOP).on(Event.MESSAGE, String.class, NOOP);
+        assertEquals(socket.openAsync(null).toCompletableFuture().get(), socket);
+        socket.openAsync(null, 5, TimeUnit.SECONDS);
+        assertEquals(socket.calls.toString(), "[fire a, on, on m, on MESSAGE, open -1, open 5]");
+    }
+
+    @Test
+    public void openAsyncFailureTest() throws Exception {
+        MinimalSocket socket = new MinimalSocket();
+        socket.openFailure = new IOException("Connection refused");
+        CompletableFuture<Socket> opened = socket.openAsync(null).toCompletableFuture();
+        assertTrue(opened.isCompletedExceptionally());
+        try {
+            opened.get();
+            fail("The stage must fail like open");
+        } catch (ExecutionException e) {
+            assertEquals(e.getCause(), socket.openFailure);
+        }
+    }
+}
@@ -0,0 +1,238 @@
+/*
+ * Copyright 2015 Async-IO.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.wasync.impl;
+
+import org.atmosphere.wasync.FunctionWrapper;
+import org.atmosphere.wasync.Future;
+import org.atmosphere.wasync.OfflinePolicy;
+import org.atmosphere.wasync.Options;
+import org.atmosphere.wasync.Request;
+import org.atmosphere.wasync.Socket;
+import org.atmosphere.wasync.Transport;
+import org.atmosphere.wasync.util.FutureProxy;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public class DefaultSocketTest {
+
+    private final List<Object> written = new CopyOnWriteArrayList<Object>();
+    private final CountDownLatch writing = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final StubTransport transport = new StubTransport();
+    private final List<Thread> threads = new ArrayList<Thread>();
+    // If set, returned by the writes as if they were queued by the rate policy
+    private volatile CompletableFuture<Void> queued;
+
+    @AfterMethod
+    public void tearDown() throws InterruptedException {
+        release.countDown();
+        for (Thread t : threads) {
+            t.join(5000);
+        }
+    }
+
+    /**
+     * Create a socket whose websocket is closed and will be reconnected, so fired messages are buffered. The first
+     * write blocks until {@link #release} is counted down.
+     */
+    private DefaultSocket socket(OfflinePolicy policy) {
+        DefaultClient client = new DefaultClient();
+        Options options = client.newOptionsBuilder().offlinePolicy(policy).build();
+        DefaultSocket socket = new DefaultSocket(options);
+        socket.request = client.newRequestBuilder().uri("http://127.0.0.1:8080/").build();
+        socket.transportInUse = transport;
+        socket.socketRuntime = new SocketRuntime(transport, options, new DefaultFuture(socket), new ArrayList<FunctionWrapper>()) {
+            @Override
+            public Future write(Request request, Object data) throws IOException {
+                writing.countDown();
+                if (written.isEmpty()) {
+                    try {
+                        release.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                written.add(data);
+                return queued != null ? new FutureProxy<CompletableFuture<Void>>(rootFuture.socket(), queued) : rootFuture;
+            }
+
+            @Override
+            public Future write(Request request, Object data, int priority) throws IOException {
+                return write(request, data + "@" + priority);
+            }
+        };
+        return socket;
+    }
+
+    private void start(Runnable r) {
+        Thread t = new Thread(r);
+        threads.add(t);
+        t.start();
+    }
+
+    @Test
+    public void discardedTest() throws Exception {
+        DefaultSocket socket = socket(new OfflinePolicy(1, Long.MAX_VALUE, -1, TimeUnit.MILLISECONDS, OfflinePolicy.Overflow.DROP_NEWEST));
+        socket.fire("a");
+        Future discarded = socket.fire("b");
+        assertTrue(discarded.isDone());
+        try {
+            discarded.get();
+            fail("The discarded message must fail its future");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+    }
+
+    @Test
+    public void flushOutsideLockTest() throws Exception {
+        final DefaultSocket socket = socket(new OfflinePolicy(10));
+        Future a = socket.fire("a");
+        socket.fire("b", 1);
+
+        // The transport is reopened, and the buffer flushed: the write of "a" blocks
+        transport.status = Socket.STATUS.OPEN;
+        start(new Runnable() {
+            @Override
+            public void run() {
+                socket.flushOfflineBuffer();
+            }
+        });
+        assertTrue(writing.await(5, TimeUnit.SECONDS));
+
+        // Fired while the buffer is flushed: doesn't wait for the write of "a", and is written after "b"
+        final CountDownLatch fired = new CountDownLatch(1);
+        start(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    socket.fire("c");
+                    fired.countDown();
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        });
+        assertTrue(fired.await(5, TimeUnit.SECONDS));
+        assertTrue(written.isEmpty());
+        assertFalse(a.isDone());
+
+        release.countDown();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (written.size() < 3 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(written.toString(), "[a, b@1, c]");
+        assertEquals(a.get(5, TimeUnit.SECONDS), socket);
+    }
+
+    @Test
+    public void queuedWriteTest() throws Exception {
+        DefaultSocket socket = socket(new OfflinePolicy(10));
+        release.countDown();
+        Future a = socket.fire("a");
+        Future b = socket.fire("b");
+        queued = new CompletableFuture<Void>();
+
+        transport.status = Socket.STATUS.OPEN;
+        socket.flushOfflineBuffer();
+        assertEquals(written.toString(), "[a, b]");
+        // Done once the queued writes are
+        assertFalse(a.isDone());
+        queued.completeExceptionally(new IOException("Discarded"));
+        try {
+            b.get(5, TimeUnit.SECONDS);
+            fail("The discarded write must fail the future of the message");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+    }
+
+    @Test
+    public void closedTest() throws Exception {
+        DefaultSocket socket = socket(new OfflinePolicy(10));
+        Future buffered = socket.fire("a");
+        assertFalse(buffered.isDone());
+
+        socket.discardPendingMessages();
+        try {
+            buffered.get(5, TimeUnit.SECONDS);
+            fail("The discarded message must fail its future");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+        assertTrue(written.isEmpty());
+    }
+
+    private final static class StubTransport implements Transport {
+
+        private volatile Socket.STATUS status = Socket.STATUS.CLOSE;
+
+        @Override
+        public Request.TRANSPORT name() {
+            return Request.TRANSPORT.WEBSOCKET;
+        }
+
+        @Override
+        public Transport registerF(FunctionWrapper function) {
+            return this;
+        }
+
+        @Override
+        public void onThrowable(Throwable t) {
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public Socket.STATUS status() {
+            return status;
+        }
+
+        @Override
+        public boolean errorHandled() {
+            return false;
+        }
+
+        @Override
+        public void error(Throwable e) {
+        }
+
+        @Override
+        public void future(Future f) {
+        }
+
+        @Override
+        public void connectedFuture(Future f) {
+        }
+    }
+}
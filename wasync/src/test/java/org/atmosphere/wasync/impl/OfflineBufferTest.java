@@ -0,0 +1,118 @@
+/*
+ * Copyright 2015 Async-IO.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.wasync.impl;
+
+import org.atmosphere.wasync.OfflinePolicy;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public class OfflineBufferTest {
+
+    private static List<Object> drain(OfflineBuffer buffer) {
+        List<Object> messages = new ArrayList<Object>();
+        OfflineBuffer.Entry e;
+        while ((e = buffer.poll()) != null) {
+            messages.add(e.priority == null ? e.message : e.message + "@" + e.priority);
+        }
+        return messages;
+    }
+
+    private static void assertDiscarded(CompletableFuture<Void> future) throws InterruptedException {
+        assertTrue(future.isDone());
+        try {
+            future.get();
+            fail("The discarded message must fail its future");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+    }
+
+    @Test
+    public void dropOldestTest() throws Exception {
+        OfflineBuffer buffer = new OfflineBuffer(new OfflinePolicy(3));
+        List<CompletableFuture<Void>> futures = new ArrayList<CompletableFuture<Void>>();
+        for (int i = 0; i < 5; i++) {
+            futures.add(buffer.offer("message" + i, null));
+        }
+        assertDiscarded(futures.get(0));
+        assertDiscarded(futures.get(1));
+        assertFalse(futures.get(2).isDone());
+        assertEquals(drain(buffer).toString(), "[message2, message3, message4]");
+    }
+
+    @Test
+    public void dropNewestTest() throws Exception {
+        OfflineBuffer buffer = new OfflineBuffer(new OfflinePolicy(2, Long.MAX_VALUE, -1, TimeUnit.MILLISECONDS, OfflinePolicy.Overflow.DROP_NEWEST));
+        assertFalse(buffer.offer("a", null).isDone());
+        assertFalse(buffer.offer("b", 1).isDone());
+        assertDiscarded(buffer.offer("c", null));
+        assertEquals(drain(buffer).toString(), "[a, b@1]");
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void failTest() throws Exception {
+        OfflineBuffer buffer = new OfflineBuffer(new OfflinePolicy(1, Long.MAX_VALUE, -1, TimeUnit.MILLISECONDS, OfflinePolicy.Overflow.FAIL));
+        buffer.offer("a", null);
+        buffer.offer("b", null);
+    }
+
+    @Test
+    public void maxBytesTest() throws Exception {
+        OfflineBuffer buffer = new OfflineBuffer(new OfflinePolicy(100, 6, -1, TimeUnit.MILLISECONDS, OfflinePolicy.Overflow.DROP_OLDEST));
+        buffer.offer("abc", null);
+        buffer.offer(new byte[2], null);
+        buffer.offer("de", null);
+        assertEquals(buffer.size(), 2);
+        assertEquals(buffer.bytes(), 4);
+
+        // Never fits
+        assertDiscarded(buffer.offer("0123456", null));
+        assertEquals(buffer.size(), 2);
+    }
+
+    @Test
+    public void timeToLiveTest() throws Exception {
+        OfflineBuffer buffer = new OfflineBuffer(new OfflinePolicy(100, Long.MAX_VALUE, 50, TimeUnit.MILLISECONDS, OfflinePolicy.Overflow.DROP_OLDEST));
+        CompletableFuture<Void> expired = buffer.offer("expired", null);
+        Thread.sleep(100);
+        buffer.offer("alive", null);
+        assertDiscarded(expired);
+        assertEquals(drain(buffer).toString(), "[alive]");
+    }
+
+    @Test
+    public void clearTest() throws Exception {
+        OfflineBuffer buffer = new OfflineBuffer(new OfflinePolicy(10));
+        CompletableFuture<Void> a = buffer.offer("a", null);
+        CompletableFuture<Void> b = buffer.offer("b", null);
+        assertEquals(buffer.clear(), 2);
+        assertDiscarded(a);
+        assertDiscarded(b);
+        assertEquals(buffer.bytes(), 0);
+        assertEquals(drain(buffer).toString(), "[]");
+    }
+}
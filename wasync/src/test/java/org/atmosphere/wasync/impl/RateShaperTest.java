@@ -0,0 +1,164 @@
+/*
+ * Copyright 2015 Async-IO.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.wasync.impl;
+
+import org.atmosphere.wasync.RatePolicy;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public class RateShaperTest {
+
+    private final static RateShaper.Write NOOP = new RateShaper.Write() {
+        @Override
+        public void run() {
+        }
+
+        @Override
+        public void discard(IOException e) {
+        }
+    };
+
+    @Test
+    public void failTest() throws Exception {
+        RateShaper shaper = new RateShaper(new RatePolicy(1, 2, -1, -1, RatePolicy.Mode.FAIL));
+        assertTrue(shaper.acquire("a", NOOP));
+        assertTrue(shaper.acquire("b", NOOP));
+        try {
+            shaper.acquire("c", NOOP);
+            fail("The rate should have been exceeded");
+        } catch (IOException expected) {
+        }
+    }
+
+    @Test
+    public void byteRateTest() throws Exception {
+        RateShaper shaper = new RateShaper(new RatePolicy(1000, 1000, 10, 10, RatePolicy.Mode.FAIL));
+        assertTrue(shaper.acquire("0123456", NOOP));
+        try {
+            shaper.acquire("0123", NOOP);
+            fail("The rate should have been exceeded");
+        } catch (IOException expected) {
+        }
+        // The message token has been given back
+        assertTrue(shaper.acquire("012", NOOP));
+    }
+
+    @Test
+    public void utf8Test() throws Exception {
+        RateShaper shaper = new RateShaper(new RatePolicy(1000, 1000, 10, 10, RatePolicy.Mode.FAIL));
+        // 4 characters, 8 bytes
+        assertTrue(shaper.acquire("\u00e9\u00e9\u00e9\u00e9", NOOP));
+        try {
+            shaper.acquire("abc", NOOP);
+            fail("The rate should have been exceeded");
+        } catch (IOException expected) {
+        }
+    }
+
+    @Test
+    public void blockTest() throws Exception {
+        RateShaper shaper = new RateShaper(new RatePolicy(20));
+        long start = System.nanoTime();
+        for (int i = 0; i < 5; i++) {
+            assertTrue(shaper.acquire("m", NOOP));
+        }
+        // 4 messages beyond the burst, 50ms each
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 150);
+    }
+
+    @Test
+    public void queueTest() throws Exception {
+        RateShaper shaper = new RateShaper(new RatePolicy(50, 1, -1, -1, RatePolicy.Mode.QUEUE));
+        final List<String> written = new CopyOnWriteArrayList<String>();
+        final CountDownLatch latch = new CountDownLatch(4);
+        try {
+            for (int i = 0; i < 5; i++) {
+                final String m = "m" + i;
+                if (shaper.acquire(m, new RateShaper.Write() {
+                    @Override
+                    public void run() {
+                        written.add(m);
+                        latch.countDown();
+                    }
+
+                    @Override
+                    public void discard(IOException e) {
+                        fail("Discarded " + m);
+                    }
+                })) {
+                    written.add(m);
+                } else {
+                    assertFalse(i == 0);
+                }
+            }
+            assertEquals(written.size(), 1);
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+            assertEquals(written.toString(), "[m0, m1, m2, m3, m4]");
+            // The count is decremented once the last write returns
+            long deadline = System.currentTimeMillis() + 5000;
+            while (shaper.queued() > 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(1);
+            }
+            assertEquals(shaper.queued(), 0);
+        } finally {
+            shaper.close();
+        }
+    }
+
+    @Test
+    public void closeTest() throws Exception {
+        RateShaper shaper = new RateShaper(new RatePolicy(1, 1, -1, -1, RatePolicy.Mode.QUEUE));
+        final List<String> written = new CopyOnWriteArrayList<String>();
+        final List<String> discarded = new CopyOnWriteArrayList<String>();
+        for (int i = 0; i < 3; i++) {
+            final String m = "m" + i;
+            if (shaper.acquire(m, new RateShaper.Write() {
+                @Override
+                public void run() {
+                    written.add(m);
+                }
+
+                @Override
+                public void discard(IOException e) {
+                    discarded.add(m);
+                }
+            })) {
+                written.add(m);
+            }
+        }
+        assertEquals(shaper.queued(), 2);
+
+        shaper.close();
+        assertEquals(written.toString(), "[m0]");
+        assertEquals(discarded.size(), 2);
+        assertEquals(shaper.queued(), 0);
+        try {
+            shaper.acquire("m3", NOOP);
+            fail("The shaper is closed");
+        } catch (IOException expected) {
+        }
+    }
+}
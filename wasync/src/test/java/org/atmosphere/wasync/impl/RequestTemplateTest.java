@@ -0,0 +1,82 @@
+/*
+ * Copyright 2015 Async-IO.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.wasync.impl;
+
+import org.atmosphere.wasync.Request;
+import org.atmosphere.wasync.RequestTemplate;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public class RequestTemplateTest {
+
+    private static AtmosphereRequest.AtmosphereRequestBuilder builder() {
+        return new AtmosphereRequest.AtmosphereRequestBuilder()
+                .uri("http://127.0.0.1:8080/chat")
+                .transport(Request.TRANSPORT.WEBSOCKET)
+                .transport(Request.TRANSPORT.LONG_POLLING)
+                .header("X-Test", "true")
+                .trackMessageLength(true);
+    }
+
+    @Test
+    public void socketRequestTest() throws Exception {
+        RequestTemplate template = builder().template();
+
+        Request a = template.newRequest();
+        Request b = template.newRequest();
+
+        assertTrue(a instanceof AtmosphereRequest);
+        assertTrue(((AtmosphereRequest) a).isTrackMessageLength());
+        assertEquals(a.uri(), "http://127.0.0.1:8080/chat");
+        assertEquals(a.headers().get("X-Test").toString(), "[true]");
+        assertEquals(a.queryString().get("X-Atmosphere-tracking-id").toString(), "[0]");
+
+        // The state modified by a socket isn't shared
+        a.queryString().put("X-Atmosphere-tracking-id", Arrays.asList("uuid"));
+        a.transport().remove(0);
+        assertEquals(b.queryString().get("X-Atmosphere-tracking-id").toString(), "[0]");
+        assertEquals(b.transport().size(), 2);
+
+        // Protocol and track message length decoders
+        assertEquals(a.decoders().size(), 3);
+        for (Object d : a.decoders()) {
+            assertFalse(b.decoders().contains(d));
+        }
+    }
+
+    @Test
+    public void immutableTest() throws Exception {
+        AtmosphereRequest.AtmosphereRequestBuilder builder = builder();
+        RequestTemplate template = builder.template();
+        builder.header("X-Other", "true").build();
+
+        assertNull(template.headers().get("X-Other"));
+        assertNull(template.newRequest().headers().get("X-Other"));
+        assertEquals(template.newRequest().decoders().size(), 3);
+        try {
+            template.transport().clear();
+            fail("The template is mutable");
+        } catch (UnsupportedOperationException expected) {
+        }
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2015 Async-IO.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.wasync.impl;
+
+import org.atmosphere.wasync.Event;
+import org.atmosphere.wasync.Function;
+import org.atmosphere.wasync.FunctionWrapper;
+import org.atmosphere.wasync.Request;
+import org.atmosphere.wasync.transport.TransportsUtil;
+import org.atmosphere.wasync.util.DuplicateWindow;
+import org.testng.annotations.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class ResumeTest {
+
+    private final static String UUID = "4f2d3e4c-8a5b-4c6d-9e7f-0123456789ab";
+    private final static String OTHER_UUID = "00000000-8a5b-4c6d-9e7f-0123456789ab";
+
+    private final List<String> received = new ArrayList<String>();
+    private final List<FunctionWrapper> functions = new ArrayList<FunctionWrapper>();
+
+    {
+        functions.add(new FunctionWrapper("", new Function<String>() {
+            @Override
+            public void on(String s) {
+                received.add(s);
+            }
+        }));
+    }
+
+    private void dispatch(Request request, Event e, String s) {
+        TransportsUtil.invokeFunction(e, request.decoders(), functions, String.class, s, e.name(), request.functionResolver());
+    }
+
+    @Test
+    public void resumeTest() throws Exception {
+        Request request = new AtmosphereRequest.AtmosphereRequestBuilder()
+                .uri("http://127.0.0.1:8080/chat")
+                .resume(true)
+                .messageIdDelimiter(":")
+                .build();
+
+        dispatch(request, Event.MESSAGE, UUID + "|1431412345678|60|X|");
+        dispatch(request, Event.OPEN, Event.OPEN.name());
+        dispatch(request, Event.MESSAGE, "1:a");
+        dispatch(request, Event.MESSAGE, "2:b");
+        assertEquals(request.queryString().get("X-Atmosphere-tracking-id").toString(), "[" + UUID + "]");
+
+        // Reconnect, the server sends the handshake again then replays its cache
+        dispatch(request, Event.REOPENED, Event.REOPENED.name());
+        dispatch(request, Event.MESSAGE, UUID + "|1431412349999|60|X|");
+        dispatch(request, Event.MESSAGE, "2:b");
+        dispatch(request, Event.MESSAGE, "3:c");
+        dispatch(request, Event.MESSAGE, "no id");
+
+        assertEquals(received.toString(), "[a, b, c, no id]");
+        assertEquals(request.queryString().get("X-Atmosphere-tracking-id").toString(), "[" + UUID + "]");
+    }
+
+    @Test
+    public void lostSessionTest() throws Exception {
+        Request request = new AtmosphereRequest.AtmosphereRequestBuilder()
+                .uri("http://127.0.0.1:8080/chat")
+                .trackMessageLength(true)
+                .resume(true)
+                .messageIdDelimiter(":")
+                .build();
+
+        dispatch(request, Event.MESSAGE, "56|" + UUID + "|1431412345678|60|X|");
+        dispatch(request, Event.MESSAGE, "3|1:a");
+        dispatch(request, Event.REOPENED, Event.REOPENED.name());
+        dispatch(request, Event.MESSAGE, "56|" + OTHER_UUID + "|1431412349999|60|X|");
+        // The server numbers its messages from scratch
+        dispatch(request, Event.MESSAGE, "3|1:b");
+
+        assertEquals(received.toString(), "[a, b]");
+        assertEquals(request.queryString().get("X-Atmosphere-tracking-id").toString(), "[" + OTHER_UUID + "]");
+    }
+
+    @Test
+    public void windowTest() throws Exception {
+        DuplicateWindow window = new DuplicateWindow(64);
+        assertTrue(window.firstSeen(5));
+        assertTrue(window.firstSeen(3));
+        assertFalse(window.firstSeen(5));
+        assertFalse(window.firstSeen(3));
+        assertTrue(window.firstSeen(4));
+        assertTrue(window.firstSeen(100));
+        // Older than the window
+        assertFalse(window.firstSeen(30));
+        assertTrue(window.firstSeen(37));
+
+        assertTrue(window.firstSeen("id-a|m", 0, 4));
+        assertFalse(window.firstSeen("id-a|m", 0, 4));
+        assertTrue(window.firstSeen("101|m", 0, 3));
+        assertFalse(window.firstSeen(101));
+    }
+
+    @Test
+    public void idWindowTest() throws Exception {
+        DuplicateWindow window = new DuplicateWindow(3);
+        assertTrue(window.firstSeen("a|m", 0, 1));
+        assertTrue(window.firstSeen("b|m", 0, 1));
+        assertTrue(window.firstSeen("c|m", 0, 1));
+        assertFalse(window.firstSeen("a|m", 0, 1));
+        // Evicts "a"
+        assertTrue(window.firstSeen("d|m", 0, 1));
+        assertTrue(window.firstSeen("a|m", 0, 1));
+        assertFalse(window.firstSeen("c|m", 0, 1));
+
+        // Compare with the ring scanned on every lookup, the evictions shifting entries of the index
+        window = new DuplicateWindow(50);
+        ArrayDeque<String> ring = new ArrayDeque<String>();
+        Random random = new Random(42);
+        for (int i = 0; i < 100000; i++) {
+            String id = "id" + random.nextInt(120);
+            boolean firstSeen = !ring.contains(id);
+            if (firstSeen) {
+                if (ring.size() == 50) {
+                    ring.removeFirst();
+                }
+                ring.addLast(id);
+            }
+            assertEquals(window.firstSeen(id, 0, id.length()), firstSeen, id);
+        }
+    }
+}
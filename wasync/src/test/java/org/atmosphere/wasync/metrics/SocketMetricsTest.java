@@ -0,0 +1,130 @@
+/*
+ * Copyright 2015 Async-IO.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.wasync.metrics;
+
+import org.atmosphere.wasync.Decoder;
+import org.atmosphere.wasync.Event;
+import org.atmosphere.wasync.Function;
+import org.atmosphere.wasync.FunctionResolver;
+import org.atmosphere.wasync.FunctionWrapper;
+import org.atmosphere.wasync.MetricsPolicy;
+import org.atmosphere.wasync.transport.TransportsUtil;
+import org.testng.annotations.Test;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class SocketMetricsTest {
+
+    @Test
+    public void invokeFunctionTest() throws Exception {
+        SocketMetrics metrics = new SocketMetrics(new MetricsPolicy(false, null, -1, TimeUnit.SECONDS));
+        List<FunctionWrapper> functions = new ArrayList<FunctionWrapper>();
+        functions.add(new FunctionWrapper("", new Function<String>() {
+            @Override
+            public void on(String s) {
+            }
+        }));
+        List<Decoder<? extends Object, ?>> decoders = new ArrayList<Decoder<? extends Object, ?>>();
+
+        TransportsUtil.invokeFunction(Event.MESSAGE, decoders, functions, String.class, "hello", Event.MESSAGE.name(), FunctionResolver.DEFAULT, metrics,
+                System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(50));
+        TransportsUtil.invokeFunction(Event.MESSAGE, decoders, functions, byte[].class, new byte[3], Event.MESSAGE.name(), FunctionResolver.DEFAULT, metrics);
+        TransportsUtil.invokeFunction(Event.ERROR, decoders, functions, Exception.class, new Exception(), Event.ERROR.name(), FunctionResolver.DEFAULT, metrics);
+
+        assertEquals(metrics.getMessagesIn(), 2);
+        assertEquals(metrics.getBytesIn(), 8);
+        assertEquals(metrics.getErrors(), 1);
+        assertEquals(metrics.dispatchLatency().count(), 2);
+        assertTrue(metrics.dispatchLatency().max() >= TimeUnit.MILLISECONDS.toMicros(50));
+
+        metrics.connected(System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(20));
+        assertTrue(metrics.connectTime().snapshot().getP50() >= TimeUnit.MILLISECONDS.toMicros(20));
+
+        metrics.outboundQueue(new IntSupplier() {
+            @Override
+            public int getAsInt() {
+                return 2;
+            }
+        });
+        assertEquals(metrics.getOutboundQueueDepth(), 2);
+    }
+
+    @Test
+    public void utf8Test() throws Exception {
+        SocketMetrics metrics = new SocketMetrics(new MetricsPolicy(false, null, -1, TimeUnit.SECONDS));
+        String message = "a\u00e9\u20ac\ud83d\ude00";
+        metrics.messageSent(message);
+        assertEquals(metrics.getBytesOut(), message.getBytes("UTF-8").length);
+        assertEquals(metrics.getBytesOut(), 10);
+    }
+
+    @Test
+    public void disabledTest() throws Exception {
+        SocketMetrics.DISABLED.messageSent("hello");
+        SocketMetrics.DISABLED.reconnected();
+        assertFalse(SocketMetrics.DISABLED.enabled());
+        assertEquals(SocketMetrics.DISABLED.getMessagesOut(), 0);
+        assertEquals(SocketMetrics.DISABLED.getReconnects(), 0);
+    }
+
+    @Test
+    public void publishTest() throws Exception {
+        final CountDownLatch reported = new CountDownLatch(2);
+        final List<Boolean> closed = new CopyOnWriteArrayList<Boolean>();
+        SocketMetrics metrics = new SocketMetrics(new MetricsPolicy(true, new MetricsReporter() {
+            @Override
+            public void report(SocketMetrics metrics, boolean last) {
+                closed.add(last);
+                reported.countDown();
+            }
+        }, 10, TimeUnit.MILLISECONDS));
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName query = new ObjectName(MetricsPolicy.JMX_DOMAIN + ":type=Socket,uri=\"http://127.0.0.1/metrics\",*");
+        try {
+            metrics.start("http://127.0.0.1/metrics", executor);
+            metrics.messageSent("hello");
+            assertEquals(server.queryNames(query, null).size(), 1);
+            ObjectName name = server.queryNames(query, null).iterator().next();
+            assertEquals(server.getAttribute(name, "BytesOut"), 5L);
+            metrics.fireCompleted(System.nanoTime());
+            CompositeData fireLatency = (CompositeData) server.getAttribute(name, "FireLatency");
+            assertEquals(fireLatency.get("count"), 1L);
+            assertTrue(reported.await(5, TimeUnit.SECONDS));
+
+            metrics.stop();
+            assertTrue(server.queryNames(query, null).isEmpty());
+            assertTrue(closed.contains(true));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
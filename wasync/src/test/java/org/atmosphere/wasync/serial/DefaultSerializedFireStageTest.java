@@ -0,0 +1,133 @@
+/*
+ * Copyright 2015 Async-IO.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.wasync.serial;
+
+import com.google.common.util.concurrent.SettableFuture;
+import com.ning.http.client.Response;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public class DefaultSerializedFireStageTest {
+
+    private final StageFixture fixture = new StageFixture(false);
+    private DefaultSerializedFireStage stage;
+
+    @AfterMethod
+    public void tearDown() {
+        fixture.close();
+        if (stage != null) {
+            stage.shutdown();
+        }
+    }
+
+    private DefaultSerializedFireStage stage(int maxBatchCount, int maxBatchBytes, long lingerMs, String delimiter) {
+        return new DefaultSerializedFireStage(maxBatchCount, maxBatchBytes, lingerMs, TimeUnit.MILLISECONDS, delimiter) {
+            @Override
+            protected void fireSynchronously(Object firePayload, SettableFuture<Response> originalFuture) {
+                fixture.write(firePayload, originalFuture);
+            }
+
+            @Override
+            protected void fireSynchronously(Object firePayload, List<SettableFuture<Response>> originalFutures) {
+                fixture.write(firePayload, originalFutures);
+            }
+        };
+    }
+
+    private SettableFuture<Response> fire(Object payload) {
+        return StageFixture.fire(stage, payload);
+    }
+
+    @Test
+    public void closedWebSocketTest() throws Exception {
+        stage = new DefaultSerializedFireStage();
+        fixture.closedWebSocket(stage);
+        try {
+            fire("a").get(5, TimeUnit.SECONDS);
+            fail("A write to a closed websocket must fail");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+    }
+
+    @Test
+    public void lingerTest() throws Exception {
+        stage = stage(100, Integer.MAX_VALUE, 500, null);
+
+        fire("a".getBytes());
+        fire("b".getBytes());
+        fire("c".getBytes()).get(5, TimeUnit.SECONDS);
+
+        assertEquals(fixture.fired.toString(), "[abc]");
+        assertEquals(stage.batchSizeHistogram().count(), 1);
+        assertEquals(stage.batchSizeHistogram().max(), 3);
+    }
+
+    @Test
+    public void maxBatchBytesTest() throws Exception {
+        stage = stage(100, 4, 200, null);
+
+        fire("ab".getBytes());
+        fire("cd".getBytes());
+        fire("efg".getBytes());
+        fire("hijkl".getBytes()).get(5, TimeUnit.SECONDS);
+
+        assertEquals(fixture.fired.toString(), "[abcd, efg, hijkl]");
+    }
+
+    @Test
+    public void maxBatchCountTest() throws Exception {
+        stage = stage(2, Integer.MAX_VALUE, 200, null);
+
+        fire("a".getBytes());
+        fire("b".getBytes());
+        fire("c".getBytes()).get(5, TimeUnit.SECONDS);
+
+        assertEquals(fixture.fired.toString(), "[ab, c]");
+    }
+
+    @Test
+    public void stringFramingTest() throws Exception {
+        stage = stage(100, Integer.MAX_VALUE, 200, "|");
+
+        fire("hello");
+        fire("wAsync");
+        fire("b".getBytes());
+        fire("!").get(5, TimeUnit.SECONDS);
+
+        assertEquals(fixture.fired.toString(), "[5|hello6|wAsync, b, 1|!]");
+    }
+
+    @Test
+    public void unframedStringTest() throws Exception {
+        stage = stage(100, Integer.MAX_VALUE, 200, null);
+
+        fire("hello");
+        fire("wAsync").get(5, TimeUnit.SECONDS);
+
+        assertEquals(fixture.fired.toString(), "[hello, wAsync]");
+        assertEquals(stage.batchSizeHistogram().count(), 0);
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2015 Async-IO.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.wasync.serial;
+
+import com.google.common.util.concurrent.SettableFuture;
+import com.ning.http.client.Response;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class JournaledSerializedFireStageTest {
+
+    private final StageFixture fixture = new StageFixture(false);
+    private File directory;
+    private JournaledSerializedFireStage stage;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        directory = File.createTempFile("wasync", "journal");
+        directory.delete();
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        fixture.close();
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File f : files) {
+                f.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    /**
+     * Create a stage and the socket it is set on, which starts firing.
+     */
+    private JournaledSerializedFireStage stage(int segmentSize, final CountDownLatch release, final AtomicInteger failures) throws IOException {
+        JournaledSerializedFireStage stage = new JournaledSerializedFireStage(directory, segmentSize, 10, TimeUnit.MILLISECONDS) {
+            @Override
+            protected Response write(Object firePayload) throws Exception {
+                release.await();
+                if (failures.getAndDecrement() > 0) {
+                    throw new IOException("Connection refused");
+                }
+                fixture.write(firePayload);
+                return null;
+            }
+        };
+        fixture.socket(stage);
+        return stage;
+    }
+
+    private SettableFuture<Response> fire(Object payload) {
+        return StageFixture.fire(stage, payload);
+    }
+
+    private int segments() {
+        return directory.listFiles().length - 1;
+    }
+
+    @Test
+    public void replayTest() throws Exception {
+        stage = stage(1024, new CountDownLatch(1), new AtomicInteger());
+        fire("a");
+        fire("b".getBytes("UTF-8"));
+        fire("c");
+        assertEquals(stage.pending(), 3);
+        stage.shutdown();
+        assertTrue(fixture.fired.isEmpty());
+
+        stage = stage(1024, new CountDownLatch(0), new AtomicInteger());
+        SettableFuture<Response> last = fire("d");
+        last.get(5, TimeUnit.SECONDS);
+
+        assertEquals(fixture.fired.toString(), "[a, b, c, d]");
+        assertEquals(stage.pending(), 0);
+    }
+
+    @Test
+    public void acknowledgedTest() throws Exception {
+        stage = stage(1024, new CountDownLatch(0), new AtomicInteger());
+        fire("a");
+        fire("b").get(5, TimeUnit.SECONDS);
+        stage.shutdown();
+
+        stage = stage(1024, new CountDownLatch(0), new AtomicInteger());
+        fire("c").get(5, TimeUnit.SECONDS);
+
+        assertEquals(fixture.fired.toString(), "[a, b, c]");
+    }
+
+    @Test
+    public void restartWithoutSegmentTest() throws Exception {
+        stage = stage(1024, new CountDownLatch(0), new AtomicInteger());
+        fire("a");
+        fire("b").get(5, TimeUnit.SECONDS);
+        stage.shutdown();
+
+        // The acknowledged segment is deleted, then a restart finds no segment.
+        stage = stage(1024, new CountDownLatch(0), new AtomicInteger());
+        stage.shutdown();
+        stage = stage(1024, new CountDownLatch(0), new AtomicInteger());
+        stage.shutdown();
+        assertEquals(segments(), 0);
+
+        // Crash before the acknowledgment
+        stage = stage(1024, new CountDownLatch(1), new AtomicInteger());
+        fire("c");
+        assertEquals(stage.pending(), 1);
+        stage.shutdown();
+
+        stage = stage(1024, new CountDownLatch(0), new AtomicInteger());
+        fire("d").get(5, TimeUnit.SECONDS);
+
+        assertEquals(fixture.fired.toString(), "[a, b, c, d]");
+        assertEquals(stage.pending(), 0);
+    }
+
+    @Test
+    public void retryTest() throws Exception {
+        stage = stage(1024, new CountDownLatch(0), new AtomicInteger(3));
+        fire("a");
+        fire("b").get(5, TimeUnit.SECONDS);
+
+        assertEquals(fixture.fired.toString(), "[a, b]");
+    }
+
+    @Test
+    public void segmentDeletionTest() throws Exception {
+        // Every segment holds two entries
+        stage = stage(50, new CountDownLatch(0), new AtomicInteger());
+        SettableFuture<Response> last = null;
+        for (int i = 0; i < 10; i++) {
+            last = fire("message" + i);
+        }
+        last.get(5, TimeUnit.SECONDS);
+
+        assertEquals(fixture.fired.size(), 10);
+        assertEquals(segments(), 1);
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2015 Async-IO.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.wasync.serial;
+
+import com.google.common.util.concurrent.SettableFuture;
+import com.ning.http.client.Response;
+import org.atmosphere.wasync.MetricsPolicy;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.assertEquals;
+
+public class PriorityLaneSerializedFireStageTest {
+
+    private final StageFixture fixture = new StageFixture(true);
+    private PriorityLaneSerializedFireStage stage;
+
+    @AfterMethod
+    public void tearDown() {
+        fixture.close();
+        if (stage != null) {
+            stage.shutdown();
+        }
+    }
+
+    private PriorityLaneSerializedFireStage stage(int starvationThreshold) throws InterruptedException {
+        stage = new PriorityLaneSerializedFireStage(3, 1, starvationThreshold) {
+            @Override
+            protected void fireSynchronously(Object firePayload, SettableFuture<Response> originalFuture) {
+                fixture.write(firePayload, originalFuture);
+            }
+        };
+
+        // Block the stage thread until all payloads are enqueued
+        stage.enqueue("block", SettableFuture.<Response>create(), 0);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (stage.queueDepth(0) != 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        return stage;
+    }
+
+    private SettableFuture<Response> fire(Object payload, int priority) {
+        SettableFuture<Response> future = SettableFuture.create();
+        stage.enqueue(payload, future, priority);
+        return future;
+    }
+
+    @Test
+    public void priorityTest() throws Exception {
+        stage(100);
+        fire("bulk1", 2);
+        fire("normal1", 1);
+        fire("bulk2", 2);
+        fire("control1", 0);
+        fire("normal2", 5);
+        SettableFuture<Response> last = fire("control2", -1);
+        fixture.release();
+        last.get(5, TimeUnit.SECONDS);
+        fire("end", 2).get(5, TimeUnit.SECONDS);
+
+        assertEquals(fixture.fired.toString(), "[block, control1, control2, normal1, bulk1, bulk2, normal2, end]");
+        assertEquals(stage.latencyHistogram(0).count(), 3);
+    }
+
+    @Test
+    public void queueDepthTest() throws Exception {
+        stage(100);
+        SerializedSocket socket = fixture.socket(stage, new MetricsPolicy(false, null, -1, TimeUnit.SECONDS));
+        fire("bulk", 2);
+        fire("control", 0);
+        assertEquals(stage.queueDepth(), 2);
+        assertEquals(socket.metrics().getOutboundQueueDepth(), 2);
+
+        fixture.release();
+        fire("end", 2).get(5, TimeUnit.SECONDS);
+        assertEquals(socket.metrics().getOutboundQueueDepth(), 0);
+    }
+
+    @Test
+    public void starvationTest() throws Exception {
+        stage(2);
+        fire("low", 2);
+        for (int i = 0; i < 6; i++) {
+            fire("high" + i, 0);
+        }
+        fixture.release();
+        fire("end", 0).get(5, TimeUnit.SECONDS);
+
+        assertEquals(fixture.fired.toString(), "[block, high0, high1, low, high2, high3, high4, high5, end]");
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2015 Async-IO.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.wasync.serial;
+
+import com.google.common.util.concurrent.SettableFuture;
+import com.ning.http.client.Response;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class RingBufferSerializedFireStageTest {
+
+    private final StageFixture fixture = new StageFixture(true);
+    private RingBufferSerializedFireStage stage;
+
+    @AfterMethod
+    public void tearDown() {
+        fixture.close();
+        if (stage != null) {
+            stage.shutdown();
+        }
+    }
+
+    private RingBufferSerializedFireStage stage(int capacity, RingBufferSerializedFireStage.OverflowPolicy policy) {
+        return new RingBufferSerializedFireStage(capacity, policy, RingBufferSerializedFireStage.WaitStrategy.BLOCKING) {
+            @Override
+            protected void fireSynchronously(Object firePayload, SettableFuture<Response> originalFuture) {
+                fixture.write(firePayload, originalFuture);
+            }
+        };
+    }
+
+    private SettableFuture<Response> fire(Object payload) {
+        return StageFixture.fire(stage, payload);
+    }
+
+    private void awaitDepth(int depth) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (stage.queueDepth() != depth && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(stage.queueDepth(), depth);
+    }
+
+    @Test
+    public void capacityTest() {
+        stage = stage(3, RingBufferSerializedFireStage.OverflowPolicy.FAIL_FAST);
+        assertEquals(stage.capacity(), 4);
+    }
+
+    @Test
+    public void orderTest() throws Exception {
+        stage = stage(4, RingBufferSerializedFireStage.OverflowPolicy.BLOCK);
+        fixture.release();
+
+        SettableFuture<Response> last = null;
+        for (int i = 0; i < 1000; i++) {
+            last = fire("message" + i);
+        }
+        last.get(5, TimeUnit.SECONDS);
+
+        assertEquals(fixture.fired.size(), 1000);
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(fixture.fired.get(i), "message" + i);
+        }
+    }
+
+    @Test
+    public void failFastTest() throws Exception {
+        stage = stage(2, RingBufferSerializedFireStage.OverflowPolicy.FAIL_FAST);
+
+        fire("a");
+        // The stage thread is blocked on "a"
+        awaitDepth(0);
+        fire("b");
+        fire("c");
+
+        SettableFuture<Response> rejected = fire("d");
+        assertEquals(stage.queueDepth(), 2);
+        try {
+            rejected.get(5, TimeUnit.SECONDS);
+            assertTrue(false, "Payload must be rejected");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof RejectedExecutionException);
+        }
+    }
+
+    @Test
+    public void dropOldestTest() throws Exception {
+        stage = stage(2, RingBufferSerializedFireStage.OverflowPolicy.DROP_OLDEST);
+
+        fire("a");
+        awaitDepth(0);
+        SettableFuture<Response> oldest = fire("b");
+        SettableFuture<Response> next = fire("c");
+        fire("d");
+        assertTrue(oldest.isCancelled());
+        assertEquals(stage.queueDepth(), 2);
+
+        // The slot released by "b" is reused, then dropped in turn
+        SettableFuture<Response> newest = fire("e");
+        assertTrue(next.isCancelled());
+        fixture.release();
+        newest.get(5, TimeUnit.SECONDS);
+
+        assertEquals(fixture.fired.toString(), "[a, d, e]");
+    }
+
+    @Test
+    public void shutdownTest() throws Exception {
+        stage = stage(4, RingBufferSerializedFireStage.OverflowPolicy.BLOCK);
+
+        SettableFuture<Response> first = fire("a");
+        awaitDepth(0);
+        SettableFuture<Response> pending = fire("b");
+        stage.shutdown();
+
+        assertTrue(pending.isCancelled());
+        assertEquals(stage.queueDepth(), 0);
+
+        // The payload in flight is written, payloads enqueued after shutdown are cancelled
+        fixture.release();
+        first.get(5, TimeUnit.SECONDS);
+        assertTrue(fire("c").isCancelled());
+        assertEquals(stage.queueDepth(), 0);
+        assertEquals(fixture.fired.toString(), "[a]");
+    }
+}
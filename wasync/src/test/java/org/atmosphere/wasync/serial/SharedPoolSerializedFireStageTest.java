@@ -0,0 +1,195 @@
+/*
+ * Copyright 2015 Async-IO.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.wasync.serial;
+
+import com.google.common.util.concurrent.SettableFuture;
+import com.ning.http.client.ListenableFuture;
+import com.ning.http.client.Response;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public class SharedPoolSerializedFireStageTest {
+
+    private final StageFixture fixture = new StageFixture(true);
+    // The writes in flight, in dispatch order
+    private final List<Object> written = new CopyOnWriteArrayList<Object>();
+    private final ExecutorService pool = Executors.newSingleThreadExecutor();
+    // Completes the writes, like the AsyncHttpClient's I/O threads
+    private final ExecutorService io = Executors.newCachedThreadPool();
+
+    @AfterMethod
+    public void tearDown() {
+        fixture.close();
+        pool.shutdownNow();
+        io.shutdownNow();
+    }
+
+    private SharedPoolSerializedFireStage stage() {
+        SharedPoolSerializedFireStage stage = newStage();
+        fixture.socket(stage);
+        return stage;
+    }
+
+    private SharedPoolSerializedFireStage newStage() {
+        return new SharedPoolSerializedFireStage(pool, 100) {
+            @Override
+            protected ListenableFuture<Response> directWrite(final Object firePayload) {
+                written.add(firePayload);
+                final StageFixture.WriteFuture response = new StageFixture.WriteFuture();
+                io.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        fixture.write(firePayload);
+                        response.done();
+                    }
+                });
+                return response;
+            }
+        };
+    }
+
+    private void awaitWritten(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (written.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(written.size(), count);
+    }
+
+    private static List<Object> filter(List<Object> payloads, String prefix) {
+        List<Object> filtered = new ArrayList<Object>();
+        for (Object p : payloads) {
+            if (p.toString().startsWith(prefix)) {
+                filtered.add(p);
+            }
+        }
+        return filtered;
+    }
+
+    @Test
+    public void orderTest() throws Exception {
+        SharedPoolSerializedFireStage a = stage();
+        SharedPoolSerializedFireStage b = stage();
+        fixture.release();
+
+        List<Object> expectedA = new ArrayList<Object>();
+        List<Object> expectedB = new ArrayList<Object>();
+        SettableFuture<Response> lastA = null;
+        SettableFuture<Response> lastB = null;
+        for (int i = 0; i < 500; i++) {
+            lastA = StageFixture.fire(a, "a" + i);
+            lastB = StageFixture.fire(b, "b" + i);
+            expectedA.add("a" + i);
+            expectedB.add("b" + i);
+        }
+        lastA.get(5, TimeUnit.SECONDS);
+        lastB.get(5, TimeUnit.SECONDS);
+
+        assertEquals(fixture.fired.size(), 1000);
+        assertEquals(filter(fixture.fired, "a"), expectedA);
+        assertEquals(filter(fixture.fired, "b"), expectedB);
+    }
+
+    @Test
+    public void fairnessTest() throws Exception {
+        SharedPoolSerializedFireStage a = stage();
+        SharedPoolSerializedFireStage b = stage();
+
+        SettableFuture<Response> lastA = null;
+        for (int i = 0; i < 10; i++) {
+            lastA = StageFixture.fire(a, "a" + i);
+        }
+        awaitWritten(1);
+        SettableFuture<Response> lastB = StageFixture.fire(b, "b0");
+
+        // The single pool thread doesn't wait for "a0"'s response, so "b0" is written before "a1"
+        awaitWritten(2);
+        assertEquals(written.toString(), "[a0, b0]");
+
+        fixture.release();
+        lastA.get(5, TimeUnit.SECONDS);
+        lastB.get(5, TimeUnit.SECONDS);
+        assertEquals(fixture.fired.size(), 11);
+    }
+
+    @Test
+    public void shutdownTest() throws Exception {
+        SharedPoolSerializedFireStage stage = stage();
+
+        SettableFuture<Response> first = StageFixture.fire(stage, "a");
+        awaitWritten(1);
+        SettableFuture<Response> pending = StageFixture.fire(stage, "b");
+        stage.shutdown();
+
+        // The pending payload is cancelled once the payload in flight is written
+        fixture.release();
+        first.get(5, TimeUnit.SECONDS);
+        try {
+            pending.get(5, TimeUnit.SECONDS);
+            fail("Payload must be cancelled");
+        } catch (CancellationException e) {
+        }
+        assertTrue(StageFixture.fire(stage, "c").isCancelled());
+        assertEquals(written.toString(), "[a]");
+    }
+
+    @Test
+    public void shutdownRaceTest() throws Exception {
+        fixture.release();
+        SerializedSocket socket = fixture.socket(stage());
+        for (int i = 0; i < 5000; i++) {
+            final SharedPoolSerializedFireStage stage = newStage();
+            stage.setSocket(socket);
+            final CyclicBarrier start = new CyclicBarrier(2);
+            final AtomicReference<SettableFuture<Response>> future = new AtomicReference<SettableFuture<Response>>();
+            Thread producer = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (Exception e) {
+                        throw new IllegalStateException(e);
+                    }
+                    future.set(StageFixture.fire(stage, "p"));
+                }
+            };
+            producer.start();
+            start.await();
+            stage.shutdown();
+            producer.join(5000);
+
+            // The payload is either written or cancelled, never left behind
+            try {
+                future.get().get(5, TimeUnit.SECONDS);
+            } catch (CancellationException e) {
+            }
+        }
+    }
+}
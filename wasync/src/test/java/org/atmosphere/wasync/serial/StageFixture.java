@@ -0,0 +1,193 @@
+/*
+ * Copyright 2015 Async-IO.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.wasync.serial;
+
+import com.google.common.util.concurrent.SettableFuture;
+import com.ning.http.client.ListenableFuture;
+import com.ning.http.client.RequestBuilder;
+import com.ning.http.client.Response;
+import org.atmosphere.wasync.FunctionWrapper;
+import org.atmosphere.wasync.MetricsPolicy;
+import org.atmosphere.wasync.Request;
+import org.atmosphere.wasync.transport.WebSocketTransport;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Records the payloads written by the {@link SerializedFireStage}s under test, in place of the network. The stages
+ * override their write method to invoke {@link #write(Object)}, which blocks until {@link #release()} is invoked when
+ * the fixture is created blocked.
+ */
+class StageFixture {
+
+    private final static Charset UTF8 = Charset.forName("UTF-8");
+
+    final List<Object> fired = new CopyOnWriteArrayList<Object>();
+    private final CountDownLatch release;
+    private final List<SerializedSocket> sockets = new ArrayList<SerializedSocket>();
+
+    StageFixture(boolean blocked) {
+        release = new CountDownLatch(blocked ? 1 : 0);
+    }
+
+    /**
+     * Record a payload, binary payloads being recorded as Strings.
+     */
+    void write(Object firePayload) {
+        try {
+            release.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        fired.add(firePayload instanceof byte[] ? new String((byte[]) firePayload, UTF8) : firePayload);
+    }
+
+    void write(Object firePayload, SettableFuture<Response> originalFuture) {
+        write(firePayload);
+        originalFuture.set(null);
+    }
+
+    void write(Object firePayload, List<SettableFuture<Response>> originalFutures) {
+        write(firePayload);
+        for (SettableFuture<Response> f : originalFutures) {
+            f.set(null);
+        }
+    }
+
+    void release() {
+        release.countDown();
+    }
+
+    /**
+     * Set the {@code stage} on a new {@link SerializedSocket}, closed by {@link #close()}.
+     */
+    SerializedSocket socket(SerializedFireStage stage) {
+        return socket(stage, null);
+    }
+
+    /**
+     * Set the {@code stage} on a new {@link SerializedSocket} recording its metrics, closed by {@link #close()}.
+     */
+    SerializedSocket socket(SerializedFireStage stage, MetricsPolicy metricsPolicy) {
+        SerializedSocket socket = new SerializedSocket(new SerializedOptionsBuilder().serializedFireStage(stage)
+                .metricsPolicy(metricsPolicy).build());
+        sockets.add(socket);
+        return socket;
+    }
+
+    /**
+     * Set the {@code stage} on a new {@link SerializedSocket} whose websocket is closed, closed by {@link #close()}.
+     */
+    SerializedSocket closedWebSocket(SerializedFireStage stage) {
+        SerializedClient client = new SerializedClient();
+        SerializedOptions options = client.newOptionsBuilder().serializedFireStage(stage).build();
+        Request request = client.newRequestBuilder().uri("http://127.0.0.1:8080/").build();
+        WebSocketTransport transport = new WebSocketTransport(new RequestBuilder(), options, request, new ArrayList<FunctionWrapper>());
+        transport.close();
+        SerializedSocket socket = new WebSocketSocket(options, transport);
+        sockets.add(socket);
+        return socket;
+    }
+
+    static SettableFuture<Response> fire(SerializedFireStage stage, Object payload) {
+        SettableFuture<Response> future = SettableFuture.create();
+        stage.enqueue(payload, future);
+        return future;
+    }
+
+    /**
+     * Release the blocked writes and close the sockets.
+     */
+    void close() {
+        release();
+        for (SerializedSocket socket : sockets) {
+            socket.close();
+        }
+        sockets.clear();
+    }
+
+    /**
+     * A {@link SerializedSocket} using a websocket.
+     */
+    private final static class WebSocketSocket extends SerializedSocket {
+
+        private WebSocketSocket(SerializedOptions options, WebSocketTransport transport) {
+            super(options);
+            transportInUse = transport;
+        }
+    }
+
+    /**
+     * A {@link ListenableFuture} of a write, completed by the test in place of the network.
+     */
+    final static class WriteFuture implements ListenableFuture<Response> {
+
+        private final SettableFuture<Response> delegate = SettableFuture.create();
+
+        @Override
+        public void done() {
+            delegate.set(null);
+        }
+
+        @Override
+        public void abort(Throwable t) {
+            delegate.setException(t);
+        }
+
+        @Override
+        public void touch() {
+        }
+
+        @Override
+        public ListenableFuture<Response> addListener(Runnable listener, Executor exec) {
+            delegate.addListener(listener, exec);
+            return this;
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            return delegate.cancel(mayInterruptIfRunning);
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return delegate.isCancelled();
+        }
+
+        @Override
+        public boolean isDone() {
+            return delegate.isDone();
+        }
+
+        @Override
+        public Response get() throws InterruptedException, ExecutionException {
+            return delegate.get();
+        }
+
+        @Override
+        public Response get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+            return delegate.get(timeout, unit);
+        }
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2015 Async-IO.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.wasync.serial;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import com.ning.http.client.ListenableFuture;
+import com.ning.http.client.Response;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+import static org.testng.Assert.fail;
+
+public class WindowedSerializedFireStageTest {
+
+    private final StageFixture fixture = new StageFixture(false);
+    // The writes in flight, indexed by sequence
+    private final List<StageFixture.WriteFuture> writes = new CopyOnWriteArrayList<StageFixture.WriteFuture>();
+    private WindowedSerializedFireStage stage;
+
+    @AfterMethod
+    public void tearDown() {
+        fixture.close();
+    }
+
+    private WindowedSerializedFireStage stage(int window) {
+        stage = new WindowedSerializedFireStage(window) {
+            @Override
+            protected ListenableFuture<Response> directWrite(Object firePayload, long sequence) {
+                fixture.write(firePayload);
+                StageFixture.WriteFuture future = new StageFixture.WriteFuture();
+                writes.add(future);
+                return future;
+            }
+        };
+        fixture.socket(stage);
+        return stage;
+    }
+
+    private SettableFuture<Response> fire(Object payload) {
+        return StageFixture.fire(stage, payload);
+    }
+
+    private void awaitWrites(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (writes.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(writes.size(), count);
+    }
+
+    @Test
+    public void orderTest() throws Exception {
+        stage(4);
+        SettableFuture<Response> a = fire("a");
+        SettableFuture<Response> b = fire("b");
+        SettableFuture<Response> c = fire("c");
+        awaitWrites(3);
+
+        writes.get(2).done();
+        assertFalse(c.isDone());
+        writes.get(0).done();
+        assertTrue(a.isDone());
+        assertFalse(b.isDone());
+        assertFalse(c.isDone());
+        writes.get(1).done();
+        assertTrue(b.isDone());
+        assertTrue(c.isDone());
+
+        assertEquals(stage.inFlight(), 0);
+        assertEquals(fixture.fired.toString(), "[a, b, c]");
+    }
+
+    @Test
+    public void completionOutsideLockTest() throws Exception {
+        stage(2);
+        SettableFuture<Response> a = fire("a");
+        final AtomicBoolean unlocked = new AtomicBoolean();
+        a.addListener(new Runnable() {
+            @Override
+            public void run() {
+                // The stage must not be locked while the application is notified
+                Thread t = new Thread() {
+                    @Override
+                    public void run() {
+                        stage.inFlight();
+                        unlocked.set(true);
+                    }
+                };
+                t.start();
+                try {
+                    t.join(5000);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }, MoreExecutors.sameThreadExecutor());
+        awaitWrites(1);
+
+        writes.get(0).done();
+        a.get(5, TimeUnit.SECONDS);
+        assertTrue(unlocked.get());
+    }
+
+    @Test
+    public void closedWebSocketTest() throws Exception {
+        stage = new WindowedSerializedFireStage(4);
+        fixture.closedWebSocket(stage);
+        try {
+            fire("a").get(5, TimeUnit.SECONDS);
+            fail("A write to a closed websocket must fail");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+        assertEquals(stage.inFlight(), 0);
+    }
+
+    @Test
+    public void shutdownTest() throws Exception {
+        stage(4);
+        SettableFuture<Response> a = fire("a");
+        SettableFuture<Response> b = fire("b");
+        awaitWrites(2);
+
+        stage.shutdown();
+        assertTrue(a.isCancelled());
+        assertTrue(b.isCancelled());
+        assertTrue(writes.get(0).isCancelled());
+        assertTrue(writes.get(1).isCancelled());
+        assertEquals(stage.inFlight(), 0);
+        assertTrue(fire("c").isCancelled());
+    }
+}
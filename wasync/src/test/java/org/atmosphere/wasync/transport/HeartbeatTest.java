@@ -0,0 +1,68 @@
+/*
+ * Copyright 2015 Async-IO.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.wasync.transport;
+
+import org.testng.annotations.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class HeartbeatTest {
+
+    @Test
+    public void atmospherePaddingTest() throws Exception {
+        Heartbeat heartbeat = new Heartbeat(null, true);
+        assertTrue(heartbeat.isHeartbeat("X".getBytes()));
+        assertTrue(heartbeat.isHeartbeat(" X\r\n".getBytes()));
+        assertTrue(heartbeat.isHeartbeat("\n\n   "));
+        assertFalse(heartbeat.isHeartbeat("XX".getBytes()));
+        assertFalse(heartbeat.isHeartbeat("message"));
+
+        // Without the protocol, X may be a message
+        assertFalse(new Heartbeat(null, false).isHeartbeat("X"));
+        assertTrue(new Heartbeat(null, false).isHeartbeat("  ".getBytes()));
+    }
+
+    @Test
+    public void markerTest() throws Exception {
+        Heartbeat heartbeat = new Heartbeat("<ping>", false);
+        assertTrue(heartbeat.isHeartbeat("<ping>\n".getBytes()));
+        assertTrue(heartbeat.isHeartbeat("<ping>"));
+        assertFalse(heartbeat.isHeartbeat("<ping><ping>"));
+        assertFalse(heartbeat.isHeartbeat("X".getBytes()));
+    }
+
+    @Test
+    public void livenessTest() throws Exception {
+        Heartbeat heartbeat = new Heartbeat(null, true);
+        assertEquals(heartbeat.sinceLastHeartbeat(TimeUnit.MILLISECONDS), -1);
+
+        assertFalse(heartbeat.received("message"));
+        assertEquals(heartbeat.heartbeats(), 0);
+        assertTrue(heartbeat.received(new byte[0]));
+        assertEquals(heartbeat.heartbeats(), 0);
+
+        Thread.sleep(20);
+        assertFalse(heartbeat.isAlive(10, TimeUnit.MILLISECONDS));
+        assertTrue(heartbeat.received("X\n".getBytes()));
+        assertEquals(heartbeat.heartbeats(), 1);
+        assertTrue(heartbeat.isAlive(10, TimeUnit.SECONDS));
+        assertTrue(heartbeat.sinceLastHeartbeat(TimeUnit.MILLISECONDS) >= 0);
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2015 Async-IO.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.wasync.transport;
+
+import com.ning.http.client.RequestBuilder;
+import org.atmosphere.wasync.FunctionWrapper;
+import org.atmosphere.wasync.LifecycleListener;
+import org.atmosphere.wasync.Options;
+import org.atmosphere.wasync.Request;
+import org.atmosphere.wasync.Socket;
+import org.atmosphere.wasync.impl.DefaultClient;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class SocketLifecycleTest {
+
+    private final static Request.TRANSPORT WS = Request.TRANSPORT.WEBSOCKET;
+
+    private static class Recorder implements LifecycleListener {
+        final List<String> events = new ArrayList<String>();
+        long last;
+
+        private void add(String event, long nanoTime) {
+            assertTrue(nanoTime >= last);
+            last = nanoTime;
+            events.add(event);
+        }
+
+        @Override
+        public void onHandshakeStarted(Socket socket, Request.TRANSPORT transport, long nanoTime) {
+            add("started " + transport, nanoTime);
+        }
+
+        @Override
+        public void onHandshakeFinished(Socket socket, Request.TRANSPORT transport, long nanoTime, boolean connected) {
+            add("finished " + connected, nanoTime);
+        }
+
+        @Override
+        public void onFirstByte(Socket socket, Request.TRANSPORT transport, long nanoTime) {
+            add("first byte", nanoTime);
+        }
+
+        @Override
+        public void onReconnectScheduled(Socket socket, Request.TRANSPORT transport, long nanoTime, long delayInMilliseconds, int attempt) {
+            add("scheduled " + delayInMilliseconds + " " + attempt, nanoTime);
+        }
+
+        @Override
+        public void onReconnectStarted(Socket socket, Request.TRANSPORT transport, long nanoTime, int attempt) {
+            add("reconnect " + attempt, nanoTime);
+        }
+
+        @Override
+        public void onFallback(Socket socket, Request.TRANSPORT from, Request.TRANSPORT to, long nanoTime) {
+            add("fallback " + from + " " + to, nanoTime);
+        }
+
+        @Override
+        public void onClose(Socket socket, Request.TRANSPORT transport, long nanoTime) {
+            add("close", nanoTime);
+        }
+    }
+
+    @Test
+    public void lifecycleTest() throws Exception {
+        Recorder recorder = new Recorder();
+        SocketLifecycle lifecycle = new SocketLifecycle(null, Arrays.<LifecycleListener>asList(recorder));
+        assertTrue(lifecycle.enabled());
+
+        lifecycle.handshakeStarted(WS);
+        lifecycle.fallback(WS, Request.TRANSPORT.LONG_POLLING);
+        lifecycle.handshakeStarted(Request.TRANSPORT.LONG_POLLING);
+        lifecycle.received(Request.TRANSPORT.LONG_POLLING);
+        lifecycle.received(Request.TRANSPORT.LONG_POLLING);
+        lifecycle.handshakeFinished(Request.TRANSPORT.LONG_POLLING, true);
+        // Finished once per handshake
+        lifecycle.handshakeFinished(Request.TRANSPORT.LONG_POLLING, false);
+        lifecycle.closed(Request.TRANSPORT.LONG_POLLING);
+        lifecycle.reconnectScheduled(Request.TRANSPORT.LONG_POLLING, 500, 1);
+        lifecycle.reconnectStarted(Request.TRANSPORT.LONG_POLLING, 1);
+        lifecycle.handshakeStarted(Request.TRANSPORT.LONG_POLLING);
+        lifecycle.received(Request.TRANSPORT.LONG_POLLING);
+
+        assertEquals(recorder.events, Arrays.asList(
+                "started WEBSOCKET",
+                "fallback WEBSOCKET LONG_POLLING",
+                "started LONG_POLLING",
+                "first byte",
+                "finished true",
+                "close",
+                "scheduled 500 1",
+                "reconnect 1",
+                "started LONG_POLLING",
+                "first byte"));
+    }
+
+    @Test
+    public void streamingReconnectAttemptTest() throws Exception {
+        Recorder recorder = new Recorder();
+        DefaultClient client = new DefaultClient();
+        Request request = client.newRequestBuilder()
+                .uri("http://127.0.0.1:8080/")
+                .transport(Request.TRANSPORT.STREAMING)
+                .build();
+        // The reconnect is scheduled far enough in the future to never run.
+        Options options = client.newOptionsBuilder().pauseBeforeReconnectInSeconds(60).build();
+        StreamTransport transport = new StreamTransport(new RequestBuilder(), options, request, new ArrayList<FunctionWrapper>());
+        SocketLifecycle lifecycle = new SocketLifecycle(null, Arrays.<LifecycleListener>asList(recorder));
+        transport.lifecycle(lifecycle);
+        try {
+            transport.onCompleted();
+            transport.onCompleted();
+            // A successful connect resets the attempt
+            lifecycle.handshakeStarted(Request.TRANSPORT.STREAMING);
+            transport.triggerOpen();
+            transport.onCompleted();
+        } finally {
+            transport.close();
+        }
+
+        assertEquals(recorder.events, Arrays.asList(
+                "close",
+                "scheduled 60000 1",
+                "close",
+                "scheduled 60000 2",
+                "started STREAMING",
+                "finished true",
+                "close",
+                "scheduled 60000 1",
+                "close"));
+    }
+
+    @Test
+    public void failingListenerTest() throws Exception {
+        Recorder recorder = new Recorder();
+        LifecycleListener failing = new LifecycleListener() {
+            @Override
+            public void onHandshakeStarted(Socket socket, Request.TRANSPORT transport, long nanoTime) {
+                throw new IllegalStateException();
+            }
+        };
+        SocketLifecycle lifecycle = new SocketLifecycle(null, Arrays.<LifecycleListener>asList(failing, recorder));
+
+        lifecycle.handshakeStarted(WS);
+        lifecycle.closed(WS);
+        assertEquals(recorder.events, Arrays.asList("started WEBSOCKET", "close"));
+    }
+
+    @Test
+    public void disabledTest() throws Exception {
+        assertFalse(SocketLifecycle.DISABLED.enabled());
+        SocketLifecycle.DISABLED.handshakeStarted(WS);
+        SocketLifecycle.DISABLED.received(WS);
+        SocketLifecycle.DISABLED.handshakeFinished(WS, true);
+        SocketLifecycle.DISABLED.closed(WS);
+
+        Recorder recorder = new Recorder();
+        DefaultClient client = new DefaultClient();
+        Options options = client.newOptionsBuilder().lifecycleListener(recorder).build();
+        assertEquals(options.lifecycleListeners(), Arrays.<LifecycleListener>asList(recorder));
+        assertTrue(client.newOptionsBuilder().build().lifecycleListeners().isEmpty());
+    }
+}
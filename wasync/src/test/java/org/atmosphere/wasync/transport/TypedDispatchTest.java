@@ -0,0 +1,74 @@
+/*
+ * Copyright 2015 Async-IO.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.wasync.transport;
+
+import org.atmosphere.wasync.Decoder;
+import org.atmosphere.wasync.Encoder;
+import org.atmosphere.wasync.Event;
+import org.atmosphere.wasync.FunctionResolver;
+import org.atmosphere.wasync.FunctionWrapper;
+import org.atmosphere.wasync.RequestBuilder;
+import org.atmosphere.wasync.TypedDecoder;
+import org.atmosphere.wasync.impl.DefaultClient;
+import org.atmosphere.wasync.impl.SocketRuntime;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class TypedDispatchTest {
+
+    private static class Runtime extends SocketRuntime {
+        Runtime() {
+            super(null, new DefaultClient().newOptionsBuilder().build(), null, new ArrayList<FunctionWrapper>());
+        }
+
+        Object encode(List<Encoder<? extends Object, ?>> encoders, Object data) {
+            return invokeEncoder(encoders, data);
+        }
+    }
+
+    @Test
+    public void lambdaDispatchTest() throws Exception {
+        final List<Object> received = new ArrayList<Object>();
+        List<Decoder<? extends Object, ?>> decoders = new ArrayList<Decoder<? extends Object, ?>>();
+        decoders.add(new TypedDecoder<String, Integer>(String.class, Integer.class, (e, s) -> s.length()));
+
+        List<FunctionWrapper> functions = new ArrayList<FunctionWrapper>();
+        functions.add(new FunctionWrapper(Event.MESSAGE.name(), Integer.class, (Integer i) -> received.add(i)));
+        functions.add(new FunctionWrapper(Event.MESSAGE.name(), Long.class, (Long l) -> received.add(l)));
+
+        assertTrue(TransportsUtil.invokeFunction(decoders, functions, String.class, "hello", Event.MESSAGE.name(), FunctionResolver.DEFAULT));
+        assertEquals(received, Arrays.<Object>asList(5));
+    }
+
+    @Test
+    public void typedEncoderTest() throws Exception {
+        RequestBuilder<?> builder = new DefaultClient().newRequestBuilder();
+        Encoder<Integer, String> encoder = i -> "#" + i;
+        builder.encoder(Integer.class, String.class, encoder)
+                .encoder(Integer.class, String.class, encoder)
+                .encoder(String.class, String.class, (String s) -> s + "!");
+        assertEquals(builder.encoders().size(), 2);
+
+        assertEquals(new Runtime().encode(builder.encoders(), 7), "#7!");
+        assertEquals(new Runtime().encode(builder.encoders(), "a"), "a!");
+    }
+}
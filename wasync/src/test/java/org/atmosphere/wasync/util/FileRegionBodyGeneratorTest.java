@@ -0,0 +1,91 @@
+/*
+ * Copyright 2015 Async-IO.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.wasync.util;
+
+import com.ning.http.client.RandomAccessBody;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+import static org.testng.Assert.assertEquals;
+
+public class FileRegionBodyGeneratorTest {
+
+    private File file;
+    private FileChannel channel;
+
+    @BeforeMethod
+    public void setUp() throws Exception {
+        file = File.createTempFile("wasync", ".bin");
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write("0123456789abcdefghij".getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+    }
+
+    @AfterMethod
+    public void tearDown() throws Exception {
+        channel.close();
+        file.delete();
+    }
+
+    @Test
+    public void readRegionTest() throws Exception {
+        RandomAccessBody body = new FileRegionBodyGenerator(new FileRegion(channel, 5, 10)).createBody();
+        assertEquals(body.getContentLength(), 10);
+
+        ByteBuffer buffer = ByteBuffer.allocate(4);
+        StringBuilder read = new StringBuilder();
+        long n;
+        while ((n = body.read(buffer)) != -1) {
+            buffer.flip();
+            read.append(new String(buffer.array(), 0, (int) n, "UTF-8"));
+            buffer.clear();
+        }
+        assertEquals(read.toString(), "56789abcde");
+    }
+
+    @Test
+    public void transferRegionTest() throws Exception {
+        RandomAccessBody body = new FileRegionBodyGenerator(new FileRegion(channel, 5, 10)).createBody();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long position = 0;
+        while (position < body.getContentLength()) {
+            position += body.transferTo(position, Channels.newChannel(out));
+        }
+        assertEquals(new String(out.toByteArray(), "UTF-8"), "56789abcde");
+    }
+
+    @Test
+    public void wholeChannelTest() throws Exception {
+        channel.position(15);
+        FileRegion region = new FileRegion(channel);
+        assertEquals(region.position(), 15);
+        assertEquals(region.count(), 5);
+    }
+}
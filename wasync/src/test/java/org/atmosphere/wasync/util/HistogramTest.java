@@ -0,0 +1,75 @@
+/*
+ * Copyright 2015 Async-IO.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.wasync.util;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class HistogramTest {
+
+    @Test
+    public void percentileTest() throws Exception {
+        Histogram h = new Histogram(4, 1000000);
+        for (int i = 1; i <= 10000; i++) {
+            h.record(i);
+        }
+
+        assertEquals(h.count(), 10000);
+        assertEquals(h.max(), 10000);
+        assertEquals(h.percentile(100), 10000);
+        // Small values are exact
+        assertEquals(h.percentile(0.1), 10);
+        for (double p : new double[]{50, 90, 99, 99.9, 99.99}) {
+            long expected = (long) Math.ceil(p * 100);
+            long actual = h.percentile(p);
+            assertTrue(actual >= expected && actual <= expected * 1.0625, p + " " + actual);
+        }
+    }
+
+    @Test
+    public void highestTrackableValueTest() throws Exception {
+        Histogram h = new Histogram(4, 1000);
+        h.record(10);
+        h.record(Long.MAX_VALUE);
+
+        assertEquals(h.max(), Long.MAX_VALUE);
+        assertEquals(h.percentile(50), 10);
+        assertTrue(h.percentile(100) >= 1000);
+    }
+
+    @Test
+    public void intervalSnapshotTest() throws Exception {
+        Histogram h = new Histogram(4, 1000000);
+        h.record(100);
+        h.record(200);
+
+        Histogram.Snapshot first = h.intervalSnapshot();
+        assertEquals(first.getCount(), 2);
+        assertEquals(first.getMean(), 150.0);
+
+        h.record(5000);
+        Histogram.Snapshot second = h.intervalSnapshot();
+        assertEquals(second.getCount(), 1);
+        assertTrue(second.getP50() >= 5000 && second.getP50() <= 5312);
+        assertEquals(second.getMax(), 5000);
+
+        assertEquals(h.intervalSnapshot().getCount(), 0);
+        assertEquals(h.snapshot().getCount(), 3);
+        assertEquals(h.snapshot().getP9999(), 5000);
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2015 Async-IO.org
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License. You may obtain a copy of
+ * the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package org.atmosphere.wasync.util;
+
+import org.atmosphere.wasync.Decoder;
+import org.atmosphere.wasync.Event;
+import org.atmosphere.wasync.Function;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+public class TypeResolverTest {
+
+    private static class IntegerDecoder implements Decoder<String, Integer> {
+        @Override
+        public Integer decode(Event e, String s) {
+            return s.length();
+        }
+    }
+
+    private static abstract class Base<T> implements Function<T> {
+    }
+
+    private static class Derived extends Base<Long> {
+        @Override
+        public void on(Long l) {
+        }
+    }
+
+    @AfterMethod(alwaysRun = true)
+    public void enableCache() {
+        TypeResolver.enableCache();
+    }
+
+    @Test
+    public void resolveTest() throws Exception {
+        for (boolean cache : new boolean[]{true, false, true}) {
+            if (cache) {
+                TypeResolver.enableCache();
+            } else {
+                TypeResolver.disableCache();
+            }
+            assertEquals(Arrays.asList(TypeResolver.resolveArguments(IntegerDecoder.class, Decoder.class)), Arrays.<Class<?>>asList(String.class, Integer.class));
+            assertEquals(Arrays.asList(TypeResolver.resolveArguments(Derived.class, Function.class)), Arrays.<Class<?>>asList(Long.class));
+            assertEquals(TypeResolver.resolveArgument(Derived.class, Base.class), Long.class);
+        }
+    }
+
+    @Test
+    public void cachedCopyTest() throws Exception {
+        Class<?>[] arguments = TypeResolver.resolveArguments(IntegerDecoder.class, Decoder.class);
+        arguments[0] = Object.class;
+        assertEquals(TypeResolver.resolveArguments(IntegerDecoder.class, Decoder.class)[0], String.class);
+    }
+
+    @Test
+    public void lambdaTest() throws Exception {
+        Function<String> lambda = s -> {
+        };
+        // Twice, the second from the cache
+        assertNull(TypeResolver.resolveArguments(lambda.getClass(), Function.class));
+        assertNull(TypeResolver.resolveArguments(lambda.getClass(), Function.class));
+    }
+
+    @Test
+    public void concurrentTest() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            Callable<Boolean> resolve = new Callable<Boolean>() {
+                @Override
+                public Boolean call() {
+                    for (int i = 0; i < 10000; i++) {
+                        if (TypeResolver.resolveArguments(Derived.class, Function.class)[0] != Long.class) {
+                            return false;
+                        }
+                    }
+                    return true;
+                }
+            };
+            List<Future<Boolean>> results = executor.invokeAll(Collections.nCopies(8, resolve), 30, TimeUnit.SECONDS);
+            for (Future<Boolean> r : results) {
+                assertTrue(r.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}